@@ -81,6 +81,12 @@ public class Query implements Comparable<Query> {
 	public List<String> getColumnsWithCast(
 		String dbType, Query destinationQuery) {
 
+		return getColumnsWithCast(dbType, destinationQuery, tableAlias);
+	}
+
+	public List<String> getColumnsWithCast(
+		String dbType, Query destinationQuery, String tableAlias) {
+
 		List<String> castedColumns = casting;
 
 		if (CollectionUtils.isEmpty(castedColumns)) {
@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Table definitions stored in a local file between executions. Every table
+ * is stored with the fingerprint of its DDL, a table is only returned if its
+ * current fingerprint is the stored one. The whole file is discarded if it
+ * was stored with another key.
+ *
+ * @author Jorge Díaz
+ */
+public class TableCache {
+
+	public TableCache(File file, String key) {
+		_file = file;
+		_key = key;
+	}
+
+	public File getFile() {
+		return _file;
+	}
+
+	public Table getTable(String tableName, String fingerprint) {
+		if (fingerprint == null) {
+			return null;
+		}
+
+		Entry entry = _entries.get(StringUtils.lowerCase(tableName));
+
+		if ((entry == null) || !fingerprint.equals(entry.fingerprint) ||
+			!tableName.equals(entry.table.getTableName())) {
+
+			return null;
+		}
+
+		return entry.table;
+	}
+
+	public boolean isModified() {
+		return _modified;
+	}
+
+	/* Returns false if the file does not exist or it was stored with another
+	 * key or format */
+	public boolean load() throws IOException {
+		_entries.clear();
+		_modified = false;
+
+		if (!_file.exists()) {
+			return false;
+		}
+
+		try (DataInputStream dataInputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(_file), 65536))) {
+
+			if ((dataInputStream.readInt() != _MAGIC) ||
+				!_key.equals(dataInputStream.readUTF())) {
+
+				return false;
+			}
+
+			int count = dataInputStream.readInt();
+
+			for (int i = 0; i < count; i++) {
+				String fingerprint = dataInputStream.readUTF();
+
+				Table table = _readTable(dataInputStream);
+
+				_entries.put(
+					table.getTableNameLowerCase(),
+					new Entry(table, fingerprint));
+			}
+		}
+
+		return true;
+	}
+
+	public void put(Table table, String fingerprint) {
+		Entry entry = _entries.get(table.getTableNameLowerCase());
+
+		if ((entry != null) && (entry.table == table) &&
+			fingerprint.equals(entry.fingerprint)) {
+
+			return;
+		}
+
+		_entries.put(
+			table.getTableNameLowerCase(), new Entry(table, fingerprint));
+
+		_modified = true;
+	}
+
+	/* Removes the tables that no longer exist in the database */
+	public void retainAll(Collection<String> tableNames) {
+		Set<String> tableNamesLowerCase = new HashSet<>();
+
+		for (String tableName : tableNames) {
+			tableNamesLowerCase.add(StringUtils.lowerCase(tableName));
+		}
+
+		Iterator<String> iterator = _entries.keySet().iterator();
+
+		while (iterator.hasNext()) {
+			if (!tableNamesLowerCase.contains(iterator.next())) {
+				iterator.remove();
+
+				_modified = true;
+			}
+		}
+	}
+
+	public int size() {
+		return _entries.size();
+	}
+
+	public void store() throws IOException {
+		File parentFile = _file.getAbsoluteFile().getParentFile();
+
+		if (parentFile != null) {
+			parentFile.mkdirs();
+		}
+
+		File tempFile = new File(_file.getPath() + ".tmp");
+
+		try (DataOutputStream dataOutputStream = new DataOutputStream(
+				new BufferedOutputStream(
+					new FileOutputStream(tempFile), 65536))) {
+
+			dataOutputStream.writeInt(_MAGIC);
+			dataOutputStream.writeUTF(_key);
+			dataOutputStream.writeInt(_entries.size());
+
+			for (Entry entry : _entries.values()) {
+				dataOutputStream.writeUTF(entry.fingerprint);
+
+				_writeTable(dataOutputStream, entry.table);
+			}
+		}
+
+		if (_file.exists() && !_file.delete()) {
+			throw new IOException("Unable to replace " + _file);
+		}
+
+		if (!tempFile.renameTo(_file)) {
+			throw new IOException("Unable to rename " + tempFile);
+		}
+
+		_modified = false;
+	}
+
+	protected static class Entry {
+
+		public Entry(Table table, String fingerprint) {
+			this.table = table;
+			this.fingerprint = fingerprint;
+		}
+
+		protected String fingerprint;
+		protected Table table;
+
+	}
+
+	private static String _readString(DataInputStream dataInputStream)
+		throws IOException {
+
+		if (!dataInputStream.readBoolean()) {
+			return null;
+		}
+
+		return dataInputStream.readUTF();
+	}
+
+	private static Table _readTable(DataInputStream dataInputStream)
+		throws IOException {
+
+		String tableName = dataInputStream.readUTF();
+
+		int primaryKeysCount = dataInputStream.readInt();
+
+		List<String> primaryKeys = new ArrayList<>(primaryKeysCount);
+
+		for (int i = 0; i < primaryKeysCount; i++) {
+			primaryKeys.add(dataInputStream.readUTF());
+		}
+
+		int columnsCount = dataInputStream.readInt();
+
+		List<String> columnNames = new ArrayList<>(columnsCount);
+		List<Integer> columnTypes = new ArrayList<>(columnsCount);
+		List<String> columnTypesSqlName = new ArrayList<>(columnsCount);
+		List<Integer> columnSizes = new ArrayList<>(columnsCount);
+		List<Boolean> columnNullables = new ArrayList<>(columnsCount);
+
+		for (int i = 0; i < columnsCount; i++) {
+			columnNames.add(dataInputStream.readUTF());
+			columnTypes.add(dataInputStream.readInt());
+			columnTypesSqlName.add(_readString(dataInputStream));
+			columnSizes.add(dataInputStream.readInt());
+			columnNullables.add(dataInputStream.readBoolean());
+		}
+
+		return new Table(
+			tableName, primaryKeys, columnNames, columnTypes,
+			columnTypesSqlName, columnSizes, columnNullables);
+	}
+
+	private static void _writeString(
+			DataOutputStream dataOutputStream, String value)
+		throws IOException {
+
+		dataOutputStream.writeBoolean(value != null);
+
+		if (value != null) {
+			dataOutputStream.writeUTF(value);
+		}
+	}
+
+	private static void _writeTable(
+			DataOutputStream dataOutputStream, Table table)
+		throws IOException {
+
+		dataOutputStream.writeUTF(table.getTableName());
+
+		List<String> primaryKeys;
+
+		if (table.hasCompoundPrimKey()) {
+			primaryKeys = Arrays.asList(table.getCompoundPrimaryKey());
+		}
+		else {
+			primaryKeys = Arrays.asList(table.getPrimaryKey());
+		}
+
+		dataOutputStream.writeInt(primaryKeys.size());
+
+		for (String primaryKey : primaryKeys) {
+			dataOutputStream.writeUTF(primaryKey);
+		}
+
+		int columnsCount = table.getNumberOfColumns();
+
+		dataOutputStream.writeInt(columnsCount);
+
+		for (int i = 0; i < columnsCount; i++) {
+			dataOutputStream.writeUTF(table.getColumnName(i));
+			dataOutputStream.writeInt(table.getColumnType(i));
+			_writeString(dataOutputStream, table.getColumnTypeSqlName(i));
+			dataOutputStream.writeInt(table.getColumnSize(i));
+			dataOutputStream.writeBoolean(table.getColumnIsNullable(i));
+		}
+	}
+
+	private static final int _MAGIC = 0x52435443;
+
+	private final Map<String, Entry> _entries = new TreeMap<>();
+	private final File _file;
+	private final String _key;
+	private boolean _modified;
+
+}
\ No newline at end of file
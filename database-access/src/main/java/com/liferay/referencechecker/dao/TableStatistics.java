@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.dao;
+
+import com.liferay.referencechecker.util.JDBCUtil;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Row counts estimated from the statistics of the database catalog, the
+ * estimates of all the tables are read with one query. The tables are only
+ * counted when their estimate is close to zero or unknown, so an outdated
+ * estimate can make a table that was emptied look populated, but never the
+ * other way round.
+ *
+ * @author Jorge Díaz
+ */
+public class TableStatistics {
+
+	public TableStatistics(String dbType) {
+		this.dbType = dbType;
+	}
+
+	public synchronized void clear() {
+		rowEstimates = null;
+	}
+
+	/* Estimated row count, the table is counted if the estimate is close to
+	 * zero or the database doesn't provide it */
+	public long getRowCount(Connection connection, Table table) {
+		if (isPopulated(connection, table)) {
+			return getRowEstimate(connection, table);
+		}
+
+		return TableUtil.countTable(connection, table);
+	}
+
+	/* Returns null if the catalog has no statistics of the table */
+	public Long getRowEstimate(Connection connection, Table table) {
+		Map<String, Long> rowEstimates = this.rowEstimates;
+
+		if (rowEstimates == null) {
+			rowEstimates = _loadRowEstimates(connection);
+		}
+
+		return rowEstimates.get(table.getTableNameLowerCase());
+	}
+
+	/* The table is not empty according to its estimate, false if the
+	 * estimate is close to zero or unknown */
+	public boolean isPopulated(Connection connection, Table table) {
+		Long rowEstimate = getRowEstimate(connection, table);
+
+		if ((rowEstimate != null) && (rowEstimate > _EXACT_COUNT_THRESHOLD)) {
+			return true;
+		}
+
+		return false;
+	}
+
+	public boolean isSupported() {
+		if (getSQL() != null) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/* Used when the table is modified after the estimates were loaded */
+	public void remove(String tableName) {
+		Map<String, Long> rowEstimates = this.rowEstimates;
+
+		if (rowEstimates != null) {
+			rowEstimates.remove(StringUtils.lowerCase(tableName));
+		}
+	}
+
+	protected String getSQL() {
+		if (dbType.equals(SQLUtil.TYPE_DB2)) {
+			return "SELECT tabname, card FROM syscat.tables WHERE tabschema " +
+				"= CURRENT SCHEMA AND type = 'T'";
+		}
+
+		if (dbType.equals(SQLUtil.TYPE_MARIADB) ||
+			dbType.equals(SQLUtil.TYPE_MYSQL)) {
+
+			return "SELECT table_name, table_rows FROM " +
+				"information_schema.tables WHERE table_schema = DATABASE() " +
+					"AND table_type = 'BASE TABLE'";
+		}
+
+		if (dbType.equals(SQLUtil.TYPE_ORACLE)) {
+			return "SELECT table_name, num_rows FROM all_tables WHERE owner " +
+				"= USER";
+		}
+
+		if (dbType.equals(SQLUtil.TYPE_POSTGRESQL)) {
+			return "SELECT c.relname, c.reltuples FROM pg_class c INNER JOIN " +
+				"pg_namespace n ON n.oid = c.relnamespace WHERE c.relkind = " +
+					"'r' AND n.nspname = CURRENT_SCHEMA()";
+		}
+
+		if (dbType.equals(SQLUtil.TYPE_SQLSERVER)) {
+			return "SELECT t.name, SUM(p.rows) FROM sys.tables t INNER JOIN " +
+				"sys.partitions p ON p.object_id = t.object_id WHERE " +
+					"p.index_id IN (0, 1) AND t.schema_id = SCHEMA_ID(" +
+						"SCHEMA_NAME()) GROUP BY t.name";
+		}
+
+		return null;
+	}
+
+	protected Map<String, Long> loadRowEstimates(Connection connection)
+		throws SQLException {
+
+		Map<String, Long> rowEstimates = new ConcurrentHashMap<>();
+
+		String sql = getSQL();
+
+		if (sql == null) {
+			return rowEstimates;
+		}
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			if (_log.isDebugEnabled()) {
+				_log.debug("SQL: " + sql);
+			}
+
+			ps = connection.prepareStatement(sql);
+
+			ps.setQueryTimeout(SQLUtil.QUERY_TIMEOUT);
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				String tableName = rs.getString(1);
+				double rowEstimate = rs.getDouble(2);
+
+				/* Tables without statistics return null or a negative
+				 * value depending on the database */
+				if ((tableName == null) || rs.wasNull() || (rowEstimate < 0)) {
+					continue;
+				}
+
+				rowEstimates.put(
+					StringUtils.lowerCase(tableName), (long)rowEstimate);
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		return rowEstimates;
+	}
+
+	protected String dbType;
+	protected volatile Map<String, Long> rowEstimates;
+
+	private synchronized Map<String, Long> _loadRowEstimates(
+		Connection connection) {
+
+		if (rowEstimates != null) {
+			return rowEstimates;
+		}
+
+		try {
+			rowEstimates = loadRowEstimates(connection);
+
+			if (_log.isInfoEnabled() && isSupported()) {
+				_log.info(
+					"Loaded row estimates of " + rowEstimates.size() +
+						" tables from the catalog statistics");
+			}
+		}
+		catch (SQLException sqlException) {
+			_log.warn(
+				"Unable to read the catalog statistics, the tables will be " +
+					"counted: " + sqlException.getMessage());
+
+			rowEstimates = new ConcurrentHashMap<>();
+		}
+
+		return rowEstimates;
+	}
+
+	/* Below this estimate the table is counted, the statistics of small
+	 * tables are the least reliable ones */
+	private static final long _EXACT_COUNT_THRESHOLD = 1000;
+
+	private static Logger _log = LogManager.getLogger(TableStatistics.class);
+
+}
\ No newline at end of file
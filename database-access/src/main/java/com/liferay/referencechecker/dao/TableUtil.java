@@ -18,6 +18,8 @@ import com.liferay.referencechecker.model.ModelUtil;
 import com.liferay.referencechecker.util.JDBCUtil;
 import com.liferay.referencechecker.util.SQLUtil;
 
+import java.io.IOException;
+
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -25,11 +27,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -37,6 +42,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.regex.Matcher;
@@ -239,6 +245,71 @@ public class TableUtil {
 		return map;
 	}
 
+	/* Columns of each index of the table, in index order */
+	public static Collection<List<String>> getIndexesColumns(
+		Connection connection, Table table) {
+
+		Map<String, List<String>> indexesColumns = new TreeMap<>();
+
+		ResultSet rs = null;
+
+		try {
+			String dbType = SQLUtil.getDBType(connection);
+
+			DatabaseMetaData databaseMetaData = connection.getMetaData();
+
+			String catalog = connection.getCatalog();
+			String schema = null;
+
+			if ((catalog == null) && dbType.equals(SQLUtil.TYPE_ORACLE)) {
+				catalog = databaseMetaData.getUserName();
+
+				schema = catalog;
+			}
+
+			rs = databaseMetaData.getIndexInfo(
+				catalog, schema, table.getTableName(), false, true);
+
+			while (rs.next()) {
+				String indexName = rs.getString("INDEX_NAME");
+				String columnName = rs.getString("COLUMN_NAME");
+
+				if ((indexName == null) || (columnName == null)) {
+					continue;
+				}
+
+				List<String> indexColumns = indexesColumns.get(indexName);
+
+				if (indexColumns == null) {
+					indexColumns = new ArrayList<>();
+
+					indexesColumns.put(indexName, indexColumns);
+				}
+
+				int position = rs.getShort("ORDINAL_POSITION") - 1;
+
+				while (indexColumns.size() <= position) {
+					indexColumns.add(null);
+				}
+
+				indexColumns.set(position, StringUtils.lowerCase(columnName));
+			}
+		}
+		catch (SQLException sqlException) {
+			_log.error(
+				"Error getting indexes of " + table.getTableName() +
+					" EXCEPTION: " + sqlException,
+				sqlException);
+
+			return Collections.emptyList();
+		}
+		finally {
+			JDBCUtil.cleanUp(rs);
+		}
+
+		return indexesColumns.values();
+	}
+
 	public void addTable(
 		DatabaseMetaData databaseMetaData, String catalog, String schema,
 		String tableName) {
@@ -278,13 +349,7 @@ public class TableUtil {
 		Map<String, Table> tableMap = initTableMap(
 			databaseMetaData, catalog, schema, tableNames);
 
-		Collection<Table> tables = tableMap.values();
-
-		tableNames = _getTableNames(tables);
-
-		this.tableMap.putAll(tableMap);
-
-		this.tableNames.addAll(tableNames);
+		_putTables(tableMap);
 	}
 
 	public void cleanEmptyTableCacheOnDelete(String tableName) {
@@ -299,6 +364,15 @@ public class TableUtil {
 		cleanEmptyTableCache(tableName, null);
 	}
 
+	/* Estimated row count of the table, see TableStatistics */
+	public long getRowCount(Connection connection, Table table) {
+		if (tableStatistics == null) {
+			return countTable(connection, table);
+		}
+
+		return tableStatistics.getRowCount(connection, table);
+	}
+
 	public Table getTable(String tableName) {
 		String key = StringUtils.lowerCase(tableName);
 
@@ -309,6 +383,10 @@ public class TableUtil {
 		return Collections.unmodifiableSet(tableNames);
 	}
 
+	public TableStatistics getTableStatistics() {
+		return tableStatistics;
+	}
+
 	public List<Table> getTables() {
 		return new ArrayList<>(tableMap.values());
 	}
@@ -407,6 +485,18 @@ public class TableUtil {
 			List<String> ignoreTables, ModelUtil modelUtil)
 		throws SQLException {
 
+		init(connection, ignoreColumns, ignoreTables, modelUtil, null);
+	}
+
+	/* The tables whose fingerprint didn't change since the cache was stored
+	 * are taken from the cache, the other ones are read from the database
+	 * metadata and stored in the cache */
+	public void init(
+			Connection connection, List<String> ignoreColumns,
+			List<String> ignoreTables, ModelUtil modelUtil,
+			TableCache tableCache)
+		throws SQLException {
+
 		initIgnore(ignoreTables, ignoreColumns);
 
 		String dbType = SQLUtil.getDBType(connection);
@@ -425,9 +515,52 @@ public class TableUtil {
 		Set<String> tableNames = getTableNames(
 			databaseMetaData, catalog, schema, "%");
 
-		addTables(databaseMetaData, catalog, schema, tableNames);
+		Map<String, String> fingerprints = null;
+
+		if (tableCache != null) {
+			fingerprints = _loadTableCache(dbType, connection, tableCache);
+		}
+
+		Map<String, Table> tableMap = new TreeMap<>();
+
+		Set<String> loadTableNames = tableNames;
+
+		if (fingerprints != null) {
+			loadTableNames = new TreeSet<>();
+
+			for (String tableName : tableNames) {
+				Table table = tableCache.getTable(
+					tableName, fingerprints.get(tableName));
+
+				if (table == null) {
+					loadTableNames.add(tableName);
+				}
+				else {
+					tableMap.put(table.getTableNameLowerCase(), table);
+				}
+			}
+
+			_log.info(
+				tableMap.size() + " tables read from the cache, " +
+					loadTableNames.size() + " tables read from the database");
+		}
+
+		if (!loadTableNames.isEmpty()) {
+			tableMap.putAll(
+				_loadTables(
+					dbType, databaseMetaData, catalog, schema,
+					loadTableNames));
+		}
+
+		if (fingerprints != null) {
+			_storeTableCache(tableCache, tableMap, fingerprints, tableNames);
+		}
+
+		_putTables(tableMap);
 
 		this.modelUtil = modelUtil;
+
+		tableStatistics = new TableStatistics(dbType);
 	}
 
 	public boolean isTableEmpty(Connection connection, Table table) {
@@ -437,15 +570,7 @@ public class TableUtil {
 	public boolean isTableEmpty(
 		Connection connection, Table table, String whereClause) {
 
-		String key = table.getTableNameLowerCase();
-
-		if (whereClause != null) {
-			key = key.concat(
-				"_"
-			).concat(
-				whereClause
-			);
-		}
+		String key = _getEmptyTableKey(table, whereClause);
 
 		Boolean tableEmpty = emptyTableCache.get(key);
 
@@ -454,7 +579,14 @@ public class TableUtil {
 		}
 
 		if (whereClause == null) {
-			tableEmpty = countTable(connection, table, null) <= 0;
+			if ((tableStatistics != null) &&
+				tableStatistics.isPopulated(connection, table)) {
+
+				tableEmpty = false;
+			}
+			else {
+				tableEmpty = _isTableEmpty(connection, table, null);
+			}
 		}
 		else {
 			Matcher matcher = classNameIdPattern.matcher(whereClause);
@@ -472,21 +604,11 @@ public class TableUtil {
 			tableEmpty = isTableEmpty(connection, table);
 
 			if (!tableEmpty) {
-				tableEmpty = countTable(connection, table, whereClause) <= 0;
+				tableEmpty = _isTableEmpty(connection, table, whereClause);
 			}
 		}
 
-		Set<String> keySet = emptyTableKeys.get(table.getTableNameLowerCase());
-
-		if (keySet == null) {
-			keySet = new HashSet<>();
-
-			emptyTableKeys.put(table.getTableNameLowerCase(), keySet);
-		}
-
-		keySet.add(key);
-
-		emptyTableCache.put(key, tableEmpty);
+		_putEmptyTableCache(table, key, tableEmpty);
 
 		return tableEmpty;
 	}
@@ -498,40 +620,21 @@ public class TableUtil {
 		String classNameValue = matcher.group(2);
 		String classNamePKAttr = matcher.group(3);
 
-		String key = table.getTableNameLowerCase();
-
-		key = key.concat(
-			"_"
-		).concat(
-			classNameAttr
-		);
+		ClassNameVariant classNameVariant = new ClassNameVariant(
+			classNameAttr, classNamePKAttr, false);
 
-		if (classNamePKAttr != null) {
-			key = key.concat(
-				"_"
-			).concat(
-				classNamePKAttr
-			);
-		}
+		String key = classNameVariant.getKey(table);
 
-		Set<String> keySet = emptyTableKeysClassName.get(
-			table.getTableNameLowerCase());
+		Map<String, Long> map = emptyTableCacheClassName.get(key);
 
-		if (keySet == null) {
-			keySet = new HashSet<>();
+		if (map == null) {
+			_loadClassNameDistribution(connection, table, classNameVariant);
 
-			emptyTableKeysClassName.put(table.getTableNameLowerCase(), keySet);
+			map = emptyTableCacheClassName.get(key);
 		}
 
-		keySet.add(key);
-
-		Map<String, Long> map = emptyTableCacheClassName.get(key);
-
 		if (map == null) {
-			map = countTableClassName(
-				connection, table, classNameAttr, classNamePKAttr);
-
-			emptyTableCacheClassName.put(key, map);
+			return true;
 		}
 
 		Long count = map.get(classNameValue);
@@ -554,41 +657,21 @@ public class TableUtil {
 		String classNameValue = matcher.group(2);
 		String classNamePKAttr = matcher.group(4);
 
-		String key = table.getTableNameLowerCase();
-
-		key = key.concat(
-			"_"
-		).concat(
-			classNameIdAttr
-		);
+		ClassNameVariant classNameVariant = new ClassNameVariant(
+			classNameIdAttr, classNamePKAttr, true);
 
-		if (classNamePKAttr != null) {
-			key = key.concat(
-				"_"
-			).concat(
-				classNamePKAttr
-			);
-		}
+		String key = classNameVariant.getKey(table);
 
-		Set<String> keySet = emptyTableKeysClassNameId.get(
-			table.getTableNameLowerCase());
+		Map<Long, Long> map = emptyTableCacheClassNameId.get(key);
 
-		if (keySet == null) {
-			keySet = new HashSet<>();
+		if (map == null) {
+			_loadClassNameDistribution(connection, table, classNameVariant);
 
-			emptyTableKeysClassNameId.put(
-				table.getTableNameLowerCase(), keySet);
+			map = emptyTableCacheClassNameId.get(key);
 		}
 
-		keySet.add(key);
-
-		Map<Long, Long> map = emptyTableCacheClassNameId.get(key);
-
 		if (map == null) {
-			map = countTableClassNameId(
-				connection, table, classNameIdAttr, classNamePKAttr);
-
-			emptyTableCacheClassNameId.put(key, map);
+			return true;
 		}
 
 		Long count = map.get(modelUtil.getClassNameId(classNameValue));
@@ -604,6 +687,110 @@ public class TableUtil {
 		return false;
 	}
 
+	/* Fills the empty table cache with the result of the conditions of the
+	 * queries. The class name conditions are resolved with one scan per table
+	 * that counts the rows of every class name variant of the table */
+	public void probeEmptyQueries(
+		Connection connection, Collection<Query> queries) {
+
+		Set<Table> tables = new LinkedHashSet<>();
+
+		for (Query query : queries) {
+			tables.add(query.getTable());
+		}
+
+		probeEmptyTables(connection, tables);
+
+		Map<Table, ClassNameVariant> classNameTables = new LinkedHashMap<>();
+		Set<String> keys = new HashSet<>();
+		List<Table> probeTables = new ArrayList<>();
+		List<String> whereClauses = new ArrayList<>();
+
+		for (Query query : queries) {
+			Table table = query.getTable();
+			String whereClause = query.getCondition();
+
+			if (StringUtils.isBlank(whereClause) ||
+				!Boolean.FALSE.equals(
+					emptyTableCache.get(table.getTableNameLowerCase()))) {
+
+				continue;
+			}
+
+			Matcher classNameIdMatcher = classNameIdPattern.matcher(
+				whereClause);
+			Matcher classNameMatcher = classNamePattern.matcher(whereClause);
+
+			ClassNameVariant classNameVariant = null;
+
+			if (classNameIdMatcher.matches()) {
+				classNameVariant = new ClassNameVariant(
+					classNameIdMatcher.group(1), classNameIdMatcher.group(4),
+					true);
+			}
+			else if (classNameMatcher.matches()) {
+				classNameVariant = new ClassNameVariant(
+					classNameMatcher.group(1), classNameMatcher.group(3),
+					false);
+			}
+
+			if (classNameVariant != null) {
+				_getClassNameVariants(table).add(classNameVariant);
+
+				classNameTables.put(table, classNameVariant);
+
+				continue;
+			}
+
+			String key = _getEmptyTableKey(table, whereClause);
+
+			if (!emptyTableCache.containsKey(key) && keys.add(key)) {
+				probeTables.add(table);
+				whereClauses.add(whereClause);
+			}
+		}
+
+		_probeEmptyTables(connection, probeTables, whereClauses);
+
+		for (Map.Entry<Table, ClassNameVariant> entry :
+				classNameTables.entrySet()) {
+
+			_loadClassNameDistribution(
+				connection, entry.getKey(), entry.getValue());
+		}
+	}
+
+	/* Fills the empty table cache of the tables with a few statements
+	 * instead of one query per table */
+	public void probeEmptyTables(
+		Connection connection, Collection<Table> tables) {
+
+		List<Table> probeTables = new ArrayList<>();
+
+		for (Table table : tables) {
+			String key = table.getTableNameLowerCase();
+
+			if (emptyTableCache.containsKey(key)) {
+				continue;
+			}
+
+			if ((tableStatistics != null) &&
+				tableStatistics.isPopulated(connection, table)) {
+
+				_putEmptyTableCache(table, key, false);
+
+				continue;
+			}
+
+			probeTables.add(table);
+		}
+
+		List<String> whereClauses = Collections.nCopies(
+			probeTables.size(), null);
+
+		_probeEmptyTables(connection, probeTables, whereClauses);
+	}
+
 	public void removeTable(String tableName) {
 		Table table = getTable(tableName);
 
@@ -626,6 +813,10 @@ public class TableUtil {
 
 		String tableNameLowerCase = StringUtils.lowerCase(tableName);
 
+		if (tableStatistics != null) {
+			tableStatistics.remove(tableNameLowerCase);
+		}
+
 		Set<String> keySet = emptyTableKeys.get(tableNameLowerCase);
 
 		if (keySet == null) {
@@ -665,50 +856,130 @@ public class TableUtil {
 		}
 	}
 
-	protected Table createTable(
-			DatabaseMetaData databaseMetaData, String catalog, String schema,
-			String tableName)
-		throws SQLException {
+	/* Rows of each class name of every variant, with one scan of the table
+	 * grouped by all the class name columns of the variants */
+	protected Map<ClassNameVariant, Map<Object, Long>>
+		countTableClassNameDistribution(
+			Connection connection, Table table,
+			List<ClassNameVariant> classNameVariants) {
 
-		List<String> primaryKeys = new ArrayList<>();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
 
-		ResultSet rsPK = null;
+		Map<ClassNameVariant, Map<Object, Long>> distribution =
+			new HashMap<>();
+
+		String sql = null;
 
 		try {
+			List<String> columns = new ArrayList<>();
+
+			for (ClassNameVariant classNameVariant : classNameVariants) {
+				String column = StringUtils.lowerCase(
+					classNameVariant.getClassNameColumn());
+
+				if (!columns.contains(column)) {
+					columns.add(column);
+				}
+			}
+
+			StringBuilder sb = new StringBuilder();
+
+			sb.append("SELECT ");
+			sb.append(StringUtils.join(columns, ", "));
+
+			for (ClassNameVariant classNameVariant : classNameVariants) {
+				String filter = classNameVariant.getFilter();
+
+				if (filter == null) {
+					sb.append(", COUNT(*)");
+				}
+				else {
+					sb.append(", SUM(CASE WHEN ");
+					sb.append(filter);
+					sb.append(" THEN 1 ELSE 0 END)");
+				}
+			}
+
+			sb.append(" FROM ");
+			sb.append(table.getTableName());
+			sb.append(" GROUP BY ");
+			sb.append(StringUtils.join(columns, ", "));
+
+			sql = sb.toString();
+
 			if (_log.isDebugEnabled()) {
-				_log.debug("getting primaryKeys of " + tableName);
+				_log.debug("SQL: " + sql);
 			}
 
-			rsPK = databaseMetaData.getPrimaryKeys(catalog, schema, tableName);
+			sql = SQLUtil.transform(SQLUtil.getDBType(connection), sql);
 
-			while (rsPK.next()) {
-				String columnName = rsPK.getString("COLUMN_NAME");
+			ps = connection.prepareStatement(sql);
 
-				primaryKeys.add(columnName);
+			ps.setQueryTimeout(SQLUtil.QUERY_TIMEOUT);
 
-				if (_log.isDebugEnabled()) {
-					short keySeq = rsPK.getShort("KEY_SEQ");
-					String primaryKeyName = rsPK.getString("PK_NAME");
+			rs = ps.executeQuery();
 
-					_log.debug(
-						columnName + " " + keySeq + " " + primaryKeyName);
+			for (ClassNameVariant classNameVariant : classNameVariants) {
+				distribution.put(classNameVariant, new HashMap<Object, Long>());
+			}
+
+			while (rs.next()) {
+				for (int i = 0; i < classNameVariants.size(); i++) {
+					ClassNameVariant classNameVariant = classNameVariants.get(
+						i);
+
+					int columnIndex =
+						columns.indexOf(
+							StringUtils.lowerCase(
+								classNameVariant.getClassNameColumn())) + 1;
+
+					Object value;
+
+					if (classNameVariant.isClassNameId()) {
+						value = rs.getLong(columnIndex);
+					}
+					else {
+						value = rs.getString(columnIndex);
+					}
+
+					long count = rs.getLong(columns.size() + i + 1);
+
+					Map<Object, Long> map = distribution.get(classNameVariant);
+
+					Long previousCount = map.get(value);
+
+					if (previousCount != null) {
+						count += previousCount;
+					}
+
+					map.put(value, count);
 				}
 			}
 		}
+		catch (SQLException sqlException) {
+			_log.error(
+				"Error executing sql: " + sql + " EXCEPTION: " + sqlException,
+				sqlException);
+
+			return null;
+		}
 		finally {
-			JDBCUtil.cleanUp(rsPK);
+			JDBCUtil.cleanUp(ps, rs);
 		}
 
-		if (primaryKeys.size() > 1) {
-			primaryKeys = removeBlacklistedPrimaryKeys(
-				primaryKeys, _BLACKLISTED_PRIMARY_KEYS);
-		}
+		return distribution;
+	}
+
+	protected Table createTable(
+			DatabaseMetaData databaseMetaData, String catalog, String schema,
+			String tableName)
+		throws SQLException {
+
+		List<String> primaryKeys = getPrimaryKeys(
+			databaseMetaData, catalog, schema, tableName);
 
-		List<String> columnNames = new ArrayList<>();
-		List<Integer> columnDataTypes = new ArrayList<>();
-		List<String> columnTypeNames = new ArrayList<>();
-		List<Integer> columnSizes = new ArrayList<>();
-		List<Boolean> columnNullables = new ArrayList<>();
+		TableColumns tableColumns = new TableColumns();
 
 		ResultSet rsCols = null;
 
@@ -731,35 +1002,51 @@ public class TableUtil {
 					continue;
 				}
 
-				int dataType = rsCols.getInt("DATA_TYPE");
-				String typeName = rsCols.getString("TYPE_NAME");
-				int columnSize = rsCols.getInt("COLUMN_SIZE");
-				boolean nullable = rsCols.getBoolean("NULLABLE");
+				tableColumns.add(rsCols);
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(rsCols);
+		}
+
+		return _createTable(tableName, primaryKeys, tableColumns);
+	}
+
+	protected List<String> getPrimaryKeys(
+			DatabaseMetaData databaseMetaData, String catalog, String schema,
+			String tableName)
+		throws SQLException {
+
+		List<String> primaryKeys = new ArrayList<>();
+
+		ResultSet rsPK = null;
 
-				columnNames.add(columnName);
-				columnDataTypes.add(dataType);
-				columnTypeNames.add(typeName);
-				columnSizes.add(columnSize);
-				columnNullables.add(nullable);
+		try {
+			if (_log.isDebugEnabled()) {
+				_log.debug("getting primaryKeys of " + tableName);
+			}
+
+			rsPK = databaseMetaData.getPrimaryKeys(catalog, schema, tableName);
+
+			while (rsPK.next()) {
+				String columnName = rsPK.getString("COLUMN_NAME");
+
+				primaryKeys.add(columnName);
 
 				if (_log.isDebugEnabled()) {
+					short keySeq = rsPK.getShort("KEY_SEQ");
+					String primaryKeyName = rsPK.getString("PK_NAME");
+
 					_log.debug(
-						columnName + " " + dataType + " " + typeName + " " +
-							columnSize + " " + nullable);
+						columnName + " " + keySeq + " " + primaryKeyName);
 				}
 			}
 		}
 		finally {
-			JDBCUtil.cleanUp(rsCols);
-		}
-
-		if (columnNames.isEmpty()) {
-			return null;
+			JDBCUtil.cleanUp(rsPK);
 		}
 
-		return new Table(
-			tableName, primaryKeys, columnNames, columnDataTypes,
-			columnTypeNames, columnSizes, columnNullables);
+		return primaryKeys;
 	}
 
 	protected String getSanitizedTableName(
@@ -928,12 +1215,336 @@ public class TableUtil {
 		return false;
 	}
 
+	/* Primary key columns of every table, ordered by column name as
+	 * DatabaseMetaData.getPrimaryKeys does. The drivers that don't accept a
+	 * null table name are queried using their catalog views */
+	protected Map<String, List<String>> loadPrimaryKeys(
+			String dbType, DatabaseMetaData databaseMetaData, String catalog,
+			String schema)
+		throws SQLException {
+
+		String sql;
+
+		if (dbType.equals(SQLUtil.TYPE_DB2)) {
+			sql =
+				"SELECT k.tabname TABLE_NAME, k.colname COLUMN_NAME FROM " +
+					"syscat.keycoluse k, syscat.tabconst t WHERE " +
+						"t.tabschema = CURRENT SCHEMA AND t.type = 'P' AND " +
+							"k.tabschema = t.tabschema AND k.constname = " +
+								"t.constname ORDER BY k.tabname, k.colname";
+		}
+		else if (dbType.equals(SQLUtil.TYPE_MARIADB) ||
+				 dbType.equals(SQLUtil.TYPE_MYSQL)) {
+
+			sql =
+				"SELECT table_name TABLE_NAME, column_name COLUMN_NAME FROM " +
+					"information_schema.key_column_usage WHERE " +
+						"table_schema = DATABASE() AND constraint_name = " +
+							"'PRIMARY' ORDER BY table_name, column_name";
+		}
+		else if (dbType.equals(SQLUtil.TYPE_ORACLE)) {
+			sql =
+				"SELECT c.table_name TABLE_NAME, c.column_name COLUMN_NAME " +
+					"FROM all_cons_columns c, all_constraints k WHERE " +
+						"k.owner = USER AND k.constraint_type = 'P' AND " +
+							"c.owner = k.owner AND c.constraint_name = " +
+								"k.constraint_name ORDER BY c.table_name, " +
+									"c.column_name";
+		}
+		else if (dbType.equals(SQLUtil.TYPE_HYPERSONIC) ||
+				 dbType.equals(SQLUtil.TYPE_POSTGRESQL)) {
+
+			sql = null;
+		}
+		else {
+			return null;
+		}
+
+		Map<String, List<String>> primaryKeysMap = new HashMap<>();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			if (_log.isDebugEnabled()) {
+				_log.debug("getting primaryKeys of all tables");
+			}
+
+			if (sql == null) {
+				rs = databaseMetaData.getPrimaryKeys(catalog, schema, null);
+			}
+			else {
+				Connection connection = databaseMetaData.getConnection();
+
+				ps = connection.prepareStatement(sql);
+
+				rs = ps.executeQuery();
+			}
+
+			while (rs.next()) {
+				String tableName = rs.getString("TABLE_NAME");
+
+				List<String> primaryKeys = primaryKeysMap.get(tableName);
+
+				if (primaryKeys == null) {
+					primaryKeys = new ArrayList<>();
+
+					primaryKeysMap.put(tableName, primaryKeys);
+				}
+
+				primaryKeys.add(rs.getString("COLUMN_NAME"));
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		return primaryKeysMap;
+	}
+
+	/* Value that changes when the DDL of the table changes, returns null if
+	 * the database doesn't provide it. The database is queried only once for
+	 * all the tables */
+	protected Map<String, String> loadTableFingerprints(
+			String dbType, Connection connection)
+		throws SQLException {
+
+		String sql;
+
+		if (dbType.equals(SQLUtil.TYPE_DB2)) {
+			sql =
+				"SELECT tabname, alter_time FROM syscat.tables WHERE " +
+					"tabschema = CURRENT SCHEMA";
+		}
+		else if (dbType.equals(SQLUtil.TYPE_MARIADB) ||
+				 dbType.equals(SQLUtil.TYPE_MYSQL)) {
+
+			sql =
+				"SELECT table_name, CONCAT(COUNT(*), '#', SUM(CRC32(" +
+					"CONCAT_WS('#', column_name, column_type, column_key, " +
+						"is_nullable)))) FROM information_schema.columns " +
+							"WHERE table_schema = DATABASE() GROUP BY " +
+								"table_name";
+		}
+		else if (dbType.equals(SQLUtil.TYPE_ORACLE)) {
+			sql =
+				"SELECT object_name, TO_CHAR(last_ddl_time, " +
+					"'YYYYMMDDHH24MISS') FROM user_objects WHERE " +
+						"object_type = 'TABLE'";
+		}
+		else if (dbType.equals(SQLUtil.TYPE_POSTGRESQL)) {
+			sql =
+				"SELECT table_name, MD5(STRING_AGG(column_name || '#' || " +
+					"data_type || '#' || COALESCE(character_maximum_length, " +
+						"0) || '#' || is_nullable, ',' ORDER BY " +
+							"ordinal_position)) FROM " +
+								"information_schema.columns WHERE " +
+									"table_schema = CURRENT_SCHEMA() GROUP " +
+										"BY table_name";
+		}
+		else if (dbType.equals(SQLUtil.TYPE_SQLSERVER)) {
+			sql = "SELECT name, modify_date FROM sys.tables";
+		}
+		else {
+			return null;
+		}
+
+		Map<String, String> fingerprints = new HashMap<>();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = connection.prepareStatement(sql);
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				String fingerprint = rs.getString(2);
+
+				if (fingerprint != null) {
+					fingerprints.put(rs.getString(1), fingerprint);
+				}
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		return fingerprints;
+	}
+
+	/* Loads all the tables with one catalog query for the columns and one for
+	 * the primary keys, returns null if the primary keys of the database can
+	 * not be read in bulk */
+	protected Map<String, Table> loadTableMap(
+			String dbType, DatabaseMetaData databaseMetaData, String catalog,
+			String schema, Collection<String> tableNames)
+		throws SQLException {
+
+		Map<String, List<String>> primaryKeysMap = loadPrimaryKeys(
+			dbType, databaseMetaData, catalog, schema);
+
+		if (primaryKeysMap == null) {
+			return null;
+		}
+
+		Map<String, TableColumns> tableColumnsMap = new HashMap<>();
+
+		for (String tableName : tableNames) {
+			if (!ignoreTable(tableName)) {
+				tableColumnsMap.put(tableName, new TableColumns());
+			}
+		}
+
+		ResultSet rs = null;
+
+		try {
+			if (_log.isDebugEnabled()) {
+				_log.debug("getting columns of all tables");
+			}
+
+			rs = databaseMetaData.getColumns(catalog, schema, "%", "%");
+
+			while (rs.next()) {
+				String tableName = rs.getString("TABLE_NAME");
+
+				TableColumns tableColumns = tableColumnsMap.get(tableName);
+
+				if (tableColumns == null) {
+					continue;
+				}
+
+				String columnName = rs.getString("COLUMN_NAME");
+
+				if (ignoreColumn(tableName, columnName)) {
+					if (_log.isDebugEnabled()) {
+						_log.debug("Ignoring column: " + columnName);
+					}
+
+					continue;
+				}
+
+				tableColumns.add(rs);
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(rs);
+		}
+
+		Map<String, Table> tableMap = new TreeMap<>();
+
+		for (Map.Entry<String, TableColumns> entry :
+				tableColumnsMap.entrySet()) {
+
+			String tableName = entry.getKey();
+
+			List<String> primaryKeys = primaryKeysMap.get(tableName);
+
+			/* Tables of other schemas are not returned by the bulk query */
+			if (primaryKeys == null) {
+				primaryKeys = getPrimaryKeys(
+					databaseMetaData, catalog, schema, tableName);
+			}
+
+			Table table = _createTable(
+				tableName, primaryKeys, entry.getValue());
+
+			if (table != null) {
+				tableMap.put(table.getTableNameLowerCase(), table);
+			}
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info("Loaded " + tableMap.size() + " tables in bulk");
+		}
+
+		return tableMap;
+	}
+
 	protected boolean matchesRegex(String value, Pattern pattern) {
 		Matcher matcher = pattern.matcher(value);
 
 		return matcher.matches();
 	}
 
+	/* Checks if the rows of each table that match its where clause are
+	 * empty, all of them with one statement of EXISTS probes joined by UNION
+	 * ALL that returns the position of the tables with rows */
+	protected boolean[] probeEmpty(
+			Connection connection, String dbType, List<Table> tables,
+			List<String> whereClauses)
+		throws SQLException {
+
+		String dualTable = SQLUtil.getDualTable(dbType);
+
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < tables.size(); i++) {
+			Table table = tables.get(i);
+			String whereClause = whereClauses.get(i);
+
+			if (i > 0) {
+				sb.append(" UNION ALL ");
+			}
+
+			sb.append("SELECT ");
+			sb.append(i);
+
+			if (dualTable != null) {
+				sb.append(" FROM ");
+				sb.append(dualTable);
+			}
+
+			sb.append(" WHERE EXISTS (SELECT 1 FROM ");
+			sb.append(table.getTableName());
+
+			if (whereClause != null) {
+				sb.append(" WHERE ");
+				sb.append(whereClause);
+			}
+
+			sb.append(")");
+		}
+
+		String sql = sb.toString();
+
+		if (_log.isDebugEnabled()) {
+			_log.debug("SQL: " + sql);
+		}
+
+		sql = SQLUtil.transform(dbType, sql);
+
+		boolean[] empty = new boolean[tables.size()];
+
+		Arrays.fill(empty, true);
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = connection.prepareStatement(sql);
+
+			if (tables.size() == 1) {
+				ps.setQueryTimeout(SQLUtil.QUERY_TIMEOUT);
+			}
+			else {
+				ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+			}
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				empty[rs.getInt(1)] = false;
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		return empty;
+	}
+
 	protected List<String> removeBlacklistedPrimaryKeys(
 		List<String> primaryKey, String[] blacklistedPrimaryKeyColumns) {
 
@@ -969,6 +1580,8 @@ public class TableUtil {
 	protected Pattern classNamePattern = Pattern.compile(
 		"(\\w*)\\s*=\\s*'(.*)'\\s*and\\s*(\\w*)\\s*<>\\s*0",
 		Pattern.CASE_INSENSITIVE);
+	protected ConcurrentMap<String, Set<ClassNameVariant>> classNameVariants =
+		new ConcurrentHashMap<>();
 	protected Map<String, Boolean> emptyTableCache = new ConcurrentHashMap<>();
 	protected Map<String, Map<String, Long>> emptyTableCacheClassName =
 		new ConcurrentHashMap<>();
@@ -986,6 +1599,187 @@ public class TableUtil {
 	protected Map<String, Pattern> patternCache = new ConcurrentHashMap<>();
 	protected Map<String, Table> tableMap = new ConcurrentSkipListMap<>();
 	protected Set<String> tableNames = new ConcurrentSkipListSet<>();
+	protected TableStatistics tableStatistics;
+
+	/**
+	 * Columns of a table in the order they are read from
+	 * DatabaseMetaData.getColumns.
+	 */
+	protected static class TableColumns {
+
+		public void add(ResultSet rs) throws SQLException {
+			String columnName = rs.getString("COLUMN_NAME");
+			int dataType = rs.getInt("DATA_TYPE");
+			String typeName = rs.getString("TYPE_NAME");
+			int columnSize = rs.getInt("COLUMN_SIZE");
+			boolean nullable = rs.getBoolean("NULLABLE");
+
+			columnNames.add(columnName);
+			columnDataTypes.add(dataType);
+			columnTypeNames.add(typeName);
+			columnSizes.add(columnSize);
+			columnNullables.add(nullable);
+
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					columnName + " " + dataType + " " + typeName + " " +
+						columnSize + " " + nullable);
+			}
+		}
+
+		protected List<Integer> columnDataTypes = new ArrayList<>();
+		protected List<String> columnNames = new ArrayList<>();
+		protected List<Boolean> columnNullables = new ArrayList<>();
+		protected List<Integer> columnSizes = new ArrayList<>();
+		protected List<String> columnTypeNames = new ArrayList<>();
+
+	}
+
+	/* Class name column of a polymorphic table and the class pk column whose
+	 * rows are counted, the class name column stores either the class name
+	 * or the classNameId */
+	protected static class ClassNameVariant {
+
+		public ClassNameVariant(
+			String classNameColumn, String classPKColumn,
+			boolean classNameId) {
+
+			this.classNameColumn = classNameColumn;
+			this.classPKColumn = classPKColumn;
+			this.classNameId = classNameId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ClassNameVariant)) {
+				return false;
+			}
+
+			ClassNameVariant classNameVariant = (ClassNameVariant)obj;
+
+			if (StringUtils.equalsIgnoreCase(
+					classNameColumn, classNameVariant.classNameColumn) &&
+				StringUtils.equalsIgnoreCase(
+					classPKColumn, classNameVariant.classPKColumn) &&
+				(classNameId == classNameVariant.classNameId)) {
+
+				return true;
+			}
+
+			return false;
+		}
+
+		public String getClassNameColumn() {
+			return classNameColumn;
+		}
+
+		public String getClassPKColumn() {
+			return classPKColumn;
+		}
+
+		/* Condition of the counted rows, null if all the rows are counted */
+		public String getFilter() {
+			if (classPKColumn == null) {
+				return null;
+			}
+
+			if (classNameId) {
+				return classPKColumn + " IS NOT NULL";
+			}
+
+			return classPKColumn + "<>0";
+		}
+
+		public String getKey(Table table) {
+			String key = table.getTableNameLowerCase();
+
+			key = key.concat(
+				"_"
+			).concat(
+				classNameColumn
+			);
+
+			if (classPKColumn != null) {
+				key = key.concat(
+					"_"
+				).concat(
+					classPKColumn
+				);
+			}
+
+			return key;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(
+				StringUtils.lowerCase(classNameColumn),
+				StringUtils.lowerCase(classPKColumn), classNameId);
+		}
+
+		public boolean isClassNameId() {
+			return classNameId;
+		}
+
+		protected String classNameColumn;
+		protected boolean classNameId;
+		protected String classPKColumn;
+
+	}
+
+	private Table _createTable(
+		String tableName, List<String> primaryKeys, TableColumns tableColumns) {
+
+		if (tableColumns.columnNames.isEmpty()) {
+			return null;
+		}
+
+		if (primaryKeys.size() > 1) {
+			primaryKeys = removeBlacklistedPrimaryKeys(
+				primaryKeys, _BLACKLISTED_PRIMARY_KEYS);
+		}
+
+		return new Table(
+			tableName, primaryKeys, tableColumns.columnNames,
+			tableColumns.columnDataTypes, tableColumns.columnTypeNames,
+			tableColumns.columnSizes, tableColumns.columnNullables);
+	}
+
+	private Set<ClassNameVariant> _getClassNameVariants(Table table) {
+		String tableName = table.getTableNameLowerCase();
+
+		Set<ClassNameVariant> classNameVariants = this.classNameVariants.get(
+			tableName);
+
+		if (classNameVariants == null) {
+			classNameVariants = Collections.newSetFromMap(
+				new ConcurrentHashMap<ClassNameVariant, Boolean>());
+
+			Set<ClassNameVariant> previousClassNameVariants =
+				this.classNameVariants.putIfAbsent(
+					tableName, classNameVariants);
+
+			if (previousClassNameVariants != null) {
+				classNameVariants = previousClassNameVariants;
+			}
+		}
+
+		return classNameVariants;
+	}
+
+	private String _getEmptyTableKey(Table table, String whereClause) {
+		String key = table.getTableNameLowerCase();
+
+		if (whereClause != null) {
+			key = key.concat(
+				"_"
+			).concat(
+				whereClause
+			);
+		}
+
+		return key;
+	}
 
 	private Collection<String> _getTableNames(Collection<Table> tables) {
 		List<String> list = new ArrayList<>();
@@ -997,10 +1791,328 @@ public class TableUtil {
 		return list;
 	}
 
+	private boolean _isClassNameDistributionCached(
+		Table table, ClassNameVariant classNameVariant) {
+
+		String key = classNameVariant.getKey(table);
+
+		if (classNameVariant.isClassNameId()) {
+			return emptyTableCacheClassNameId.containsKey(key);
+		}
+
+		return emptyTableCacheClassName.containsKey(key);
+	}
+
+	/* Errors are handled as empty tables, as the count of the table did */
+	private boolean _isTableEmpty(
+		Connection connection, Table table, String whereClause) {
+
+		String dbType = null;
+
+		try {
+			dbType = SQLUtil.getDBType(connection);
+
+			boolean[] empty = probeEmpty(
+				connection, dbType, Collections.singletonList(table),
+				Collections.singletonList(whereClause));
+
+			return empty[0];
+		}
+		catch (SQLException sqlException) {
+			if (Objects.equals(dbType, SQLUtil.TYPE_MYSQL) &&
+				(sqlException.getErrorCode() == 1412)) {
+
+				return true;
+			}
+
+			_log.error(
+				"Error probing table " + table.getTableName() +
+					" EXCEPTION: " + sqlException,
+				sqlException);
+
+			return true;
+		}
+	}
+
+	/* Counts the rows by class name of every variant of the table requested
+	 * so far that is not cached, the variants are kept when the cache of the
+	 * table is cleaned so they are counted again with a single scan */
+	private void _loadClassNameDistribution(
+		Connection connection, Table table,
+		ClassNameVariant classNameVariant) {
+
+		Set<ClassNameVariant> classNameVariants = _getClassNameVariants(table);
+
+		classNameVariants.add(classNameVariant);
+
+		List<ClassNameVariant> uncachedClassNameVariants = new ArrayList<>();
+
+		for (ClassNameVariant curClassNameVariant : classNameVariants) {
+			if (!_isClassNameDistributionCached(table, curClassNameVariant)) {
+				uncachedClassNameVariants.add(curClassNameVariant);
+			}
+		}
+
+		if (uncachedClassNameVariants.size() > 1) {
+			Map<ClassNameVariant, Map<Object, Long>> distribution =
+				countTableClassNameDistribution(
+					connection, table, uncachedClassNameVariants);
+
+			if (distribution != null) {
+				for (Map.Entry<ClassNameVariant, Map<Object, Long>> entry :
+						distribution.entrySet()) {
+
+					_putClassNameDistribution(
+						table, entry.getKey(), entry.getValue());
+				}
+
+				return;
+			}
+		}
+
+		if (_isClassNameDistributionCached(table, classNameVariant)) {
+			return;
+		}
+
+		String classNameColumn = classNameVariant.getClassNameColumn();
+		String classPKColumn = classNameVariant.getClassPKColumn();
+
+		Map<Object, Long> map = new HashMap<>();
+
+		if (classNameVariant.isClassNameId()) {
+			Map<Long, Long> classNameIdMap = countTableClassNameId(
+				connection, table, classNameColumn, classPKColumn);
+
+			if (classNameIdMap == null) {
+				return;
+			}
+
+			map.putAll(classNameIdMap);
+		}
+		else {
+			Map<String, Long> classNameMap = countTableClassName(
+				connection, table, classNameColumn, classPKColumn);
+
+			if (classNameMap == null) {
+				return;
+			}
+
+			map.putAll(classNameMap);
+		}
+
+		_putClassNameDistribution(table, classNameVariant, map);
+	}
+
+	private Map<String, String> _loadTableCache(
+		String dbType, Connection connection, TableCache tableCache) {
+
+		try {
+			Map<String, String> fingerprints = loadTableFingerprints(
+				dbType, connection);
+
+			if (fingerprints == null) {
+				_log.warn(
+					"Table cache is not supported for database type " +
+						dbType);
+
+				return null;
+			}
+
+			if (!tableCache.load()) {
+				_log.info(
+					"Table cache " + tableCache.getFile() +
+						" is empty or outdated, it will be rebuilt");
+			}
+
+			return fingerprints;
+		}
+		catch (IOException | SQLException exception) {
+			_log.warn(
+				"Unable to use the table cache " + tableCache.getFile() +
+					": " + exception.getMessage());
+		}
+
+		return null;
+	}
+
+	private Map<String, Table> _loadTables(
+		String dbType, DatabaseMetaData databaseMetaData, String catalog,
+		String schema, Collection<String> tableNames) {
+
+		if (tableNames.size() < _BULK_LOAD_MIN_TABLES) {
+			return initTableMap(databaseMetaData, catalog, schema, tableNames);
+		}
+
+		Map<String, Table> tableMap = null;
+
+		try {
+			tableMap = loadTableMap(
+				dbType, databaseMetaData, catalog, schema, tableNames);
+		}
+		catch (SQLException sqlException) {
+			_log.warn(
+				"Unable to load the tables in bulk, loading them one by one: " +
+					sqlException.getMessage());
+		}
+
+		if (tableMap == null) {
+			tableMap = initTableMap(
+				databaseMetaData, catalog, schema, tableNames);
+		}
+
+		return tableMap;
+	}
+
+	private void _probeEmptyTables(
+		Connection connection, List<Table> tables, List<String> whereClauses) {
+
+		if (tables.isEmpty()) {
+			return;
+		}
+
+		String dbType;
+
+		try {
+			dbType = SQLUtil.getDBType(connection);
+		}
+		catch (SQLException sqlException) {
+			_log.warn(sqlException, sqlException);
+
+			return;
+		}
+
+		for (int i = 0; i < tables.size(); i += _PROBE_BATCH_SIZE) {
+			int end = Math.min(i + _PROBE_BATCH_SIZE, tables.size());
+
+			List<Table> batchTables = tables.subList(i, end);
+			List<String> batchWhereClauses = whereClauses.subList(i, end);
+
+			try {
+				boolean[] empty = probeEmpty(
+					connection, dbType, batchTables, batchWhereClauses);
+
+				for (int j = 0; j < empty.length; j++) {
+					Table table = batchTables.get(j);
+
+					_putEmptyTableCache(
+						table,
+						_getEmptyTableKey(table, batchWhereClauses.get(j)),
+						empty[j]);
+				}
+			}
+			catch (SQLException sqlException) {
+				_log.warn(
+					"Unable to probe " + batchTables.size() + " tables in " +
+						"one statement, they will be probed one by one: " +
+							sqlException.getMessage());
+			}
+		}
+	}
+
+	private void _putClassNameDistribution(
+		Table table, ClassNameVariant classNameVariant, Map<Object, Long> map) {
+
+		String key = classNameVariant.getKey(table);
+
+		Map<String, Set<String>> emptyTableKeys;
+
+		if (classNameVariant.isClassNameId()) {
+			emptyTableKeys = emptyTableKeysClassNameId;
+		}
+		else {
+			emptyTableKeys = emptyTableKeysClassName;
+		}
+
+		Set<String> keySet = emptyTableKeys.get(table.getTableNameLowerCase());
+
+		if (keySet == null) {
+			keySet = new HashSet<>();
+
+			emptyTableKeys.put(table.getTableNameLowerCase(), keySet);
+		}
+
+		keySet.add(key);
+
+		if (classNameVariant.isClassNameId()) {
+			Map<Long, Long> classNameIdMap = new HashMap<>();
+
+			for (Map.Entry<Object, Long> entry : map.entrySet()) {
+				classNameIdMap.put((Long)entry.getKey(), entry.getValue());
+			}
+
+			emptyTableCacheClassNameId.put(key, classNameIdMap);
+		}
+		else {
+			Map<String, Long> classNameMap = new HashMap<>();
+
+			for (Map.Entry<Object, Long> entry : map.entrySet()) {
+				classNameMap.put((String)entry.getKey(), entry.getValue());
+			}
+
+			emptyTableCacheClassName.put(key, classNameMap);
+		}
+	}
+
+	private void _putEmptyTableCache(
+		Table table, String key, boolean tableEmpty) {
+
+		Set<String> keySet = emptyTableKeys.get(table.getTableNameLowerCase());
+
+		if (keySet == null) {
+			keySet = new HashSet<>();
+
+			emptyTableKeys.put(table.getTableNameLowerCase(), keySet);
+		}
+
+		keySet.add(key);
+
+		emptyTableCache.put(key, tableEmpty);
+	}
+
+	private synchronized void _putTables(Map<String, Table> tableMap) {
+		Collection<Table> tables = tableMap.values();
+
+		this.tableMap.putAll(tableMap);
+
+		tableNames.addAll(_getTableNames(tables));
+	}
+
+	private void _storeTableCache(
+		TableCache tableCache, Map<String, Table> tableMap,
+		Map<String, String> fingerprints, Collection<String> tableNames) {
+
+		tableCache.retainAll(tableNames);
+
+		for (Table table : tableMap.values()) {
+			String fingerprint = fingerprints.get(table.getTableName());
+
+			if (fingerprint != null) {
+				tableCache.put(table, fingerprint);
+			}
+		}
+
+		if (!tableCache.isModified()) {
+			return;
+		}
+
+		try {
+			tableCache.store();
+		}
+		catch (IOException ioException) {
+			_log.warn(
+				"Unable to store the table cache " + tableCache.getFile() +
+					": " + ioException.getMessage());
+		}
+	}
+
 	private static final String[] _BLACKLISTED_PRIMARY_KEYS = {
 		"CTCollectionId"
 	};
 
+	private static final int _BULK_LOAD_MIN_TABLES = 50;
+
+	private static final int _PROBE_BATCH_SIZE = 100;
+
 	private static Logger _log = LogManager.getLogger(TableUtil.class);
 
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Normalization of the key values read from the database, so values of the
+ * same key are equal whatever the JDBC type the driver returns.
+ *
+ * @author Jorge Díaz
+ */
+public class KeyUtil {
+
+	/* Integral numbers are returned as Long. Trailing spaces are only removed
+	 * if padSpace is set, as the databases that compare strings with PAD
+	 * SPACE do */
+	public static Object normalize(
+		Object value, boolean caseInsensitive, boolean padSpace) {
+
+		if (value == null) {
+			return null;
+		}
+
+		if ((value instanceof Long) || (value instanceof Integer) ||
+			(value instanceof Short) || (value instanceof Byte)) {
+
+			Number number = (Number)value;
+
+			return number.longValue();
+		}
+
+		if (value instanceof BigInteger) {
+			BigInteger bigInteger = (BigInteger)value;
+
+			if (bigInteger.bitLength() < 64) {
+				return bigInteger.longValue();
+			}
+
+			return bigInteger.toString();
+		}
+
+		if (value instanceof BigDecimal) {
+			BigDecimal bigDecimal = (BigDecimal)value;
+
+			bigDecimal = bigDecimal.stripTrailingZeros();
+
+			if ((bigDecimal.scale() <= 0) &&
+				(bigDecimal.precision() - bigDecimal.scale() < 19)) {
+
+				return bigDecimal.longValue();
+			}
+
+			return bigDecimal.toPlainString();
+		}
+
+		if ((value instanceof Double) || (value instanceof Float)) {
+			Number number = (Number)value;
+
+			double doubleValue = number.doubleValue();
+
+			if ((doubleValue == Math.rint(doubleValue)) &&
+				(Math.abs(doubleValue) < _MAX_EXACT_DOUBLE)) {
+
+				return (long)doubleValue;
+			}
+
+			return doubleValue;
+		}
+
+		if (value instanceof String) {
+			String string = (String)value;
+
+			if (padSpace) {
+				string = StringUtils.stripEnd(string, " ");
+			}
+
+			if (caseInsensitive) {
+				string = StringUtils.lowerCase(string);
+			}
+
+			return string;
+		}
+
+		return value;
+	}
+
+	/* Returns null if the value is not an integral number */
+	public static Long toLong(Object value) {
+		Object normalizedValue = normalize(value, false, false);
+
+		if (normalizedValue instanceof Long) {
+			return (Long)normalizedValue;
+		}
+
+		return null;
+	}
+
+	private static final double _MAX_EXACT_DOUBLE = 9007199254740992D;
+
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.util;
+
+/**
+ * Open addressing hash set of primitive long values, it avoids the boxing
+ * and entry overhead of HashSet<Long> when storing millions of keys.
+ *
+ * @author Jorge Díaz
+ */
+public class LongHashSet {
+
+	/* Memory used by a set sized for the expected number of values */
+	public static long estimateMemoryUsage(long expectedSize) {
+		long capacity = 16;
+
+		while ((capacity * _LOAD_FACTOR) < expectedSize) {
+			capacity = capacity << 1;
+		}
+
+		return (capacity * 8L) + 32L;
+	}
+
+	public LongHashSet() {
+		this(16);
+	}
+
+	public LongHashSet(int expectedSize) {
+		int capacity = 16;
+
+		while ((capacity * _LOAD_FACTOR) < expectedSize) {
+			capacity = capacity << 1;
+		}
+
+		_table = new long[capacity];
+	}
+
+	public boolean add(long value) {
+		if (value == 0) {
+			if (_containsZero) {
+				return false;
+			}
+
+			_containsZero = true;
+			_size++;
+
+			return true;
+		}
+
+		int mask = _table.length - 1;
+
+		int pos = _hash(value) & mask;
+
+		while (_table[pos] != 0) {
+			if (_table[pos] == value) {
+				return false;
+			}
+
+			pos = (pos + 1) & mask;
+		}
+
+		_table[pos] = value;
+		_size++;
+
+		if (_size > (_table.length * _LOAD_FACTOR)) {
+			_rehash(_table.length << 1);
+		}
+
+		return true;
+	}
+
+	public boolean contains(long value) {
+		if (value == 0) {
+			return _containsZero;
+		}
+
+		int mask = _table.length - 1;
+
+		int pos = _hash(value) & mask;
+
+		while (_table[pos] != 0) {
+			if (_table[pos] == value) {
+				return true;
+			}
+
+			pos = (pos + 1) & mask;
+		}
+
+		return false;
+	}
+
+	public long getMemoryUsage() {
+		return (_table.length * 8L) + 32L;
+	}
+
+	public boolean isEmpty() {
+		if (_size == 0) {
+			return true;
+		}
+
+		return false;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public long[] toArray() {
+		long[] array = new long[_size];
+
+		int i = 0;
+
+		if (_containsZero) {
+			array[i++] = 0;
+		}
+
+		for (long value : _table) {
+			if (value != 0) {
+				array[i++] = value;
+			}
+		}
+
+		return array;
+	}
+
+	private int _hash(long value) {
+		long hash = value * 0x9E3779B97F4A7C15L;
+
+		return (int)(hash ^ (hash >>> 32));
+	}
+
+	private void _rehash(int capacity) {
+		long[] oldTable = _table;
+
+		_table = new long[capacity];
+
+		int mask = capacity - 1;
+
+		for (long value : oldTable) {
+			if (value == 0) {
+				continue;
+			}
+
+			int pos = _hash(value) & mask;
+
+			while (_table[pos] != 0) {
+				pos = (pos + 1) & mask;
+			}
+
+			_table[pos] = value;
+		}
+	}
+
+	private static final float _LOAD_FACTOR = 0.6F;
+
+	private boolean _containsZero;
+	private int _size;
+	private long[] _table;
+
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash set of fixed width tuples of primitive long values. Tuples are packed
+ * in a single long array in insertion order and indexed by an open
+ * addressing table, so each tuple costs width * 8 bytes plus its index.
+ *
+ * @author Jorge Díaz
+ */
+public class LongTupleHashSet {
+
+	public LongTupleHashSet(int width) {
+		_width = width;
+
+		_data = new long[16 * width];
+		_table = new int[16];
+	}
+
+	public boolean add(long[] tuple) {
+		int mask = _table.length - 1;
+
+		int pos = _hash(tuple) & mask;
+
+		while (_table[pos] != 0) {
+			if (_equals(_table[pos] - 1, tuple)) {
+				return false;
+			}
+
+			pos = (pos + 1) & mask;
+		}
+
+		if (((_size + 1) * _width) > _data.length) {
+			_data = Arrays.copyOf(_data, _data.length * 2);
+		}
+
+		System.arraycopy(tuple, 0, _data, _size * _width, _width);
+
+		_size++;
+
+		_table[pos] = _size;
+
+		if (_size > (_table.length * _LOAD_FACTOR)) {
+			_rehash(_table.length << 1);
+		}
+
+		return true;
+	}
+
+	public boolean contains(long[] tuple) {
+		int mask = _table.length - 1;
+
+		int pos = _hash(tuple) & mask;
+
+		while (_table[pos] != 0) {
+			if (_equals(_table[pos] - 1, tuple)) {
+				return true;
+			}
+
+			pos = (pos + 1) & mask;
+		}
+
+		return false;
+	}
+
+	/* Column value of the tuple in the given insertion position */
+	public long get(int index, int column) {
+		return _data[(index * _width) + column];
+	}
+
+	public long getMemoryUsage() {
+		return (_data.length * 8L) + (_table.length * 4L) + 48L;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public boolean isEmpty() {
+		if (_size == 0) {
+			return true;
+		}
+
+		return false;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	private boolean _equals(int index, long[] tuple) {
+		int offset = index * _width;
+
+		for (int i = 0; i < _width; i++) {
+			if (_data[offset + i] != tuple[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private int _hash(long[] tuple) {
+		long hash = 0;
+
+		for (int i = 0; i < _width; i++) {
+			hash = (hash + tuple[i]) * 0x9E3779B97F4A7C15L;
+		}
+
+		return (int)(hash ^ (hash >>> 32));
+	}
+
+	private int _hash(int index) {
+		long hash = 0;
+
+		int offset = index * _width;
+
+		for (int i = 0; i < _width; i++) {
+			hash = (hash + _data[offset + i]) * 0x9E3779B97F4A7C15L;
+		}
+
+		return (int)(hash ^ (hash >>> 32));
+	}
+
+	private void _rehash(int capacity) {
+		_table = new int[capacity];
+
+		int mask = capacity - 1;
+
+		for (int i = 0; i < _size; i++) {
+			int pos = _hash(i) & mask;
+
+			while (_table[pos] != 0) {
+				pos = (pos + 1) & mask;
+			}
+
+			_table[pos] = i + 1;
+		}
+	}
+
+	private static final float _LOAD_FACTOR = 0.6F;
+
+	private long[] _data;
+	private int _size;
+	private int[] _table;
+	private final int _width;
+
+}
\ No newline at end of file
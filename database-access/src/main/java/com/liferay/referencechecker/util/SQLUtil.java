@@ -74,7 +74,9 @@ public class SQLUtil {
 
 			String sql = sqlList.get(i);
 
-			sql = sql.replace(column, prefix + "." + column);
+			if (!_isConstant(column)) {
+				sql = sql.replace(column, prefix + "." + column);
+			}
 
 			newSqlList.add(sql);
 		}
@@ -231,6 +233,122 @@ public class SQLUtil {
 		return result;
 	}
 
+	/* Table of one row used by the selects that don't read any table, null
+	 * if the database accepts a select without FROM clause */
+	public static String getDualTable(String dbType) {
+		if (dbType.equals(TYPE_DB2)) {
+			return "SYSIBM.SYSDUMMY1";
+		}
+
+		if (dbType.equals(TYPE_HYPERSONIC)) {
+			return "(VALUES(0))";
+		}
+
+		if (dbType.equals(TYPE_MARIADB) || dbType.equals(TYPE_MYSQL) ||
+			dbType.equals(TYPE_ORACLE)) {
+
+			return "DUAL";
+		}
+
+		return null;
+	}
+
+	/* Set difference operator, null if the database does not support it */
+	public static String getExceptOperator(String dbType) {
+		if (dbType.equals(TYPE_ORACLE)) {
+			return "MINUS";
+		}
+
+		if (dbType.equals(TYPE_DB2) || dbType.equals(TYPE_HYPERSONIC) ||
+			dbType.equals(TYPE_POSTGRESQL) || dbType.equals(TYPE_SQLSERVER)) {
+
+			return "EXCEPT";
+		}
+
+		return null;
+	}
+
+	/* Returns only the first rows of the select, it must not be already
+	 * limited. The selected columns must have unique names, TOP and ROWNUM
+	 * are applied to the select as a derived table, so they work with
+	 * DISTINCT and EXCEPT */
+	public static String getLimit(String dbType, String sql, int rows) {
+		if (dbType.equals(TYPE_DB2)) {
+			return sql + " FETCH FIRST " + rows + " ROWS ONLY";
+		}
+
+		if (dbType.equals(TYPE_HYPERSONIC) || dbType.equals(TYPE_MARIADB) ||
+			dbType.equals(TYPE_MYSQL) || dbType.equals(TYPE_POSTGRESQL)) {
+
+			return sql + " LIMIT " + rows;
+		}
+
+		if (dbType.equals(TYPE_ORACLE)) {
+			return "SELECT * FROM (" + sql + ") WHERE ROWNUM <= " + rows;
+		}
+
+		if (dbType.equals(TYPE_SQLSERVER) || dbType.equals(TYPE_SYBASE)) {
+			return "SELECT TOP " + rows + " * FROM (" + sql + ") rc_limit";
+		}
+
+		return sql;
+	}
+
+	/* Fetch size that makes the driver stream the rows instead of loading the
+	 * whole result in memory */
+	public static int getStreamingFetchSize(String dbType) {
+		if (dbType.equals(TYPE_MARIADB) || dbType.equals(TYPE_MYSQL)) {
+			return Integer.MIN_VALUE;
+		}
+
+		return 1000;
+	}
+
+	/* Default collations of these databases ignore case in string
+	 * comparisons */
+	public static boolean isCaseInsensitive(String dbType) {
+		if (dbType.equals(TYPE_MARIADB) || dbType.equals(TYPE_MYSQL) ||
+			dbType.equals(TYPE_SQLSERVER) || dbType.equals(TYPE_SYBASE)) {
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/* Databases able to execute anti-joins as hash joins, so they do not
+	 * need an index in the destination columns */
+	public static boolean isHashAntiJoinSupported(String dbType) {
+		if (dbType.equals(TYPE_DB2) || dbType.equals(TYPE_ORACLE) ||
+			dbType.equals(TYPE_POSTGRESQL) || dbType.equals(TYPE_SQLSERVER)) {
+
+			return true;
+		}
+
+		return false;
+	}
+
+	public static boolean isNotExistsPreferred(String dbType) {
+		if (dbType.equals(TYPE_POSTGRESQL) || dbType.equals(TYPE_SQLSERVER)) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/* Databases that ignore the trailing spaces when they compare strings,
+	 * the other ones compare them */
+	public static boolean isPadSpace(String dbType) {
+		if (dbType.equals(TYPE_DB2) || dbType.equals(TYPE_MARIADB) ||
+			dbType.equals(TYPE_MYSQL) || dbType.equals(TYPE_SQLSERVER) ||
+			dbType.equals(TYPE_SYBASE)) {
+
+			return true;
+		}
+
+		return false;
+	}
+
 	public static List<String> transform(String dbType, List<String> sqlList) {
 		if (sqlList == null) {
 			return null;
@@ -292,6 +410,22 @@ public class SQLUtil {
 			"WHERE " + where;
 	}
 
+	/* Numeric and quoted constants used as columns of the queries */
+	private static boolean _isConstant(String column) {
+		if (column.startsWith("'")) {
+			return true;
+		}
+
+		try {
+			Double.parseDouble(column);
+		}
+		catch (NumberFormatException numberFormatException) {
+			return false;
+		}
+
+		return true;
+	}
+
 	private static String _replaceBoolean(String dbType, String sql) {
 		if (dbType.equals(TYPE_HYPERSONIC) || dbType.equals(TYPE_POSTGRESQL)) {
 			return StringUtils.replaceEach(
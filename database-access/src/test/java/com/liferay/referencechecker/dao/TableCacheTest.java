@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.dao;
+
+import java.io.File;
+
+import java.sql.Types;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Jorge Díaz
+ */
+public class TableCacheTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testLoadWithAnotherKey() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "tables.cache");
+
+		TableCache tableCache = new TableCache(file, "key");
+
+		tableCache.put(_createTable("User_"), "fingerprint");
+
+		tableCache.store();
+
+		tableCache = new TableCache(file, "anotherKey");
+
+		Assert.assertFalse(tableCache.load());
+		Assert.assertEquals(0, tableCache.size());
+	}
+
+	@Test
+	public void testLoadWithoutFile() throws Exception {
+		TableCache tableCache = new TableCache(
+			new File(temporaryFolder.getRoot(), "tables.cache"), "key");
+
+		Assert.assertFalse(tableCache.load());
+		Assert.assertEquals(0, tableCache.size());
+	}
+
+	@Test
+	public void testRetainAll() throws Exception {
+		TableCache tableCache = new TableCache(
+			new File(temporaryFolder.getRoot(), "tables.cache"), "key");
+
+		tableCache.put(_createTable("Group_"), "fingerprint");
+		tableCache.put(_createTable("User_"), "fingerprint");
+
+		tableCache.store();
+
+		Assert.assertFalse(tableCache.isModified());
+
+		tableCache.retainAll(Collections.singletonList("USER_"));
+
+		Assert.assertTrue(tableCache.isModified());
+		Assert.assertEquals(1, tableCache.size());
+		Assert.assertNull(tableCache.getTable("Group_", "fingerprint"));
+		Assert.assertNotNull(tableCache.getTable("User_", "fingerprint"));
+	}
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "tables.cache");
+
+		TableCache tableCache = new TableCache(file, "key");
+
+		tableCache.put(_createTable("User_"), "fingerprint");
+
+		Assert.assertTrue(tableCache.isModified());
+
+		tableCache.store();
+
+		tableCache = new TableCache(file, "key");
+
+		Assert.assertTrue(tableCache.load());
+		Assert.assertEquals(1, tableCache.size());
+		Assert.assertNull(tableCache.getTable("User_", "otherFingerprint"));
+		Assert.assertNull(tableCache.getTable("USER_", "fingerprint"));
+
+		Table table = tableCache.getTable("User_", "fingerprint");
+
+		Assert.assertEquals("User_", table.getTableName());
+		Assert.assertEquals("userId", table.getPrimaryKey());
+		Assert.assertArrayEquals(
+			new String[] {"userId", "companyId", "screenName"},
+			table.getColumnNames());
+		Assert.assertEquals(Types.VARCHAR, table.getColumnType("screenName"));
+		Assert.assertEquals(
+			"VARCHAR", table.getColumnTypeSqlName("screenName"));
+		Assert.assertEquals(75, table.getColumnSize("screenName"));
+		Assert.assertTrue(table.getColumnIsNullable("screenName"));
+		Assert.assertFalse(table.getColumnIsNullable("companyId"));
+	}
+
+	private Table _createTable(String tableName) {
+		return new Table(
+			tableName, Collections.singletonList("userId"),
+			Arrays.asList("userId", "companyId", "screenName"),
+			Arrays.asList(Types.BIGINT, Types.BIGINT, Types.VARCHAR),
+			Arrays.asList("BIGINT", "BIGINT", "VARCHAR"),
+			Arrays.asList(20, 20, 75), Arrays.asList(false, false, true));
+	}
+
+}
\ No newline at end of file
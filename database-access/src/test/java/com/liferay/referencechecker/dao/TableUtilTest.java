@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.dao;
+
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class TableUtilTest {
+
+	@Test
+	public void testClassNameVariantEquals() {
+		TableUtil.ClassNameVariant classNameVariant =
+			new TableUtil.ClassNameVariant("classNameId", "classPK", true);
+
+		Assert.assertEquals(
+			classNameVariant,
+			new TableUtil.ClassNameVariant("CLASSNAMEID", "CLASSPK", true));
+		Assert.assertEquals(
+			classNameVariant.hashCode(),
+			new TableUtil.ClassNameVariant(
+				"CLASSNAMEID", "CLASSPK", true).hashCode());
+		Assert.assertNotEquals(
+			classNameVariant,
+			new TableUtil.ClassNameVariant("classNameId", "classPK", false));
+		Assert.assertNotEquals(
+			classNameVariant,
+			new TableUtil.ClassNameVariant("classNameId", null, true));
+	}
+
+	@Test
+	public void testClassNameVariantFilter() {
+		TableUtil.ClassNameVariant classNameVariant =
+			new TableUtil.ClassNameVariant("classNameId", "classPK", true);
+
+		Assert.assertEquals("classPK IS NOT NULL", classNameVariant.getFilter());
+		Assert.assertEquals(
+			"assetentry_classNameId_classPK",
+			classNameVariant.getKey(_createTable("AssetEntry")));
+
+		classNameVariant = new TableUtil.ClassNameVariant(
+			"className", "classPK", false);
+
+		Assert.assertEquals("classPK<>0", classNameVariant.getFilter());
+
+		classNameVariant = new TableUtil.ClassNameVariant(
+			"classNameId", null, true);
+
+		Assert.assertNull(classNameVariant.getFilter());
+		Assert.assertEquals(
+			"assetentry_classNameId",
+			classNameVariant.getKey(_createTable("AssetEntry")));
+	}
+
+	@Test
+	public void testCountTableClassNameDistribution() {
+		List<String> sqls = new ArrayList<>();
+
+		Connection connection = _createConnection(
+			"PostgreSQL", sqls,
+			Arrays.asList(
+				new Object[] {10L, 5L, 4L}, new Object[] {20L, 3L, 3L}));
+
+		TableUtil.ClassNameVariant classNameVariant1 =
+			new TableUtil.ClassNameVariant("classNameId", null, true);
+		TableUtil.ClassNameVariant classNameVariant2 =
+			new TableUtil.ClassNameVariant("classNameId", "classPK", true);
+
+		TableUtil tableUtil = new TableUtil();
+
+		Map<TableUtil.ClassNameVariant, Map<Object, Long>> distribution =
+			tableUtil.countTableClassNameDistribution(
+				connection, _createTable("AssetEntry"),
+				Arrays.asList(classNameVariant1, classNameVariant2));
+
+		Assert.assertEquals(
+			Collections.singletonList(
+				"SELECT classnameid, COUNT(*), SUM(CASE WHEN classPK IS NOT " +
+					"NULL THEN 1 ELSE 0 END) FROM AssetEntry GROUP BY " +
+						"classnameid"),
+			sqls);
+
+		Map<Object, Long> counts = distribution.get(classNameVariant1);
+
+		Assert.assertEquals(Long.valueOf(5), counts.get(10L));
+		Assert.assertEquals(Long.valueOf(3), counts.get(20L));
+
+		counts = distribution.get(classNameVariant2);
+
+		Assert.assertEquals(Long.valueOf(4), counts.get(10L));
+		Assert.assertEquals(Long.valueOf(3), counts.get(20L));
+	}
+
+	@Test
+	public void testProbeEmpty() throws Exception {
+		List<String> sqls = new ArrayList<>();
+
+		Connection connection = _createConnection(
+			"MySQL", sqls, Collections.singletonList(new Object[] {1}));
+
+		TableUtil tableUtil = new TableUtil();
+
+		boolean[] empty = tableUtil.probeEmpty(
+			connection, SQLUtil.TYPE_MYSQL,
+			Arrays.asList(_createTable("AssetEntry"), _createTable("User_")),
+			Arrays.asList("classPK<>0", null));
+
+		Assert.assertEquals(
+			Collections.singletonList(
+				"SELECT 0 FROM DUAL WHERE EXISTS (SELECT 1 FROM AssetEntry " +
+					"WHERE classPK<>0) UNION ALL SELECT 1 FROM DUAL WHERE " +
+						"EXISTS (SELECT 1 FROM User_)"),
+			sqls);
+		Assert.assertArrayEquals(new boolean[] {true, false}, empty);
+	}
+
+	@Test
+	public void testProbeEmptyWithoutDualTable() throws Exception {
+		List<String> sqls = new ArrayList<>();
+
+		Connection connection = _createConnection(
+			"PostgreSQL", sqls, Collections.<Object[]>emptyList());
+
+		TableUtil tableUtil = new TableUtil();
+
+		boolean[] empty = tableUtil.probeEmpty(
+			connection, SQLUtil.TYPE_POSTGRESQL,
+			Collections.singletonList(_createTable("User_")),
+			Collections.singletonList("companyId = 1"));
+
+		Assert.assertEquals(
+			Collections.singletonList(
+				"SELECT 0 WHERE EXISTS (SELECT 1 FROM User_ WHERE " +
+					"companyId = 1)"),
+			sqls);
+		Assert.assertArrayEquals(new boolean[] {true}, empty);
+	}
+
+	/* Connection of the given database that records the prepared statements
+	 * and returns the given rows for all of them */
+	private Connection _createConnection(
+		final String databaseProductName, final List<String> sqls,
+		final List<Object[]> rows) {
+
+		return _createProxy(
+			Connection.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					String name = method.getName();
+
+					if (name.equals("getMetaData")) {
+						return _createDatabaseMetaData(databaseProductName);
+					}
+
+					if (name.equals("prepareStatement")) {
+						sqls.add((String)args[0]);
+
+						return _createPreparedStatement(rows);
+					}
+
+					return _getDefaultValue(method);
+				}
+
+			});
+	}
+
+	private DatabaseMetaData _createDatabaseMetaData(
+		final String databaseProductName) {
+
+		return _createProxy(
+			DatabaseMetaData.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					if (method.getName().equals("getDatabaseProductName")) {
+						return databaseProductName;
+					}
+
+					return _getDefaultValue(method);
+				}
+
+			});
+	}
+
+	private PreparedStatement _createPreparedStatement(
+		final List<Object[]> rows) {
+
+		return _createProxy(
+			PreparedStatement.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					if (method.getName().equals("executeQuery")) {
+						return _createResultSet(rows);
+					}
+
+					return _getDefaultValue(method);
+				}
+
+			});
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T _createProxy(
+		Class<T> clazz, InvocationHandler invocationHandler) {
+
+		return (T)Proxy.newProxyInstance(
+			clazz.getClassLoader(), new Class<?>[] {clazz}, invocationHandler);
+	}
+
+	private ResultSet _createResultSet(final List<Object[]> rows) {
+		return _createProxy(
+			ResultSet.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					String name = method.getName();
+
+					if (name.equals("next")) {
+						_position++;
+
+						return _position < rows.size();
+					}
+
+					if (!name.startsWith("get") || (args == null) ||
+						!(args[0] instanceof Integer)) {
+
+						return _getDefaultValue(method);
+					}
+
+					Object[] row = rows.get(_position);
+
+					Object value = row[(Integer)args[0] - 1];
+
+					if (name.equals("getInt")) {
+						return ((Number)value).intValue();
+					}
+
+					if (name.equals("getLong")) {
+						return ((Number)value).longValue();
+					}
+
+					if (name.equals("getString")) {
+						return String.valueOf(value);
+					}
+
+					return value;
+				}
+
+				private int _position = -1;
+
+			});
+	}
+
+	private Table _createTable(String tableName) {
+		return new Table(
+			tableName, Collections.singletonList("id"),
+			Arrays.asList("id", "classNameId", "classPK"),
+			Arrays.asList(Types.BIGINT, Types.BIGINT, Types.BIGINT),
+			Arrays.asList("BIGINT", "BIGINT", "BIGINT"),
+			Arrays.asList(20, 20, 20), Arrays.asList(false, true, true));
+	}
+
+	private Object _getDefaultValue(Method method) {
+		Class<?> returnType = method.getReturnType();
+
+		if (returnType == boolean.class) {
+			return false;
+		}
+
+		if (returnType == int.class) {
+			return 0;
+		}
+
+		if (returnType == long.class) {
+			return 0L;
+		}
+
+		return null;
+	}
+
+}
\ No newline at end of file
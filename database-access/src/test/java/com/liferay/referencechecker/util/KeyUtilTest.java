@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class KeyUtilTest {
+
+	@Test
+	public void testNormalizeDecimals() {
+		Assert.assertEquals(
+			10L, KeyUtil.normalize(new BigDecimal("10.00"), false, false));
+		Assert.assertEquals(
+			"10.5", KeyUtil.normalize(new BigDecimal("10.50"), false, false));
+		Assert.assertEquals(
+			"12345678901234567890",
+			KeyUtil.normalize(
+				new BigDecimal("12345678901234567890"), false, false));
+		Assert.assertEquals(
+			"12345678901234567890",
+			KeyUtil.normalize(
+				new BigInteger("12345678901234567890"), false, false));
+		Assert.assertEquals(3L, KeyUtil.normalize(3.0D, false, false));
+		Assert.assertEquals(3.5D, KeyUtil.normalize(3.5D, false, false));
+	}
+
+	@Test
+	public void testNormalizeIntegers() {
+		Assert.assertEquals(1L, KeyUtil.normalize((byte)1, false, false));
+		Assert.assertEquals(1L, KeyUtil.normalize((short)1, false, false));
+		Assert.assertEquals(1L, KeyUtil.normalize(1, false, false));
+		Assert.assertEquals(1L, KeyUtil.normalize(1L, false, false));
+		Assert.assertEquals(
+			1L, KeyUtil.normalize(BigInteger.ONE, false, false));
+		Assert.assertEquals(
+			1L, KeyUtil.normalize(new BigDecimal("1"), false, false));
+		Assert.assertNull(KeyUtil.normalize(null, false, false));
+	}
+
+	@Test
+	public void testNormalizeStrings() {
+		Assert.assertEquals("Key ", KeyUtil.normalize("Key ", false, false));
+		Assert.assertEquals("Key", KeyUtil.normalize("Key ", false, true));
+		Assert.assertEquals("key ", KeyUtil.normalize("Key ", true, false));
+		Assert.assertEquals("key", KeyUtil.normalize("Key ", true, true));
+		Assert.assertEquals(" key", KeyUtil.normalize(" Key", true, true));
+	}
+
+	@Test
+	public void testToLong() {
+		Assert.assertEquals(Long.valueOf(5), KeyUtil.toLong(5));
+		Assert.assertEquals(
+			Long.valueOf(5), KeyUtil.toLong(new BigDecimal("5.0")));
+		Assert.assertNull(KeyUtil.toLong(new BigDecimal("5.5")));
+		Assert.assertNull(KeyUtil.toLong("5"));
+		Assert.assertNull(KeyUtil.toLong(null));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class SQLUtilTest {
+
+	@Test
+	public void testGetLimit() {
+		String sql = "SELECT DISTINCT userId FROM AssetEntry WHERE 1=1";
+
+		Assert.assertEquals(
+			sql + " FETCH FIRST 10 ROWS ONLY",
+			SQLUtil.getLimit(SQLUtil.TYPE_DB2, sql, 10));
+		Assert.assertEquals(
+			sql + " LIMIT 10", SQLUtil.getLimit(SQLUtil.TYPE_MYSQL, sql, 10));
+		Assert.assertEquals(
+			"SELECT * FROM (" + sql + ") WHERE ROWNUM <= 10",
+			SQLUtil.getLimit(SQLUtil.TYPE_ORACLE, sql, 10));
+	}
+
+	@Test
+	public void testGetLimitWithTop() {
+		String sql = "SELECT DISTINCT userId FROM AssetEntry WHERE 1=1";
+
+		Assert.assertEquals(
+			"SELECT TOP 10 * FROM (" + sql + ") rc_limit",
+			SQLUtil.getLimit(SQLUtil.TYPE_SQLSERVER, sql, 10));
+
+		sql = "SELECT userId FROM AssetEntry WHERE 1=1 EXCEPT SELECT " +
+			"userId FROM User_ WHERE 1=1";
+
+		Assert.assertEquals(
+			"SELECT TOP 10 * FROM (" + sql + ") rc_limit",
+			SQLUtil.getLimit(SQLUtil.TYPE_SYBASE, sql, 10));
+	}
+
+}
\ No newline at end of file
@@ -20,16 +20,45 @@ import com.beust.jcommander.ParameterException;
 
 import com.liferay.referencechecker.OutputUtil;
 import com.liferay.referencechecker.ReferenceChecker;
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.engine.CheckScheduler;
+import com.liferay.referencechecker.engine.CheckpointJournal;
+import com.liferay.referencechecker.engine.ExecutorFactory;
+import com.liferay.referencechecker.engine.ForkJoinExecutorFactory;
+import com.liferay.referencechecker.engine.HighWaterMarks;
+import com.liferay.referencechecker.engine.KeySetCache;
+import com.liferay.referencechecker.engine.KeySnapshot;
+import com.liferay.referencechecker.engine.ThreadPoolExecutorFactory;
+import com.liferay.referencechecker.engine.VirtualThreadExecutorFactory;
 import com.liferay.referencechecker.main.util.BaseChecker;
+import com.liferay.referencechecker.main.util.CSVMissingReferencesSink;
+import com.liferay.referencechecker.main.util.ShardDirectory;
 import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.MissingReferencesEstimate;
+import com.liferay.referencechecker.ref.Reference;
 import com.liferay.referencechecker.util.JDBCUtil;
 
+import java.io.File;
 import java.io.IOException;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+
+import javax.sql.DataSource;
 
 /**
  * @author Jorge Díaz
@@ -60,14 +89,267 @@ public class CheckDatabase {
 			missingReferencesLimit = 50;
 		}
 
+		int threads = commandArguments.getThreads();
+
+		if (threads <= 0) {
+			Runtime runtime = Runtime.getRuntime();
+
+			threads = runtime.availableProcessors();
+		}
+
+		long chunkSize = commandArguments.getChunkSize();
+
+		int chunkConcurrency = commandArguments.getChunkConcurrency();
+
+		if (chunkConcurrency <= 0) {
+			chunkConcurrency = threads;
+		}
+
+		/* Chunks get their own connections, the connection of the
+		 * reference stays open until all its chunks finish */
+		int maximumPoolSize = threads;
+
+		if (chunkSize > 0) {
+			maximumPoolSize += chunkConcurrency;
+		}
+
+		String snapshotDirectoryName = commandArguments.getSnapshotDirectory();
+
+		if ((snapshotDirectoryName == null) &&
+			commandArguments.exportSnapshot()) {
+
+			System.err.println("--exportSnapshot requires a --snapshotDirectory");
+
+			System.exit(-1);
+
+			return;
+		}
+
+		/* Snapshots are checked without connecting to the database */
+		if ((snapshotDirectoryName != null) &&
+			!commandArguments.exportSnapshot()) {
+
+			ExecutorFactory executorFactory = new ForkJoinExecutorFactory();
+
+			if (commandArguments.getExecutor() != null) {
+				executorFactory = createExecutorFactory(
+					commandArguments.getExecutor());
+			}
+
+			if (executorFactory == null) {
+				System.exit(-1);
+
+				return;
+			}
+
+			BaseChecker baseChecker = BaseChecker.createOfflineBaseChecker(
+				PROGRAM_NAME, fileNamePrefix, fileNameSuffix);
+
+			checkSnapshot(
+				baseChecker, new File(snapshotDirectoryName), executorFactory,
+				missingReferencesLimit, threads);
+
+			if (commandArguments.dumpCleanupScript()) {
+				System.out.println(
+					"The cleanup script is not generated from a snapshot, it " +
+						"requires a connection to the database");
+			}
+
+			return;
+		}
+
 		boolean checkUndefinedTables = commandArguments.checkUndefinedTables();
 
 		BaseChecker baseChecker = BaseChecker.createBaseChecker(
 			PROGRAM_NAME, databaseCfg, fileNamePrefix, fileNameSuffix,
-			checkUndefinedTables);
+			checkUndefinedTables, maximumPoolSize,
+			commandArguments.getTableCacheFile());
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		String checkEngine = commandArguments.getCheckEngine();
+
+		if (checkEngine != null) {
+			referenceChecker.setCheckEngine(checkEngine);
+		}
+
+		String executor = commandArguments.getExecutor();
+
+		if (executor != null) {
+			ExecutorFactory executorFactory = createExecutorFactory(executor);
+
+			if (executorFactory == null) {
+				System.exit(-1);
+
+				return;
+			}
+
+			referenceChecker.setExecutorFactory(executorFactory);
+		}
+
+		if (chunkSize > 0) {
+			referenceChecker.setChunkConcurrency(chunkConcurrency);
+			referenceChecker.setChunkSize(chunkSize);
+		}
+
+		long keySetCacheSize = commandArguments.getKeySetCacheSize();
+
+		if (keySetCacheSize >= 0) {
+			KeySetCache keySetCache = referenceChecker.getKeySetCache();
+
+			keySetCache.setMaxMemory(keySetCacheSize * 1024 * 1024);
+		}
+
+		referenceChecker.setExistenceOnly(commandArguments.existenceOnly());
+		referenceChecker.setFuseOriginScans(
+			commandArguments.fuseOriginScans());
+		referenceChecker.setPlanAntiJoins(commandArguments.planAntiJoins());
+		referenceChecker.setSinglePassCount(
+			commandArguments.singlePassCount());
+		referenceChecker.setLongestFirst(commandArguments.longestFirst());
+
+		if (commandArguments.summaryOnly()) {
+			referenceChecker.setSummaryLimit(missingReferencesLimit);
+		}
+
+		CheckScheduler checkScheduler = referenceChecker.getCheckScheduler();
+
+		String checkTimesFileName = commandArguments.getCheckTimesFile();
+
+		if (checkTimesFileName != null) {
+			checkScheduler.load(new File(checkTimesFileName));
+		}
+
+		String highWaterMarksFileName =
+			commandArguments.getHighWaterMarksFile();
+
+		HighWaterMarks highWaterMarks = null;
+
+		if (highWaterMarksFileName != null) {
+			highWaterMarks = new HighWaterMarks();
+
+			highWaterMarks.load(new File(highWaterMarksFileName));
 
-		List<MissingReferences> missingReferenceList = execute(
-			baseChecker, missingReferencesLimit);
+			referenceChecker.setHighWaterMarks(highWaterMarks);
+		}
+
+		long sample = commandArguments.getSample();
+
+		if (sample > 0) {
+			estimate(baseChecker, sample, threads);
+
+			return;
+		}
+
+		if (commandArguments.exportSnapshot()) {
+			exportSnapshot(
+				baseChecker, new File(snapshotDirectoryName), threads);
+
+			return;
+		}
+
+		String checkpointFileName = commandArguments.getCheckpointFile();
+
+		int shard = commandArguments.getShard();
+		int shards = commandArguments.getShards();
+
+		if ((shard >= 0) || (shards > 0)) {
+			String shardDirectoryName = commandArguments.getShardDirectory();
+
+			if ((shardDirectoryName == null) || (checkpointFileName != null) ||
+				(highWaterMarks != null)) {
+
+				System.err.println(
+					"--shard and --shards require a --shardDirectory and " +
+						"they can not be used with --checkpointFile or " +
+							"--highWaterMarksFile");
+
+				System.exit(-1);
+
+				return;
+			}
+
+			ShardDirectory shardDirectory = new ShardDirectory(
+				new File(shardDirectoryName));
+
+			if (shard >= 0) {
+				executeShard(baseChecker, shardDirectory, shard, threads);
+
+				return;
+			}
+
+			long externalWorkersTimeout =
+				commandArguments.getExternalWorkersTimeout();
+
+			if (externalWorkersTimeout <= 0) {
+				externalWorkersTimeout = 1440;
+			}
+
+			executeShards(
+				baseChecker, shardDirectory, shards, args,
+				missingReferencesLimit, commandArguments.externalWorkers(),
+				externalWorkersTimeout, commandArguments.resume(),
+				commandArguments.dumpCleanupScript());
+
+			if (checkTimesFileName != null) {
+				checkScheduler.store(new File(checkTimesFileName));
+			}
+
+			return;
+		}
+
+		if ((checkpointFileName == null) && commandArguments.resume()) {
+			System.err.println("--resume requires a --checkpointFile");
+
+			System.exit(-1);
+
+			return;
+		}
+
+		/* The references are calculated once, the journal fingerprint is
+		 * computed from the same references that are checked */
+		Collection<Reference> references = calculateReferences(baseChecker);
+
+		CheckpointJournal checkpointJournal = null;
+
+		if (checkpointFileName != null) {
+			checkpointJournal = createCheckpointJournal(
+				baseChecker, references, new File(checkpointFileName),
+				commandArguments.resume());
+
+			referenceChecker.setCheckpointJournal(checkpointJournal);
+		}
+
+		List<MissingReferences> missingReferenceList;
+
+		try {
+			missingReferenceList = execute(
+				baseChecker, references, missingReferencesLimit, threads,
+				commandArguments.streamMissingReferences());
+		}
+		finally {
+			if (checkpointJournal != null) {
+				checkpointJournal.close();
+
+				referenceChecker.setCheckpointJournal(null);
+			}
+		}
+
+		if (checkTimesFileName != null) {
+			checkScheduler.store(new File(checkTimesFileName));
+		}
+
+		if (highWaterMarks != null) {
+			highWaterMarks.store(new File(highWaterMarksFileName));
+		}
+
+		baseChecker.writeOutput(
+			"check-times", "csv",
+			OutputUtil.generateCSVOutputCheckTimes(checkScheduler));
+
+		if (baseChecker.getReplicaDataSource() != null) {
+			reportReplicaLag(baseChecker, missingReferenceList);
+		}
 
 		boolean dumpCleanupScript = commandArguments.dumpCleanupScript();
 
@@ -86,10 +368,82 @@ public class CheckDatabase {
 			return _dumpCleanupScript;
 		}
 
+		public boolean existenceOnly() {
+			return _existenceOnly;
+		}
+
+		public boolean exportSnapshot() {
+			return _exportSnapshot;
+		}
+
+		public boolean externalWorkers() {
+			return _externalWorkers;
+		}
+
+		public boolean fuseOriginScans() {
+			return _fuseOriginScans;
+		}
+
+		public String getCheckEngine() {
+			return _checkEngine;
+		}
+
+		public String getCheckpointFile() {
+			return _checkpointFile;
+		}
+
+		public String getCheckTimesFile() {
+			return _checkTimesFile;
+		}
+
+		public int getChunkConcurrency() {
+			try {
+				return Integer.valueOf(_chunkConcurrency);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
+		public long getChunkSize() {
+			try {
+				return Long.valueOf(_chunkSize);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
 		public String getDatabaseConfiguration() throws IOException {
 			return _databaseConfiguration;
 		}
 
+		public String getExecutor() {
+			return _executor;
+		}
+
+		public long getExternalWorkersTimeout() {
+			try {
+				return Long.valueOf(_externalWorkersTimeout);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
+		public String getHighWaterMarksFile() {
+			return _highWaterMarksFile;
+		}
+
+		public long getKeySetCacheSize() {
+			try {
+				return Long.valueOf(_keySetCacheSize);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
 		public int getMissingReferencesLimit() throws IOException {
 			try {
 				return Integer.valueOf(_missingReferencesLimit);
@@ -107,16 +461,129 @@ public class CheckDatabase {
 			return _outputFilesSuffix;
 		}
 
+		public long getSample() {
+			try {
+				return Long.valueOf(_sample);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
+		public int getShard() {
+			try {
+				return Integer.valueOf(_shard);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
+		public String getShardDirectory() {
+			return _shardDirectory;
+		}
+
+		public int getShards() {
+			try {
+				return Integer.valueOf(_shards);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
+		public String getSnapshotDirectory() {
+			return _snapshotDirectory;
+		}
+
+		public File getTableCacheFile() {
+			if (_tableCacheFile == null) {
+				return null;
+			}
+
+			return new File(_tableCacheFile);
+		}
+
+		public int getThreads() {
+			try {
+				return Integer.valueOf(_threads);
+			}
+			catch (Exception exception) {
+				return -1;
+			}
+		}
+
 		public boolean isHelp() {
 			return _help;
 		}
 
+		public boolean longestFirst() {
+			return _longestFirst;
+		}
+
+		public boolean planAntiJoins() {
+			return _planAntiJoins;
+		}
+
+		public boolean resume() {
+			return _resume;
+		}
+
+		public boolean singlePassCount() {
+			return _singlePassCount;
+		}
+
+		public boolean streamMissingReferences() {
+			return _streamMissingReferences;
+		}
+
+		public boolean summaryOnly() {
+			return _summaryOnly;
+		}
+
+		@Parameter(
+			description = "Engine used to find the missing references: " +
+				"sql (anti-join executed by the database) or hash " +
+				"(anti-join executed by the checker streaming both tables).",
+			names = "--checkEngine"
+		)
+		private String _checkEngine;
+
+		@Parameter(
+			description = "Journal file where the result of each reference " +
+				"is appended as soon as it is checked.",
+			names = "--checkpointFile"
+		)
+		private String _checkpointFile;
+
+		@Parameter(
+			description = "File with the time spent checking each " +
+				"reference, it is read to estimate the time of the next " +
+				"execution and updated at the end.",
+			names = "--checkTimesFile"
+		)
+		private String _checkTimesFile;
+
 		@Parameter(
 			description = "Check undefined tables", hidden = true,
 			names = "--checkUndefinedTables"
 		)
 		private boolean _checkUndefinedTables;
 
+		@Parameter(
+			description = "Number of chunks of the same origin table " +
+				"checked in parallel, defaults to the number of threads.",
+			names = "--chunkConcurrency"
+		)
+		private String _chunkConcurrency;
+
+		@Parameter(
+			description = "Check the origin tables by primary key ranges of " +
+				"this size.",
+			names = "--chunkSize"
+		)
+		private String _chunkSize;
+
 		@Parameter(
 			description = "database configuration file.",
 			names = {"-d", "--databaseConfiguration"}
@@ -130,38 +597,320 @@ public class CheckDatabase {
 		private boolean _dumpCleanupScript;
 
 		@Parameter(
-			description = "Print this message.", help = true,
-			names = {"-h", "--help"}
+			description = "Only check whether each reference has missing " +
+				"references, the check of each one stops at the first " +
+				"missing reference found.",
+			names = "--existenceOnly"
 		)
-		private boolean _help;
+		private boolean _existenceOnly;
 
 		@Parameter(
-			description = "Missing references limit.",
-			names = {"-l", "--missingReferencesLimit"}
+			description = "Executor that runs the checks: forkJoin " +
+				"(default), threadPool (fixed number of platform threads) " +
+				"or virtual (one virtual thread per check, Java 21 or " +
+				"later). The number of checks running at the same time is " +
+				"always limited by the threads option.",
+			names = "--executor"
 		)
-		private String _missingReferencesLimit;
+		private String _executor;
 
 		@Parameter(
-			description = "Output files prefix", names = "--outputFilesPrefix"
+			description = "Export the key columns of the references to the " +
+				"snapshot directory, reading each table once, instead of " +
+				"checking them.",
+			names = "--exportSnapshot"
 		)
-		private String _outputFilesPrefix;
+		private boolean _exportSnapshot;
 
 		@Parameter(
-			description = "Output files suffix", names = "--outputFilesSuffix"
+			description = "The coordinator of a sharded check does not " +
+				"start the workers, they are started in any host with " +
+				"access to the shard directory using the same arguments " +
+				"and --shard.",
+			names = "--externalWorkers"
 		)
-		private String _outputFilesSuffix;
-
-	}
-
-	protected static void dumpCleanup(
-			BaseChecker baseChecker,
-			List<MissingReferences> missingReferenceList)
-		throws IOException, SQLException {
+		private boolean _externalWorkers;
 
-		System.out.println("");
-		System.out.println("Executing dump cleanup script...");
+		@Parameter(
+			description = "Minutes the coordinator waits for the external " +
+				"workers before merging the shards, the shards that did not " +
+				"finish are reported as not checked. The default is 1440.",
+			names = "--externalWorkersTimeout"
+		)
+		private String _externalWorkersTimeout;
 
-		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+		@Parameter(
+			description = "Check all the references of the same origin " +
+				"table and condition with a single scan of that table.",
+			names = "--fuseOriginScans"
+		)
+		private boolean _fuseOriginScans;
+
+		@Parameter(
+			description = "Print this message.", help = true,
+			names = {"-h", "--help"}
+		)
+		private boolean _help;
+
+		@Parameter(
+			description = "Incremental check: file with the highest primary " +
+				"key of each table in the last execution. Only the origin " +
+				"rows above it are checked, unless the destination table " +
+				"had deletes. The file is updated at the end.",
+			names = "--highWaterMarksFile"
+		)
+		private String _highWaterMarksFile;
+
+		@Parameter(
+			description = "Memory in MB used to cache the destination keys " +
+				"loaded by the hash check engine.",
+			names = "--keySetCacheSize"
+		)
+		private String _keySetCacheSize;
+
+		@Parameter(
+			description = "Start with the references that are expected to " +
+				"take longer, estimated with the previous check times and " +
+				"the table row counts.",
+			names = "--longestFirst"
+		)
+		private boolean _longestFirst;
+
+		@Parameter(
+			description = "Missing references limit.",
+			names = {"-l", "--missingReferencesLimit"}
+		)
+		private String _missingReferencesLimit;
+
+		@Parameter(
+			description = "Output files prefix", names = "--outputFilesPrefix"
+		)
+		private String _outputFilesPrefix;
+
+		@Parameter(
+			description = "Output files suffix", names = "--outputFilesSuffix"
+		)
+		private String _outputFilesSuffix;
+
+		@Parameter(
+			description = "Choose the anti-join strategy of each reference " +
+				"using table row counts and destination indexes.",
+			names = "--planAntiJoins"
+		)
+		private boolean _planAntiJoins;
+
+		@Parameter(
+			description = "Skip the references already in the checkpoint " +
+				"file, if it was written with the same schema and " +
+				"configuration.",
+			names = "--resume"
+		)
+		private boolean _resume;
+
+		@Parameter(
+			description = "Estimate the missing references checking only " +
+				"about one of every N rows of each origin table, read in " +
+				"primary key ranges from repeatable pseudo-random starts, " +
+				"instead of running the full check.",
+			names = "--sample"
+		)
+		private String _sample;
+
+		@Parameter(
+			description = "Check only the references of this shard, it is " +
+				"used by the workers of a sharded check.",
+			names = "--shard"
+		)
+		private String _shard;
+
+		@Parameter(
+			description = "Directory shared by the coordinator and the " +
+				"workers of a sharded check.",
+			names = "--shardDirectory"
+		)
+		private String _shardDirectory;
+
+		@Parameter(
+			description = "Split the references in this number of shards " +
+				"checked by different worker processes, each one with its " +
+				"own heap and connection pool, and merge their results.",
+			names = "--shards"
+		)
+		private String _shards;
+
+		@Parameter(
+			description = "Count the rows with missing references in the " +
+				"same query that finds them, grouping by the missing values.",
+			names = "--singlePassCount"
+		)
+		private boolean _singlePassCount;
+
+		@Parameter(
+			description = "Directory of a snapshot exported with " +
+				"--exportSnapshot. Without --exportSnapshot the references " +
+				"of the snapshot are checked without connecting to the " +
+				"database.",
+			names = "--snapshotDirectory"
+		)
+		private String _snapshotDirectory;
+
+		@Parameter(
+			description = "Write each reference to the csv file as soon as " +
+				"it is checked, keeping in memory only the first missing " +
+				"references of each one.",
+			names = "--streamMissingReferences"
+		)
+		private boolean _streamMissingReferences;
+
+		@Parameter(
+			description = "Count the missing references of each reference " +
+				"in the database and fetch only the first missing " +
+				"references limit values.",
+			names = "--summaryOnly"
+		)
+		private boolean _summaryOnly;
+
+		@Parameter(
+			description = "File that keeps the table definitions between " +
+				"executions, only the tables modified since the previous " +
+				"execution are read from the database metadata.",
+			names = "--tableCacheFile"
+		)
+		private String _tableCacheFile;
+
+		@Parameter(
+			description = "Number of references checked in parallel, each " +
+				"one using its own database connection.",
+			names = {"-t", "--threads"}
+		)
+		private String _threads;
+
+	}
+
+	protected static void checkSnapshot(
+			BaseChecker baseChecker, File snapshotDirectory,
+			ExecutorFactory executorFactory, int missingReferencesLimit,
+			int threads)
+		throws IOException {
+
+		System.out.println("");
+		System.out.println("Executing check snapshot...");
+
+		long startTime = System.currentTimeMillis();
+
+		KeySnapshot keySnapshot = new KeySnapshot(snapshotDirectory);
+
+		keySnapshot.load();
+
+		System.out.println(
+			"Snapshot of " + keySnapshot.getDBType() + " database exported " +
+				"at " + keySnapshot.getCreateDate() + " with " +
+					keySnapshot.getReferences().size() + " references");
+
+		ExecutorService executorService = executorFactory.newExecutorService(
+			threads);
+
+		List<MissingReferences> missingReferenceList;
+
+		try {
+			missingReferenceList = keySnapshot.check(
+				missingReferencesLimit, executorService);
+		}
+		finally {
+			executorService.shutdown();
+		}
+
+		List<String> outputList = OutputUtil.generateCSVOutputCheckReferences(
+			missingReferenceList, missingReferencesLimit);
+
+		baseChecker.writeOutput(
+			"missing-references", "csv", startTime, outputList);
+	}
+
+	protected static Collection<Reference> calculateReferences(
+			BaseChecker baseChecker)
+		throws SQLException {
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		Connection connection = null;
+
+		try {
+			connection = baseChecker.getCheckConnection();
+
+			return referenceChecker.calculateReferences(connection, true);
+		}
+		finally {
+			JDBCUtil.cleanUp(connection);
+		}
+	}
+
+	protected static CheckpointJournal createCheckpointJournal(
+			BaseChecker baseChecker, Collection<Reference> references,
+			File checkpointFile, boolean resume)
+		throws IOException, SQLException {
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		String fingerprint;
+
+		Connection connection = null;
+
+		try {
+			connection = baseChecker.getConnection();
+
+			fingerprint = referenceChecker.getFingerprint(
+				connection, references);
+		}
+		finally {
+			JDBCUtil.cleanUp(connection);
+		}
+
+		CheckpointJournal checkpointJournal = new CheckpointJournal(
+			checkpointFile, fingerprint, resume);
+
+		if (resume) {
+			System.out.println(
+				"Resuming " + checkpointJournal.size() +
+					" references already checked");
+		}
+
+		return checkpointJournal;
+	}
+
+	protected static ExecutorFactory createExecutorFactory(String executor) {
+		if (executor.equals("forkJoin")) {
+			return new ForkJoinExecutorFactory();
+		}
+
+		if (executor.equals("threadPool")) {
+			return new ThreadPoolExecutorFactory();
+		}
+
+		if (executor.equals("virtual")) {
+			if (!VirtualThreadExecutorFactory.isSupported()) {
+				System.err.println("Virtual threads require Java 21 or later");
+
+				return null;
+			}
+
+			return new VirtualThreadExecutorFactory();
+		}
+
+		System.err.println("Unknown executor: " + executor);
+
+		return null;
+	}
+
+	protected static void dumpCleanup(
+			BaseChecker baseChecker,
+			List<MissingReferences> missingReferenceList)
+		throws IOException, SQLException {
+
+		System.out.println("");
+		System.out.println("Executing dump cleanup script...");
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
 
 		List<String> cleanup = referenceChecker.generateCleanupSentences(
 			missingReferenceList);
@@ -169,8 +918,35 @@ public class CheckDatabase {
 		baseChecker.writeOutput("missing-references_cleanup", "sql", cleanup);
 	}
 
+	protected static void estimate(
+			BaseChecker baseChecker, long sample, int threads)
+		throws IOException, SQLException {
+
+		System.out.println("");
+		System.out.println(
+			"Estimating missing references checking 1 of every " + sample +
+				" rows...");
+
+		long startTime = System.currentTimeMillis();
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		List<MissingReferencesEstimate> missingReferencesEstimates =
+			referenceChecker.estimateMissingReferences(
+				baseChecker.getCheckDataSource(), sample, threads);
+
+		List<String> outputList =
+			OutputUtil.generateCSVOutputMissingReferencesEstimates(
+				missingReferencesEstimates);
+
+		baseChecker.writeOutput(
+			"missing-references-estimate", "csv", startTime, outputList);
+	}
+
 	protected static List<MissingReferences> execute(
-			BaseChecker baseChecker, int missingReferencesLimit)
+			BaseChecker baseChecker, Collection<Reference> references,
+			int missingReferencesLimit, int threads,
+			boolean streamMissingReferences)
 		throws IOException, SQLException {
 
 		System.out.println("");
@@ -182,15 +958,27 @@ public class CheckDatabase {
 
 		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
 
-		Connection connection = null;
+		CSVMissingReferencesSink csvMissingReferencesSink = null;
 
-		try {
-			connection = baseChecker.getConnection();
+		if (streamMissingReferences) {
+			csvMissingReferencesSink = new CSVMissingReferencesSink(
+				baseChecker.getOutputFile("missing-references", "csv"),
+				missingReferencesLimit);
+
+			referenceChecker.setMissingReferencesSink(
+				csvMissingReferencesSink);
+		}
 
-			missingReferenceList = referenceChecker.execute(connection);
+		try {
+			missingReferenceList = referenceChecker.execute(
+				baseChecker.getCheckDataSource(), references, threads);
 		}
 		finally {
-			JDBCUtil.cleanUp(connection);
+			if (csvMissingReferencesSink != null) {
+				csvMissingReferencesSink.close();
+
+				referenceChecker.setMissingReferencesSink(null);
+			}
 		}
 
 		List<String> selectSentences = referenceChecker.generateSelectSentences(
@@ -198,6 +986,12 @@ public class CheckDatabase {
 
 		baseChecker.writeOutput("missing-references", "sql", selectSentences);
 
+		if (streamMissingReferences) {
+			baseChecker.finishOutput("missing-references", "csv", startTime);
+
+			return missingReferenceList;
+		}
+
 		List<String> outputList = OutputUtil.generateCSVOutputCheckReferences(
 			missingReferenceList, missingReferencesLimit);
 
@@ -207,6 +1001,272 @@ public class CheckDatabase {
 		return missingReferenceList;
 	}
 
+	/* Checks the references of one shard, they and the fingerprint are read
+	 * from the shard directory. The results are written to the journal of the
+	 * shard that is resumed if the worker is restarted */
+	protected static void executeShard(
+			BaseChecker baseChecker, ShardDirectory shardDirectory, int shard,
+			int threads)
+		throws IOException, SQLException {
+
+		System.out.println("");
+		System.out.println("Executing shard " + shard + "...");
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		List<Reference> shardReferences = shardDirectory.readShard(
+			shard, referenceChecker.getTableUtil());
+
+		CheckpointJournal checkpointJournal = new CheckpointJournal(
+			shardDirectory.getJournalFile(shard),
+			shardDirectory.readFingerprint(), true);
+
+		System.out.println(
+			"Resuming " + checkpointJournal.size() +
+				" references already checked");
+
+		referenceChecker.setCheckpointJournal(checkpointJournal);
+
+		try {
+			referenceChecker.execute(
+				baseChecker.getCheckDataSource(), shardReferences, threads);
+		}
+		finally {
+			checkpointJournal.close();
+
+			referenceChecker.setCheckpointJournal(null);
+		}
+
+		CheckScheduler checkScheduler = referenceChecker.getCheckScheduler();
+
+		checkScheduler.store(shardDirectory.getCheckTimesFile(shard));
+
+		shardDirectory.markDone(shard);
+	}
+
+	/* Splits the references in shards, or reads the shards of the previous
+	 * execution if it is resumed, starts one worker process per shard unless
+	 * they are external and merges the journals of the workers */
+	protected static void executeShards(
+			BaseChecker baseChecker, ShardDirectory shardDirectory, int shards,
+			String[] args, int missingReferencesLimit,
+			boolean externalWorkers, long externalWorkersTimeout,
+			boolean resume, boolean dumpCleanupScript)
+		throws InterruptedException, IOException, SQLException {
+
+		System.out.println("");
+		System.out.println(
+			"Executing dump missing references in " + shards + " shards...");
+
+		long startTime = System.currentTimeMillis();
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		CheckScheduler checkScheduler = referenceChecker.getCheckScheduler();
+
+		List<Reference> references = new ArrayList<>();
+
+		for (Reference reference : calculateReferences(baseChecker)) {
+			if (!reference.isRaw() &&
+				(reference.getDestinationQuery() != null)) {
+
+				references.add(reference);
+			}
+		}
+
+		String fingerprint;
+
+		Connection connection = null;
+
+		try {
+			connection = baseChecker.getConnection();
+
+			fingerprint = referenceChecker.getFingerprint(
+				connection, references);
+		}
+		finally {
+			JDBCUtil.cleanUp(connection);
+		}
+
+		/* The estimated times change between executions, so resumed shards
+		 * keep the references assigned by the previous execution */
+		boolean resumeShards = false;
+
+		if (resume && shardDirectory.hasShards(shards) &&
+			fingerprint.equals(shardDirectory.readFingerprint())) {
+
+			resumeShards = true;
+		}
+
+		List<List<Reference>> shardsReferences;
+
+		if (resumeShards) {
+			System.out.println("Resuming the shards of the previous execution");
+
+			shardsReferences = new ArrayList<>();
+
+			for (int i = 0; i < shards; i++) {
+				shardsReferences.add(
+					shardDirectory.readShard(
+						i, referenceChecker.getTableUtil()));
+			}
+		}
+		else {
+			if (resume) {
+				System.out.println(
+					"The shards of the previous execution are not resumed, " +
+						"the references or the number of shards changed");
+			}
+
+			List<List<Reference>> referencesGroups = new ArrayList<>();
+
+			for (Reference reference : references) {
+				referencesGroups.add(Collections.singletonList(reference));
+			}
+
+			long[] estimatedTimes;
+
+			Connection checkConnection = null;
+
+			try {
+				checkConnection = baseChecker.getCheckConnection();
+
+				estimatedTimes = checkScheduler.estimate(
+					checkConnection, referencesGroups);
+			}
+			finally {
+				JDBCUtil.cleanUp(checkConnection);
+			}
+
+			for (int i = 0; i < shards; i++) {
+				shardDirectory.clear(i);
+			}
+
+			shardDirectory.writeFingerprint(fingerprint);
+
+			shardsReferences = shardDirectory.writeShards(
+				references, estimatedTimes, shards);
+		}
+
+		List<Process> processes = new ArrayList<>();
+
+		for (int i = 0; i < shards; i++) {
+			if (externalWorkers || shardDirectory.isDone(i)) {
+				continue;
+			}
+
+			processes.add(_startWorker(shardDirectory, i, args));
+		}
+
+		for (Process process : processes) {
+			process.waitFor();
+		}
+
+		if (externalWorkers) {
+			_waitForExternalWorkers(
+				shardDirectory, shards, externalWorkersTimeout);
+		}
+
+		CSVMissingReferencesSink csvMissingReferencesSink =
+			new CSVMissingReferencesSink(
+				baseChecker.getOutputFile("missing-references", "csv"),
+				missingReferencesLimit);
+
+		List<String> cleanupSentences = new ArrayList<>();
+		List<String> selectSentences = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < shards; i++) {
+				if (!shardDirectory.isDone(i)) {
+					System.err.println(
+						"Shard " + i + " did not finish, see " +
+							shardDirectory.getLogFile(i));
+				}
+
+				CheckpointJournal checkpointJournal = new CheckpointJournal(
+					shardDirectory.getJournalFile(i), fingerprint, true);
+
+				checkpointJournal.close();
+
+				List<MissingReferences> missingReferenceList =
+					new ArrayList<>();
+
+				for (Reference reference : shardsReferences.get(i)) {
+					if (!checkpointJournal.contains(reference)) {
+						missingReferenceList.add(
+							new MissingReferences(
+								reference,
+								new IllegalStateException(
+									"Reference not checked by shard " + i)));
+
+						continue;
+					}
+
+					MissingReferences missingReferences =
+						checkpointJournal.get(reference);
+
+					if (missingReferences != null) {
+						missingReferenceList.add(missingReferences);
+					}
+				}
+
+				for (MissingReferences missingReferences :
+						missingReferenceList) {
+
+					csvMissingReferencesSink.addMissingReferences(
+						missingReferences);
+				}
+
+				selectSentences.addAll(
+					referenceChecker.generateSelectSentences(
+						missingReferenceList));
+
+				if (dumpCleanupScript) {
+					cleanupSentences.addAll(
+						referenceChecker.generateCleanupSentences(
+							missingReferenceList));
+				}
+
+				checkScheduler.load(shardDirectory.getCheckTimesFile(i));
+			}
+		}
+		finally {
+			csvMissingReferencesSink.close();
+		}
+
+		baseChecker.writeOutput("missing-references", "sql", selectSentences);
+
+		baseChecker.finishOutput("missing-references", "csv", startTime);
+
+		if (dumpCleanupScript) {
+			baseChecker.writeOutput(
+				"missing-references_cleanup", "sql", cleanupSentences);
+		}
+	}
+
+	protected static void exportSnapshot(
+			BaseChecker baseChecker, File snapshotDirectory, int threads)
+		throws IOException, SQLException {
+
+		System.out.println("");
+		System.out.println("Executing export snapshot...");
+
+		long startTime = System.currentTimeMillis();
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		KeySnapshot keySnapshot = referenceChecker.exportSnapshot(
+			baseChecker.getCheckDataSource(), snapshotDirectory, threads);
+
+		long endTime = System.currentTimeMillis();
+
+		System.out.println("");
+		System.out.println(
+			"Snapshot of " + keySnapshot.getReferences().size() +
+				" references was written to directory: " + snapshotDirectory);
+		System.out.println("Total time: " + (endTime - startTime) + " ms");
+	}
+
 	protected static CommandArguments getCommandArguments(String[] args)
 		throws Exception {
 
@@ -224,6 +1284,18 @@ public class CheckDatabase {
 
 				return null;
 			}
+
+			String checkEngine = commandArguments.getCheckEngine();
+
+			if ((checkEngine != null) &&
+				!checkEngine.equals(ReferenceChecker.CHECK_ENGINE_HASH) &&
+				!checkEngine.equals(ReferenceChecker.CHECK_ENGINE_SQL)) {
+
+				throw new ParameterException(
+					"Invalid --checkEngine " + checkEngine + ", valid values " +
+						"are " + ReferenceChecker.CHECK_ENGINE_SQL + " and " +
+							ReferenceChecker.CHECK_ENGINE_HASH);
+			}
 		}
 		catch (ParameterException parameterException) {
 			if (!commandArguments.isHelp()) {
@@ -238,6 +1310,59 @@ public class CheckDatabase {
 		return commandArguments;
 	}
 
+	/* Missing references found in the replica were queried again in the
+	 * primary database, the lag of their destination tables is reported to
+	 * review the ones replicated while the check was running */
+	protected static void reportReplicaLag(
+			BaseChecker baseChecker,
+			List<MissingReferences> missingReferenceList)
+		throws IOException, SQLException {
+
+		System.out.println("");
+		System.out.println("Executing dump replica lag...");
+
+		long startTime = System.currentTimeMillis();
+
+		Set<Table> tables = new TreeSet<>();
+
+		for (MissingReferences missingReferences : missingReferenceList) {
+			if (missingReferences.getThrowable() != null) {
+				continue;
+			}
+
+			Reference reference = missingReferences.getReference();
+
+			Query destinationQuery = reference.getDestinationQuery();
+
+			tables.add(destinationQuery.getTable());
+		}
+
+		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
+
+		Map<String, long[]> replicaLag;
+
+		Connection primaryConnection = null;
+		Connection replicaConnection = null;
+
+		try {
+			DataSource replicaDataSource = baseChecker.getReplicaDataSource();
+
+			primaryConnection = baseChecker.getConnection();
+			replicaConnection = replicaDataSource.getConnection();
+
+			replicaLag = referenceChecker.getReplicaLag(
+				primaryConnection, replicaConnection, tables);
+		}
+		finally {
+			JDBCUtil.cleanUp(primaryConnection);
+			JDBCUtil.cleanUp(replicaConnection);
+		}
+
+		baseChecker.writeOutput(
+			"replica-lag", "csv", startTime,
+			OutputUtil.generateCSVOutputReplicaLag(replicaLag));
+	}
+
 	private static void _printHelp(JCommander jCommander) {
 		String commandName = jCommander.getParsedCommand();
 
@@ -249,4 +1374,72 @@ public class CheckDatabase {
 		}
 	}
 
+	private static Process _startWorker(
+			ShardDirectory shardDirectory, int shard, String[] args)
+		throws IOException {
+
+		List<String> command = new ArrayList<>();
+
+		File javaBin = new File(System.getProperty("java.home"), "bin");
+
+		command.add(new File(javaBin, "java").getPath());
+
+		RuntimeMXBean runtimeMXBean = ManagementFactory.getRuntimeMXBean();
+
+		command.addAll(runtimeMXBean.getInputArguments());
+
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(CheckDatabase.class.getName());
+		command.addAll(Arrays.asList(args));
+		command.add("--shard");
+		command.add(String.valueOf(shard));
+
+		ProcessBuilder processBuilder = new ProcessBuilder(command);
+
+		processBuilder.redirectErrorStream(true);
+		processBuilder.redirectOutput(shardDirectory.getLogFile(shard));
+
+		System.out.println(
+			"Started worker of shard " + shard + ", log: " +
+				shardDirectory.getLogFile(shard));
+
+		return processBuilder.start();
+	}
+
+	/* Waits until every external worker creates its done file or the timeout
+	 * expires, the shards that did not finish are reported and merged as not
+	 * checked */
+	private static void _waitForExternalWorkers(
+			ShardDirectory shardDirectory, int shards, long timeout)
+		throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + timeout * 60 * 1000;
+
+		for (int i = 0; i < shards; i++) {
+			while (!shardDirectory.isDone(i) &&
+				   (System.currentTimeMillis() < deadline)) {
+
+				Thread.sleep(5000);
+			}
+		}
+
+		List<Integer> pendingShards = new ArrayList<>();
+
+		for (int i = 0; i < shards; i++) {
+			if (!shardDirectory.isDone(i)) {
+				pendingShards.add(i);
+			}
+		}
+
+		if (pendingShards.isEmpty()) {
+			return;
+		}
+
+		System.err.println(
+			"External workers did not finish the shards " + pendingShards +
+				" after " + timeout + " minutes, start them again with " +
+					"--resume to complete the check");
+	}
+
 }
\ No newline at end of file
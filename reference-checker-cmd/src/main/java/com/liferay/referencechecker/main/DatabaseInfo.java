@@ -54,16 +54,22 @@ public class DatabaseInfo {
 
 		boolean checkUndefinedTables = commandArguments.checkUndefinedTables();
 
+		Runtime runtime = Runtime.getRuntime();
+
+		int threads = runtime.availableProcessors();
+
 		BaseChecker baseChecker = BaseChecker.createBaseChecker(
 			PROGRAM_NAME, databaseCfg, fileNamePrefix, fileNameSuffix,
-			checkUndefinedTables);
+			checkUndefinedTables, threads,
+			commandArguments.getTableCacheFile());
 
 		dumpDatabaseInfo(baseChecker);
 
-		calculateTableCount(baseChecker);
+		calculateTableCount(baseChecker, threads);
 	}
 
-	protected static void calculateTableCount(BaseChecker baseChecker)
+	protected static void calculateTableCount(
+			BaseChecker baseChecker, int threads)
 		throws IOException, SQLException {
 
 		System.out.println("");
@@ -71,22 +77,14 @@ public class DatabaseInfo {
 
 		long startTime = System.currentTimeMillis();
 
-		Connection connection = null;
-
 		ReferenceChecker referenceChecker = baseChecker.getReferenceChecker();
 
-		Map<String, Long> mapTableCount;
-
-		try {
-			connection = baseChecker.getConnection();
-
-			mapTableCount = referenceChecker.calculateTableCount(connection);
-		}
-		finally {
-			JDBCUtil.cleanUp(connection);
-		}
+		Map<String, Long> mapTableCount = referenceChecker.calculateTableCount(
+			baseChecker.getCheckDataSource(), threads);
 
-		String[] headers = {"table", "count"};
+		/* Row counts are estimated from the catalog statistics when the
+		 * database provides them */
+		String[] headers = {"table", "estimatedCount"};
 
 		List<String> outputList = OutputUtil.generateCSVOutputMap(
 			Arrays.asList(headers), mapTableCount);
@@ -56,7 +56,7 @@ public class DumpReferences {
 
 		BaseChecker baseChecker = BaseChecker.createBaseChecker(
 			PROGRAM_NAME, databaseCfg, fileNamePrefix, fileNameSuffix,
-			checkUndefinedTables);
+			checkUndefinedTables, 0, commandArguments.getTableCacheFile());
 
 		calculateReferences(baseChecker);
 	}
@@ -61,27 +61,38 @@ public class BaseChecker {
 			String fileNameSuffix, boolean checkUndefinedTables)
 		throws Exception, FileNotFoundException {
 
-		if (databaseCfg == null) {
-			String configFolder = getConfigFolder();
+		return createBaseChecker(
+			programName, databaseCfg, fileNamePrefix, fileNameSuffix,
+			checkUndefinedTables, 0);
+	}
 
-			databaseCfg = configFolder + "database.properties";
-		}
+	public static BaseChecker createBaseChecker(
+			String programName, String databaseCfg, String fileNamePrefix,
+			String fileNameSuffix, boolean checkUndefinedTables,
+			int maximumPoolSize)
+		throws Exception, FileNotFoundException {
 
-		if (fileNamePrefix == null) {
-			fileNamePrefix = StringUtils.EMPTY;
-		}
+		return createBaseChecker(
+			programName, databaseCfg, fileNamePrefix, fileNameSuffix,
+			checkUndefinedTables, maximumPoolSize, null);
+	}
 
-		if (fileNameSuffix == null) {
-			DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss");
+	public static BaseChecker createBaseChecker(
+			String programName, String databaseCfg, String fileNamePrefix,
+			String fileNameSuffix, boolean checkUndefinedTables,
+			int maximumPoolSize, File tableCacheFile)
+		throws Exception, FileNotFoundException {
 
-			fileNameSuffix = "_" + dateFormat.format(new Date());
+		if (databaseCfg == null) {
+			String configFolder = getConfigFolder();
+
+			databaseCfg = configFolder + "database.properties";
 		}
 
-		File logFile = new File(
-			fileNamePrefix + programName + fileNameSuffix + ".log");
+		fileNamePrefix = _getFileNamePrefix(fileNamePrefix);
+		fileNameSuffix = _getFileNameSuffix(fileNameSuffix);
 
-		System.setOut(
-			new TeePrintStream(new FileOutputStream(logFile), System.out));
+		_redirectOutput(programName, fileNamePrefix, fileNameSuffix);
 
 		try {
 			System.out.println("");
@@ -92,11 +103,22 @@ public class BaseChecker {
 
 			InitDatabase initDB = new InitDatabase();
 
-			DataSource dataSource = initDB.connectToDatabase(databaseCfg);
+			DataSource dataSource = initDB.connectToDatabase(
+				databaseCfg, maximumPoolSize);
 
 			BaseChecker baseChecker = new BaseChecker(
 				dataSource, fileNamePrefix, fileNameSuffix,
-				checkUndefinedTables);
+				checkUndefinedTables, tableCacheFile);
+
+			baseChecker.replicaDataSource = initDB.connectToReplica(
+				databaseCfg, maximumPoolSize);
+
+			if (baseChecker.replicaDataSource != null) {
+				ReferenceChecker referenceChecker =
+					baseChecker.getReferenceChecker();
+
+				referenceChecker.setVerifyDataSource(dataSource);
+			}
 
 			long endTime = System.currentTimeMillis();
 
@@ -114,6 +136,20 @@ public class BaseChecker {
 		}
 	}
 
+	/* Base checker without database, used by the commands that only work
+	 * with exported files */
+	public static BaseChecker createOfflineBaseChecker(
+			String programName, String fileNamePrefix, String fileNameSuffix)
+		throws FileNotFoundException {
+
+		fileNamePrefix = _getFileNamePrefix(fileNamePrefix);
+		fileNameSuffix = _getFileNameSuffix(fileNameSuffix);
+
+		_redirectOutput(programName, fileNamePrefix, fileNameSuffix);
+
+		return new BaseChecker(fileNamePrefix, fileNameSuffix);
+	}
+
 	public static void printCmdBanner(String programName) {
 		System.out.println("========");
 		System.out.println(
@@ -127,34 +163,11 @@ public class BaseChecker {
 		System.out.println("");
 	}
 
-	public Connection getConnection() throws SQLException {
-		return dataSource.getConnection();
-	}
-
-	public ReferenceChecker getReferenceChecker() {
-		return referenceChecker;
-	}
-
-	public void writeOutput(String name, String format, List<String> outputList)
-		throws IOException {
-
-		writeOutput(name, format, null, outputList);
-	}
-
-	public void writeOutput(
-			String name, String format, Long startTime, List<String> outputList)
-		throws IOException {
-
+	/* Generates the html version of csv outputs and prints the output file
+	 * names, used after writing the output file */
+	public void finishOutput(String name, String format, Long startTime) {
 		File outputFile = _getOutputFile(name, format);
 
-		PrintWriter writer = new PrintWriter(outputFile, "UTF-8");
-
-		for (String line : outputList) {
-			writer.println(line);
-		}
-
-		writer.close();
-
 		String outputFileName = outputFile.getName();
 
 		if (Objects.equals(format, "csv")) {
@@ -184,6 +197,67 @@ public class BaseChecker {
 		}
 	}
 
+	/* Connection of the check queries, the read replica if it is
+	 * configured */
+	public Connection getCheckConnection() throws SQLException {
+		DataSource checkDataSource = getCheckDataSource();
+
+		return checkDataSource.getConnection();
+	}
+
+	/* Data source of the check queries, the read replica if it is
+	 * configured */
+	public DataSource getCheckDataSource() {
+		if (replicaDataSource != null) {
+			return replicaDataSource;
+		}
+
+		return dataSource;
+	}
+
+	public Connection getConnection() throws SQLException {
+		return dataSource.getConnection();
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public File getOutputFile(String name, String format) {
+		return _getOutputFile(name, format);
+	}
+
+	public ReferenceChecker getReferenceChecker() {
+		return referenceChecker;
+	}
+
+	public DataSource getReplicaDataSource() {
+		return replicaDataSource;
+	}
+
+	public void writeOutput(String name, String format, List<String> outputList)
+		throws IOException {
+
+		writeOutput(name, format, null, outputList);
+	}
+
+	public void writeOutput(
+			String name, String format, Long startTime, List<String> outputList)
+		throws IOException {
+
+		File outputFile = _getOutputFile(name, format);
+
+		PrintWriter writer = new PrintWriter(outputFile, "UTF-8");
+
+		for (String line : outputList) {
+			writer.println(line);
+		}
+
+		writer.close();
+
+		finishOutput(name, format, startTime);
+	}
+
 	public void writeOutputHtml(
 			File sourceCsvFile, File htmlFile, String footer)
 		throws FileNotFoundException, IOException, JsonProcessingException,
@@ -234,7 +308,7 @@ public class BaseChecker {
 
 	protected BaseChecker(
 			DataSource dataSource, String fileNamePrefix, String fileNameSuffix,
-			boolean checkUndefinedTables)
+			boolean checkUndefinedTables, File tableCacheFile)
 		throws Exception {
 
 		this.dataSource = dataSource;
@@ -253,6 +327,7 @@ public class BaseChecker {
 			}
 
 			referenceChecker.setCheckUndefinedTables(checkUndefinedTables);
+			referenceChecker.setTableCacheFile(tableCacheFile);
 			referenceChecker.initModelUtil(connection);
 			referenceChecker.initTableUtil(connection);
 		}
@@ -261,6 +336,11 @@ public class BaseChecker {
 		}
 	}
 
+	protected BaseChecker(String fileNamePrefix, String fileNameSuffix) {
+		this.fileNamePrefix = fileNamePrefix;
+		this.fileNameSuffix = fileNameSuffix;
+	}
+
 	protected String getResource(String resourceName)
 		throws IOException, UnsupportedEncodingException {
 
@@ -275,6 +355,7 @@ public class BaseChecker {
 	protected String fileNamePrefix;
 	protected String fileNameSuffix;
 	protected ReferenceChecker referenceChecker;
+	protected DataSource replicaDataSource;
 
 	private static File _getJarFile() throws Exception {
 		ProtectionDomain protectionDomain =
@@ -287,13 +368,46 @@ public class BaseChecker {
 		return new File(url.toURI());
 	}
 
+	private static String _getFileNamePrefix(String fileNamePrefix) {
+		if (fileNamePrefix == null) {
+			return StringUtils.EMPTY;
+		}
+
+		return fileNamePrefix;
+	}
+
+	private static String _getFileNameSuffix(String fileNameSuffix) {
+		if (fileNameSuffix == null) {
+			DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss");
+
+			return "_" + dateFormat.format(new Date());
+		}
+
+		return fileNameSuffix;
+	}
+
 	private static String _getJarVersion() {
 		Package p = BaseChecker.class.getPackage();
 
 		return p.getImplementationVersion();
 	}
 
+	private static void _redirectOutput(
+			String programName, String fileNamePrefix, String fileNameSuffix)
+		throws FileNotFoundException {
+
+		File logFile = new File(
+			fileNamePrefix + programName + fileNameSuffix + ".log");
+
+		System.setOut(
+			new TeePrintStream(new FileOutputStream(logFile), System.out));
+	}
+
 	private String _getDatabaseURL(DataSource dataSource) {
+		if (dataSource == null) {
+			return StringUtils.EMPTY;
+		}
+
 		String databaseUrl = null;
 
 		Connection connection = null;
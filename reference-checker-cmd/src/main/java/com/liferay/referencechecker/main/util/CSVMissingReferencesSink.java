@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.main.util;
+
+import com.liferay.referencechecker.OutputUtil;
+import com.liferay.referencechecker.ref.InvalidValuesSink;
+import com.liferay.referencechecker.ref.LimitInvalidValuesSink;
+import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.MissingReferencesSink;
+import com.liferay.referencechecker.ref.Reference;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes each missing references csv row as soon as the reference is checked,
+ * only the first invalid values of each reference are kept in memory.
+ *
+ * @author Jorge Díaz
+ */
+public class CSVMissingReferencesSink
+	implements Closeable, MissingReferencesSink {
+
+	public CSVMissingReferencesSink(File csvFile, int missingReferencesLimit)
+		throws IOException {
+
+		this.missingReferencesLimit = missingReferencesLimit;
+
+		writer = new PrintWriter(csvFile, "UTF-8");
+
+		writer.println(OutputUtil.generateCSVHeaderCheckReferences());
+		writer.flush();
+	}
+
+	@Override
+	public synchronized void addMissingReferences(
+		MissingReferences missingReferences) {
+
+		writer.println(
+			OutputUtil.generateCSVRowCheckReferences(
+				missingReferences, missingReferencesLimit));
+		writer.flush();
+	}
+
+	@Override
+	public synchronized void close() {
+		writer.close();
+	}
+
+	@Override
+	public InvalidValuesSink createInvalidValuesSink(Reference reference) {
+		if (missingReferencesLimit < 0) {
+			return new LimitInvalidValuesSink(Integer.MAX_VALUE);
+		}
+
+		return new LimitInvalidValuesSink(missingReferencesLimit);
+	}
+
+	protected int missingReferencesLimit;
+	protected PrintWriter writer;
+
+}
\ No newline at end of file
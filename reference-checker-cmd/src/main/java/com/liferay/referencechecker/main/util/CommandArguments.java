@@ -18,6 +18,7 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -73,6 +74,14 @@ public class CommandArguments {
 		return _outputFilesSuffix;
 	}
 
+	public File getTableCacheFile() {
+		if (_tableCacheFile == null) {
+			return null;
+		}
+
+		return new File(_tableCacheFile);
+	}
+
 	public boolean isHelp() {
 		return _help;
 	}
@@ -116,4 +125,12 @@ public class CommandArguments {
 	)
 	private String _outputFilesSuffix;
 
+	@Parameter(
+		description = "File that keeps the table definitions between " +
+			"executions, only the tables modified since the previous " +
+			"execution are read from the database metadata.",
+		names = "--tableCacheFile"
+	)
+	private String _tableCacheFile;
+
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.IOException;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -41,6 +42,13 @@ public class InitDatabase {
 	}
 
 	public DataSource connectToDatabase(String databaseCfg) throws Exception {
+		return connectToDatabase(databaseCfg, 0);
+	}
+
+	public DataSource connectToDatabase(
+			String databaseCfg, int maximumPoolSize)
+		throws Exception {
+
 		File databasePropertiesFile = new File(databaseCfg);
 
 		Properties databaseProperties = new Properties();
@@ -86,18 +94,8 @@ public class InitDatabase {
 		String userName = databaseProperties.getProperty(
 			"jdbc.default.username");
 
-		HikariConfig hikariConfig = new HikariConfig();
-
-		hikariConfig.setDriverClassName(driverClassName);
-		hikariConfig.setJdbcUrl(url);
-		hikariConfig.setUsername(userName);
-		hikariConfig.setPassword(password);
-
-		DataSource dataSource = new HikariDataSource(hikariConfig);
-
-		Connection testConnection = dataSource.getConnection();
-
-		JDBCUtil.cleanUp(testConnection);
+		DataSource dataSource = _createDataSource(
+			driverClassName, url, userName, password, maximumPoolSize, false);
 
 		try {
 			databaseProperties.store(databasePropertiesFile);
@@ -113,6 +111,50 @@ public class InitDatabase {
 		return dataSource;
 	}
 
+	/* Read-only data source of the jdbc.replica.url database, null if it is
+	 * not configured. The user name and password default to the jdbc.default
+	 * ones */
+	public DataSource connectToReplica(
+			String databaseCfg, int maximumPoolSize)
+		throws Exception {
+
+		File databasePropertiesFile = new File(databaseCfg);
+
+		if (!databasePropertiesFile.exists()) {
+			return null;
+		}
+
+		Properties databaseProperties = new Properties();
+
+		databaseProperties.load(databasePropertiesFile);
+
+		String url = databaseProperties.getProperty("jdbc.replica.url");
+
+		if ((url == null) || url.isEmpty()) {
+			return null;
+		}
+
+		System.out.println("Connecting to read replica " + url);
+
+		String password = databaseProperties.getProperty(
+			"jdbc.replica.password");
+
+		if (password == null) {
+			password = databaseProperties.getProperty("jdbc.default.password");
+		}
+
+		String userName = databaseProperties.getProperty(
+			"jdbc.replica.username");
+
+		if (userName == null) {
+			userName = databaseProperties.getProperty("jdbc.default.username");
+		}
+
+		return _createDataSource(
+			databaseProperties.getProperty("jdbc.default.driverClassName"),
+			url, userName, password, maximumPoolSize, true);
+	}
+
 	protected Properties fillDatabaseProperties() throws IOException {
 		String response = null;
 
@@ -226,6 +268,33 @@ public class InitDatabase {
 		return databaseProperties;
 	}
 
+	private DataSource _createDataSource(
+			String driverClassName, String url, String userName,
+			String password, int maximumPoolSize, boolean readOnly)
+		throws SQLException {
+
+		HikariConfig hikariConfig = new HikariConfig();
+
+		hikariConfig.setDriverClassName(driverClassName);
+		hikariConfig.setJdbcUrl(url);
+		hikariConfig.setUsername(userName);
+		hikariConfig.setPassword(password);
+
+		if (maximumPoolSize > 0) {
+			hikariConfig.setMaximumPoolSize(maximumPoolSize);
+		}
+
+		hikariConfig.setReadOnly(readOnly);
+
+		DataSource dataSource = new HikariDataSource(hikariConfig);
+
+		Connection testConnection = dataSource.getConnection();
+
+		JDBCUtil.cleanUp(testConnection);
+
+		return dataSource;
+	}
+
 	private static final Map<String, Database> _databases =
 		new HashMap<String, Database>() {
 			{
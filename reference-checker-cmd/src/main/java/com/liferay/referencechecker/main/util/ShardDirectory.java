@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.main.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.dao.TableUtil;
+import com.liferay.referencechecker.ref.Reference;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Work queue of a sharded check, shared by the coordinator and the workers
+ * through a directory that can be in a network file system.
+ *
+ * The coordinator writes the fingerprint of the check and the references of
+ * each shard, one json line per reference, so the workers don't calculate
+ * them again. Each worker appends its results to the checkpoint journal of
+ * its shard and creates the done file when it finishes, the coordinator
+ * merges the journals.
+ *
+ * @author Jorge Díaz
+ */
+public class ShardDirectory {
+
+	public ShardDirectory(File directory) throws IOException {
+		this.directory = directory;
+
+		FileUtils.forceMkdir(directory);
+	}
+
+	/* Removes the results of a previous execution */
+	public void clear(int shard) throws IOException {
+		FileUtils.deleteQuietly(getDoneFile(shard));
+		FileUtils.deleteQuietly(getJournalFile(shard));
+	}
+
+	public File getCheckTimesFile(int shard) {
+		return new File(directory, "shard-" + shard + ".check-times");
+	}
+
+	public File getDoneFile(int shard) {
+		return new File(directory, "shard-" + shard + ".done");
+	}
+
+	public File getFingerprintFile() {
+		return new File(directory, "fingerprint");
+	}
+
+	public File getJournalFile(int shard) {
+		return new File(directory, "shard-" + shard + ".journal");
+	}
+
+	public File getLogFile(int shard) {
+		return new File(directory, "shard-" + shard + ".log");
+	}
+
+	public File getReferencesFile(int shard) {
+		return new File(directory, "shard-" + shard + ".references");
+	}
+
+	/* Returns true if the fingerprint and the references of exactly the
+	 * given number of shards were written */
+	public boolean hasShards(int shards) {
+		if (!getFingerprintFile().exists() ||
+			getReferencesFile(shards).exists()) {
+
+			return false;
+		}
+
+		for (int i = 0; i < shards; i++) {
+			if (!getReferencesFile(i).exists()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public boolean isDone(int shard) {
+		return getDoneFile(shard).exists();
+	}
+
+	public void markDone(int shard) throws IOException {
+		FileUtils.touch(getDoneFile(shard));
+	}
+
+	public String readFingerprint() throws IOException {
+		return FileUtils.readFileToString(getFingerprintFile(), "UTF-8");
+	}
+
+	/* References of the shard, their tables are the ones loaded by the
+	 * worker */
+	@SuppressWarnings("unchecked")
+	public List<Reference> readShard(int shard, TableUtil tableUtil)
+		throws IOException {
+
+		List<Reference> shardReferences = new ArrayList<>();
+
+		for (String line :
+				FileUtils.readLines(getReferencesFile(shard), "UTF-8")) {
+
+			Map<String, Object> referenceMap = objectMapper.readValue(
+				line, Map.class);
+
+			Reference reference = new Reference(
+				_toQuery(
+					(Map<String, Object>)referenceMap.get("origin"), tableUtil),
+				_toQuery(
+					(Map<String, Object>)referenceMap.get("destination"),
+					tableUtil));
+
+			reference.setAntiJoinStrategy(
+				(String)referenceMap.get("antiJoinStrategy"));
+			reference.setCheckEngine((String)referenceMap.get("checkEngine"));
+			reference.setFixAction((String)referenceMap.get("fixAction"));
+
+			shardReferences.add(reference);
+		}
+
+		return shardReferences;
+	}
+
+	public void writeFingerprint(String fingerprint) throws IOException {
+		FileUtils.writeStringToFile(getFingerprintFile(), fingerprint, "UTF-8");
+	}
+
+	/* Assigns each reference to the shard with less estimated time, starting
+	 * with the longest ones. Returns the references of each shard */
+	public List<List<Reference>> writeShards(
+			List<Reference> references, final long[] estimatedTimes,
+			int shards)
+		throws IOException {
+
+		Integer[] positions = new Integer[references.size()];
+
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = i;
+		}
+
+		Arrays.sort(
+			positions,
+			new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer position1, Integer position2) {
+					return Long.compare(
+						estimatedTimes[position2], estimatedTimes[position1]);
+				}
+
+			});
+
+		long[] shardTimes = new long[shards];
+
+		List<List<Integer>> shardPositions = new ArrayList<>();
+
+		for (int i = 0; i < shards; i++) {
+			shardPositions.add(new ArrayList<Integer>());
+		}
+
+		for (Integer position : positions) {
+			int shard = 0;
+
+			for (int i = 1; i < shards; i++) {
+				if (shardTimes[i] < shardTimes[shard]) {
+					shard = i;
+				}
+			}
+
+			shardTimes[shard] += Math.max(estimatedTimes[position], 1);
+
+			shardPositions.get(shard).add(position);
+		}
+
+		List<List<Reference>> shardReferences = new ArrayList<>();
+
+		for (int i = 0; i < shards; i++) {
+			List<Integer> sortedPositions = shardPositions.get(i);
+
+			Collections.sort(sortedPositions);
+
+			List<Reference> referencesShard = new ArrayList<>();
+			List<String> lines = new ArrayList<>();
+
+			for (Integer position : sortedPositions) {
+				Reference reference = references.get(position);
+
+				referencesShard.add(reference);
+				lines.add(objectMapper.writeValueAsString(_toMap(reference)));
+			}
+
+			FileUtils.writeLines(getReferencesFile(i), "UTF-8", lines);
+
+			shardReferences.add(referencesShard);
+		}
+
+		/* Shards of a previous execution with more shards */
+		for (int i = shards; getReferencesFile(i).exists(); i++) {
+			FileUtils.deleteQuietly(getReferencesFile(i));
+			clear(i);
+		}
+
+		return shardReferences;
+	}
+
+	protected File directory;
+	protected ObjectMapper objectMapper = new ObjectMapper();
+
+	private Map<String, Object> _toMap(Query query) {
+		Table table = query.getTable();
+
+		Map<String, Object> queryMap = new LinkedHashMap<>();
+
+		queryMap.put("table", table.getTableName());
+		queryMap.put("columns", query.getColumns());
+		queryMap.put("casting", query.getCasting());
+		queryMap.put("condition", query.getCondition());
+
+		return queryMap;
+	}
+
+	private Map<String, Object> _toMap(Reference reference) {
+		Map<String, Object> referenceMap = new LinkedHashMap<>();
+
+		referenceMap.put("origin", _toMap(reference.getOriginQuery()));
+		referenceMap.put(
+			"destination", _toMap(reference.getDestinationQuery()));
+		referenceMap.put("antiJoinStrategy", reference.getAntiJoinStrategy());
+		referenceMap.put("checkEngine", reference.getCheckEngine());
+		referenceMap.put("fixAction", reference.getFixAction());
+
+		return referenceMap;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Query _toQuery(Map<String, Object> queryMap, TableUtil tableUtil)
+		throws IOException {
+
+		String tableName = (String)queryMap.get("table");
+
+		Table table = tableUtil.getTable(tableName);
+
+		if (table == null) {
+			throw new IOException(
+				"Table " + tableName + " of the shard does not exist");
+		}
+
+		return new Query(
+			table, (List<String>)queryMap.get("columns"),
+			(List<String>)queryMap.get("casting"),
+			(String)queryMap.get("condition"));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.main.util;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.dao.TableUtil;
+import com.liferay.referencechecker.ref.Reference;
+
+import java.io.IOException;
+
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Jorge Díaz
+ */
+public class ShardDirectoryTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testHasShards() throws Exception {
+		ShardDirectory shardDirectory = new ShardDirectory(
+			temporaryFolder.getRoot());
+
+		List<Reference> references = _createReferences(3);
+
+		shardDirectory.writeShards(references, new long[] {1, 2, 3}, 2);
+
+		Assert.assertFalse(shardDirectory.hasShards(2));
+
+		shardDirectory.writeFingerprint("fingerprint");
+
+		Assert.assertTrue(shardDirectory.hasShards(2));
+		Assert.assertFalse(shardDirectory.hasShards(1));
+		Assert.assertFalse(shardDirectory.hasShards(3));
+		Assert.assertEquals("fingerprint", shardDirectory.readFingerprint());
+	}
+
+	@Test
+	public void testReadShard() throws Exception {
+		ShardDirectory shardDirectory = new ShardDirectory(
+			temporaryFolder.getRoot());
+
+		List<Reference> references = _createReferences(3);
+
+		references.get(1).setAntiJoinStrategy("notExists");
+		references.get(1).setCheckEngine("hash");
+		references.get(1).setFixAction("delete");
+
+		List<List<Reference>> shardsReferences = shardDirectory.writeShards(
+			references, new long[] {5, 1, 1}, 2);
+
+		for (int i = 0; i < 2; i++) {
+			List<Reference> shardReferences = shardDirectory.readShard(
+				i, _tableUtil);
+
+			Assert.assertEquals(
+				_toStrings(shardsReferences.get(i)),
+				_toStrings(shardReferences));
+		}
+
+		Reference reference = shardDirectory.readShard(1, _tableUtil).get(0);
+
+		Assert.assertEquals("notExists", reference.getAntiJoinStrategy());
+		Assert.assertEquals("hash", reference.getCheckEngine());
+		Assert.assertEquals("delete", reference.getFixAction());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadShardWithoutTable() throws Exception {
+		ShardDirectory shardDirectory = new ShardDirectory(
+			temporaryFolder.getRoot());
+
+		shardDirectory.writeShards(_createReferences(1), new long[] {1}, 1);
+
+		shardDirectory.readShard(0, new TableUtil());
+	}
+
+	@Test
+	public void testWriteShards() throws Exception {
+		ShardDirectory shardDirectory = new ShardDirectory(
+			temporaryFolder.getRoot());
+
+		List<Reference> references = _createReferences(5);
+
+		List<List<Reference>> shardsReferences = shardDirectory.writeShards(
+			references, new long[] {10, 1, 8, 3, 7}, 2);
+
+		Assert.assertEquals(
+			Arrays.asList(
+				references.get(0), references.get(1), references.get(3)),
+			shardsReferences.get(0));
+		Assert.assertEquals(
+			Arrays.asList(references.get(2), references.get(4)),
+			shardsReferences.get(1));
+	}
+
+	@Test
+	public void testWriteShardsOfPreviousExecution() throws Exception {
+		ShardDirectory shardDirectory = new ShardDirectory(
+			temporaryFolder.getRoot());
+
+		List<Reference> references = _createReferences(3);
+
+		shardDirectory.writeFingerprint("fingerprint");
+
+		shardDirectory.writeShards(references, new long[] {1, 1, 1}, 3);
+
+		shardDirectory.markDone(2);
+
+		shardDirectory.writeShards(references, new long[] {1, 1, 1}, 2);
+
+		Assert.assertTrue(shardDirectory.hasShards(2));
+		Assert.assertFalse(shardDirectory.getReferencesFile(2).exists());
+		Assert.assertFalse(shardDirectory.isDone(2));
+	}
+
+	private List<Reference> _createReferences(int count) {
+		List<Reference> references = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			Table table = _createTable("Table" + i);
+
+			references.add(
+				new Reference(
+					new Query(
+						table, Collections.singletonList("userId"), null,
+						"companyId=" + i),
+					new Query(
+						_createTable("User_"),
+						Collections.singletonList("userId"), null, null)));
+		}
+
+		return references;
+	}
+
+	private Table _createTable(String tableName) {
+		Table table = new Table(
+			tableName, Collections.singletonList("userId"),
+			Arrays.asList("userId", "companyId"),
+			Arrays.asList(Types.BIGINT, Types.BIGINT),
+			Arrays.asList("BIGINT", "BIGINT"), Arrays.asList(20, 20),
+			Arrays.asList(false, false));
+
+		_tables.put(tableName.toLowerCase(), table);
+
+		return table;
+	}
+
+	private List<String> _toStrings(List<Reference> references) {
+		List<String> strings = new ArrayList<>();
+
+		for (Reference reference : references) {
+			strings.add(reference.toString());
+		}
+
+		return strings;
+	}
+
+	private final Map<String, Table> _tables = new HashMap<>();
+
+	private final TableUtil _tableUtil = new TableUtil() {
+
+		@Override
+		public Table getTable(String tableName) {
+			return _tables.get(tableName.toLowerCase());
+		}
+
+	};
+
+}
\ No newline at end of file
@@ -23,7 +23,9 @@ import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 
 import com.liferay.referencechecker.dao.Query;
 import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.engine.CheckScheduler;
 import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.MissingReferencesEstimate;
 import com.liferay.referencechecker.ref.Reference;
 
 import java.io.IOException;
@@ -109,35 +111,133 @@ public class OutputUtil {
 
 		List<String> out = new ArrayList<>();
 
-		List<String> headers = Arrays.asList(HEADERS_MISSING_REFERENCES);
-
-		out.add(getCSVRow(headers));
+		out.add(generateCSVHeaderCheckReferences());
 
 		for (MissingReferences missingReferences : listMissingReferences) {
-			List<String> line = generateReferenceCells(
-				missingReferences.getReference(), false);
+			out.add(
+				generateCSVRowCheckReferences(
+					missingReferences, missingReferencesLimit));
+		}
+
+		return out;
+	}
+
+	public static String generateCSVHeaderCheckReferences() {
+		return getCSVRow(Arrays.asList(HEADERS_MISSING_REFERENCES));
+	}
+
+	public static String generateCSVRowCheckReferences(
+		MissingReferences missingReferences, int missingReferencesLimit) {
+
+		List<String> line = generateReferenceCells(
+			missingReferences.getReference(), false);
 
-			Throwable throwable = missingReferences.getThrowable();
-			Collection<Object[]> missingValues = missingReferences.getValues();
+		Throwable throwable = missingReferences.getThrowable();
+		Collection<Object[]> missingValues = missingReferences.getValues();
 
-			if (missingValues != null) {
-				line.add(String.valueOf(missingReferences.getAffectedRows()));
-				line.add(String.valueOf(missingValues.size()));
+		if (missingValues != null) {
+			line.add(String.valueOf(missingReferences.getAffectedRows()));
+			line.add(String.valueOf(missingReferences.getValuesCount()));
 
-				String missingReferencesString = concatenate(
-					missingValues, missingReferencesLimit);
+			String missingReferencesString = concatenate(
+				missingValues, missingReferencesLimit);
 
-				line.add(missingReferencesString);
+			if (!missingReferences.isComplete() &&
+				!missingReferencesString.endsWith("...")) {
+
+				missingReferencesString = missingReferencesString + "...";
 			}
-			else if (throwable == null) {
-				line.add("-1");
+
+			line.add(missingReferencesString);
+		}
+		else if (throwable == null) {
+			line.add("-1");
+			line.add("-1");
+
+			line.add("Error checking references");
+		}
+		else {
+			line.add("-1");
+			line.add("-1");
+			line.add(
+				"EXCEPTION: " + throwable.getClass() + " - " +
+					throwable.getMessage());
+		}
+
+		line.add(StringUtils.defaultString(missingReferences.getPlan()));
+		line.add(StringUtils.defaultString(missingReferences.getPlanReason()));
+
+		return getCSVRow(line);
+	}
+
+	public static List<String> generateCSVOutputCheckTimes(
+		CheckScheduler checkScheduler) {
+
+		List<String> out = new ArrayList<>();
+
+		out.add(getCSVRow(Arrays.asList(HEADERS_CHECK_TIMES)));
+
+		Map<String, Long> estimatedTimes = checkScheduler.getEstimatedTimes();
+
+		for (Map.Entry<String, Long> entry :
+				checkScheduler.getTimes().entrySet()) {
+
+			List<String> line = new ArrayList<>();
+
+			line.add(entry.getKey());
+
+			Long estimatedTime = estimatedTimes.get(entry.getKey());
+
+			if (estimatedTime == null) {
 				line.add("-1");
+			}
+			else {
+				line.add(String.valueOf(estimatedTime));
+			}
+
+			line.add(String.valueOf(entry.getValue()));
+
+			out.add(getCSVRow(line));
+		}
 
-				line.add("Error checking references");
+		return out;
+	}
+
+	public static List<String> generateCSVOutputMissingReferencesEstimates(
+		Collection<MissingReferencesEstimate> missingReferencesEstimates) {
+
+		List<String> out = new ArrayList<>();
+
+		out.add(getCSVRow(Arrays.asList(HEADERS_MISSING_REFERENCES_ESTIMATE)));
+
+		for (MissingReferencesEstimate missingReferencesEstimate :
+				missingReferencesEstimates) {
+
+			List<String> line = generateReferenceCells(
+				missingReferencesEstimate.getReference(), false);
+
+			Throwable throwable = missingReferencesEstimate.getThrowable();
+
+			if (throwable == null) {
+				line.add(String.valueOf(missingReferencesEstimate.getRows()));
+				line.add(
+					String.valueOf(missingReferencesEstimate.getSampleRows()));
+				line.add(
+					String.valueOf(
+						missingReferencesEstimate.getSampleAffectedRows()));
+				line.add(
+					String.valueOf(
+						missingReferencesEstimate.getEstimatedAffectedRows()));
+				line.add(
+					String.valueOf(missingReferencesEstimate.getLowerBound()));
+				line.add(
+					String.valueOf(missingReferencesEstimate.getUpperBound()));
 			}
 			else {
-				line.add("-1");
-				line.add("-1");
+				for (int i = 0; i < 6; i++) {
+					line.add("-1");
+				}
+
 				line.add(
 					"EXCEPTION: " + throwable.getClass() + " - " +
 						throwable.getMessage());
@@ -202,6 +302,29 @@ public class OutputUtil {
 		return out;
 	}
 
+	public static List<String> generateCSVOutputReplicaLag(
+		Map<String, long[]> replicaLag) {
+
+		List<String> out = new ArrayList<>();
+
+		out.add(getCSVRow(Arrays.asList(HEADERS_REPLICA_LAG)));
+
+		for (Map.Entry<String, long[]> entry : replicaLag.entrySet()) {
+			long[] maxIds = entry.getValue();
+
+			List<String> line = new ArrayList<>();
+
+			line.add(entry.getKey());
+			line.add(String.valueOf(maxIds[0]));
+			line.add(String.valueOf(maxIds[1]));
+			line.add(String.valueOf(Math.max(maxIds[0] - maxIds[1], 0)));
+
+			out.add(getCSVRow(line));
+		}
+
+		return out;
+	}
+
 	public static List<String> generateReferenceCells(
 		Reference reference, boolean withTypes) {
 
@@ -294,9 +417,21 @@ public class OutputUtil {
 		return row;
 	}
 
+	protected static final String[] HEADERS_CHECK_TIMES = {
+		"reference", "estimated time (ms)", "time (ms)"
+	};
+
 	protected static final String[] HEADERS_MISSING_REFERENCES = {
 		"origin table", "attributes", "destination table", "dest attributes",
-		"fix action", "affec. rows", "affec. values", "missing references"
+		"fix action", "affec. rows", "affec. values", "missing references",
+		"plan", "plan reason"
+	};
+
+	protected static final String[] HEADERS_MISSING_REFERENCES_ESTIMATE = {
+		"origin table", "attributes", "destination table", "dest attributes",
+		"fix action", "rows", "sample rows", "sample affec. rows",
+		"estimated affec. rows", "lower bound (95%)", "upper bound (95%)",
+		"error"
 	};
 
 	protected static final String[] HEADERS_REFERENCES = {
@@ -304,4 +439,8 @@ public class OutputUtil {
 		"fix action"
 	};
 
+	protected static final String[] HEADERS_REPLICA_LAG = {
+		"table", "primary max id", "replica max id", "ids behind"
+	};
+
 }
\ No newline at end of file
@@ -18,17 +18,44 @@ import com.liferay.referencechecker.config.Configuration;
 import com.liferay.referencechecker.config.ConfigurationUtil;
 import com.liferay.referencechecker.dao.Query;
 import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.dao.TableCache;
+import com.liferay.referencechecker.dao.TableStatistics;
 import com.liferay.referencechecker.dao.TableUtil;
+import com.liferay.referencechecker.engine.AntiJoinPlan;
+import com.liferay.referencechecker.engine.AntiJoinPlanner;
+import com.liferay.referencechecker.engine.CheckEngine;
+import com.liferay.referencechecker.engine.CheckScheduler;
+import com.liferay.referencechecker.engine.CheckpointJournal;
+import com.liferay.referencechecker.engine.ExecutorFactory;
+import com.liferay.referencechecker.engine.ForkJoinExecutorFactory;
+import com.liferay.referencechecker.engine.HashCheckEngine;
+import com.liferay.referencechecker.engine.HighWaterMarks;
+import com.liferay.referencechecker.engine.KeySetCache;
+import com.liferay.referencechecker.engine.KeySnapshot;
+import com.liferay.referencechecker.engine.SnapshotExporter;
 import com.liferay.referencechecker.model.ModelUtil;
 import com.liferay.referencechecker.model.ModelUtilImpl;
+import com.liferay.referencechecker.ref.CollectionInvalidValuesSink;
+import com.liferay.referencechecker.ref.DistinctInvalidValuesSink;
+import com.liferay.referencechecker.ref.InvalidValues;
+import com.liferay.referencechecker.ref.InvalidValuesSink;
+import com.liferay.referencechecker.ref.LimitInvalidValuesSink;
 import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.MissingReferencesEstimate;
+import com.liferay.referencechecker.ref.MissingReferencesSink;
 import com.liferay.referencechecker.ref.Reference;
 import com.liferay.referencechecker.ref.ReferenceUtil;
 import com.liferay.referencechecker.util.JDBCUtil;
 import com.liferay.referencechecker.util.SQLUtil;
 
+import java.io.File;
 import java.io.IOException;
 
+import java.nio.charset.StandardCharsets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -36,21 +63,32 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 
+import javax.sql.DataSource;
+
 import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.LogManager;
@@ -61,6 +99,10 @@ import org.apache.log4j.Logger;
  */
 public class ReferenceChecker {
 
+	public static final String CHECK_ENGINE_HASH = "hash";
+
+	public static final String CHECK_ENGINE_SQL = "sql";
+
 	public static long getLiferayBuildNumber(Connection connection) {
 		PreparedStatement ps = null;
 		ResultSet rs = null;
@@ -134,9 +176,13 @@ public class ReferenceChecker {
 	public static ExecutorService newWorkStealingPool() {
 		Runtime runtime = Runtime.getRuntime();
 
-		return new ForkJoinPool(
-			runtime.availableProcessors(),
-			ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		return newWorkStealingPool(runtime.availableProcessors());
+	}
+
+	public static ExecutorService newWorkStealingPool(int parallelism) {
+		ExecutorFactory executorFactory = new ForkJoinExecutorFactory();
+
+		return executorFactory.newExecutorService(parallelism);
 	}
 
 	public ReferenceChecker(Connection connection) {
@@ -162,6 +208,21 @@ public class ReferenceChecker {
 
 			throw new RuntimeException(ioException);
 		}
+
+		antiJoinPlanner = new AntiJoinPlanner(dbType);
+		checkScheduler = new CheckScheduler(antiJoinPlanner);
+
+		Runtime runtime = Runtime.getRuntime();
+
+		chunkConcurrency = runtime.availableProcessors();
+		keySetCache = new KeySetCache(runtime.maxMemory() / 4);
+
+		addCheckEngine(
+			CHECK_ENGINE_HASH, new HashCheckEngine(dbType, keySetCache));
+	}
+
+	public void addCheckEngine(String name, CheckEngine checkEngine) {
+		checkEngines.put(name, checkEngine);
 	}
 
 	public void addExcludeColumns(List<String> excludeColumns) {
@@ -194,13 +255,15 @@ public class ReferenceChecker {
 		return referenceUtil.calculateReferences(connection, configuration);
 	}
 
+	/* Row counts are estimated from the catalog statistics, only the tables
+	 * close to empty or without statistics are counted */
 	public Map<String, Long> calculateTableCount(Connection connection)
 		throws IOException, SQLException {
 
 		Map<String, Long> mapTableCount = new TreeMap<>();
 
 		for (Table table : tableUtil.getTables()) {
-			long count = TableUtil.countTable(connection, table);
+			long count = tableUtil.getRowCount(connection, table);
 
 			mapTableCount.put(table.getTableName(), count);
 		}
@@ -208,6 +271,64 @@ public class ReferenceChecker {
 		return mapTableCount;
 	}
 
+	public Map<String, Long> calculateTableCount(
+		final DataSource dataSource, int parallelism) {
+
+		ExecutorService executorService = executorFactory.newExecutorService(
+			parallelism);
+
+		Map<String, Future<Long>> futures = new TreeMap<>();
+
+		try {
+			for (final Table table : tableUtil.getTables()) {
+				futures.put(
+					table.getTableName(),
+					executorService.submit(
+						new Callable<Long>() {
+
+							@Override
+							public Long call() throws SQLException {
+								Connection connection = null;
+
+								try {
+									connection = dataSource.getConnection();
+
+									return tableUtil.getRowCount(
+										connection, table);
+								}
+								finally {
+									JDBCUtil.cleanUp(connection);
+								}
+							}
+
+						}));
+			}
+
+			Map<String, Long> mapTableCount = new TreeMap<>();
+
+			for (Map.Entry<String, Future<Long>> entry : futures.entrySet()) {
+				long count = -1;
+
+				try {
+					count = entry.getValue().get();
+				}
+				catch (Exception exception) {
+					_log.error(
+						"EXCEPTION: " + exception.getClass() + " - " +
+							exception.getMessage(),
+						exception);
+				}
+
+				mapTableCount.put(entry.getKey(), count);
+			}
+
+			return mapTableCount;
+		}
+		finally {
+			executorService.shutdown();
+		}
+	}
+
 	public void cleanEmptyTableCacheOnDelete(String tableName) {
 		tableUtil.cleanEmptyTableCacheOnDelete(tableName);
 	}
@@ -370,834 +491,4013 @@ public class ReferenceChecker {
 		return output;
 	}
 
-	public List<MissingReferences> execute(Connection connection) {
-		Collection<Reference> references = calculateReferences(
-			connection, true);
-
-		return execute(connection, references);
-	}
+	/* Checks about one of every sampleModulo origin rows. The primary key
+	 * range is split in strata and a range of keys is read from a start of
+	 * each one, so the sample is read using the primary key index. The starts
+	 * are pseudo-random, seeded by the table and its primary key range, so
+	 * the estimate is repeatable while the table doesn't change. Keys are
+	 * allocated in blocks, so each range is counted separately and the
+	 * interval is calculated from the variance between ranges. The origin
+	 * tables without numeric primary key are fully checked */
+	public MissingReferencesEstimate estimateMissingReferences(
+			Connection connection, Reference reference, long sampleModulo)
+		throws SQLException {
 
-	public List<MissingReferences> execute(
-		Connection connection, Collection<Reference> references) {
+		Query originQuery = reference.getOriginQuery();
+		Query destinationQuery = reference.getDestinationQuery();
 
-		ExecutorService executorService = newWorkStealingPool();
+		Table originTable = originQuery.getTable();
 
-		Map<Reference, Future<MissingReferences>> futures =
-			new LinkedHashMap<>();
+		String condition = originQuery.getCondition();
 
-		for (Reference reference : references) {
-			CreateMissingReferences createMissingReferences =
-				new CreateMissingReferences(connection, reference);
+		long[] primaryKeyRange = null;
+		List<long[]> sampleRanges = null;
 
-			Future<MissingReferences> future = executorService.submit(
-				createMissingReferences);
+		if ((sampleModulo > 1) && _isNumericPrimaryKey(originTable)) {
+			primaryKeyRange = _queryPrimaryKeyRange(connection, originTable);
 
-			futures.put(reference, future);
+			if (primaryKeyRange != null) {
+				sampleRanges = _getSampleRanges(
+					originTable, primaryKeyRange, sampleModulo);
+			}
 		}
 
-		List<MissingReferences> listMissingReferences = new ArrayList<>();
-
-		for (Map.Entry<Reference, Future<MissingReferences>> entry :
-				futures.entrySet()) {
+		if (sampleRanges == null) {
+			long rows = TableUtil.countTable(
+				connection, originTable, condition);
 
-			MissingReferences missingReferences = null;
-
-			Reference reference = entry.getKey();
-			Future<MissingReferences> future = entry.getValue();
-
-			try {
-				missingReferences = future.get();
-
-				if (_log.isInfoEnabled()) {
-					_log.info("Processed: " + reference);
-				}
+			if (rows < 0) {
+				throw new SQLException(
+					"Unable to count the rows of " + reference);
 			}
-			catch (Throwable t) {
-				_log.error(
-					"EXCEPTION: " + t.getClass() + " - " + t.getMessage(), t);
 
-				missingReferences = new MissingReferences(reference, t);
-			}
+			long affectedRows = _querySQLInvalidValues(
+				connection, originQuery, destinationQuery,
+				getAntiJoinPlan(connection, reference).getStrategy(),
+				new LimitInvalidValuesSink(0), true);
 
-			if (missingReferences != null) {
-				listMissingReferences.add(missingReferences);
-			}
+			return new MissingReferencesEstimate(
+				reference, rows, affectedRows);
 		}
 
-		return listMissingReferences;
-	}
-
-	public void executeCleanUp(
-			Connection connection, MissingReferences missingReferences)
-		throws SQLException {
+		String primaryKey = originTable.getPrimaryKey();
 
-		List<String> cleanupSqls = generateCleanupSentences(missingReferences);
+		String antiJoinStrategy = getAntiJoinPlan(
+			connection, reference).getStrategy();
 
-		_executeCleanUp(connection, cleanupSqls);
-	}
+		long[] sampleRangeRows = new long[sampleRanges.size()];
+		long[] sampleRangeAffectedRows = new long[sampleRanges.size()];
 
-	public List<String> generateCleanupSentences(
-		Collection<MissingReferences> missingReferencesList) {
+		long sampleKeys = 0;
+		long sampleRows = 0;
 
-		List<String> cleanUpSentences = new ArrayList<>();
+		for (int i = 0; i < sampleRanges.size(); i++) {
+			long[] sampleRange = sampleRanges.get(i);
 
-		for (MissingReferences missingReferences : missingReferencesList) {
-			List<String> sqls = generateCleanupSentences(missingReferences);
+			String sampleCondition =
+				primaryKey + ">=" + sampleRange[0] + " AND " + primaryKey +
+					"<=" + sampleRange[1];
 
-			if (sqls.isEmpty()) {
-				continue;
+			if (StringUtils.isNotBlank(condition)) {
+				sampleCondition = "(" + condition + ") AND " + sampleCondition;
 			}
 
-			cleanUpSentences.add(
-				"/* " + String.valueOf(missingReferences.getReference()) +
-					" */");
+			sampleRangeRows[i] = TableUtil.countTable(
+				connection, originTable, sampleCondition);
 
-			for (String sql : sqls) {
-				cleanUpSentences.add(sql + ";");
+			if (sampleRangeRows[i] < 0) {
+				throw new SQLException(
+					"Unable to count the rows of " + reference);
 			}
-		}
-
-		return cleanUpSentences;
-	}
-
-	public List<String> generateSelectSentences(
-		Collection<MissingReferences> missingReferencesList) {
-
-		List<String> selectSentences = new ArrayList<>();
 
-		for (MissingReferences missingReferences : missingReferencesList) {
-			Collection<Object[]> values = missingReferences.getValues();
+			/* Only the number of rows is needed, the ignored values are
+			 * discarded the same way as in a full check */
+			if (sampleRangeRows[i] > 0) {
+				Query sampleOriginQuery = new Query(
+					originTable, originQuery.getColumns(),
+					originQuery.getCasting(), sampleCondition);
 
-			if (values == null) {
-				continue;
+				sampleRangeAffectedRows[i] = _querySQLInvalidValues(
+					connection, sampleOriginQuery, destinationQuery,
+					antiJoinStrategy, new LimitInvalidValuesSink(0), true);
 			}
 
-			Reference reference = missingReferences.getReference();
-
-			List<String> sqls = generateSelectSentences(
-				reference, values, true, "*", 2000);
+			sampleKeys += sampleRange[1] - sampleRange[0] + 1;
+			sampleRows += sampleRangeRows[i];
+		}
 
-			selectSentences.add("/* " + reference.toString() + " */");
+		/* The number of rows is the cached estimate of the table, or it is
+		 * scaled from the sample if only some rows are checked */
+		long rows;
 
-			for (String sql : sqls) {
-				selectSentences.add(sql + ";");
-			}
+		if (StringUtils.isBlank(condition)) {
+			rows = tableUtil.getRowCount(connection, originTable);
 		}
+		else {
+			long keys = primaryKeyRange[1] - primaryKeyRange[0] + 1;
 
-		return selectSentences;
-	}
-
-	public Configuration getConfiguration() {
-		return configuration;
-	}
+			rows = Math.round((double)sampleRows * keys / sampleKeys);
+		}
 
-	public long getIgnoreGreaterValues() {
-		return ignoreGreaterValues;
-	}
+		rows = Math.max(rows, sampleRows);
 
-	public long getIgnoreLowerValues() {
-		return ignoreLowerValues;
+		return new MissingReferencesEstimate(
+			reference, rows, sampleRangeRows, sampleRangeAffectedRows);
 	}
 
-	public Collection<Reference> getReferences(
-		Connection connection, boolean ignoreEmptyTables) {
-
-		if (referencesCache == null) {
-			referencesCache = calculateReferences(connection, false);
-		}
+	public List<MissingReferencesEstimate> estimateMissingReferences(
+		DataSource dataSource, Collection<Reference> references,
+		long sampleModulo, int parallelism) {
 
-		List<Reference> referencesList = new ArrayList<>();
+		ExecutorService executorService = executorFactory.newExecutorService(
+			parallelism);
 
-		for (Reference reference : referencesCache) {
-			Query destinationQuery = reference.getDestinationQuery();
+		List<EstimateMissingReferences> tasks = new ArrayList<>();
+		List<Future<MissingReferencesEstimate>> futures = new ArrayList<>();
 
-			if (destinationQuery == null) {
-				continue;
-			}
+		try {
+			for (Reference reference : references) {
+				if (reference.isRaw() ||
+					(reference.getDestinationQuery() == null)) {
 
-			if (ignoreEmptyTables) {
-				if (reference.isRaw()) {
 					continue;
 				}
 
-				Query originQuery = reference.getOriginQuery();
+				EstimateMissingReferences task = new EstimateMissingReferences(
+					dataSource, reference, sampleModulo);
 
-				Table originTable = originQuery.getTable();
+				tasks.add(task);
+				futures.add(executorService.submit(task));
+			}
 
-				String whereClause = originQuery.getCondition();
+			List<MissingReferencesEstimate> missingReferencesEstimates =
+				new ArrayList<>();
 
-				if (tableUtil.isTableEmpty(
-						connection, originTable, whereClause)) {
+			for (int i = 0; i < tasks.size(); i++) {
+				EstimateMissingReferences task = tasks.get(i);
+				Future<MissingReferencesEstimate> future = futures.get(i);
 
-					continue;
+				try {
+					missingReferencesEstimates.add(future.get());
+				}
+				catch (Throwable t) {
+					_log.error(
+						"EXCEPTION: " + t.getClass() + " - " + t.getMessage(),
+						t);
+
+					missingReferencesEstimates.add(
+						new MissingReferencesEstimate(task.reference, t));
 				}
 			}
 
-			referencesList.add(reference);
+			return missingReferencesEstimates;
 		}
+		finally {
+			executorService.shutdown();
 
-		return referencesList;
+			antiJoinPlanner.clear();
+		}
 	}
 
-	public boolean ignoreColumn(String tableName, String columnName) {
-		return tableUtil.ignoreColumn(tableName, columnName);
-	}
+	public List<MissingReferencesEstimate> estimateMissingReferences(
+			DataSource dataSource, long sampleModulo, int parallelism)
+		throws SQLException {
 
-	public boolean ignoreTable(String tableName) {
-		return tableUtil.ignoreTable(tableName);
-	}
+		Collection<Reference> references;
 
-	public void initModelUtil(Connection connection) throws SQLException {
-		initModelUtil(connection, new ModelUtilImpl());
-	}
+		Connection connection = null;
 
-	public void initModelUtil(Connection connection, ModelUtil modelUtil)
-		throws SQLException {
+		try {
+			connection = dataSource.getConnection();
 
-		Map<String, String> tableNameToClassNameMapping =
-			configuration.getTableToClassNameMapping();
+			references = calculateReferences(connection, true);
+		}
+		finally {
+			JDBCUtil.cleanUp(connection);
+		}
 
-		modelUtil.init(
-			connection, tableNameToClassNameMapping,
-			configuration.getTableRank());
+		return estimateMissingReferences(
+			dataSource, references, sampleModulo, parallelism);
+	}
 
-		this.modelUtil = modelUtil;
+	public List<MissingReferences> execute(Connection connection) {
+		Collection<Reference> references = calculateReferences(
+			connection, true);
+
+		return execute(connection, references);
 	}
 
-	public synchronized void initTableUtil(Connection connection)
-		throws SQLException {
+	public List<MissingReferences> execute(
+		Connection connection, Collection<Reference> references) {
 
-		List<String> ignoreColumns = configuration.getIgnoreColumns();
+		Map<String, long[]> tableStates = new HashMap<>();
 
-		List<String> ignoreTables = configuration.getIgnoreTables();
+		List<CreateMissingReferences> tasks = _createTasks(
+			connection, null, references, tableStates);
 
-		tableUtil = new TableUtil();
+		Runtime runtime = Runtime.getRuntime();
 
-		tableUtil.init(connection, ignoreColumns, ignoreTables, modelUtil);
-	}
+		List<MissingReferences> listMissingReferences = execute(
+			executorFactory.newExecutorService(runtime.availableProcessors()),
+			tasks);
 
-	public boolean isCheckUndefinedTables() {
-		return checkUndefinedTables;
-	}
+		_updateHighWaterMarks(tableStates, listMissingReferences);
 
-	public boolean isIgnoreNullValues() {
-		return ignoreNullValues;
+		return listMissingReferences;
 	}
 
-	public Collection<Object[]> queryInvalidValues(
-			Connection connection, Query originQuery, Query destinationQuery)
-		throws SQLException {
+	public List<MissingReferences> execute(
+		DataSource dataSource, Collection<Reference> references,
+		int parallelism) {
 
-		Set<Object[]> invalidValuesSet = new LinkedHashSet<>();
+		Map<String, long[]> tableStates = new HashMap<>();
 
-		PreparedStatement ps = null;
-		ResultSet rs = null;
+		List<CreateMissingReferences> tasks;
 
-		try {
-			String sql = getSQLSelect(originQuery, destinationQuery);
+		Connection connection = null;
 
-			if (_log.isInfoEnabled()) {
-				_log.info("SQL: " + sql);
-			}
+		try {
+			connection = dataSource.getConnection();
 
-			ps = connection.prepareStatement(sql);
+			tasks = _createTasks(
+				connection, dataSource, references, tableStates);
+		}
+		catch (SQLException sqlException) {
+			throw new RuntimeException(sqlException);
+		}
+		finally {
+			JDBCUtil.cleanUp(connection);
+		}
 
-			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+		List<MissingReferences> listMissingReferences = execute(
+			executorFactory.newExecutorService(parallelism), tasks);
 
-			rs = ps.executeQuery();
+		_updateHighWaterMarks(tableStates, listMissingReferences);
 
-			ResultSetMetaData rsmd = rs.getMetaData();
+		return listMissingReferences;
+	}
 
-			int columnsNumber = rsmd.getColumnCount();
+	public List<MissingReferences> execute(
+			DataSource dataSource, int parallelism)
+		throws SQLException {
 
-			while (rs.next()) {
-				Object[] result = new Object[columnsNumber];
+		Collection<Reference> references;
 
-				for (int i = 0; i < columnsNumber; i++) {
-					result[i] = rs.getObject(i + 1);
-				}
+		Connection connection = null;
 
-				if (_isValidValue(result)) {
-					continue;
-				}
+		try {
+			connection = dataSource.getConnection();
 
-				invalidValuesSet.add(result);
-			}
+			references = calculateReferences(connection, true);
 		}
 		finally {
-			JDBCUtil.cleanUp(ps, rs);
+			JDBCUtil.cleanUp(connection);
 		}
 
-		return invalidValuesSet;
-	}
-
-	public void reloadModelUtil(Connection connection) throws SQLException {
-		initModelUtil(connection, modelUtil);
+		return execute(dataSource, references, parallelism);
 	}
 
-	public void removeTables(Collection<String> tableNames) {
-		if (tableNames.isEmpty()) {
-			return;
-		}
+	public void executeCleanUp(
+			Connection connection, MissingReferences missingReferences)
+		throws SQLException {
 
-		tableUtil.removeTables(tableNames);
+		List<String> cleanupSqls = generateCleanupSentences(missingReferences);
 
-		referencesCache = null;
+		_executeCleanUp(connection, cleanupSqls);
 	}
 
-	public void setCheckUndefinedTables(boolean checkUndefinedTables) {
-		this.checkUndefinedTables = checkUndefinedTables;
-	}
+	/* Exports the key columns of the references to a KeySnapshot directory,
+	 * every key file is read once even if it is used by several references */
+	public KeySnapshot exportSnapshot(
+			DataSource dataSource, File directory, int parallelism)
+		throws IOException, SQLException {
 
-	public void setIgnoreGreaterValues(long ignoreGreaterValues) {
-		this.ignoreGreaterValues = ignoreGreaterValues;
-	}
+		Collection<Reference> references;
+		String fingerprint;
 
-	public void setIgnoreLowerValues(long ignoreLowerValues) {
-		this.ignoreLowerValues = ignoreLowerValues;
-	}
+		Connection connection = null;
 
-	public void setIgnoreNullValues(boolean ignoreNullValues) {
-		this.ignoreNullValues = ignoreNullValues;
-	}
+		try {
+			connection = dataSource.getConnection();
 
-	protected List<String> generateCleanupSentences(
-		MissingReferences missingReferences) {
+			references = calculateReferences(connection, true);
+			fingerprint = getFingerprint(connection, references);
+		}
+		finally {
+			JDBCUtil.cleanUp(connection);
+		}
 
-		Reference reference = missingReferences.getReference();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory " + directory);
+		}
 
-		Collection<Object[]> values = missingReferences.getValues();
+		SnapshotExporter snapshotExporter = new SnapshotExporter(dbType) {
 
-		String fixAction = reference.getFixAction();
+			@Override
+			protected boolean isIgnoredValue(Object[] value) {
+				return _isValidValue(value);
+			}
 
-		if (Objects.equals(fixAction, "delete")) {
-			return generateDeleteSentences(reference, values, 2000);
-		}
+		};
 
-		if (Objects.equals(fixAction, "update")) {
-			return generateUpdateSentences(reference, values, 2000);
-		}
+		KeySnapshot keySnapshot = new KeySnapshot(directory);
 
-		return Collections.emptyList();
-	}
+		Map<String, File> files = new HashMap<>();
+		Map<Reference, File[]> referenceFiles = new HashMap<>();
+		Map<Reference, ExportKeys[]> referenceTasks = new LinkedHashMap<>();
+		Map<String, ExportKeys> tasks = new LinkedHashMap<>();
 
-	protected String generateDeleteSentence(
-		Reference reference, Collection<Object[]> values) {
+		/* Invalid values are discarded by isIgnoredValue instead of the
+		 * query, so every origin query of a table and condition is exported
+		 * in the same scan */
+		for (Reference reference : references) {
+			if (reference.isRaw() ||
+				(reference.getDestinationQuery() == null)) {
 
-		Query originQuery = reference.getOriginQuery();
+				continue;
+			}
 
-		StringBuilder sb = new StringBuilder();
+			Query originQuery = reference.getOriginQuery();
+			Query destinationQuery = reference.getDestinationQuery();
 
-		sb.append(originQuery.getSQLDelete());
+			String originTableKey = snapshotExporter.getOriginTableKey(
+				originQuery);
 
-		sb.append(" AND (");
+			ExportKeys originTask = tasks.get(originTableKey);
 
-		_appendInClause(sb, originQuery, values);
+			if (originTask == null) {
+				originTask = new ExportKeys(dataSource, snapshotExporter, true);
 
-		sb.append(")");
+				tasks.put(originTableKey, originTask);
+			}
 
-		return SQLUtil.transform(dbType, sb.toString());
-	}
+			String originKey = snapshotExporter.getOriginKey(
+				originQuery, destinationQuery);
 
-	protected List<String> generateDeleteSentences(
-		Reference reference, Collection<Object[]> values, int batchSize) {
+			File originFile = files.get(originKey);
 
-		List<String> sentences = new ArrayList<>();
+			if (originFile == null) {
+				originFile = keySnapshot.getFile(
+					"origin-" + files.size() + ".keys");
 
-		List<Object[]> list = new ArrayList<>(values);
+				originTask.addQueries(
+					originQuery, destinationQuery, originFile);
 
-		List<List<Object[]>> sublists = ListUtils.partition(list, batchSize);
+				files.put(originKey, originFile);
+			}
 
-		for (List<Object[]> sublist : sublists) {
-			sentences.add(generateDeleteSentence(reference, sublist));
-		}
+			String destinationKey = snapshotExporter.getDestinationKey(
+				originQuery, destinationQuery);
 
-		return sentences;
-	}
+			ExportKeys destinationTask = tasks.get(destinationKey);
 
-	protected String generateSelectSentence(
-		Reference reference, Collection<Object[]> values, boolean distinct,
-		String columnsString) {
+			File destinationFile = files.get(destinationKey);
 
-		Query originQuery = reference.getOriginQuery();
+			if (destinationTask == null) {
+				destinationTask = new ExportKeys(
+					dataSource, snapshotExporter, false);
 
-		StringBuilder sb = new StringBuilder();
+				destinationFile = keySnapshot.getFile(
+					"destination-" + files.size() + ".keys");
 
-		sb.append(originQuery.getSQLSelect(distinct, columnsString));
+				destinationTask.addQueries(
+					originQuery, destinationQuery, destinationFile);
 
-		sb.append(" AND (");
+				files.put(destinationKey, destinationFile);
+				tasks.put(destinationKey, destinationTask);
+			}
 
-		_appendInClause(sb, originQuery, values);
+			referenceFiles.put(
+				reference, new File[] {originFile, destinationFile});
+			referenceTasks.put(
+				reference, new ExportKeys[] {originTask, destinationTask});
+		}
 
-		sb.append(")");
+		ExecutorService executorService = executorFactory.newExecutorService(
+			parallelism);
 
-		return SQLUtil.transform(dbType, sb.toString());
-	}
+		Map<ExportKeys, Future<Void>> futures = new HashMap<>();
 
-	protected List<String> generateSelectSentences(
-		Reference reference, Collection<Object[]> values, boolean distinct,
-		String columnsString, int batchSize) {
+		try {
+			for (ExportKeys task : tasks.values()) {
+				futures.put(task, executorService.submit(task));
+			}
 
-		List<String> sentences = new ArrayList<>();
+			for (Map.Entry<Reference, ExportKeys[]> entry :
+					referenceTasks.entrySet()) {
 
-		List<Object[]> list = new ArrayList<>(values);
+				Reference reference = entry.getKey();
+				ExportKeys[] exportKeys = entry.getValue();
 
-		List<List<Object[]>> sublists = ListUtils.partition(list, batchSize);
+				try {
+					futures.get(exportKeys[0]).get();
+					futures.get(exportKeys[1]).get();
+				}
+				catch (Throwable t) {
+					_log.error(
+						"Unable to export the keys of " + reference + ": " +
+							t.getMessage(),
+						t);
 
-		for (List<Object[]> sublist : sublists) {
-			sentences.add(
-				generateSelectSentence(
-					reference, sublist, distinct, columnsString));
+					continue;
+				}
+
+				File[] exportedFiles = referenceFiles.get(reference);
+
+				keySnapshot.addReference(
+					reference, exportedFiles[0].getName(),
+					exportedFiles[1].getName());
+			}
+		}
+		finally {
+			executorService.shutdown();
 		}
 
-		return sentences;
-	}
+		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
-	protected String generateUpdateSentence(
-		Reference reference, Collection<Object[]> values) {
+		keySnapshot.store(dateFormat.format(new Date()), dbType, fingerprint);
 
-		Query originQuery = reference.getOriginQuery();
+		return keySnapshot;
+	}
 
-		StringBuilder sb = new StringBuilder();
+	public List<String> generateCleanupSentences(
+		Collection<MissingReferences> missingReferencesList) {
 
-		sb.append(originQuery.getSQLUpdateToNull());
+		List<String> cleanUpSentences = new ArrayList<>();
 
-		sb.append(" AND (");
+		for (MissingReferences missingReferences : missingReferencesList) {
+			List<String> sqls = generateCleanupSentences(missingReferences);
 
-		_appendInClause(sb, originQuery, values);
+			if (sqls.isEmpty()) {
+				continue;
+			}
 
-		sb.append(")");
+			cleanUpSentences.add(
+				"/* " + String.valueOf(missingReferences.getReference()) +
+					" */");
 
-		return SQLUtil.transform(dbType, sb.toString());
+			for (String sql : sqls) {
+				cleanUpSentences.add(sql + ";");
+			}
+		}
+
+		return cleanUpSentences;
 	}
 
-	protected List<String> generateUpdateSentences(
-		Reference reference, Collection<Object[]> values, int batchSize) {
+	public List<String> generateSelectSentences(
+		Collection<MissingReferences> missingReferencesList) {
 
-		List<String> sentences = new ArrayList<>();
+		List<String> selectSentences = new ArrayList<>();
 
-		List<Object[]> list = new ArrayList<>(values);
+		for (MissingReferences missingReferences : missingReferencesList) {
+			Collection<Object[]> values = missingReferences.getValues();
 
-		List<List<Object[]>> sublists = ListUtils.partition(list, batchSize);
+			if (values == null) {
+				continue;
+			}
 
-		for (List<Object[]> sublist : sublists) {
-			sentences.add(generateUpdateSentence(reference, sublist));
-		}
+			Reference reference = missingReferences.getReference();
 
-		return sentences;
-	}
+			List<String> sqls;
 
-	protected Configuration getConfiguration(Connection connection)
-		throws IOException {
+			if (missingReferences.isComplete()) {
+				sqls = generateSelectSentences(
+					reference, values, true, "*", 2000);
+			}
+			else {
+				String sql = _getAntiJoinSentence(reference, "selectRows");
 
-		long liferayBuildNumber = getLiferayBuildNumber(connection);
+				if (sql == null) {
+					continue;
+				}
 
-		if (liferayBuildNumber == 0) {
-			_log.warn("Liferay build number could not be retrieved");
+				sqls = Collections.singletonList(sql);
+			}
 
-			return null;
+			selectSentences.add("/* " + reference.toString() + " */");
+
+			for (String sql : sqls) {
+				selectSentences.add(sql + ";");
+			}
 		}
 
-		if (_log.isInfoEnabled()) {
-			_log.info("Liferay build number: " + liferayBuildNumber);
+		return selectSentences;
+	}
+
+	public AntiJoinPlan getAntiJoinPlan(
+		Connection connection, Reference reference) {
+
+		String engineName = _getCheckEngine(reference);
+
+		if (!CHECK_ENGINE_SQL.equals(engineName)) {
+			return new AntiJoinPlan(
+				AntiJoinPlan.STRATEGY_CLIENT, engineName + " check engine");
 		}
 
-		long liferayVersion = liferayBuildNumber / 100;
+		if (planAntiJoins ||
+			StringUtils.isNotBlank(reference.getAntiJoinStrategy())) {
 
-		String versionSuffix = String.valueOf(liferayVersion);
+			return antiJoinPlanner.plan(connection, reference);
+		}
 
-		Class<?> clazz = getClass();
+		return antiJoinPlanner.getDefaultPlan();
+	}
 
-		return ConfigurationUtil.readConfigurationFile(
-			clazz.getClassLoader(), versionSuffix);
+	public AntiJoinPlanner getAntiJoinPlanner() {
+		return antiJoinPlanner;
 	}
 
-	protected String getSQLDelete(Query originQuery, Query destinationQuery) {
-		return _getSQL(originQuery, destinationQuery, "delete");
+	public String getCheckEngine() {
+		return checkEngine;
 	}
 
-	protected String getSQLSelect(Query originQuery, Query destinationQuery) {
-		return _getSQL(originQuery, destinationQuery, "select");
+	public CheckpointJournal getCheckpointJournal() {
+		return checkpointJournal;
 	}
 
-	protected String getSQLSelectCount(
-		Query originQuery, Query destinationQuery) {
+	public CheckScheduler getCheckScheduler() {
+		return checkScheduler;
+	}
 
-		return _getSQL(originQuery, destinationQuery, "count");
+	public int getChunkConcurrency() {
+		return chunkConcurrency;
 	}
 
-	protected long queryCount(
-			Connection connection, Reference reference,
-			Collection<Object[]> invalidValues)
-		throws SQLException {
+	public long getChunkSize() {
+		return chunkSize;
+	}
 
-		PreparedStatement ps = null;
-		ResultSet rs = null;
+	public Configuration getConfiguration() {
+		return configuration;
+	}
 
-		try {
-			Query originQuery = reference.getOriginQuery();
+	public ExecutorFactory getExecutorFactory() {
+		return executorFactory;
+	}
 
-			Table originTable = originQuery.getTable();
+	/* Identifies the schema, the configuration and the check options of the
+	 * database, results calculated with other fingerprint are not reused */
+	public String getFingerprint(Connection connection) {
+		return getFingerprint(connection, getReferences(connection, false));
+	}
 
-			String key = "*";
+	/* Same as the previous one from the references already calculated, the
+	 * fingerprint changes if the references to check change */
+	public String getFingerprint(
+		Connection connection, Collection<Reference> references) {
 
-			if (!originTable.hasCompoundPrimKey()) {
-				key = originTable.getPrimaryKey();
-			}
+		List<String> referenceKeys = new ArrayList<>();
 
-			String attributesSqlCount = " COUNT(" + key + ")";
+		for (Reference reference : references) {
+			referenceKeys.add(reference + "#" + reference.getFixAction());
+		}
 
-			List<String> sqlCounts = generateSelectSentences(
-				reference, invalidValues, false, attributesSqlCount, 2000);
+		Collections.sort(referenceKeys);
 
-			int count = 0;
+		StringBuilder sb = new StringBuilder();
 
-			for (String sqlCount : sqlCounts) {
-				if (_log.isDebugEnabled()) {
-					_log.debug("SQL count: " + sqlCount);
-				}
+		sb.append(dbType);
+		sb.append("|");
+		sb.append(getLiferayBuildNumber(connection));
+		sb.append("|");
+		sb.append(ignoreNullValues);
+		sb.append("|");
+		sb.append(ignoreLowerValues);
+		sb.append("|");
+		sb.append(ignoreGreaterValues);
+		sb.append("|");
+		sb.append(existenceOnly);
+		sb.append("|");
+		sb.append(summaryLimit);
+
+		for (String referenceKey : referenceKeys) {
+			sb.append("|");
+			sb.append(referenceKey);
+		}
 
-				ps = connection.prepareStatement(sqlCount);
+		return _toSHA1(sb.toString());
+	}
 
-				ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+	public HighWaterMarks getHighWaterMarks() {
+		return highWaterMarks;
+	}
 
-				rs = ps.executeQuery();
+	public long getIgnoreGreaterValues() {
+		return ignoreGreaterValues;
+	}
 
-				while (rs.next()) {
-					count += rs.getLong(1);
-				}
-			}
+	public long getIgnoreLowerValues() {
+		return ignoreLowerValues;
+	}
 
-			return count;
-		}
-		catch (SQLException sqlException) {
-			_log.warn(sqlException);
-		}
-		finally {
-			JDBCUtil.cleanUp(ps, rs);
-		}
+	public KeySetCache getKeySetCache() {
+		return keySetCache;
+	}
 
-		return -1;
+	public MissingReferencesSink getMissingReferencesSink() {
+		return missingReferencesSink;
 	}
 
-	protected boolean checkUndefinedTables = false;
-	protected Configuration configuration;
-	protected String dbType;
-	protected long ignoreGreaterValues = Long.MAX_VALUE;
-	protected long ignoreLowerValues = Long.MIN_VALUE;
-	protected boolean ignoreNullValues = true;
-	protected ModelUtil modelUtil;
-	protected Collection<Reference> referencesCache = null;
-	protected TableUtil tableUtil;
+	public Collection<Reference> getReferences(
+		Connection connection, boolean ignoreEmptyTables) {
 
-	protected class CreateMissingReferences
-		implements Callable<MissingReferences> {
+		if (referencesCache == null) {
+			referencesCache = calculateReferences(connection, false);
+		}
 
-		public CreateMissingReferences(
-			Connection connection, Reference reference) {
+		if (ignoreEmptyTables) {
+			List<Query> originQueries = new ArrayList<>();
 
-			this.connection = connection;
-			this.reference = reference;
-		}
+			for (Reference reference : referencesCache) {
+				if (!reference.isRaw() &&
+					(reference.getDestinationQuery() != null)) {
 
-		@Override
-		public MissingReferences call() {
-			try {
-				if (_log.isInfoEnabled()) {
-					_log.info("Processing: " + reference);
+					originQueries.add(reference.getOriginQuery());
 				}
+			}
 
-				if (reference.isRaw()) {
-					return null;
-				}
+			tableUtil.probeEmptyQueries(connection, originQueries);
+		}
 
-				Query destinationQuery = reference.getDestinationQuery();
+		List<Reference> referencesList = new ArrayList<>();
 
-				if (destinationQuery == null) {
-					return null;
-				}
+		for (Reference reference : referencesCache) {
+			Query destinationQuery = reference.getDestinationQuery();
 
-				Collection<Object[]> invalidValues = queryInvalidValues(
-					connection, reference.getOriginQuery(), destinationQuery);
+			if (destinationQuery == null) {
+				continue;
+			}
 
-				if (invalidValues.isEmpty()) {
-					return null;
+			if (ignoreEmptyTables) {
+				if (reference.isRaw()) {
+					continue;
 				}
 
-				long affectedRows = queryCount(
-					connection, reference, invalidValues);
+				Query originQuery = reference.getOriginQuery();
 
-				return new MissingReferences(
-					reference, invalidValues, affectedRows);
-			}
-			catch (Throwable t) {
-				_log.error(
-					"EXCEPTION: " + t.getClass() + " - " + t.getMessage(), t);
+				Table originTable = originQuery.getTable();
+
+				String whereClause = originQuery.getCondition();
+
+				if (tableUtil.isTableEmpty(
+						connection, originTable, whereClause)) {
+
+					continue;
+				}
+			}
+
+			referencesList.add(reference);
+		}
+
+		return referencesList;
+	}
+
+	/* Maximum id of the Counter and of each table in the primary database and
+	 * in the replica. Missing values between both maximums may be caused by
+	 * the replication lag instead of being orphans */
+	public Map<String, long[]> getReplicaLag(
+		Connection primaryConnection, Connection replicaConnection,
+		Collection<Table> tables) {
+
+		Map<String, long[]> replicaLag = new TreeMap<>();
+
+		replicaLag.put(
+			"Counter",
+			new long[] {
+				getLiferayMaxCounter(primaryConnection),
+				getLiferayMaxCounter(replicaConnection)
+			});
+
+		for (Table table : tables) {
+			if (!_isNumericPrimaryKey(table)) {
+				continue;
+			}
+
+			try {
+				long[] primaryRange = _queryPrimaryKeyRange(
+					primaryConnection, table);
+				long[] replicaRange = _queryPrimaryKeyRange(
+					replicaConnection, table);
+
+				long[] maxIds = {0, 0};
+
+				if (primaryRange != null) {
+					maxIds[0] = primaryRange[1];
+				}
+
+				if (replicaRange != null) {
+					maxIds[1] = replicaRange[1];
+				}
+
+				replicaLag.put(table.getTableName(), maxIds);
+			}
+			catch (SQLException sqlException) {
+				_log.warn(
+					"Unable to get the replica lag of " + table + ": " +
+						sqlException.getMessage());
+			}
+		}
+
+		return replicaLag;
+	}
+
+	public int getSummaryLimit() {
+		return summaryLimit;
+	}
+
+	public File getTableCacheFile() {
+		return tableCacheFile;
+	}
+
+	public TableUtil getTableUtil() {
+		return tableUtil;
+	}
+
+	public boolean ignoreColumn(String tableName, String columnName) {
+		return tableUtil.ignoreColumn(tableName, columnName);
+	}
+
+	public boolean ignoreTable(String tableName) {
+		return tableUtil.ignoreTable(tableName);
+	}
+
+	public void initModelUtil(Connection connection) throws SQLException {
+		initModelUtil(connection, new ModelUtilImpl());
+	}
+
+	public void initModelUtil(Connection connection, ModelUtil modelUtil)
+		throws SQLException {
+
+		Map<String, String> tableNameToClassNameMapping =
+			configuration.getTableToClassNameMapping();
+
+		modelUtil.init(
+			connection, tableNameToClassNameMapping,
+			configuration.getTableRank());
+
+		this.modelUtil = modelUtil;
+	}
+
+	public synchronized void initTableUtil(Connection connection)
+		throws SQLException {
+
+		List<String> ignoreColumns = configuration.getIgnoreColumns();
+
+		List<String> ignoreTables = configuration.getIgnoreTables();
+
+		TableCache tableCache = null;
+
+		if (tableCacheFile != null) {
+			StringBuilder sb = new StringBuilder();
+
+			sb.append(dbType);
+			sb.append("|");
+			sb.append(getLiferayBuildNumber(connection));
+			sb.append("|");
+			sb.append(ignoreColumns);
+			sb.append("|");
+			sb.append(ignoreTables);
+
+			tableCache = new TableCache(tableCacheFile, _toSHA1(sb.toString()));
+		}
+
+		tableUtil = new TableUtil();
+
+		tableUtil.init(
+			connection, ignoreColumns, ignoreTables, modelUtil, tableCache);
+
+		TableStatistics tableStatistics = tableUtil.getTableStatistics();
+
+		antiJoinPlanner.setTableStatistics(tableStatistics);
+
+		CheckEngine checkEngine = checkEngines.get(CHECK_ENGINE_HASH);
+
+		if (checkEngine instanceof HashCheckEngine) {
+			HashCheckEngine hashCheckEngine = (HashCheckEngine)checkEngine;
+
+			hashCheckEngine.setTableStatistics(tableStatistics);
+		}
+	}
+
+	public boolean isCheckUndefinedTables() {
+		return checkUndefinedTables;
+	}
+
+	public boolean isExistenceOnly() {
+		return existenceOnly;
+	}
+
+	public boolean isFuseOriginScans() {
+		return fuseOriginScans;
+	}
+
+	public boolean isIgnoreNullValues() {
+		return ignoreNullValues;
+	}
+
+	public boolean isLongestFirst() {
+		return longestFirst;
+	}
+
+	public boolean isPlanAntiJoins() {
+		return planAntiJoins;
+	}
+
+	public boolean isSinglePassCount() {
+		return singlePassCount;
+	}
+
+	/* Returns the first invalid value of the reference, null if there are
+	 * none. The ignored values are discarded in the query, so the database
+	 * can stop at the first orphan row */
+	public Object[] queryFirstInvalidValue(
+			Connection connection, Reference reference)
+		throws SQLException {
+
+		Query originQuery = reference.getOriginQuery();
+		Query destinationQuery = reference.getDestinationQuery();
+
+		Query probeOriginQuery = _getInvalidValuesQuery(originQuery);
+
+		if (probeOriginQuery == null) {
+			return null;
+		}
+
+		int rows = 1;
+
+		if (!_hasNumericColumns(originQuery)) {
+			rows = _EXISTENCE_PROBE_ROWS;
+		}
+
+		String sql = SQLUtil.transform(
+			dbType,
+			_getSQLNotExists(probeOriginQuery, destinationQuery, "selectAll"));
+
+		sql = SQLUtil.getLimit(dbType, sql, rows);
+
+		if (_log.isDebugEnabled()) {
+			_log.debug("SQL probe: " + sql);
+		}
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		int count = 0;
+
+		try {
+			ps = connection.prepareStatement(sql);
+
+			ps.setMaxRows(rows);
+			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+			rs = ps.executeQuery();
+
+			int columnCount = rs.getMetaData().getColumnCount();
+
+			while (rs.next()) {
+				Object[] result = new Object[columnCount];
+
+				for (int i = 0; i < columnCount; i++) {
+					result[i] = rs.getObject(i + 1);
+				}
+
+				if (!_isValidValue(result)) {
+					return result;
+				}
+
+				count++;
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		if (count < rows) {
+			return null;
+		}
+
+		/* All the probed rows had ignored values, check the whole table */
+		InvalidValuesSink invalidValuesSink = new LimitInvalidValuesSink(1);
+
+		queryInvalidValues(
+			connection, originQuery, destinationQuery,
+			AntiJoinPlan.STRATEGY_NOT_EXISTS, invalidValuesSink);
+
+		for (Object[] value : invalidValuesSink.getValues()) {
+			return value;
+		}
+
+		return null;
+	}
+
+	public Collection<Object[]> queryInvalidValues(
+			Connection connection, Query originQuery, Query destinationQuery)
+		throws SQLException {
+
+		return queryInvalidValues(
+			connection, originQuery, destinationQuery,
+			antiJoinPlanner.getDefaultStrategy());
+	}
+
+	public Collection<Object[]> queryInvalidValues(
+			Connection connection, Query originQuery, Query destinationQuery,
+			String antiJoinStrategy)
+		throws SQLException {
+
+		InvalidValuesSink invalidValuesSink = new CollectionInvalidValuesSink();
+
+		queryInvalidValues(
+			connection, originQuery, destinationQuery, antiJoinStrategy,
+			invalidValuesSink);
+
+		return invalidValuesSink.getValues();
+	}
+
+	/* Returns the number of origin rows with invalid values if they were
+	 * counted in the same query, -1 otherwise */
+	public long queryInvalidValues(
+			Connection connection, Query originQuery, Query destinationQuery,
+			String antiJoinStrategy, InvalidValuesSink invalidValuesSink)
+		throws SQLException {
+
+		return _querySQLInvalidValues(
+			connection, originQuery, destinationQuery, antiJoinStrategy,
+			invalidValuesSink, singlePassCount);
+	}
+
+	public Collection<Object[]> queryInvalidValues(
+			Connection connection, Reference reference)
+		throws SQLException {
+
+		return queryInvalidValues(
+			connection, reference, getAntiJoinPlan(connection, reference));
+	}
+
+	public Collection<Object[]> queryInvalidValues(
+			Connection connection, Reference reference,
+			AntiJoinPlan antiJoinPlan)
+		throws SQLException {
+
+		InvalidValuesSink invalidValuesSink = new CollectionInvalidValuesSink();
+
+		queryInvalidValues(
+			connection, null, null, reference, antiJoinPlan,
+			invalidValuesSink);
+
+		return invalidValuesSink.getValues();
+	}
+
+	/* Origin tables whose primary key range is bigger than the chunk size
+	 * are checked by primary key ranges, in parallel if there are a data
+	 * source to get the connections from and a chunk executor service.
+	 * Returns the number of origin rows with invalid values if they were
+	 * counted, -1 otherwise */
+	public long queryInvalidValues(
+			Connection connection, DataSource dataSource,
+			ExecutorService chunkExecutorService, Reference reference,
+			AntiJoinPlan antiJoinPlan, InvalidValuesSink invalidValuesSink)
+		throws SQLException {
+
+		Query originQuery = reference.getOriginQuery();
+		Query destinationQuery = reference.getDestinationQuery();
+
+		String engineName = _getCheckEngine(reference);
+		String strategy = antiJoinPlan.getStrategy();
+
+		if (CHECK_ENGINE_SQL.equals(engineName) &&
+			AntiJoinPlan.STRATEGY_CLIENT.equals(strategy)) {
+
+			engineName = CHECK_ENGINE_HASH;
+		}
+
+		List<Query> chunkQueries = getChunkQueries(connection, originQuery);
+
+		if (chunkQueries.size() == 1) {
+			return _queryInvalidValues(
+				connection, engineName, chunkQueries.get(0), destinationQuery,
+				strategy, invalidValuesSink);
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info(
+				"Checking " + reference + " in " + chunkQueries.size() +
+					" chunks");
+		}
+
+		/* The same value can be found in several chunks */
+		invalidValuesSink = _getDistinctInvalidValuesSink(invalidValuesSink);
+
+		long affectedRows = 0;
+
+		if ((dataSource == null) || (chunkExecutorService == null)) {
+			for (Query chunkQuery : chunkQueries) {
+				affectedRows = _sumAffectedRows(
+					affectedRows,
+					_queryInvalidValues(
+						connection, engineName, chunkQuery, destinationQuery,
+						strategy, invalidValuesSink));
+			}
+
+			return affectedRows;
+		}
+
+		List<Future<Long>> futures = new ArrayList<>();
+
+		try {
+			for (Query chunkQuery : chunkQueries) {
+				CheckChunk checkChunk = new CheckChunk(
+					dataSource, engineName, chunkQuery, destinationQuery,
+					strategy, invalidValuesSink);
+
+				futures.add(chunkExecutorService.submit(checkChunk));
+			}
+
+			for (Future<Long> future : futures) {
+				affectedRows = _sumAffectedRows(affectedRows, future.get());
+			}
+
+			return affectedRows;
+		}
+		catch (ExecutionException executionException) {
+			Throwable cause = executionException.getCause();
+
+			if (cause instanceof SQLException) {
+				throw (SQLException)cause;
+			}
+
+			throw new RuntimeException(cause);
+		}
+		catch (InterruptedException interruptedException) {
+			Thread currentThread = Thread.currentThread();
+
+			currentThread.interrupt();
+
+			throw new RuntimeException(interruptedException);
+		}
+		finally {
+			for (Future<Long> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/* Checks all the references of the list with a single scan of their
+	 * origin table, all of them must share the origin table and condition */
+	public Map<Reference, Collection<Object[]>> queryInvalidValues(
+			Connection connection, List<Reference> references)
+		throws SQLException {
+
+		return queryInvalidValues(connection, references, null);
+	}
+
+	/* Same as the previous one, if single pass count is enabled the number of
+	 * origin rows with invalid values of each reference is put in the
+	 * affected rows map */
+	public Map<Reference, Collection<Object[]>> queryInvalidValues(
+			Connection connection, List<Reference> references,
+			Map<Reference, Long> affectedRowsMap)
+		throws SQLException {
+
+		Map<Reference, InvalidValuesSink> invalidValuesSinks =
+			new LinkedHashMap<>();
+
+		for (Reference reference : references) {
+			invalidValuesSinks.put(
+				reference, new CollectionInvalidValuesSink());
+		}
+
+		queryInvalidValues(
+			connection, references, invalidValuesSinks, affectedRowsMap);
+
+		Map<Reference, Collection<Object[]>> invalidValuesMap =
+			new LinkedHashMap<>();
+
+		for (Map.Entry<Reference, InvalidValuesSink> entry :
+				invalidValuesSinks.entrySet()) {
+
+			InvalidValuesSink invalidValuesSink = entry.getValue();
+
+			invalidValuesMap.put(
+				entry.getKey(), invalidValuesSink.getValues());
+		}
+
+		return invalidValuesMap;
+	}
+
+	/* Same as the previous one, the invalid values of each reference are
+	 * streamed into its sink of the invalid values sinks map */
+	public void queryInvalidValues(
+			Connection connection, List<Reference> references,
+			Map<Reference, InvalidValuesSink> invalidValuesSinks,
+			Map<Reference, Long> affectedRowsMap)
+		throws SQLException {
+
+		boolean countRows = singlePassCount && (affectedRowsMap != null);
+
+		Reference firstReference = references.get(0);
+
+		Query firstOriginQuery = firstReference.getOriginQuery();
+
+		String tableAlias = firstOriginQuery.getTableAlias();
+
+		List<String> columns = new ArrayList<>();
+		List<int[]> columnsPositions = new ArrayList<>();
+
+		for (Reference reference : references) {
+			Query originQuery = reference.getOriginQuery();
+
+			List<String> originColumns = originQuery.getColumns();
+
+			int[] columnPositions = new int[originColumns.size()];
+
+			for (int i = 0; i < originColumns.size(); i++) {
+				String column = StringUtils.lowerCase(originColumns.get(i));
+
+				int pos = columns.indexOf(column);
+
+				if (pos == -1) {
+					pos = columns.size();
+
+					columns.add(column);
+				}
+
+				columnPositions[i] = pos;
+			}
+
+			columnsPositions.add(columnPositions);
+		}
+
+		/* The same value of a reference can be read in several rows */
+		List<InvalidValuesSink> invalidValuesSinksList = new ArrayList<>();
+
+		for (Reference reference : references) {
+			invalidValuesSinksList.add(
+				_getDistinctInvalidValuesSink(
+					invalidValuesSinks.get(reference)));
+		}
+
+		long[] affectedRows = new long[references.size()];
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			String sql = _getSQLFused(
+				references, columns, tableAlias, countRows);
+
+			if (_log.isInfoEnabled()) {
+				_log.info("SQL: " + sql);
+			}
+
+			ps = connection.prepareStatement(sql);
+
+			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				Object[] row = new Object[columns.size()];
+
+				for (int i = 0; i < columns.size(); i++) {
+					row[i] = rs.getObject(i + 1);
+				}
+
+				long rows = 0;
+
+				if (countRows) {
+					rows = rs.getLong(columns.size() + references.size() + 1);
+				}
+
+				for (int i = 0; i < references.size(); i++) {
+					if (rs.getInt(columns.size() + i + 1) == 0) {
+						continue;
+					}
+
+					int[] columnPositions = columnsPositions.get(i);
+
+					Object[] result = new Object[columnPositions.length];
+
+					for (int j = 0; j < columnPositions.length; j++) {
+						result[j] = row[columnPositions[j]];
+					}
+
+					if (_isValidValue(result)) {
+						continue;
+					}
+
+					InvalidValuesSink invalidValuesSink =
+						invalidValuesSinksList.get(i);
+
+					invalidValuesSink.add(result);
+
+					affectedRows[i] += rows;
+				}
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		if (countRows) {
+			for (int i = 0; i < references.size(); i++) {
+				affectedRowsMap.put(references.get(i), affectedRows[i]);
+			}
+		}
+	}
+
+	/* Counts the missing values and the affected rows in the database and
+	 * fetches only the first limit values, null if there are no missing
+	 * references */
+	public MissingReferences queryMissingReferencesSummary(
+			Connection connection, Reference reference,
+			String antiJoinStrategy, int limit)
+		throws SQLException {
+
+		Query originQuery = reference.getOriginQuery();
+		Query destinationQuery = reference.getDestinationQuery();
+
+		Query invalidValuesQuery = _getInvalidValuesQuery(originQuery);
+
+		if (invalidValuesQuery == null) {
+			return null;
+		}
+
+		antiJoinStrategy = _getDatabaseStrategy(antiJoinStrategy);
+
+		if (!_hasNumericColumns(originQuery)) {
+
+			/* Ignored values can not be discarded by the database, they are
+			 * grouped and discarded by the checker */
+
+			InvalidValuesSink invalidValuesSink = new LimitInvalidValuesSink(
+				limit);
+
+			long affectedRows = _querySQLInvalidValues(
+				connection, invalidValuesQuery, destinationQuery,
+				antiJoinStrategy, invalidValuesSink, true);
+
+			if (invalidValuesSink.getCount() == 0) {
+				return null;
+			}
+
+			return new MissingReferences(
+				reference, invalidValuesSink, affectedRows);
+		}
+
+		String sqlCount =
+			"SELECT COUNT(*),SUM(rc_count) FROM (" +
+				_getSQLGrouped(
+					invalidValuesQuery, destinationQuery, antiJoinStrategy) +
+						") rc_summary";
+
+		if (_log.isDebugEnabled()) {
+			_log.debug("SQL summary: " + sqlCount);
+		}
+
+		long valuesCount = 0;
+		long affectedRows = 0;
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = connection.prepareStatement(sqlCount);
+
+			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+			rs = ps.executeQuery();
+
+			if (rs.next()) {
+				valuesCount = rs.getLong(1);
+				affectedRows = rs.getLong(2);
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		if (valuesCount == 0) {
+			return null;
+		}
+
+		InvalidValues invalidValues = new InvalidValues();
+
+		if (limit <= 0) {
+			return new MissingReferences(
+				reference, invalidValues, valuesCount, affectedRows);
+		}
+
+		String sql = SQLUtil.getLimit(
+			dbType,
+			_getSQL(
+				invalidValuesQuery, destinationQuery, "select",
+				antiJoinStrategy),
+			limit);
+
+		if (_log.isDebugEnabled()) {
+			_log.debug("SQL summary values: " + sql);
+		}
+
+		try {
+			ps = connection.prepareStatement(sql);
+
+			ps.setMaxRows(limit);
+			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+			rs = ps.executeQuery();
+
+			int columnCount = rs.getMetaData().getColumnCount();
+
+			while (rs.next()) {
+				Object[] result = new Object[columnCount];
+
+				for (int i = 0; i < columnCount; i++) {
+					result[i] = rs.getObject(i + 1);
+				}
+
+				invalidValues.add(result);
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		return new MissingReferences(
+			reference, invalidValues, valuesCount, affectedRows);
+	}
+
+	public void reloadModelUtil(Connection connection) throws SQLException {
+		initModelUtil(connection, modelUtil);
+	}
+
+	public void removeTables(Collection<String> tableNames) {
+		if (tableNames.isEmpty()) {
+			return;
+		}
+
+		tableUtil.removeTables(tableNames);
+
+		referencesCache = null;
+	}
+
+	public void setCheckEngine(String checkEngine) {
+		this.checkEngine = checkEngine;
+	}
+
+	public void setCheckpointJournal(CheckpointJournal checkpointJournal) {
+		this.checkpointJournal = checkpointJournal;
+	}
+
+	public void setCheckUndefinedTables(boolean checkUndefinedTables) {
+		this.checkUndefinedTables = checkUndefinedTables;
+	}
+
+	public void setChunkConcurrency(int chunkConcurrency) {
+		this.chunkConcurrency = chunkConcurrency;
+	}
+
+	public void setChunkSize(long chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public void setExecutorFactory(ExecutorFactory executorFactory) {
+		this.executorFactory = executorFactory;
+	}
+
+	public void setExistenceOnly(boolean existenceOnly) {
+		this.existenceOnly = existenceOnly;
+	}
+
+	public void setFuseOriginScans(boolean fuseOriginScans) {
+		this.fuseOriginScans = fuseOriginScans;
+	}
+
+	public void setHighWaterMarks(HighWaterMarks highWaterMarks) {
+		this.highWaterMarks = highWaterMarks;
+	}
+
+	public void setIgnoreGreaterValues(long ignoreGreaterValues) {
+		this.ignoreGreaterValues = ignoreGreaterValues;
+	}
+
+	public void setIgnoreLowerValues(long ignoreLowerValues) {
+		this.ignoreLowerValues = ignoreLowerValues;
+	}
+
+	public void setIgnoreNullValues(boolean ignoreNullValues) {
+		this.ignoreNullValues = ignoreNullValues;
+	}
+
+	public void setLongestFirst(boolean longestFirst) {
+		this.longestFirst = longestFirst;
+	}
+
+	public void setMissingReferencesSink(
+		MissingReferencesSink missingReferencesSink) {
+
+		this.missingReferencesSink = missingReferencesSink;
+	}
+
+	public void setPlanAntiJoins(boolean planAntiJoins) {
+		this.planAntiJoins = planAntiJoins;
+	}
+
+	public void setSinglePassCount(boolean singlePassCount) {
+		this.singlePassCount = singlePassCount;
+	}
+
+	public void setSummaryLimit(int summaryLimit) {
+		this.summaryLimit = summaryLimit;
+	}
+
+	public void setTableCacheFile(File tableCacheFile) {
+		this.tableCacheFile = tableCacheFile;
+	}
+
+	/* Missing references found in a read replica are queried again in the
+	 * verify data source, usually the primary database, before they are
+	 * returned, stored in the checkpoint journal or streamed */
+	public void setVerifyDataSource(DataSource verifyDataSource) {
+		this.verifyDataSource = verifyDataSource;
+	}
+
+	/* Values found in a lagging replica can be rows not replicated yet, only
+	 * the values that are still missing in the given connection are kept.
+	 * Returns null if none of them is missing */
+	public MissingReferences verifyMissingReferences(
+			Connection connection, MissingReferences missingReferences)
+		throws SQLException {
+
+		Collection<Object[]> values = missingReferences.getValues();
+
+		if ((missingReferences.getThrowable() != null) || (values == null) ||
+			values.isEmpty()) {
+
+			return missingReferences;
+		}
+
+		Reference reference = missingReferences.getReference();
+
+		Query originQuery = reference.getOriginQuery();
+
+		String condition = originQuery.getCondition();
+
+		/* The values are few, client plans are verified in the database */
+		String antiJoinStrategy = _getDatabaseStrategy(
+			getAntiJoinPlan(connection, reference).getStrategy());
+
+		List<Object[]> verifiedValues = new ArrayList<>();
+
+		for (List<Object[]> sublist :
+				ListUtils.partition(new ArrayList<>(values), 2000)) {
+
+			StringBuilder sb = new StringBuilder();
+
+			if ((condition != null) && !condition.isEmpty()) {
+				sb.append("(");
+				sb.append(condition);
+				sb.append(") AND ");
+			}
+
+			sb.append("(");
+
+			_appendInClause(sb, originQuery, sublist);
+
+			sb.append(")");
+
+			Query verifyQuery = new Query(
+				originQuery.getTable(), originQuery.getColumns(),
+				originQuery.getCasting(), sb.toString());
+
+			verifiedValues.addAll(
+				queryInvalidValues(
+					connection, verifyQuery, reference.getDestinationQuery(),
+					antiJoinStrategy));
+		}
+
+		if (verifiedValues.size() == values.size()) {
+			return missingReferences;
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info(
+				(values.size() - verifiedValues.size()) + " values of " +
+					reference + " were not replicated yet");
+		}
+
+		if (verifiedValues.isEmpty() && missingReferences.isComplete()) {
+			return null;
+		}
+
+		long valuesCount = missingReferences.getValuesCount();
+
+		if (valuesCount >= 0) {
+			valuesCount -= values.size() - verifiedValues.size();
+		}
+
+		long affectedRows = missingReferences.getAffectedRows();
+
+		if (missingReferences.isComplete() && (affectedRows >= 0)) {
+			affectedRows = queryCount(connection, reference, verifiedValues);
+		}
+
+		MissingReferences verifiedMissingReferences = new MissingReferences(
+			reference, verifiedValues, valuesCount, affectedRows);
+
+		verifiedMissingReferences.setPlan(
+			missingReferences.getPlan(), missingReferences.getPlanReason());
+
+		return verifiedMissingReferences;
+	}
+
+	protected InvalidValuesSink createInvalidValuesSink(Reference reference) {
+		if (missingReferencesSink == null) {
+			return new CollectionInvalidValuesSink();
+		}
+
+		return missingReferencesSink.createInvalidValuesSink(reference);
+	}
+
+	protected List<MissingReferences> execute(
+		ExecutorService executorService, List<CreateMissingReferences> tasks) {
+
+		Map<CreateMissingReferences, Future<List<MissingReferences>>> futures =
+			new HashMap<>();
+
+		/* Each execution has its own chunk executor service, as several
+		 * executions can run at the same time */
+		ExecutorService chunkExecutorService = null;
+
+		if (chunkSize > 0) {
+			chunkExecutorService = executorFactory.newExecutorService(
+				chunkConcurrency);
+
+			for (CreateMissingReferences task : tasks) {
+				task.chunkExecutorService = chunkExecutorService;
+			}
+		}
+
+		/* Longest checks are submitted first, results are still collected in
+		 * the references order */
+		List<CreateMissingReferences> sortedTasks = new ArrayList<>(tasks);
+
+		Collections.sort(
+			sortedTasks,
+			new Comparator<CreateMissingReferences>() {
+
+				@Override
+				public int compare(
+					CreateMissingReferences task1,
+					CreateMissingReferences task2) {
+
+					return Long.compare(
+						task2.estimatedTime, task1.estimatedTime);
+				}
+
+			});
+
+		keySetCache.acquire();
+
+		try {
+			for (CreateMissingReferences task : sortedTasks) {
+				futures.put(task, executorService.submit(task));
+			}
+
+			List<MissingReferences> listMissingReferences = new ArrayList<>();
+
+			for (CreateMissingReferences task : tasks) {
+				Future<List<MissingReferences>> future = futures.get(task);
+
+				List<MissingReferences> taskMissingReferences =
+					new ArrayList<>();
+
+				try {
+					taskMissingReferences.addAll(future.get());
+
+					if (_log.isInfoEnabled()) {
+						for (Reference reference : task.references) {
+							_log.info(
+								"Processed: " + reference + " in " +
+									checkScheduler.getTime(reference) +
+										" ms, estimated " +
+											checkScheduler.getEstimatedTime(
+												reference) + " ms");
+						}
+					}
+				}
+				catch (Throwable t) {
+					_log.error(
+						"EXCEPTION: " + t.getClass() + " - " + t.getMessage(),
+						t);
+
+					for (Reference reference : task.references) {
+						taskMissingReferences.add(
+							new MissingReferences(reference, t));
+					}
+				}
+
+				listMissingReferences.addAll(taskMissingReferences);
+
+				_addMissingReferences(taskMissingReferences);
+			}
+
+			return listMissingReferences;
+		}
+		finally {
+			executorService.shutdown();
+
+			if (chunkExecutorService != null) {
+				chunkExecutorService.shutdown();
+			}
+
+			if (_log.isInfoEnabled()) {
+				_log.info(keySetCache);
+			}
+
+			/* Cached key sets and statistics are only valid during one
+			 * execution, other executions may still use the key sets */
+			antiJoinPlanner.clear();
+			keySetCache.release();
+		}
+	}
+
+	protected List<String> generateCleanupSentences(
+		MissingReferences missingReferences) {
+
+		Reference reference = missingReferences.getReference();
+
+		Collection<Object[]> values = missingReferences.getValues();
+
+		String fixAction = reference.getFixAction();
+
+		/* Values not kept in memory are fixed with an anti-join sentence */
+		if (!missingReferences.isComplete() &&
+			(Objects.equals(fixAction, "delete") ||
+			 Objects.equals(fixAction, "update"))) {
+
+			String sql = _getAntiJoinSentence(reference, fixAction);
+
+			if (sql == null) {
+				return Collections.emptyList();
+			}
+
+			return Collections.singletonList(sql);
+		}
+
+		if (Objects.equals(fixAction, "delete")) {
+			return generateDeleteSentences(reference, values, 2000);
+		}
+
+		if (Objects.equals(fixAction, "update")) {
+			return generateUpdateSentences(reference, values, 2000);
+		}
+
+		return Collections.emptyList();
+	}
+
+	protected String generateDeleteSentence(
+		Reference reference, Collection<Object[]> values) {
+
+		Query originQuery = reference.getOriginQuery();
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(originQuery.getSQLDelete());
+
+		sb.append(" AND (");
+
+		_appendInClause(sb, originQuery, values);
+
+		sb.append(")");
+
+		return SQLUtil.transform(dbType, sb.toString());
+	}
+
+	protected List<String> generateDeleteSentences(
+		Reference reference, Collection<Object[]> values, int batchSize) {
+
+		List<String> sentences = new ArrayList<>();
+
+		List<Object[]> list = new ArrayList<>(values);
+
+		List<List<Object[]>> sublists = ListUtils.partition(list, batchSize);
+
+		for (List<Object[]> sublist : sublists) {
+			sentences.add(generateDeleteSentence(reference, sublist));
+		}
+
+		return sentences;
+	}
+
+	protected String generateSelectSentence(
+		Reference reference, Collection<Object[]> values, boolean distinct,
+		String columnsString) {
+
+		Query originQuery = reference.getOriginQuery();
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(originQuery.getSQLSelect(distinct, columnsString));
+
+		sb.append(" AND (");
+
+		_appendInClause(sb, originQuery, values);
+
+		sb.append(")");
+
+		return SQLUtil.transform(dbType, sb.toString());
+	}
+
+	protected List<String> generateSelectSentences(
+		Reference reference, Collection<Object[]> values, boolean distinct,
+		String columnsString, int batchSize) {
+
+		List<String> sentences = new ArrayList<>();
+
+		List<Object[]> list = new ArrayList<>(values);
+
+		List<List<Object[]>> sublists = ListUtils.partition(list, batchSize);
+
+		for (List<Object[]> sublist : sublists) {
+			sentences.add(
+				generateSelectSentence(
+					reference, sublist, distinct, columnsString));
+		}
+
+		return sentences;
+	}
+
+	protected String generateUpdateSentence(
+		Reference reference, Collection<Object[]> values) {
+
+		Query originQuery = reference.getOriginQuery();
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(originQuery.getSQLUpdateToNull());
+
+		sb.append(" AND (");
+
+		_appendInClause(sb, originQuery, values);
+
+		sb.append(")");
+
+		return SQLUtil.transform(dbType, sb.toString());
+	}
+
+	protected List<String> generateUpdateSentences(
+		Reference reference, Collection<Object[]> values, int batchSize) {
+
+		List<String> sentences = new ArrayList<>();
+
+		List<Object[]> list = new ArrayList<>(values);
+
+		List<List<Object[]>> sublists = ListUtils.partition(list, batchSize);
+
+		for (List<Object[]> sublist : sublists) {
+			sentences.add(generateUpdateSentence(reference, sublist));
+		}
+
+		return sentences;
+	}
+
+	/* Splits the origin query in primary key ranges of chunkSize values, the
+	 * last range has no upper limit to include the rows inserted during the
+	 * check */
+	protected List<Query> getChunkQueries(
+			Connection connection, Query originQuery)
+		throws SQLException {
+
+		Table originTable = originQuery.getTable();
+
+		String primaryKey = originTable.getPrimaryKey();
+
+		if ((chunkSize <= 0) || !_isNumericPrimaryKey(originTable)) {
+			return Collections.singletonList(originQuery);
+		}
+
+		long[] primaryKeyRange = _queryPrimaryKeyRange(
+			connection, originTable);
+
+		if ((primaryKeyRange == null) ||
+			((primaryKeyRange[1] - primaryKeyRange[0]) < chunkSize)) {
+
+			return Collections.singletonList(originQuery);
+		}
+
+		String condition = originQuery.getCondition();
+
+		if (StringUtils.isBlank(condition)) {
+			condition = StringUtils.EMPTY;
+		}
+		else {
+			condition = "(" + condition + ") AND ";
+		}
+
+		List<Query> chunkQueries = new ArrayList<>();
+
+		long start = primaryKeyRange[0];
+
+		while ((primaryKeyRange[1] - start) >= chunkSize) {
+			chunkQueries.add(
+				new Query(
+					originTable, originQuery.getColumns(),
+					originQuery.getCasting(),
+					condition + primaryKey + ">=" + start + " AND " +
+						primaryKey + "<" + (start + chunkSize)));
+
+			start += chunkSize;
+		}
+
+		chunkQueries.add(
+			new Query(
+				originTable, originQuery.getColumns(), originQuery.getCasting(),
+				condition + primaryKey + ">=" + start));
+
+		return chunkQueries;
+	}
+
+	protected Configuration getConfiguration(Connection connection)
+		throws IOException {
+
+		long liferayBuildNumber = getLiferayBuildNumber(connection);
+
+		if (liferayBuildNumber == 0) {
+			_log.warn("Liferay build number could not be retrieved");
+
+			return null;
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info("Liferay build number: " + liferayBuildNumber);
+		}
+
+		long liferayVersion = liferayBuildNumber / 100;
+
+		String versionSuffix = String.valueOf(liferayVersion);
+
+		Class<?> clazz = getClass();
+
+		return ConfigurationUtil.readConfigurationFile(
+			clazz.getClassLoader(), versionSuffix);
+	}
+
+	protected String getSQLDelete(Query originQuery, Query destinationQuery) {
+		return _getSQL(originQuery, destinationQuery, "delete");
+	}
+
+	/* Select of the invalid values with the table aliases replaced and the
+	 * spaces normalized, references with the same fingerprint always have the
+	 * same missing values */
+	protected String getSQLFingerprint(Reference reference) {
+		Query originQuery = reference.getOriginQuery();
+		Query destinationQuery = reference.getDestinationQuery();
+
+		String sql = _getSQLNotExists(originQuery, destinationQuery, "select");
+
+		sql = StringUtils.replace(
+			sql, originQuery.getTableAlias(), "rc_origin");
+		sql = StringUtils.replace(
+			sql, destinationQuery.getTableAlias(), "rc_destination");
+
+		return StringUtils.lowerCase(StringUtils.normalizeSpace(sql));
+	}
+
+	protected String getSQLSelect(Query originQuery, Query destinationQuery) {
+		return _getSQL(originQuery, destinationQuery, "select");
+	}
+
+	protected String getSQLSelect(
+		Query originQuery, Query destinationQuery, String antiJoinStrategy) {
+
+		return _getSQL(
+			originQuery, destinationQuery, "select", antiJoinStrategy);
+	}
+
+	protected String getSQLSelectCount(
+		Query originQuery, Query destinationQuery) {
+
+		return _getSQL(originQuery, destinationQuery, "count");
+	}
+
+	protected Collection<List<Reference>> groupReferences(
+		Collection<Reference> references) {
+
+		List<List<Reference>> referencesGroups = new ArrayList<>();
+
+		Map<String, List<Reference>> fusedReferencesGroups = new HashMap<>();
+
+		for (Reference reference : references) {
+			if (!fuseOriginScans || reference.isRaw() ||
+				(reference.getDestinationQuery() == null) ||
+				!CHECK_ENGINE_SQL.equals(_getCheckEngine(reference))) {
+
+				List<Reference> referencesGroup = new ArrayList<>();
+
+				referencesGroup.add(reference);
+
+				referencesGroups.add(referencesGroup);
+
+				continue;
+			}
+
+			Query originQuery = reference.getOriginQuery();
+
+			Table originTable = originQuery.getTable();
+
+			String key =
+				originTable.getTableNameLowerCase() + "[" +
+					originQuery.getCondition() + "]";
+
+			List<Reference> referencesGroup = fusedReferencesGroups.get(key);
+
+			if (referencesGroup == null) {
+				referencesGroup = new ArrayList<>();
+
+				fusedReferencesGroups.put(key, referencesGroup);
+				referencesGroups.add(referencesGroup);
+			}
+
+			referencesGroup.add(reference);
+		}
+
+		return referencesGroups;
+	}
+
+	/* Counts the rows with invalid values without listing them, used when
+	 * only some of the values were kept */
+	protected long queryCount(Connection connection, Reference reference) {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			String sqlCount = _getSQL(
+				reference.getOriginQuery(), reference.getDestinationQuery(),
+				"countRows");
+
+			if (_log.isDebugEnabled()) {
+				_log.debug("SQL count: " + sqlCount);
+			}
+
+			ps = connection.prepareStatement(sqlCount);
+
+			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+			rs = ps.executeQuery();
+
+			if (rs.next()) {
+				return rs.getLong(1);
+			}
+		}
+		catch (SQLException sqlException) {
+			_log.warn(sqlException);
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		return -1;
+	}
+
+	protected long queryCount(
+			Connection connection, Reference reference,
+			Collection<Object[]> invalidValues)
+		throws SQLException {
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			Query originQuery = reference.getOriginQuery();
+
+			Table originTable = originQuery.getTable();
+
+			String key = "*";
+
+			if (!originTable.hasCompoundPrimKey()) {
+				key = originTable.getPrimaryKey();
+			}
+
+			String attributesSqlCount = " COUNT(" + key + ")";
+
+			List<String> sqlCounts = generateSelectSentences(
+				reference, invalidValues, false, attributesSqlCount, 2000);
+
+			int count = 0;
+
+			for (String sqlCount : sqlCounts) {
+				if (_log.isDebugEnabled()) {
+					_log.debug("SQL count: " + sqlCount);
+				}
+
+				ps = connection.prepareStatement(sqlCount);
+
+				ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+				rs = ps.executeQuery();
+
+				while (rs.next()) {
+					count += rs.getLong(1);
+				}
+			}
+
+			return count;
+		}
+		catch (SQLException sqlException) {
+			_log.warn(sqlException);
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		return -1;
+	}
+
+	protected AntiJoinPlanner antiJoinPlanner;
+	protected String checkEngine = CHECK_ENGINE_SQL;
+	protected Map<String, CheckEngine> checkEngines = new ConcurrentHashMap<>();
+	protected CheckpointJournal checkpointJournal;
+	protected CheckScheduler checkScheduler;
+	protected boolean checkUndefinedTables = false;
+	protected int chunkConcurrency;
+	protected long chunkSize = 0;
+	protected Configuration configuration;
+	protected String dbType;
+	protected ExecutorFactory executorFactory = new ForkJoinExecutorFactory();
+	protected boolean existenceOnly = false;
+	protected boolean fuseOriginScans = false;
+	protected HighWaterMarks highWaterMarks;
+	protected long ignoreGreaterValues = Long.MAX_VALUE;
+	protected long ignoreLowerValues = Long.MIN_VALUE;
+	protected boolean ignoreNullValues = true;
+	protected KeySetCache keySetCache;
+	protected boolean longestFirst = false;
+	protected MissingReferencesSink missingReferencesSink;
+	protected ModelUtil modelUtil;
+	protected boolean planAntiJoins = false;
+	protected Collection<Reference> referencesCache = null;
+	protected boolean singlePassCount = false;
+	protected int summaryLimit = -1;
+	protected File tableCacheFile;
+	protected TableUtil tableUtil;
+	protected DataSource verifyDataSource;
+
+	/* Invalid values are streamed into the sink shared by all the chunks of
+	 * the reference, returns the number of origin rows with invalid values
+	 * if they were counted, -1 otherwise */
+	protected class CheckChunk implements Callable<Long> {
+
+		public CheckChunk(
+			DataSource dataSource, String engineName, Query originQuery,
+			Query destinationQuery, String antiJoinStrategy,
+			InvalidValuesSink invalidValuesSink) {
+
+			this.dataSource = dataSource;
+			this.engineName = engineName;
+			this.originQuery = originQuery;
+			this.destinationQuery = destinationQuery;
+			this.antiJoinStrategy = antiJoinStrategy;
+			this.invalidValuesSink = invalidValuesSink;
+		}
+
+		@Override
+		public Long call() throws SQLException {
+			Connection connection = null;
+
+			try {
+				connection = dataSource.getConnection();
+
+				return _queryInvalidValues(
+					connection, engineName, originQuery, destinationQuery,
+					antiJoinStrategy, invalidValuesSink);
+			}
+			finally {
+				JDBCUtil.cleanUp(connection);
+			}
+		}
+
+		protected String antiJoinStrategy;
+		protected DataSource dataSource;
+		protected Query destinationQuery;
+		protected String engineName;
+		protected InvalidValuesSink invalidValuesSink;
+		protected Query originQuery;
+
+	}
+
+	protected class CreateMissingReferences
+		implements Callable<List<MissingReferences>> {
+
+		public CreateMissingReferences(
+			Connection connection, List<Reference> references) {
+
+			this.connection = connection;
+			this.references = references;
+		}
+
+		public CreateMissingReferences(
+			Connection connection, Reference reference) {
+
+			this(connection, Collections.singletonList(reference));
+		}
+
+		public CreateMissingReferences(
+			DataSource dataSource, List<Reference> references) {
+
+			this.dataSource = dataSource;
+			this.references = references;
+		}
+
+		public CreateMissingReferences(
+			DataSource dataSource, Reference reference) {
+
+			this(dataSource, Collections.singletonList(reference));
+		}
+
+		@Override
+		public List<MissingReferences> call() {
+			long startTime = System.currentTimeMillis();
+
+			List<Reference> checkReferences = new ArrayList<>();
+			List<MissingReferences> restoredMissingReferences =
+				new ArrayList<>();
+
+			for (Reference reference : references) {
+				if (_log.isInfoEnabled()) {
+					_log.info("Processing: " + reference);
+				}
+
+				if (reference.isRaw() ||
+					(reference.getDestinationQuery() == null)) {
+
+					continue;
+				}
+
+				if ((checkpointJournal != null) &&
+					checkpointJournal.contains(reference)) {
+
+					MissingReferences missingReferences = checkpointJournal.get(
+						reference);
+
+					if (missingReferences != null) {
+						restoredMissingReferences.add(missingReferences);
+					}
+
+					continue;
+				}
+
+				checkReferences.add(reference);
+			}
+
+			if (checkReferences.isEmpty()) {
+				return addDuplicateMissingReferences(restoredMissingReferences);
+			}
+
+			List<MissingReferences> listMissingReferences = new ArrayList<>();
+
+			AntiJoinPlan antiJoinPlan = new AntiJoinPlan(
+				AntiJoinPlan.STRATEGY_FUSED,
+				"origin scan shared by " + checkReferences.size() +
+					" references");
+
+			Connection connection = this.connection;
+
+			try {
+				if (dataSource != null) {
+					connection = dataSource.getConnection();
+				}
+
+				Map<Reference, Long> affectedRowsMap = new HashMap<>();
+				Map<Reference, InvalidValuesSink> invalidValuesSinks =
+					new LinkedHashMap<>();
+
+				if (existenceOnly) {
+					antiJoinPlan = new AntiJoinPlan(
+						AntiJoinPlan.STRATEGY_NOT_EXISTS,
+						"existence probe stopped at the first orphan row");
+
+					/* The number of missing references is unknown, only
+					 * the first one found is returned */
+					for (Reference reference : checkReferences) {
+						Object[] invalidValue = queryFirstInvalidValue(
+							connection, reference);
+
+						if (invalidValue == null) {
+							continue;
+						}
+
+						InvalidValues invalidValues = new InvalidValues();
+
+						invalidValues.add(invalidValue);
+
+						MissingReferences missingReferences =
+							new MissingReferences(
+								reference, invalidValues, -1, -1);
+
+						missingReferences.setPlan(
+							antiJoinPlan.getStrategy(),
+							antiJoinPlan.getReason());
+
+						listMissingReferences.add(missingReferences);
+					}
+				}
+				else if (summaryLimit >= 0) {
+					for (Reference reference : checkReferences) {
+						antiJoinPlan = getAntiJoinPlan(connection, reference);
+
+						MissingReferences missingReferences =
+							queryMissingReferencesSummary(
+								connection, reference,
+								antiJoinPlan.getStrategy(), summaryLimit);
+
+						if (missingReferences == null) {
+							continue;
+						}
+
+						missingReferences.setPlan(
+							antiJoinPlan.getStrategy(),
+							antiJoinPlan.getReason());
+
+						listMissingReferences.add(missingReferences);
+					}
+				}
+				else if (checkReferences.size() == 1) {
+					Reference reference = checkReferences.get(0);
+
+					antiJoinPlan = getAntiJoinPlan(connection, reference);
+
+					if (_log.isInfoEnabled()) {
+						_log.info("Plan of " + reference + ": " + antiJoinPlan);
+					}
+
+					InvalidValuesSink invalidValuesSink =
+						createInvalidValuesSink(reference);
+
+					long referenceAffectedRows = queryInvalidValues(
+						connection, dataSource, chunkExecutorService,
+						reference, antiJoinPlan, invalidValuesSink);
+
+					invalidValuesSinks.put(reference, invalidValuesSink);
+
+					if (referenceAffectedRows >= 0) {
+						affectedRowsMap.put(reference, referenceAffectedRows);
+					}
+				}
+				else {
+					for (Reference reference : checkReferences) {
+						invalidValuesSinks.put(
+							reference, createInvalidValuesSink(reference));
+					}
+
+					queryInvalidValues(
+						connection, checkReferences, invalidValuesSinks,
+						affectedRowsMap);
+				}
+
+				for (Map.Entry<Reference, InvalidValuesSink> entry :
+						invalidValuesSinks.entrySet()) {
+
+					Reference reference = entry.getKey();
+					InvalidValuesSink invalidValuesSink = entry.getValue();
+
+					if (invalidValuesSink.getCount() == 0) {
+						continue;
+					}
+
+					Collection<Object[]> invalidValues =
+						invalidValuesSink.getValues();
+
+					long valuesCount = invalidValuesSink.getCount();
+					Long affectedRows = affectedRowsMap.get(reference);
+
+					/* Once the sink stops keeping the values, a value found in
+					 * several chunks or rows of the shared origin scan is
+					 * counted again, the values are counted in the database
+					 * like in summary mode */
+					if ((invalidValues.size() < valuesCount) &&
+						_isCheckedInParts(
+							connection, checkReferences, reference)) {
+
+						MissingReferences summaryMissingReferences =
+							queryMissingReferencesSummary(
+								connection, reference,
+								getAntiJoinPlan(
+									connection, reference).getStrategy(),
+								0);
+
+						if (summaryMissingReferences != null) {
+							valuesCount =
+								summaryMissingReferences.getValuesCount();
+						}
+					}
+
+					/* Not counted by the anti-join query */
+					if (affectedRows == null) {
+						if (invalidValues.size() ==
+								invalidValuesSink.getCount()) {
+
+							affectedRows = queryCount(
+								connection, reference, invalidValues);
+						}
+						else {
+							affectedRows = queryCount(connection, reference);
+						}
+					}
+
+					MissingReferences missingReferences = new MissingReferences(
+						reference, invalidValues, valuesCount, affectedRows);
+
+					missingReferences.setPlan(
+						antiJoinPlan.getStrategy(), antiJoinPlan.getReason());
+
+					listMissingReferences.add(missingReferences);
+				}
+
+				if (verifyDataSource != null) {
+					listMissingReferences = _verifyMissingReferences(
+						listMissingReferences);
+				}
+
+				if (checkpointJournal != null) {
+					_addCheckpoints(checkReferences, listMissingReferences);
+				}
+			}
+			catch (Throwable t) {
+				_log.error(
+					"EXCEPTION: " + t.getClass() + " - " + t.getMessage(), t);
+
+				listMissingReferences.clear();
+
+				for (Reference reference : checkReferences) {
+					MissingReferences missingReferences = new MissingReferences(
+						reference, t);
+
+					missingReferences.setPlan(
+						antiJoinPlan.getStrategy(), antiJoinPlan.getReason());
+
+					listMissingReferences.add(missingReferences);
+				}
+			}
+			finally {
+				if (dataSource != null) {
+					JDBCUtil.cleanUp(connection);
+				}
+			}
+
+			checkScheduler.setTime(
+				checkReferences, System.currentTimeMillis() - startTime);
+
+			listMissingReferences.addAll(restoredMissingReferences);
+
+			return addDuplicateMissingReferences(listMissingReferences);
+		}
+
+		/* The references with the same query as a checked one get a copy of
+		 * its result */
+		protected List<MissingReferences> addDuplicateMissingReferences(
+			List<MissingReferences> listMissingReferences) {
+
+			if ((duplicateReferences == null) ||
+				duplicateReferences.isEmpty()) {
+
+				return listMissingReferences;
+			}
+
+			List<MissingReferences> duplicateMissingReferences =
+				new ArrayList<>();
+
+			for (MissingReferences missingReferences : listMissingReferences) {
+				List<Reference> duplicates = duplicateReferences.get(
+					missingReferences.getReference());
+
+				if (duplicates == null) {
+					continue;
+				}
+
+				for (Reference duplicate : duplicates) {
+					duplicateMissingReferences.add(
+						_copyMissingReferences(missingReferences, duplicate));
+				}
+			}
+
+			listMissingReferences.addAll(duplicateMissingReferences);
+
+			return listMissingReferences;
+		}
+
+		protected ExecutorService chunkExecutorService;
+		protected Connection connection;
+		protected DataSource dataSource;
+		protected Map<Reference, List<Reference>> duplicateReferences;
+		protected long estimatedTime = -1;
+		protected List<Reference> references;
+
+	}
+
+	protected class EstimateMissingReferences
+		implements Callable<MissingReferencesEstimate> {
+
+		public EstimateMissingReferences(
+			DataSource dataSource, Reference reference, long sampleModulo) {
+
+			this.dataSource = dataSource;
+			this.reference = reference;
+			this.sampleModulo = sampleModulo;
+		}
+
+		@Override
+		public MissingReferencesEstimate call() {
+			if (_log.isInfoEnabled()) {
+				_log.info("Estimating: " + reference);
+			}
+
+			Connection connection = null;
+
+			try {
+				connection = dataSource.getConnection();
+
+				return estimateMissingReferences(
+					connection, reference, sampleModulo);
+			}
+			catch (Throwable t) {
+				_log.error(
+					"EXCEPTION: " + t.getClass() + " - " + t.getMessage(), t);
+
+				return new MissingReferencesEstimate(reference, t);
+			}
+			finally {
+				JDBCUtil.cleanUp(connection);
+			}
+		}
+
+		protected DataSource dataSource;
+		protected Reference reference;
+		protected long sampleModulo;
+
+	}
+
+	protected class ExportKeys implements Callable<Void> {
+
+		public ExportKeys(
+			DataSource dataSource, SnapshotExporter snapshotExporter,
+			boolean origin) {
+
+			this.dataSource = dataSource;
+			this.snapshotExporter = snapshotExporter;
+			this.origin = origin;
+		}
+
+		/* Origin tasks export several queries of the same table in a single
+		 * scan, destination tasks only one */
+		public void addQueries(
+			Query originQuery, Query destinationQuery, File file) {
+
+			queries.add(new Query[] {originQuery, destinationQuery});
+			files.add(file);
+		}
+
+		@Override
+		public Void call() throws IOException, SQLException {
+			Connection connection = null;
+
+			try {
+				connection = dataSource.getConnection();
+
+				if (origin) {
+					snapshotExporter.exportOriginKeys(
+						connection, queries, files);
+				}
+				else {
+					Query[] referenceQueries = queries.get(0);
+
+					snapshotExporter.exportDestinationKeys(
+						connection, referenceQueries[0], referenceQueries[1],
+						files.get(0));
+				}
+
+				return null;
+			}
+			finally {
+				JDBCUtil.cleanUp(connection);
+			}
+		}
+
+		protected DataSource dataSource;
+		protected List<File> files = new ArrayList<>();
+		protected boolean origin;
+		protected List<Query[]> queries = new ArrayList<>();
+		protected SnapshotExporter snapshotExporter;
+
+	}
+
+	private void _addCheckpoints(
+		List<Reference> references,
+		List<MissingReferences> listMissingReferences) {
+
+		Map<Reference, MissingReferences> missingReferencesMap =
+			new HashMap<>();
+
+		for (MissingReferences missingReferences : listMissingReferences) {
+			missingReferencesMap.put(
+				missingReferences.getReference(), missingReferences);
+		}
+
+		for (Reference reference : references) {
+			try {
+				checkpointJournal.add(
+					reference, missingReferencesMap.get(reference));
+			}
+			catch (IOException ioException) {
+				_log.error(
+					"EXCEPTION: " + ioException.getClass() + " - " +
+						ioException.getMessage(),
+					ioException);
+			}
+		}
+	}
+
+	private void _addMissingReferences(
+		List<MissingReferences> listMissingReferences) {
+
+		if (missingReferencesSink == null) {
+			return;
+		}
+
+		for (MissingReferences missingReferences : listMissingReferences) {
+			try {
+				missingReferencesSink.addMissingReferences(missingReferences);
+			}
+			catch (IOException ioException) {
+				_log.error(
+					"Error adding missing references of " +
+						missingReferences.getReference() + ": " +
+							ioException.getMessage(),
+					ioException);
+			}
+		}
+	}
+
+	private void _appendInClause(
+		StringBuilder sb, List<String> columns, Collection<Object[]> rows) {
+
+		sb.append("(");
+		sb.append(StringUtils.join(columns, ","));
+		sb.append(") IN (");
+
+		boolean first = true;
+
+		for (Object[] row : rows) {
+			if (!first) {
+				sb.append(",");
+			}
+
+			first = false;
+
+			if (row.length == 1) {
+				sb.append(_castValue(row[0]));
+
+				continue;
+			}
+
+			sb.append("(");
+
+			for (int i = 0; i < row.length; i++) {
+				if (i > 0) {
+					sb.append(",");
+				}
+
+				sb.append(_castValue(row[i]));
+			}
+
+			sb.append(")");
+		}
+
+		sb.append(")");
+	}
+
+	private void _appendInClause(
+		StringBuilder sb, Query query, Collection<Object[]> values) {
+
+		List<Object[]> rows = new ArrayList<>(values);
+
+		List<String> columns = query.getColumns();
+
+		/* Split in sublists of 1000 elements as Oracle doesn't support
+		 * bigger IN clauses */
+		List<List<Object[]>> sublists = ListUtils.partition(rows, 1000);
+
+		boolean first = true;
+
+		for (List<Object[]> sublist : sublists) {
+			if (!first) {
+				sb.append(" OR ");
+			}
+
+			_appendInClause(sb, columns, sublist);
+
+			first = false;
+		}
+	}
+
+	/* NOT IN never returns rows with null values, the other strategies must
+	 * do the same in the databases that use NOT IN by default */
+	private void _appendNotNullCondition(
+		StringBuilder sb, List<String> columns) {
+
+		if (SQLUtil.isNotExistsPreferred(dbType)) {
+			return;
+		}
+
+		for (String column : columns) {
+			sb.append(" AND ");
+			sb.append(column);
+			sb.append(" IS NOT NULL");
+		}
+	}
+
+	private String _castValue(Object value) {
+		if (value instanceof Number) {
+			return value.toString();
+		}
+
+		if ((value instanceof String) &&
+			StringUtils.equalsIgnoreCase("null", (String)value)) {
+
+			return "NULL";
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("'");
+		sb.append(value);
+		sb.append("'");
+
+		return sb.toString();
+	}
+
+	private void _executeCleanUp(
+			Connection connection, List<String> cleanupSqls)
+		throws SQLException {
+
+		for (String cleanupSql : cleanupSqls) {
+			if (_log.isDebugEnabled()) {
+				_log.debug("Cleanup sql: " + cleanupSql);
+			}
+
+			PreparedStatement ps = null;
+
+			try {
+				ps = connection.prepareStatement(cleanupSql);
+
+				ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+				int rows = ps.executeUpdate();
+
+				if (_log.isDebugEnabled()) {
+					_log.debug("Procesed " + rows + " rows");
+				}
+			}
+			catch (SQLException sqlException) {
+				_log.error(
+					"SQL: " + cleanupSql + " - EXCEPTION: " +
+						sqlException.getMessage(),
+					sqlException);
+
+				throw sqlException;
+			}
+			finally {
+				JDBCUtil.cleanUp(ps);
+			}
+		}
+	}
+
+	private MissingReferences _copyMissingReferences(
+		MissingReferences missingReferences, Reference reference) {
+
+		MissingReferences copy;
+
+		if (missingReferences.getThrowable() != null) {
+			copy = new MissingReferences(
+				reference, missingReferences.getThrowable());
+		}
+		else {
+			copy = new MissingReferences(
+				reference, missingReferences.getValues(),
+				missingReferences.getValuesCount(),
+				missingReferences.getAffectedRows());
+		}
+
+		copy.setPlan(
+			missingReferences.getPlan(),
+			"same query as " + missingReferences.getReference());
+
+		return copy;
+	}
+
+	/* Each worker borrows its own connection from the dataSource, so the
+	 * dataSource pool size should be at least the parallelism value. Without
+	 * dataSource all the workers share the connection */
+	private List<CreateMissingReferences> _createTasks(
+		Connection connection, DataSource dataSource,
+		Collection<Reference> references, Map<String, long[]> tableStates) {
+
+		if (highWaterMarks != null) {
+			references = _getIncrementalReferences(
+				connection, references, tableStates);
+		}
+
+		Map<Reference, List<Reference>> duplicateReferences =
+			new IdentityHashMap<>();
+
+		references = _deduplicateReferences(references, duplicateReferences);
+
+		List<CreateMissingReferences> tasks = new ArrayList<>();
+
+		for (List<Reference> referencesGroup : groupReferences(references)) {
+			CreateMissingReferences task;
+
+			if (dataSource == null) {
+				task = new CreateMissingReferences(connection, referencesGroup);
+			}
+			else {
+				task = new CreateMissingReferences(dataSource, referencesGroup);
+			}
+
+			task.duplicateReferences = duplicateReferences;
+
+			tasks.add(task);
+		}
+
+		checkScheduler.clear();
+
+		if (longestFirst) {
+			_estimateTimes(connection, tasks);
+		}
+
+		return tasks;
+	}
+
+	/* Keeps one reference of each SQL fingerprint, the other ones are added
+	 * to duplicateReferences and get a copy of its result */
+	private List<Reference> _deduplicateReferences(
+		Collection<Reference> references,
+		Map<Reference, List<Reference>> duplicateReferences) {
+
+		Map<String, Reference> fingerprintReferences = new HashMap<>();
+
+		List<Reference> uniqueReferences = new ArrayList<>();
+
+		for (Reference reference : references) {
+			if (reference.isRaw() ||
+				(reference.getDestinationQuery() == null)) {
+
+				uniqueReferences.add(reference);
+
+				continue;
+			}
+
+			String fingerprint = getSQLFingerprint(reference);
+
+			Reference checkedReference = fingerprintReferences.get(
+				fingerprint);
+
+			if (checkedReference == null) {
+				fingerprintReferences.put(fingerprint, reference);
+
+				uniqueReferences.add(reference);
+
+				continue;
+			}
+
+			List<Reference> duplicates = duplicateReferences.get(
+				checkedReference);
+
+			if (duplicates == null) {
+				duplicates = new ArrayList<>();
+
+				duplicateReferences.put(checkedReference, duplicates);
+			}
+
+			duplicates.add(reference);
+		}
+
+		if (_log.isInfoEnabled() && !duplicateReferences.isEmpty()) {
+			_log.info(
+				(references.size() - uniqueReferences.size()) +
+					" references share the query of another reference");
+		}
+
+		return uniqueReferences;
+	}
+
+	private void _estimateTimes(
+		Connection connection, List<CreateMissingReferences> tasks) {
+
+		List<List<Reference>> referencesGroups = new ArrayList<>();
+
+		for (CreateMissingReferences task : tasks) {
+			referencesGroups.add(task.references);
+		}
+
+		long[] estimatedTimes = checkScheduler.estimate(
+			connection, referencesGroups);
+
+		for (int i = 0; i < tasks.size(); i++) {
+			CreateMissingReferences task = tasks.get(i);
+
+			task.estimatedTime = estimatedTimes[i];
+		}
+	}
+
+	/* Anti-join sentence used when the invalid values were not kept in
+	 * memory. Returns null if it could also affect the rows whose values are
+	 * ignored by _isValidValue, or if MySQL can't run it because the origin
+	 * table is read in its own subquery */
+	private String _getAntiJoinSentence(Reference reference, String type) {
+		Query originQuery = reference.getOriginQuery();
+		Query destinationQuery = reference.getDestinationQuery();
+
+		Query invalidValuesQuery = _getInvalidValuesQuery(originQuery);
+
+		if (invalidValuesQuery == null) {
+			return null;
+		}
+
+		String reason = null;
+
+		if (!_hasNumericColumns(originQuery)) {
+			reason = "its ignored values can't be filtered in SQL";
+		}
+		else if (!Objects.equals(type, "selectRows") &&
+				 (Objects.equals(dbType, SQLUtil.TYPE_MARIADB) ||
+				  Objects.equals(dbType, SQLUtil.TYPE_MYSQL)) &&
+				 Objects.equals(
+					 originQuery.getTable(), destinationQuery.getTable())) {
+
+			reason = "the origin table can't be modified and read at once";
+		}
+
+		if (reason != null) {
+			_log.warn(
+				"Sentences of " + reference + " are not generated because " +
+					"its result is incomplete and " + reason);
+
+			return null;
+		}
+
+		return _getSQL(invalidValuesQuery, destinationQuery, type);
+	}
+
+	private String _getCheckEngine(Reference reference) {
+		String referenceCheckEngine = reference.getCheckEngine();
+
+		if (StringUtils.isNotBlank(referenceCheckEngine)) {
+			return referenceCheckEngine;
+		}
+
+		return checkEngine;
+	}
+
+	/* Origin rows under the high-water mark were already checked, they are
+	 * only checked again if the destination table had deletes since then.
+	 *
+	 * Liferay Counter hands out primary keys in blocks, so a row inserted
+	 * after the run with a key of a block reserved before it can be under the
+	 * stored mark and it is not checked until the next full check */
+	/* Client plans are run by the database when only a few values are
+	 * queried or only the counts are needed */
+	private String _getDatabaseStrategy(String antiJoinStrategy) {
+		if (AntiJoinPlan.STRATEGY_CLIENT.equals(antiJoinStrategy)) {
+			return antiJoinPlanner.getDefaultStrategy();
+		}
+
+		return antiJoinStrategy;
+	}
+
+	/* Collection sinks remove the repeated values by themselves */
+	private InvalidValuesSink _getDistinctInvalidValuesSink(
+		InvalidValuesSink invalidValuesSink) {
+
+		if (invalidValuesSink instanceof CollectionInvalidValuesSink) {
+			return invalidValuesSink;
+		}
+
+		return new DistinctInvalidValuesSink(invalidValuesSink);
+	}
+
+	private Collection<Reference> _getIncrementalReferences(
+		Connection connection, Collection<Reference> references,
+		Map<String, long[]> tableStates) {
+
+		/* Rows are only counted in the tables used as destination */
+		Set<String> destinationTableNames = new HashSet<>();
+
+		for (Reference reference : references) {
+			Query destinationQuery = reference.getDestinationQuery();
+
+			if (!reference.isRaw() && (destinationQuery != null)) {
+				Table destinationTable = destinationQuery.getTable();
+
+				destinationTableNames.add(
+					destinationTable.getTableNameLowerCase());
+			}
+		}
+
+		List<Reference> incrementalReferences = new ArrayList<>();
+
+		for (Reference reference : references) {
+			Query destinationQuery = reference.getDestinationQuery();
+
+			if (reference.isRaw() || (destinationQuery == null)) {
+				incrementalReferences.add(reference);
+
+				continue;
+			}
+
+			Query originQuery = reference.getOriginQuery();
+
+			Table originTable = originQuery.getTable();
+			Table destinationTable = destinationQuery.getTable();
+
+			long[] originState = _getTableState(
+				connection, originTable, tableStates, destinationTableNames);
+			long[] destinationState = _getTableState(
+				connection, destinationTable, tableStates,
+				destinationTableNames);
+
+			long[] originMark = highWaterMarks.get(originTable.getTableName());
+			long[] destinationMark = highWaterMarks.get(
+				destinationTable.getTableName());
+
+			if ((originState == null) || (originMark == null)) {
+				incrementalReferences.add(reference);
+
+				continue;
+			}
+
+			if ((destinationState == null) || (destinationMark == null) ||
+				(destinationMark[1] < 0) ||
+				(destinationState[2] < destinationMark[1])) {
+
+				if (_log.isInfoEnabled()) {
+					_log.info(
+						"Full check of " + reference + ", " +
+							destinationTable.getTableName() +
+								" could have deletes");
+				}
+
+				incrementalReferences.add(reference);
+
+				continue;
+			}
+
+			String condition = originQuery.getCondition();
+
+			if (StringUtils.isBlank(condition)) {
+				condition = StringUtils.EMPTY;
+			}
+			else {
+				condition = "(" + condition + ") AND ";
+			}
+
+			Query incrementalOriginQuery = new Query(
+				originTable, originQuery.getColumns(), originQuery.getCasting(),
+				condition + originTable.getPrimaryKey() + ">" + originMark[0]);
+
+			incrementalReferences.add(
+				reference.clone(incrementalOriginQuery, destinationQuery));
+		}
+
+		return incrementalReferences;
+	}
+
+	/* Origin query that discards the ignored values, null if all the values
+	 * are ignored. Only null is discarded from non numeric columns, their
+	 * values have to be checked with _isValidValue */
+	private Query _getInvalidValuesQuery(Query originQuery) {
+		if (!isIgnoreNullValues()) {
+			return originQuery;
+		}
+
+		Table originTable = originQuery.getTable();
+
+		List<String> invalidValueConditions = new ArrayList<>();
+
+		for (String column : originQuery.getColumns()) {
+			Long constant = _toConstant(column);
+
+			if (constant != null) {
+				if (_isValidValue(new Object[] {constant})) {
+					continue;
+				}
+
+				/* Every row has an invalid value */
+				return originQuery;
+			}
+
+			Class<?> clazz = originTable.getColumnTypeClass(column);
+
+			if (!Number.class.isAssignableFrom(clazz)) {
+				invalidValueConditions.add(column + " IS NOT NULL");
+
+				continue;
+			}
+
+			StringBuilder sb = new StringBuilder();
+
+			sb.append(column);
+			sb.append("<>0");
+
+			if (ignoreLowerValues != Long.MIN_VALUE) {
+				sb.append(" AND ");
+				sb.append(column);
+				sb.append(">=");
+				sb.append(ignoreLowerValues);
+			}
+
+			if (ignoreGreaterValues != Long.MAX_VALUE) {
+				sb.append(" AND ");
+				sb.append(column);
+				sb.append("<=");
+				sb.append(ignoreGreaterValues);
+			}
+
+			invalidValueConditions.add("(" + sb.toString() + ")");
+		}
+
+		if (invalidValueConditions.isEmpty()) {
+			return null;
+		}
+
+		String condition =
+			"(" + StringUtils.join(invalidValueConditions, " OR ") + ")";
+
+		if (StringUtils.isNotBlank(originQuery.getCondition())) {
+			condition = "(" + originQuery.getCondition() + ") AND " + condition;
+		}
+
+		return new Query(
+			originTable, originQuery.getColumns(), originQuery.getCasting(),
+			condition);
+	}
+
+	/* Returns {start, end} primary key ranges covering about one of every
+	 * sampleModulo keys, one range of each stratum from a pseudo-random
+	 * start that only depends on the table and its primary key range */
+	private List<long[]> _getSampleRanges(
+		Table table, long[] primaryKeyRange, long sampleModulo) {
+
+		long keys = primaryKeyRange[1] - primaryKeyRange[0] + 1;
+
+		long strata = Math.max(Math.min(_SAMPLE_STRATA, keys / sampleModulo), 1);
+
+		long stratumKeys = (keys + strata - 1) / strata;
+
+		long rangeKeys = Math.max(stratumKeys / sampleModulo, 1);
+
+		Random random = new Random(
+			Objects.hash(
+				table.getTableNameLowerCase(), primaryKeyRange[0],
+				primaryKeyRange[1]));
+
+		List<long[]> sampleRanges = new ArrayList<>();
+
+		for (long i = 0; i < strata; i++) {
+			long stratumStart = primaryKeyRange[0] + (i * stratumKeys);
+
+			long stratumEnd = Math.min(
+				stratumStart + stratumKeys - 1, primaryKeyRange[1]);
+
+			long start = stratumStart;
+
+			if ((stratumEnd - stratumStart + 1) > rangeKeys) {
+				start +=
+					(random.nextLong() & Long.MAX_VALUE) %
+						(stratumEnd - stratumStart + 2 - rangeKeys);
+			}
+
+			sampleRanges.add(
+				new long[] {start, Math.min(start + rangeKeys - 1, stratumEnd)});
+		}
+
+		return sampleRanges;
+	}
+
+	private String _getSQL(
+		Query originQuery, Query destinationQuery, String type) {
+
+		return _getSQL(
+			originQuery, destinationQuery, type,
+			antiJoinPlanner.getDefaultStrategy());
+	}
+
+	private String _getSQL(
+		Query originQuery, Query destinationQuery, String type,
+		String antiJoinStrategy) {
+
+		if (Objects.equals(type, "selectGrouped")) {
+			return _getSQLGrouped(
+				originQuery, destinationQuery, antiJoinStrategy);
+		}
+
+		String sql;
+
+		if (Objects.equals(
+				antiJoinStrategy, AntiJoinPlan.STRATEGY_NOT_EXISTS)) {
+
+			sql = _getSQLNotExists(originQuery, destinationQuery, type);
+		}
+		else if (Objects.equals(
+					antiJoinStrategy, AntiJoinPlan.STRATEGY_NOT_IN)) {
+
+			sql = _getSQLNotIn(originQuery, destinationQuery, type);
+		}
+		else if (Objects.equals(
+					antiJoinStrategy, AntiJoinPlan.STRATEGY_EXCEPT) &&
+				 Objects.equals(type, "select")) {
+
+			sql = _getSQLExcept(originQuery, destinationQuery);
+		}
+		else if (Objects.equals(
+					antiJoinStrategy, AntiJoinPlan.STRATEGY_LEFT_JOIN) &&
+				 Objects.equals(type, "select")) {
+
+			sql = _getSQLLeftJoin(originQuery, destinationQuery);
+		}
+		else {
+			throw new IllegalArgumentException(
+				"Unsupported anti-join strategy for " + type + ": " +
+					antiJoinStrategy);
+		}
+
+		return SQLUtil.transform(dbType, sql);
+	}
+
+	private String _getSQL(Query query, String type) {
+		if (Objects.equals(type, "count")) {
+			return query.getSQLSelectCount();
+		}
+
+		if (Objects.equals(type, "countRows")) {
+			Table table = query.getTable();
+
+			String key = "*";
+
+			if (!table.hasCompoundPrimKey()) {
+				key = table.getPrimaryKey();
+			}
+
+			return query.getSQLSelect(false, "COUNT(" + key + ")");
+		}
+
+		if (Objects.equals(type, "delete")) {
+			return query.getSQLDelete();
+		}
+
+		if (Objects.equals(type, "select")) {
+			return query.getSQLSelect();
+		}
+
+		if (Objects.equals(type, "selectAll")) {
+			return query.getSQLSelect(false);
+		}
+
+		if (Objects.equals(type, "selectGrouped")) {
+			List<String> columns = query.getColumns();
+
+			List<String> groupedColumns = new ArrayList<>();
+
+			for (int i = 0; i < columns.size(); i++) {
+				groupedColumns.add(columns.get(i) + " rc_g" + i);
+			}
+
+			return query.getSQLSelect(
+				false, StringUtils.join(groupedColumns, ","));
+		}
+
+		if (Objects.equals(type, "selectRows")) {
+			return query.getSQLSelect(false, "*");
+		}
+
+		if (Objects.equals(type, "update")) {
+			return query.getSQLUpdateToNull();
+		}
+
+		throw new IllegalArgumentException(type);
+	}
+
+	private String _getSQLExcept(Query originQuery, Query destinationQuery) {
+		String exceptOperator = SQLUtil.getExceptOperator(dbType);
+
+		if (exceptOperator == null) {
+			throw new IllegalArgumentException(
+				"EXCEPT is not supported in " + dbType);
+		}
+
+		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery);
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(
+			originQuery.getSQLSelect(
+				false, StringUtils.join(originQuery.getColumns(), ",")));
+
+		_appendNotNullCondition(sb, originQuery.getColumns());
+
+		sb.append(" ");
+		sb.append(exceptOperator);
+		sb.append(" ");
+		sb.append(
+			destinationQuery.getSQLSelect(
+				false, StringUtils.join(destinationColumns, ",")));
+
+		return sb.toString();
+	}
+
+	private String _getSQLFused(
+		List<Reference> references, List<String> columns, String tableAlias,
+		boolean countRows) {
+
+		Reference firstReference = references.get(0);
+
+		Query firstOriginQuery = firstReference.getOriginQuery();
+
+		Table originTable = firstOriginQuery.getTable();
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("SELECT ");
+
+		for (int i = 0; i < columns.size(); i++) {
+			String column = columns.get(i);
+
+			if (_toConstant(column) == null) {
+				sb.append(tableAlias);
+				sb.append(".");
+			}
+
+			sb.append(column);
+			sb.append(" c");
+			sb.append(i);
+			sb.append(",");
+		}
+
+		List<String> flagColumns = new ArrayList<>();
+
+		for (int i = 0; i < references.size(); i++) {
+			Reference reference = references.get(i);
+
+			Query originQuery = reference.getOriginQuery();
+			Query destinationQuery = reference.getDestinationQuery();
+
+			List<String> conditionColumns = originQuery.getColumnsWithCast(
+				dbType, destinationQuery, tableAlias);
+
+			List<String> destinationColumns =
+				destinationQuery.getColumnsWithCast(dbType, originQuery);
+
+			if (i > 0) {
+				sb.append(",");
+			}
+
+			sb.append("CASE WHEN ");
+
+			/* NOT IN never returns rows with null values, emulate it in the
+			 * databases that use NOT IN in the non fused sql. Its subquery
+			 * discards the null destination values, so EXISTS matches it */
+			if (!SQLUtil.isNotExistsPreferred(dbType)) {
+				for (String conditionColumn : conditionColumns) {
+					sb.append(conditionColumn);
+					sb.append(" IS NULL OR ");
+				}
+			}
+
+			sb.append("EXISTS (");
+			sb.append(
+				destinationQuery.getSQLSelect(
+					false, StringUtils.join(destinationColumns, ",")));
+
+			for (int j = 0; j < conditionColumns.size(); j++) {
+				sb.append(" AND ");
+				sb.append(conditionColumns.get(j));
+				sb.append("=");
+				sb.append(destinationColumns.get(j));
+			}
+
+			sb.append(") THEN 0 ELSE 1 END m");
+			sb.append(i);
+
+			flagColumns.add("m" + i + "=1");
+		}
+
+		sb.append(" FROM ");
+		sb.append(originTable.getTableName());
+		sb.append(" ");
+		sb.append(tableAlias);
+		sb.append(" WHERE ");
+
+		String condition = firstOriginQuery.getCondition();
+
+		if (StringUtils.isBlank(condition)) {
+			sb.append("1=1");
+		}
+		else {
+			sb.append(condition);
+		}
+
+		String sql;
+
+		if (countRows) {
+			List<String> groupedColumns = new ArrayList<>();
+
+			for (int i = 0; i < columns.size(); i++) {
+				groupedColumns.add("c" + i);
+			}
+
+			for (int i = 0; i < references.size(); i++) {
+				groupedColumns.add("m" + i);
+			}
+
+			String groupedColumnsString = StringUtils.join(groupedColumns, ",");
+
+			sql =
+				"SELECT " + groupedColumnsString + ",COUNT(*) FROM (" +
+					sb.toString() + ") fused WHERE " +
+						StringUtils.join(flagColumns, " OR ") + " GROUP BY " +
+							groupedColumnsString;
+		}
+		else {
+			sql =
+				"SELECT DISTINCT * FROM (" + sb.toString() + ") fused WHERE " +
+					StringUtils.join(flagColumns, " OR ");
+		}
+
+		return SQLUtil.transform(dbType, sql);
+	}
+
+	/* Distinct invalid values with the number of origin rows that have them,
+	 * the origin columns are aliased so constants are not taken as column
+	 * positions by the GROUP BY. EXCEPT loses the rows multiplicity and LEFT
+	 * JOIN only supports selects, they are replaced by the default strategy */
+	private String _getSQLGrouped(
+		Query originQuery, Query destinationQuery, String antiJoinStrategy) {
+
+		String sql;
+
+		if (Objects.equals(
+				antiJoinStrategy, AntiJoinPlan.STRATEGY_NOT_EXISTS) ||
+			(!Objects.equals(antiJoinStrategy, AntiJoinPlan.STRATEGY_NOT_IN) &&
+			 Objects.equals(
+				 antiJoinPlanner.getDefaultStrategy(),
+				 AntiJoinPlan.STRATEGY_NOT_EXISTS))) {
+
+			sql = _getSQLNotExists(
+				originQuery, destinationQuery, "selectGrouped");
+		}
+		else {
+			sql = _getSQLNotIn(originQuery, destinationQuery, "selectGrouped");
+		}
+
+		List<String> groupedColumns = new ArrayList<>();
+
+		for (int i = 0; i < originQuery.getColumns().size(); i++) {
+			groupedColumns.add("rc_g" + i);
+		}
+
+		String groupedColumnsString = StringUtils.join(groupedColumns, ",");
+
+		sql =
+			"SELECT " + groupedColumnsString + ",COUNT(*) rc_count FROM (" +
+				sql + ") rc_grouped GROUP BY " + groupedColumnsString;
+
+		return SQLUtil.transform(dbType, sql);
+	}
+
+	private String _getSQLLeftJoin(Query originQuery, Query destinationQuery) {
+		List<String> conditionColumns = originQuery.getColumnsWithCast(
+			dbType, destinationQuery);
+
+		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery);
+
+		List<String> keyColumns = new ArrayList<>();
+
+		for (int i = 0; i < destinationColumns.size(); i++) {
+			keyColumns.add(destinationColumns.get(i) + " rc_k" + i);
+		}
+
+		Table originTable = originQuery.getTable();
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("SELECT DISTINCT ");
+		sb.append(StringUtils.join(originQuery.getColumns(), ","));
+		sb.append(" FROM ");
+		sb.append(originTable.getTableName());
+		sb.append(" ");
+		sb.append(originQuery.getTableAlias());
+		sb.append(" LEFT JOIN (");
+		sb.append(
+			destinationQuery.getSQLSelect(
+				false, StringUtils.join(keyColumns, ",")));
+		sb.append(") rc_dest ON ");
+
+		for (int i = 0; i < conditionColumns.size(); i++) {
+			if (i > 0) {
+				sb.append(" AND ");
+			}
+
+			sb.append(conditionColumns.get(i));
+			sb.append("=rc_dest.rc_k");
+			sb.append(i);
+		}
+
+		sb.append(" WHERE ");
+
+		String condition = originQuery.getCondition();
+
+		if (StringUtils.isBlank(condition)) {
+			sb.append("1=1");
+		}
+		else {
+			sb.append("(");
+			sb.append(condition);
+			sb.append(")");
+		}
+
+		sb.append(" AND rc_dest.rc_k0 IS NULL");
+
+		_appendNotNullCondition(sb, conditionColumns);
+
+		return sb.toString();
+	}
+
+	private String _getSQLNotExists(
+		Query originQuery, Query destinationQuery, String type) {
+
+		List<String> conditionColumns = originQuery.getColumnsWithCast(
+			dbType, destinationQuery);
+
+		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery);
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(_getSQL(originQuery, type));
+
+		sb.append(" AND NOT EXISTS (");
+		sb.append(
+			destinationQuery.getSQLSelect(
+				false, StringUtils.join(destinationColumns, ",")));
+
+		for (int i = 0; i < conditionColumns.size(); i++) {
+			sb.append(" AND ");
+			sb.append(conditionColumns.get(i));
+			sb.append("=");
+			sb.append(destinationColumns.get(i));
+		}
+
+		sb.append(")");
+
+		return sb.toString();
+	}
+
+	private String _getSQLNotIn(
+		Query originQuery, Query destinationQuery, String type) {
+
+		List<String> conditionColumns = originQuery.getColumnsWithCast(
+			dbType, destinationQuery);
+
+		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery);
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(_getSQL(originQuery, type));
+
+		sb.append(" AND (");
+		sb.append(StringUtils.join(conditionColumns, ","));
+		sb.append(") NOT IN (");
+		sb.append(
+			destinationQuery.getSQLSelect(
+				false, StringUtils.join(destinationColumns, ",")));
+
+		/* A null destination value makes NOT IN return no rows at all */
+		for (String destinationColumn : destinationColumns) {
+			if (_toConstant(destinationColumn) == null) {
+				sb.append(" AND ");
+				sb.append(destinationColumn);
+				sb.append(" IS NOT NULL");
+			}
+		}
+
+		sb.append(")");
+
+		return sb.toString();
+	}
+
+	/* Returns {maxPrimaryKey, rowCount, rowCountUnderMark} of the table, null
+	 * if it is empty or it has no numeric primary key. The row count under the
+	 * previous high-water mark is used to detect deletes, so rows are only
+	 * counted in destination tables, the counts are -1 in the other ones.
+	 * Every query is a primary key index lookup or range */
+	private long[] _getTableState(
+		Connection connection, Table table, Map<String, long[]> tableStates,
+		Set<String> destinationTableNames) {
+
+		String tableName = table.getTableNameLowerCase();
+
+		if (tableStates.containsKey(tableName)) {
+			return tableStates.get(tableName);
+		}
+
+		long[] tableState = null;
+
+		if (_isNumericPrimaryKey(table)) {
+			try {
+				tableState = _queryTableState(
+					connection, table,
+					destinationTableNames.contains(tableName));
+			}
+			catch (SQLException sqlException) {
+				_log.warn(sqlException);
+			}
+		}
+
+		tableStates.put(tableName, tableState);
+
+		return tableState;
+	}
+
+	/* True if _getInvalidValuesQuery discards all the ignored values */
+	private boolean _hasNumericColumns(Query query) {
+		if (!isIgnoreNullValues()) {
+			return true;
+		}
+
+		Table table = query.getTable();
+
+		for (String column : query.getColumns()) {
+			if (_toConstant(column) != null) {
+				continue;
+			}
+
+			Class<?> clazz = table.getColumnTypeClass(column);
+
+			if (!Number.class.isAssignableFrom(clazz)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/* True if the values of the reference are read from several queries or
+	 * from the rows of an origin scan shared with other references */
+	private boolean _isCheckedInParts(
+			Connection connection, List<Reference> checkReferences,
+			Reference reference)
+		throws SQLException {
+
+		if (checkReferences.size() > 1) {
+			return true;
+		}
+
+		List<Query> chunkQueries = getChunkQueries(
+			connection, reference.getOriginQuery());
+
+		if (chunkQueries.size() > 1) {
+			return true;
+		}
+
+		return false;
+	}
+
+	private boolean _isNull(Object obj) {
+		if (obj == null) {
+			return true;
+		}
+
+		if (obj instanceof Number) {
+			Number n = (Number)obj;
+
+			if (n.longValue() == 0L) {
+				return true;
+			}
+
+			return false;
+		}
+
+		if (obj instanceof String) {
+			return StringUtils.isBlank((String)obj);
+		}
+
+		return false;
+	}
+
+	private boolean _isNumericPrimaryKey(Table table) {
+		String primaryKey = table.getPrimaryKey();
+
+		if ((primaryKey == null) ||
+			!Number.class.isAssignableFrom(
+				table.getColumnTypeClass(primaryKey))) {
+
+			return false;
+		}
+
+		return true;
+	}
+
+	private boolean _isValidValue(Object[] result) {
+		if (!isIgnoreNullValues()) {
+			return false;
+		}
+
+		for (Object o : result) {
+			if (o == null) {
+				continue;
+			}
+
+			if (o instanceof Number) {
+				Number n = (Number)o;
+
+				if ((n.longValue() == 0) ||
+					(n.longValue() > ignoreGreaterValues) ||
+					(n.longValue() < ignoreLowerValues)) {
+
+					continue;
+				}
+			}
+
+			if (!_isNull(o) && !Objects.equals(o, "0")) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private long _queryInvalidValues(
+			Connection connection, String engineName, Query originQuery,
+			Query destinationQuery, String antiJoinStrategy,
+			final InvalidValuesSink invalidValuesSink)
+		throws SQLException {
+
+		if (CHECK_ENGINE_SQL.equals(engineName)) {
+			return queryInvalidValues(
+				connection, originQuery, destinationQuery, antiJoinStrategy,
+				invalidValuesSink);
+		}
+
+		CheckEngine checkEngine = checkEngines.get(engineName);
+
+		if (checkEngine == null) {
+			throw new IllegalArgumentException(
+				"Unknown check engine: " + engineName);
+		}
+
+		checkEngine.queryInvalidValues(
+			connection, originQuery, destinationQuery,
+			new InvalidValuesSink() {
+
+				@Override
+				public void add(Object[] value) {
+					if (!_isValidValue(value)) {
+						invalidValuesSink.add(value);
+					}
+				}
+
+				@Override
+				public long getCount() {
+					return invalidValuesSink.getCount();
+				}
 
-				return new MissingReferences(reference, t);
-			}
-		}
+				@Override
+				public Collection<Object[]> getValues() {
+					return invalidValuesSink.getValues();
+				}
 
-		protected Connection connection;
-		protected Reference reference;
+			});
 
+		return -1;
 	}
 
-	private void _appendInClause(
-		StringBuilder sb, List<String> columns, Collection<Object[]> rows) {
+	private long[] _queryPrimaryKeyRange(Connection connection, Table table)
+		throws SQLException {
 
-		sb.append("(");
-		sb.append(StringUtils.join(columns, ","));
-		sb.append(") IN (");
+		String primaryKey = table.getPrimaryKey();
 
-		boolean first = true;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
 
-		for (Object[] row : rows) {
-			if (!first) {
-				sb.append(",");
+		try {
+			String sql = SQLUtil.transform(
+				dbType,
+				"SELECT MIN(" + primaryKey + "), MAX(" + primaryKey +
+					") FROM " + table.getTableName());
+
+			if (_log.isDebugEnabled()) {
+				_log.debug("SQL primary key range: " + sql);
 			}
 
-			first = false;
+			ps = connection.prepareStatement(sql);
 
-			if (row.length == 1) {
-				sb.append(_castValue(row[0]));
+			ps.setQueryTimeout(SQLUtil.QUERY_TIMEOUT);
 
-				continue;
-			}
+			rs = ps.executeQuery();
 
-			sb.append("(");
+			if (!rs.next()) {
+				return null;
+			}
 
-			for (int i = 0; i < row.length; i++) {
-				if (i > 0) {
-					sb.append(",");
-				}
+			long min = rs.getLong(1);
 
-				sb.append(_castValue(row[i]));
+			if (rs.wasNull()) {
+				return null;
 			}
 
-			sb.append(")");
+			return new long[] {min, rs.getLong(2)};
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
 		}
-
-		sb.append(")");
 	}
 
-	private void _appendInClause(
-		StringBuilder sb, Query query, Collection<Object[]> values) {
+	private long _queryRowCount(
+			Connection connection, Table table, String condition)
+		throws SQLException {
 
-		List<Object[]> rows = new ArrayList<>(values);
+		String sql =
+			"SELECT COUNT(" + table.getPrimaryKey() + ") FROM " +
+				table.getTableName();
 
-		List<String> columns = query.getColumns();
+		if (condition != null) {
+			sql = sql + " WHERE " + condition;
+		}
 
-		/* Split in sublists of 1000 elements as Oracle doesn't support
-		 * bigger IN clauses */
-		List<List<Object[]>> sublists = ListUtils.partition(rows, 1000);
+		sql = SQLUtil.transform(dbType, sql);
 
-		boolean first = true;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
 
-		for (List<Object[]> sublist : sublists) {
-			if (!first) {
-				sb.append(" OR ");
+		try {
+			if (_log.isDebugEnabled()) {
+				_log.debug("SQL row count: " + sql);
 			}
 
-			_appendInClause(sb, columns, sublist);
+			ps = connection.prepareStatement(sql);
 
-			first = false;
+			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+			rs = ps.executeQuery();
+
+			if (!rs.next()) {
+				return 0;
+			}
+
+			return rs.getLong(1);
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
 		}
 	}
 
-	private String _castValue(Object value) {
-		if (value instanceof Number) {
-			return value.toString();
-		}
+	private long _querySQLInvalidValues(
+			Connection connection, Query originQuery, Query destinationQuery,
+			String antiJoinStrategy, InvalidValuesSink invalidValuesSink,
+			boolean countRows)
+		throws SQLException {
 
-		if ((value instanceof String) &&
-			StringUtils.equalsIgnoreCase("null", (String)value)) {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
 
-			return "NULL";
-		}
+		try {
+			String sql;
 
-		StringBuilder sb = new StringBuilder();
+			if (countRows) {
+				sql = _getSQL(
+					originQuery, destinationQuery, "selectGrouped",
+					antiJoinStrategy);
+			}
+			else {
+				sql = getSQLSelect(
+					originQuery, destinationQuery, antiJoinStrategy);
+			}
 
-		sb.append("'");
-		sb.append(value);
-		sb.append("'");
+			if (_log.isInfoEnabled()) {
+				_log.info("SQL: " + sql);
+			}
 
-		return sb.toString();
-	}
+			ps = connection.prepareStatement(sql);
 
-	private void _executeCleanUp(
-			Connection connection, List<String> cleanupSqls)
-		throws SQLException {
+			ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
 
-		for (String cleanupSql : cleanupSqls) {
-			if (_log.isDebugEnabled()) {
-				_log.debug("Cleanup sql: " + cleanupSql);
+			rs = ps.executeQuery();
+
+			ResultSetMetaData rsmd = rs.getMetaData();
+
+			int columnsNumber = rsmd.getColumnCount();
+
+			if (countRows) {
+				columnsNumber--;
 			}
 
-			PreparedStatement ps = null;
+			long affectedRows = 0;
 
-			try {
-				ps = connection.prepareStatement(cleanupSql);
+			while (rs.next()) {
+				Object[] result = new Object[columnsNumber];
 
-				ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+				for (int i = 0; i < columnsNumber; i++) {
+					result[i] = rs.getObject(i + 1);
+				}
 
-				int rows = ps.executeUpdate();
+				if (_isValidValue(result)) {
+					continue;
+				}
 
-				if (_log.isDebugEnabled()) {
-					_log.debug("Procesed " + rows + " rows");
+				invalidValuesSink.add(result);
+
+				if (countRows) {
+					affectedRows += rs.getLong(columnsNumber + 1);
 				}
 			}
-			catch (SQLException sqlException) {
-				_log.error(
-					"SQL: " + cleanupSql + " - EXCEPTION: " +
-						sqlException.getMessage(),
-					sqlException);
 
-				throw sqlException;
-			}
-			finally {
-				JDBCUtil.cleanUp(ps);
+			if (!countRows) {
+				return -1;
 			}
+
+			return affectedRows;
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
 		}
 	}
 
-	private String _getSQL(
-		Query originQuery, Query destinationQuery, String type) {
+	/* The rows are counted in two primary key ranges split by the previous
+	 * high-water mark, the rows above it are the ones added since then */
+	private long[] _queryTableState(
+			Connection connection, Table table, boolean countRows)
+		throws SQLException {
 
-		if (dbType.equals(SQLUtil.TYPE_POSTGRESQL) ||
-			dbType.equals(SQLUtil.TYPE_SQLSERVER)) {
+		long[] primaryKeyRange = _queryPrimaryKeyRange(connection, table);
 
-			String sql = _getSQLNotExists(originQuery, destinationQuery, type);
+		if (primaryKeyRange == null) {
+			return null;
+		}
 
-			return SQLUtil.transform(dbType, sql);
+		if (!countRows) {
+			return new long[] {primaryKeyRange[1], -1, -1};
 		}
 
-		String sql = _getSQLNotIn(originQuery, destinationQuery, type);
+		long[] mark = highWaterMarks.get(table.getTableName());
 
-		return SQLUtil.transform(dbType, sql);
+		if (mark == null) {
+			return new long[] {
+				primaryKeyRange[1], _queryRowCount(connection, table, null), 0
+			};
+		}
+
+		String primaryKey = table.getPrimaryKey();
+
+		long rowCountUnderMark = _queryRowCount(
+			connection, table, primaryKey + "<=" + mark[0]);
+
+		long rowCountOverMark = _queryRowCount(
+			connection, table, primaryKey + ">" + mark[0]);
+
+		return new long[] {
+			primaryKeyRange[1], rowCountUnderMark + rowCountOverMark,
+			rowCountUnderMark
+		};
 	}
 
-	private String _getSQL(Query query, String type) {
-		if (Objects.equals(type, "count")) {
-			return query.getSQLSelectCount();
+	private long _sumAffectedRows(long affectedRows, long chunkAffectedRows) {
+		if ((affectedRows < 0) || (chunkAffectedRows < 0)) {
+			return -1;
 		}
 
-		if (Objects.equals(type, "delete")) {
-			return query.getSQLDelete();
-		}
+		return affectedRows + chunkAffectedRows;
+	}
 
-		if (Objects.equals(type, "select")) {
-			return query.getSQLSelect();
+	private Long _toConstant(String column) {
+		try {
+			return Long.valueOf(column);
+		}
+		catch (NumberFormatException numberFormatException) {
+			return null;
 		}
-
-		throw new IllegalArgumentException(type);
 	}
 
-	private String _getSQLNotExists(
-		Query originQuery, Query destinationQuery, String type) {
+	private String _toSHA1(String value) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
 
-		List<String> conditionColumns = originQuery.getColumnsWithCast(
-			dbType, destinationQuery);
+			byte[] digest = messageDigest.digest(
+				value.getBytes(StandardCharsets.UTF_8));
 
-		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
-			dbType, originQuery);
+			StringBuilder hex = new StringBuilder();
 
-		StringBuilder sb = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
 
-		sb.append(_getSQL(originQuery, type));
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+			throw new RuntimeException(noSuchAlgorithmException);
+		}
+	}
 
-		sb.append(" AND NOT EXISTS (");
-		sb.append(
-			destinationQuery.getSQLSelect(
-				false, StringUtils.join(destinationColumns, ",")));
+	/* Tables whose references could not be checked keep their previous
+	 * high-water mark */
+	private void _updateHighWaterMarks(
+		Map<String, long[]> tableStates,
+		List<MissingReferences> listMissingReferences) {
 
-		for (int i = 0; i < conditionColumns.size(); i++) {
-			sb.append(" AND ");
-			sb.append(conditionColumns.get(i));
-			sb.append("=");
-			sb.append(destinationColumns.get(i));
+		if (highWaterMarks == null) {
+			return;
 		}
 
-		sb.append(")");
-
-		return sb.toString();
-	}
+		Set<String> failedTableNames = new HashSet<>();
 
-	private String _getSQLNotIn(
-		Query originQuery, Query destinationQuery, String type) {
+		for (MissingReferences missingReferences : listMissingReferences) {
+			if (missingReferences.getThrowable() == null) {
+				continue;
+			}
 
-		List<String> conditionColumns = originQuery.getColumnsWithCast(
-			dbType, destinationQuery);
+			Reference reference = missingReferences.getReference();
 
-		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
-			dbType, originQuery);
+			Query originQuery = reference.getOriginQuery();
 
-		StringBuilder sb = new StringBuilder();
+			Table originTable = originQuery.getTable();
 
-		sb.append(_getSQL(originQuery, type));
+			failedTableNames.add(originTable.getTableNameLowerCase());
 
-		sb.append(" AND (");
-		sb.append(StringUtils.join(conditionColumns, ","));
-		sb.append(") NOT IN (");
-		sb.append(
-			destinationQuery.getSQLSelect(
-				false, StringUtils.join(destinationColumns, ",")));
-		sb.append(")");
+			/* Deletes of the destination table were not checked either */
+			Query destinationQuery = reference.getDestinationQuery();
 
-		return sb.toString();
-	}
+			if (destinationQuery != null) {
+				Table destinationTable = destinationQuery.getTable();
 
-	private boolean _isNull(Object obj) {
-		if (obj == null) {
-			return true;
+				failedTableNames.add(destinationTable.getTableNameLowerCase());
+			}
 		}
 
-		if (obj instanceof Number) {
-			Number n = (Number)obj;
+		for (Map.Entry<String, long[]> entry : tableStates.entrySet()) {
+			long[] tableState = entry.getValue();
 
-			if (n.longValue() == 0L) {
-				return true;
-			}
+			if ((tableState == null) ||
+				failedTableNames.contains(entry.getKey())) {
 
-			return false;
-		}
+				continue;
+			}
 
-		if (obj instanceof String) {
-			return StringUtils.isBlank((String)obj);
+			highWaterMarks.put(entry.getKey(), tableState[0], tableState[1]);
 		}
-
-		return false;
 	}
 
-	private boolean _isValidValue(Object[] result) {
-		if (!isIgnoreNullValues()) {
-			return false;
+	private List<MissingReferences> _verifyMissingReferences(
+			List<MissingReferences> listMissingReferences)
+		throws SQLException {
+
+		if (listMissingReferences.isEmpty()) {
+			return listMissingReferences;
 		}
 
-		for (Object o : result) {
-			if (o == null) {
-				continue;
-			}
+		List<MissingReferences> verifiedListMissingReferences =
+			new ArrayList<>();
 
-			if (o instanceof Number) {
-				Number n = (Number)o;
+		Connection connection = null;
 
-				if ((n.longValue() == 0) ||
-					(n.longValue() > ignoreGreaterValues) ||
-					(n.longValue() < ignoreLowerValues)) {
+		try {
+			connection = verifyDataSource.getConnection();
 
-					continue;
-				}
-			}
+			for (MissingReferences missingReferences : listMissingReferences) {
+				MissingReferences verifiedMissingReferences =
+					verifyMissingReferences(connection, missingReferences);
 
-			if (!_isNull(o) && !Objects.equals(o, "0")) {
-				return false;
+				if (verifiedMissingReferences != null) {
+					verifiedListMissingReferences.add(
+						verifiedMissingReferences);
+				}
 			}
 		}
+		finally {
+			JDBCUtil.cleanUp(connection);
+		}
 
-		return true;
+		return verifiedListMissingReferences;
 	}
 
+	/* Rows read by the existence probe when the ignored values can not be
+	 * discarded in the query */
+	private static final int _EXISTENCE_PROBE_ROWS = 100;
+
+	/* Primary key ranges read by a sample, the sampled keys are spread over
+	 * the table without a condition that can't use the index */
+	private static final long _SAMPLE_STRATA = 32;
+
 	private static Logger _log = LogManager.getLogger(ReferenceChecker.class);
 
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+/**
+ * Strategy chosen to find the origin values missing in the destination and
+ * the reason of that choice.
+ *
+ * @author Jorge Díaz
+ */
+public class AntiJoinPlan {
+
+	public static final String STRATEGY_CLIENT = "client";
+
+	public static final String STRATEGY_EXCEPT = "except";
+
+	public static final String STRATEGY_FUSED = "fused";
+
+	public static final String STRATEGY_LEFT_JOIN = "leftJoin";
+
+	public static final String STRATEGY_NOT_EXISTS = "notExists";
+
+	public static final String STRATEGY_NOT_IN = "notIn";
+
+	public AntiJoinPlan(String strategy, String reason) {
+		this.strategy = strategy;
+		this.reason = reason;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	public String getStrategy() {
+		return strategy;
+	}
+
+	@Override
+	public String toString() {
+		return strategy + " (" + reason + ")";
+	}
+
+	protected String reason;
+	protected String strategy;
+
+}
\ No newline at end of file
@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.dao.TableStatistics;
+import com.liferay.referencechecker.dao.TableUtil;
+import com.liferay.referencechecker.ref.Reference;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.sql.Connection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Chooses the anti-join strategy of each reference using the row count of the
+ * tables, the indexes of the destination columns and the features of the
+ * database.
+ *
+ * @author Jorge Díaz
+ */
+public class AntiJoinPlanner {
+
+	public AntiJoinPlanner(String dbType) {
+		this.dbType = dbType;
+	}
+
+	public void clear() {
+		indexedCache.clear();
+		rowCountCache.clear();
+
+		if (tableStatistics != null) {
+			tableStatistics.clear();
+		}
+	}
+
+	public AntiJoinPlan getDefaultPlan() {
+		return new AntiJoinPlan(
+			getDefaultStrategy(), "default strategy of " + dbType);
+	}
+
+	public String getDefaultStrategy() {
+		if (SQLUtil.isNotExistsPreferred(dbType)) {
+			return AntiJoinPlan.STRATEGY_NOT_EXISTS;
+		}
+
+		return AntiJoinPlan.STRATEGY_NOT_IN;
+	}
+
+	public long getMaxClientRows() {
+		return maxClientRows;
+	}
+
+	/* Row counts, estimated from the catalog statistics when they are
+	 * available, are cached until the planner is cleared. Tables are counted
+	 * if the planner has no statistics */
+	public long getRowCount(Connection connection, Table table) {
+		String key = table.getTableNameLowerCase();
+
+		Long rowCount = rowCountCache.get(key);
+
+		if (rowCount == null) {
+			if (tableStatistics == null) {
+				rowCount = TableUtil.countTable(connection, table);
+			}
+			else {
+				rowCount = tableStatistics.getRowCount(connection, table);
+			}
+
+			rowCountCache.put(key, rowCount);
+		}
+
+		return rowCount;
+	}
+
+	public AntiJoinPlan plan(Connection connection, Reference reference) {
+		String antiJoinStrategy = reference.getAntiJoinStrategy();
+
+		if (StringUtils.isNotBlank(antiJoinStrategy)) {
+			return new AntiJoinPlan(antiJoinStrategy, "configured");
+		}
+
+		Query originQuery = reference.getOriginQuery();
+		Query destinationQuery = reference.getDestinationQuery();
+
+		long originRows = getRowCount(connection, originQuery.getTable());
+		long destinationRows = getRowCount(
+			connection, destinationQuery.getTable());
+
+		if ((originRows < 0) || (destinationRows < 0)) {
+			AntiJoinPlan defaultPlan = getDefaultPlan();
+
+			return new AntiJoinPlan(
+				defaultPlan.getStrategy(),
+				defaultPlan.getReason() + ", unknown row count");
+		}
+
+		String rows = "origin rows=" + originRows + ", destination rows=" +
+			destinationRows;
+
+		if ((originRows < _SMALL_TABLE_ROWS) ||
+			(destinationRows < _SMALL_TABLE_ROWS)) {
+
+			return new AntiJoinPlan(
+				getDefaultStrategy(), "small tables, " + rows);
+		}
+
+		boolean indexed = isDestinationIndexed(
+			connection, originQuery, destinationQuery);
+
+		if (indexed) {
+			rows = rows + ", destination columns indexed";
+		}
+		else {
+			rows = rows + ", destination columns not indexed";
+		}
+
+		if (dbType.equals(SQLUtil.TYPE_MARIADB) ||
+			dbType.equals(SQLUtil.TYPE_MYSQL)) {
+
+			if (indexed) {
+				return new AntiJoinPlan(
+					AntiJoinPlan.STRATEGY_LEFT_JOIN,
+					"LEFT JOIN IS NULL stops at the first index match, " +
+						rows);
+			}
+		}
+
+		if (!indexed && !SQLUtil.isHashAntiJoinSupported(dbType)) {
+			if (destinationRows <= maxClientRows) {
+				return new AntiJoinPlan(
+					AntiJoinPlan.STRATEGY_CLIENT,
+					"no hash anti-join in database, destination fits in " +
+						"memory, " + rows);
+			}
+
+			return new AntiJoinPlan(
+				getDefaultStrategy(),
+				"no hash anti-join in database, destination too big for " +
+					"client, " + rows);
+		}
+
+		String exceptOperator = SQLUtil.getExceptOperator(dbType);
+
+		if (!indexed && (exceptOperator != null) &&
+			(originRows >= _EXCEPT_MIN_ORIGIN_ROWS) &&
+			!isOriginCasted(originQuery, destinationQuery)) {
+
+			return new AntiJoinPlan(
+				AntiJoinPlan.STRATEGY_EXCEPT,
+				exceptOperator + " removes duplicated origin values before " +
+					"comparing, " + rows);
+		}
+
+		return new AntiJoinPlan(
+			getDefaultStrategy(),
+			"default strategy of " + dbType + ", " + rows);
+	}
+
+	public void setMaxClientRows(long maxClientRows) {
+		this.maxClientRows = maxClientRows;
+	}
+
+	/* Statistics shared with the TableUtil, so the catalog is read once */
+	public void setTableStatistics(TableStatistics tableStatistics) {
+		this.tableStatistics = tableStatistics;
+	}
+
+	/* Casted columns cannot use the index. Constant destination columns are
+	 * ignored, the other ones must be the leading columns of an index */
+	protected boolean isDestinationIndexed(
+		Connection connection, Query originQuery, Query destinationQuery) {
+
+		Table destinationTable = destinationQuery.getTable();
+
+		List<String> destinationColumns = destinationQuery.getColumns();
+
+		List<String> castedColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery, null);
+
+		List<String> keyColumns = new ArrayList<>();
+
+		for (int i = 0; i < destinationColumns.size(); i++) {
+			String column = destinationColumns.get(i);
+
+			if (!destinationTable.hasColumn(column)) {
+				continue;
+			}
+
+			if (!column.equals(castedColumns.get(i))) {
+				return false;
+			}
+
+			keyColumns.add(StringUtils.lowerCase(column));
+		}
+
+		if (keyColumns.isEmpty()) {
+			return false;
+		}
+
+		String key = destinationTable.getTableNameLowerCase() + "#" +
+			StringUtils.join(keyColumns, ",");
+
+		Boolean indexed = indexedCache.get(key);
+
+		if (indexed != null) {
+			return indexed;
+		}
+
+		indexed = false;
+
+		String primaryKey = destinationTable.getPrimaryKey();
+
+		if ((keyColumns.size() == 1) &&
+			StringUtils.equalsIgnoreCase(primaryKey, keyColumns.get(0))) {
+
+			indexed = true;
+		}
+
+		Collection<List<String>> indexesColumns = TableUtil.getIndexesColumns(
+			connection, destinationTable);
+
+		for (List<String> indexColumns : indexesColumns) {
+			if (indexed) {
+				break;
+			}
+
+			if (indexColumns.size() < keyColumns.size()) {
+				continue;
+			}
+
+			List<String> leadingColumns = indexColumns.subList(
+				0, keyColumns.size());
+
+			if (leadingColumns.containsAll(keyColumns)) {
+				indexed = true;
+			}
+		}
+
+		if (_log.isDebugEnabled()) {
+			_log.debug("Index of " + key + ": " + indexed);
+		}
+
+		indexedCache.put(key, indexed);
+
+		return indexed;
+	}
+
+	protected boolean isOriginCasted(
+		Query originQuery, Query destinationQuery) {
+
+		List<String> originColumns = originQuery.getColumns();
+
+		List<String> castedColumns = originQuery.getColumnsWithCast(
+			dbType, destinationQuery, null);
+
+		return !originColumns.equals(castedColumns);
+	}
+
+	protected String dbType;
+	protected Map<String, Boolean> indexedCache = new ConcurrentHashMap<>();
+	protected long maxClientRows = 20000000L;
+	protected Map<String, Long> rowCountCache = new ConcurrentHashMap<>();
+	protected TableStatistics tableStatistics;
+
+	private static final long _EXCEPT_MIN_ORIGIN_ROWS = 1000000L;
+
+	private static final long _SMALL_TABLE_ROWS = 1000L;
+
+	private static Logger _log = LogManager.getLogger(AntiJoinPlanner.class);
+
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.ref.InvalidValuesSink;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Strategy used to calculate the origin values that don't exist in the
+ * destination. Values are distinct and are added to the sink as they are
+ * read, the sink filters them with the ReferenceChecker ignore null, lower and
+ * greater values rules.
+ *
+ * @author Jorge Díaz
+ */
+public interface CheckEngine {
+
+	public void queryInvalidValues(
+			Connection connection, Query originQuery, Query destinationQuery,
+			InvalidValuesSink invalidValuesSink)
+		throws SQLException;
+
+}
\ No newline at end of file
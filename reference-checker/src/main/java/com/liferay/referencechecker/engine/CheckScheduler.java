@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.ref.Reference;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.sql.Connection;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Estimates the time needed to check a group of references, so the longest
+ * checks can be started first and the workers finish close together.
+ *
+ * The estimation is the duration recorded in previous executions or, if
+ * there is none, the row count of the origin and destination tables
+ * multiplied by the time per row measured in the previous executions.
+ * References checked together share the time of their group.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckScheduler {
+
+	public CheckScheduler(AntiJoinPlanner antiJoinPlanner) {
+		this.antiJoinPlanner = antiJoinPlanner;
+	}
+
+	/* Keeps the durations, they are the history of the next estimations */
+	public void clear() {
+		estimatedTimes.clear();
+		times.clear();
+	}
+
+	/* Returns the estimated time in milliseconds of each group */
+	public long[] estimate(
+		Connection connection, List<List<Reference>> referencesGroups) {
+
+		long[] rows = new long[referencesGroups.size()];
+		long[] previousTimes = new long[referencesGroups.size()];
+
+		long measuredRows = 0;
+		long measuredTime = 0;
+
+		for (int i = 0; i < referencesGroups.size(); i++) {
+			List<Reference> references = referencesGroups.get(i);
+
+			rows[i] = getRowCount(connection, references);
+			previousTimes[i] = getPreviousTime(references);
+
+			if (previousTimes[i] >= 0) {
+				measuredRows += rows[i];
+				measuredTime += previousTimes[i];
+			}
+		}
+
+		double timePerRow = _DEFAULT_TIME_PER_ROW;
+
+		if ((measuredRows > 0) && (measuredTime > 0)) {
+			timePerRow = (double)measuredTime / measuredRows;
+		}
+
+		long[] estimatedTimes = new long[referencesGroups.size()];
+
+		for (int i = 0; i < referencesGroups.size(); i++) {
+			if (previousTimes[i] >= 0) {
+				estimatedTimes[i] = previousTimes[i];
+			}
+			else {
+				estimatedTimes[i] = (long)(rows[i] * timePerRow);
+			}
+
+			List<Reference> references = referencesGroups.get(i);
+
+			for (Reference reference : references) {
+				this.estimatedTimes.put(
+					reference.toString(),
+					estimatedTimes[i] / references.size());
+			}
+		}
+
+		return estimatedTimes;
+	}
+
+	public long getEstimatedTime(Reference reference) {
+		Long estimatedTime = estimatedTimes.get(reference.toString());
+
+		if (estimatedTime == null) {
+			return -1;
+		}
+
+		return estimatedTime;
+	}
+
+	public Map<String, Long> getEstimatedTimes() {
+		return new TreeMap<>(estimatedTimes);
+	}
+
+	public long getTime(Reference reference) {
+		Long time = times.get(reference.toString());
+
+		if (time == null) {
+			return -1;
+		}
+
+		return time;
+	}
+
+	public Map<String, Long> getTimes() {
+		return new TreeMap<>(times);
+	}
+
+	public void load(File file) throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+
+		try (InputStream inputStream = new FileInputStream(file)) {
+			properties.load(inputStream);
+		}
+
+		for (String key : properties.stringPropertyNames()) {
+			try {
+				durations.put(
+					key, Long.parseLong(properties.getProperty(key)));
+			}
+			catch (NumberFormatException numberFormatException) {
+				_log.warn(
+					"Ignoring duration of " + key + ": " +
+						numberFormatException.getMessage());
+			}
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info(
+				"Loaded " + durations.size() + " durations from " + file);
+		}
+	}
+
+	public void setTime(List<Reference> references, long time) {
+		for (Reference reference : references) {
+			String key = reference.toString();
+
+			durations.put(key, time / references.size());
+			times.put(key, time / references.size());
+		}
+	}
+
+	public void store(File file) throws IOException {
+		Properties properties = new Properties();
+
+		for (Map.Entry<String, Long> entry : durations.entrySet()) {
+			properties.setProperty(
+				entry.getKey(), String.valueOf(entry.getValue()));
+		}
+
+		try (OutputStream outputStream = new FileOutputStream(file)) {
+			properties.store(outputStream, "Reference check durations (ms)");
+		}
+	}
+
+	/* Previous time of the group, -1 if any reference was never checked */
+	protected long getPreviousTime(List<Reference> references) {
+		long previousTime = 0;
+
+		for (Reference reference : references) {
+			Long duration = durations.get(reference.toString());
+
+			if (duration == null) {
+				return -1;
+			}
+
+			previousTime += duration;
+		}
+
+		return previousTime;
+	}
+
+	/* The origin table is scanned once for the whole group, each reference
+	 * reads its own destination table */
+	protected long getRowCount(
+		Connection connection, List<Reference> references) {
+
+		Reference firstReference = references.get(0);
+
+		Query originQuery = firstReference.getOriginQuery();
+
+		long rows = Math.max(
+			antiJoinPlanner.getRowCount(connection, originQuery.getTable()),
+			0);
+
+		for (Reference reference : references) {
+			Query destinationQuery = reference.getDestinationQuery();
+
+			if (destinationQuery == null) {
+				continue;
+			}
+
+			rows += Math.max(
+				antiJoinPlanner.getRowCount(
+					connection, destinationQuery.getTable()),
+				0);
+		}
+
+		return rows;
+	}
+
+	protected AntiJoinPlanner antiJoinPlanner;
+	protected Map<String, Long> durations = new ConcurrentHashMap<>();
+	protected Map<String, Long> estimatedTimes = new ConcurrentHashMap<>();
+	protected Map<String, Long> times = new ConcurrentHashMap<>();
+
+	/* One millisecond per thousand rows */
+	private static final double _DEFAULT_TIME_PER_ROW = 0.001;
+
+	private static Logger _log = LogManager.getLogger(CheckScheduler.class);
+
+}
\ No newline at end of file
@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.Reference;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import java.math.BigDecimal;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Journal of the references already checked, a json line with the result is
+ * appended and flushed as soon as each reference is checked. When resuming, the
+ * references of the journal are not checked again.
+ *
+ * Lines are only reused if they were written with the same fingerprint, so a
+ * journal is ignored after a schema or configuration change.
+ *
+ * Values are written with the JDBC types of their origin columns, decimals
+ * and dates are written as strings so they are restored without changes.
+ *
+ * @author Jorge Díaz
+ */
+public class CheckpointJournal implements Closeable {
+
+	public CheckpointJournal(File file, String fingerprint, boolean resume)
+		throws IOException {
+
+		_fingerprint = fingerprint;
+
+		if (resume && file.exists()) {
+			_load(file);
+		}
+
+		_writer = new PrintWriter(
+			new OutputStreamWriter(
+				new FileOutputStream(file, resume), "UTF-8"));
+	}
+
+	/* Missing references are null if the reference has no missing values */
+	public synchronized void add(
+			Reference reference, MissingReferences missingReferences)
+		throws IOException {
+
+		Map<String, Object> entry = new LinkedHashMap<>();
+
+		entry.put("fingerprint", _fingerprint);
+		entry.put("reference", reference.toString());
+
+		if (missingReferences != null) {
+			entry.put("affectedRows", missingReferences.getAffectedRows());
+			entry.put("plan", missingReferences.getPlan());
+			entry.put("planReason", missingReferences.getPlanReason());
+			entry.put("types", _getTypes(reference));
+			entry.put(
+				"values", _toJSONValues(missingReferences.getValues()));
+			entry.put("valuesCount", missingReferences.getValuesCount());
+		}
+
+		_writer.println(_objectMapper.writeValueAsString(entry));
+		_writer.flush();
+
+		if (_writer.checkError()) {
+			throw new IOException("Unable to write checkpoint of " + reference);
+		}
+
+		_entries.put(reference.toString(), entry);
+	}
+
+	@Override
+	public synchronized void close() {
+		_writer.close();
+	}
+
+	public boolean contains(Reference reference) {
+		return _entries.containsKey(reference.toString());
+	}
+
+	/* Result of a reference checked before, null if it had no missing values
+	 * or it is not in the journal */
+	public MissingReferences get(Reference reference) {
+		Map<String, Object> entry = _entries.get(reference.toString());
+
+		if ((entry == null) || !entry.containsKey("values")) {
+			return null;
+		}
+
+		List<?> types = (List<?>)entry.get("types");
+
+		Collection<Object[]> values = new ArrayList<>();
+
+		for (Object value : (List<?>)entry.get("values")) {
+			List<?> list = (List<?>)value;
+
+			Object[] array = list.toArray();
+
+			/* Journals written before the types were stored */
+			if ((types != null) && (types.size() == array.length)) {
+				for (int i = 0; i < array.length; i++) {
+					Number type = (Number)types.get(i);
+
+					array[i] = _toValue(array[i], type.intValue());
+				}
+			}
+
+			values.add(array);
+		}
+
+		MissingReferences missingReferences = new MissingReferences(
+			reference, values, _getLong(entry, "valuesCount"),
+			_getLong(entry, "affectedRows"));
+
+		missingReferences.setPlan(
+			(String)entry.get("plan"), (String)entry.get("planReason"));
+
+		return missingReferences;
+	}
+
+	public int size() {
+		return _entries.size();
+	}
+
+	private long _getLong(Map<String, Object> entry, String key) {
+		Number number = (Number)entry.get(key);
+
+		if (number == null) {
+			return -1;
+		}
+
+		return number.longValue();
+	}
+
+	private List<Integer> _getTypes(Reference reference) {
+		Query originQuery = reference.getOriginQuery();
+
+		Table originTable = originQuery.getTable();
+
+		List<Integer> types = new ArrayList<>();
+
+		for (String column : originQuery.getColumns()) {
+			types.add(originTable.getColumnType(column));
+		}
+
+		return types;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void _load(File file) throws IOException {
+		int ignored = 0;
+
+		try (BufferedReader bufferedReader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+
+			String line;
+
+			while ((line = bufferedReader.readLine()) != null) {
+				Map<String, Object> entry;
+
+				/* The last line is truncated if the process was killed while
+				 * writing it */
+				try {
+					entry = _objectMapper.readValue(line, Map.class);
+				}
+				catch (JsonProcessingException jsonProcessingException) {
+					ignored++;
+
+					continue;
+				}
+
+				if (!_fingerprint.equals(entry.get("fingerprint"))) {
+					ignored++;
+
+					continue;
+				}
+
+				_entries.put((String)entry.get("reference"), entry);
+			}
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info(
+				"Resuming " + _entries.size() + " references from " + file +
+					", ignored " + ignored + " lines");
+		}
+	}
+
+	private List<Object[]> _toJSONValues(Collection<Object[]> values) {
+		List<Object[]> jsonValues = new ArrayList<>();
+
+		for (Object[] value : values) {
+			Object[] jsonValue = new Object[value.length];
+
+			for (int i = 0; i < value.length; i++) {
+				if (value[i] instanceof BigDecimal) {
+					BigDecimal bigDecimal = (BigDecimal)value[i];
+
+					jsonValue[i] = bigDecimal.toPlainString();
+				}
+				else if (value[i] instanceof java.util.Date) {
+					jsonValue[i] = value[i].toString();
+				}
+				else {
+					jsonValue[i] = value[i];
+				}
+			}
+
+			jsonValues.add(jsonValue);
+		}
+
+		return jsonValues;
+	}
+
+	/* Restores the class returned by the JDBC driver for the column type,
+	 * the value is kept as it was read if it can't be converted */
+	private Object _toValue(Object value, int type) {
+		if (value == null) {
+			return null;
+		}
+
+		Class<?> clazz = SQLUtil.getJdbcTypeClass(type);
+
+		String string = String.valueOf(value);
+
+		try {
+			if (clazz == BigDecimal.class) {
+				return new BigDecimal(string);
+			}
+
+			if (clazz == Byte.class) {
+				return Byte.valueOf(string);
+			}
+
+			if (clazz == Date.class) {
+				return Date.valueOf(string);
+			}
+
+			if (clazz == Double.class) {
+				return Double.valueOf(string);
+			}
+
+			if (clazz == Float.class) {
+				return Float.valueOf(string);
+			}
+
+			if (clazz == Integer.class) {
+				return Integer.valueOf(string);
+			}
+
+			if (clazz == Long.class) {
+				return Long.valueOf(string);
+			}
+
+			if (clazz == Short.class) {
+				return Short.valueOf(string);
+			}
+
+			if (clazz == Time.class) {
+				return Time.valueOf(string);
+			}
+
+			if (clazz == Timestamp.class) {
+				return Timestamp.valueOf(string);
+			}
+		}
+		catch (IllegalArgumentException illegalArgumentException) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Unable to restore " + string + " as " + clazz,
+					illegalArgumentException);
+			}
+		}
+
+		return value;
+	}
+
+	private static Logger _log = LogManager.getLogger(CheckpointJournal.class);
+
+	private final Map<String, Map<String, Object>> _entries =
+		new ConcurrentHashMap<>();
+	private final String _fingerprint;
+	private final ObjectMapper _objectMapper = new ObjectMapper();
+	private final PrintWriter _writer;
+
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the executors that run the checks in parallel. Checks spend most of
+ * their time waiting for the database, so parallelism is the number of tasks
+ * that can run at the same time rather than the number of processors, each
+ * running task usually holds a database connection.
+ *
+ * @author Jorge Díaz
+ */
+public interface ExecutorFactory {
+
+	public ExecutorService newExecutorService(int parallelism);
+
+}
\ No newline at end of file
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Work stealing pool in asynchronous mode, it replaces
+ * Executors.newWorkStealingPool() that doesn't exist in Java 7.
+ *
+ * @author Jorge Díaz
+ */
+public class ForkJoinExecutorFactory implements ExecutorFactory {
+
+	@Override
+	public ExecutorService newExecutorService(int parallelism) {
+		return new ForkJoinPool(
+			parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+			true);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.dao.TableStatistics;
+import com.liferay.referencechecker.ref.InvalidValuesSink;
+import com.liferay.referencechecker.util.JDBCUtil;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Client side anti-join: the destination key columns are streamed into a
+ * KeySet and after that the origin columns are streamed and probed against
+ * it, so no database index is needed.
+ *
+ * String keys are compared without trailing spaces, and ignoring case in the
+ * databases whose default collations are case insensitive.
+ *
+ * @author Jorge Díaz
+ */
+public class HashCheckEngine implements CheckEngine {
+
+	public HashCheckEngine(String dbType) {
+		this(dbType, null);
+	}
+
+	public HashCheckEngine(String dbType, KeySetCache keySetCache) {
+		this.dbType = dbType;
+		this.keySetCache = keySetCache;
+	}
+
+	@Override
+	public void queryInvalidValues(
+			Connection connection, Query originQuery, Query destinationQuery,
+			InvalidValuesSink invalidValuesSink)
+		throws SQLException {
+
+		boolean autoCommit = connection.getAutoCommit();
+
+		/* PostgreSQL only uses cursors inside transactions */
+		boolean changeAutoCommit =
+			autoCommit && dbType.equals(SQLUtil.TYPE_POSTGRESQL);
+
+		if (changeAutoCommit) {
+			connection.setAutoCommit(false);
+		}
+
+		try {
+			KeySet keySet = getKeySet(
+				connection, originQuery, destinationQuery);
+
+			queryInvalidValues(
+				connection, originQuery, destinationQuery, keySet,
+				invalidValuesSink);
+		}
+		finally {
+			if (changeAutoCommit) {
+				connection.setAutoCommit(true);
+			}
+		}
+	}
+
+	public void setTableStatistics(TableStatistics tableStatistics) {
+		this.tableStatistics = tableStatistics;
+	}
+
+	protected KeySet getKeySet(
+			final Connection connection, final Query originQuery,
+			final Query destinationQuery)
+		throws SQLException {
+
+		if (keySetCache == null) {
+			return loadKeySet(connection, originQuery, destinationQuery);
+		}
+
+		return keySetCache.get(
+			getKeySetCacheKey(originQuery, destinationQuery),
+			getEstimatedMemoryUsage(connection, destinationQuery),
+			new Callable<KeySet>() {
+
+				@Override
+				public KeySet call() throws SQLException {
+					return loadKeySet(
+						connection, originQuery, destinationQuery);
+				}
+
+			});
+	}
+
+	/* Estimated from the catalog statistics, zero if they are not
+	 * available */
+	protected long getEstimatedMemoryUsage(
+		Connection connection, Query destinationQuery) {
+
+		if (tableStatistics == null) {
+			return 0;
+		}
+
+		Long rowEstimate = tableStatistics.getRowEstimate(
+			connection, destinationQuery.getTable());
+
+		if (rowEstimate == null) {
+			return 0;
+		}
+
+		return KeySet.estimateMemoryUsage(rowEstimate);
+	}
+
+	/* Loaded values depend on the destination table, condition and the
+	 * castings applied to match the origin column types */
+	protected String getKeySetCacheKey(
+		Query originQuery, Query destinationQuery) {
+
+		Table destinationTable = destinationQuery.getTable();
+
+		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery, null);
+
+		return StringUtils.lowerCase(
+			destinationTable.getTableName() + "[" +
+				destinationQuery.getCondition() + "]#" +
+					StringUtils.join(destinationColumns, ","));
+	}
+
+	protected KeySet loadKeySet(
+			Connection connection, Query originQuery, Query destinationQuery)
+		throws SQLException {
+
+		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery);
+
+		KeySet keySet = new KeySet(
+			SQLUtil.isCaseInsensitive(dbType), SQLUtil.isPadSpace(dbType));
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			String sql = destinationQuery.getSQLSelect(
+				false, StringUtils.join(destinationColumns, ","));
+
+			sql = SQLUtil.transform(dbType, sql);
+
+			if (_log.isInfoEnabled()) {
+				_log.info("SQL destination keys: " + sql);
+			}
+
+			ps = prepareStreamingStatement(connection, sql);
+
+			rs = ps.executeQuery();
+
+			int columnsNumber = destinationColumns.size();
+
+			while (rs.next()) {
+				Object[] key = new Object[columnsNumber];
+
+				boolean nullKey = false;
+
+				for (int i = 0; i < columnsNumber; i++) {
+					key[i] = rs.getObject(i + 1);
+
+					if (key[i] == null) {
+						nullKey = true;
+					}
+				}
+
+				/* SQL never matches a null destination value, and a null key
+				 * would make the key set store boxed objects */
+				if (!nullKey) {
+					keySet.add(key);
+				}
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+
+		if (_log.isDebugEnabled()) {
+			_log.debug(
+				"Loaded " + keySet.size() + " keys of " + destinationQuery +
+					" using " + keySet.getMemoryUsage() + " bytes");
+		}
+
+		return keySet;
+	}
+
+	protected PreparedStatement prepareStreamingStatement(
+			Connection connection, String sql)
+		throws SQLException {
+
+		PreparedStatement ps = connection.prepareStatement(
+			sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+		ps.setFetchSize(SQLUtil.getStreamingFetchSize(dbType));
+		ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+		return ps;
+	}
+
+	protected void queryInvalidValues(
+			Connection connection, Query originQuery, Query destinationQuery,
+			KeySet keySet, InvalidValuesSink invalidValuesSink)
+		throws SQLException {
+
+		List<String> originColumns = originQuery.getColumns();
+
+		List<String> selectColumns = new ArrayList<>(originColumns);
+
+		selectColumns.addAll(
+			originQuery.getColumnsWithCast(dbType, destinationQuery));
+
+		boolean skipNullKeys = !SQLUtil.isNotExistsPreferred(dbType);
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			String sql = originQuery.getSQLSelect(
+				true, StringUtils.join(selectColumns, ","));
+
+			sql = SQLUtil.transform(dbType, sql);
+
+			if (_log.isInfoEnabled()) {
+				_log.info("SQL origin values: " + sql);
+			}
+
+			ps = prepareStreamingStatement(connection, sql);
+
+			rs = ps.executeQuery();
+
+			int columnsNumber = originColumns.size();
+
+			while (rs.next()) {
+				Object[] key = new Object[columnsNumber];
+
+				boolean nullKey = false;
+
+				for (int i = 0; i < columnsNumber; i++) {
+					key[i] = rs.getObject(columnsNumber + i + 1);
+
+					if (key[i] == null) {
+						nullKey = true;
+					}
+				}
+
+				/* Same behavior as NOT IN, that never returns null values */
+				if ((nullKey && skipNullKeys) || keySet.contains(key)) {
+					continue;
+				}
+
+				Object[] result = new Object[columnsNumber];
+
+				for (int i = 0; i < columnsNumber; i++) {
+					result[i] = rs.getObject(i + 1);
+				}
+
+				invalidValuesSink.add(result);
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+		}
+	}
+
+	protected String dbType;
+	protected KeySetCache keySetCache;
+	protected TableStatistics tableStatistics;
+
+	private static Logger _log = LogManager.getLogger(HashCheckEngine.class);
+
+}
\ No newline at end of file
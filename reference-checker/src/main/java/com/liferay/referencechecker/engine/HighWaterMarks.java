@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Highest primary key and row count of each table in the last incremental
+ * check. Origin rows above the highest primary key are the only ones checked
+ * again, and a destination table whose row count under its highest primary
+ * key decreased had deletes. The row count is -1 in the tables that are not
+ * used as destination.
+ *
+ * Primary keys are not monotonic in time: Liferay Counter hands them out in
+ * blocks to each node, so a node can insert a row with a key under a mark
+ * stored after another node used a later block. Those rows are only checked
+ * by a full check, so incremental checks should be combined with periodic
+ * full checks.
+ *
+ * @author Jorge Díaz
+ */
+public class HighWaterMarks {
+
+	/* Returns {maxPrimaryKey, rowCount}, null if the table was not checked */
+	public long[] get(String tableName) {
+		return marks.get(StringUtils.lowerCase(tableName));
+	}
+
+	public void load(File file) throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+
+		try (InputStream inputStream = new FileInputStream(file)) {
+			properties.load(inputStream);
+		}
+
+		for (String tableName : properties.stringPropertyNames()) {
+			String[] values = StringUtils.split(
+				properties.getProperty(tableName), ',');
+
+			try {
+				put(
+					tableName, Long.parseLong(values[0]),
+					Long.parseLong(values[1]));
+			}
+			catch (RuntimeException runtimeException) {
+				_log.warn(
+					"Ignoring high-water mark of " + tableName + ": " +
+						runtimeException.getMessage());
+			}
+		}
+
+		if (_log.isInfoEnabled()) {
+			_log.info(
+				"Loaded " + marks.size() + " high-water marks from " + file);
+		}
+	}
+
+	public void put(String tableName, long maxPrimaryKey, long rowCount) {
+		marks.put(
+			StringUtils.lowerCase(tableName),
+			new long[] {maxPrimaryKey, rowCount});
+	}
+
+	public int size() {
+		return marks.size();
+	}
+
+	public void store(File file) throws IOException {
+		Properties properties = new Properties();
+
+		for (Map.Entry<String, long[]> entry : marks.entrySet()) {
+			long[] mark = entry.getValue();
+
+			properties.setProperty(entry.getKey(), mark[0] + "," + mark[1]);
+		}
+
+		try (OutputStream outputStream = new FileOutputStream(file)) {
+			properties.store(
+				outputStream, "Highest primary key and row count by table");
+		}
+	}
+
+	protected Map<String, long[]> marks = new ConcurrentHashMap<>();
+
+	private static Logger _log = LogManager.getLogger(HighWaterMarks.class);
+
+}
\ No newline at end of file
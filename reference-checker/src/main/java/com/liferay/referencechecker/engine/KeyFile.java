@@ -0,0 +1,668 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorted and distinct destination keys stored in a file that is memory-mapped
+ * and searched without loading it in the heap. Single column integer keys are
+ * stored as longs, other keys are stored as their text encoding. Files are
+ * written by a KeyFile.Writer, that sorts the keys out of the heap.
+ *
+ * @author Jorge Díaz
+ */
+public class KeyFile implements Closeable {
+
+	public static final int FORMAT_LONG = 1;
+
+	public static final int FORMAT_TEXT = 2;
+
+	/* Keys must be normalized with KeyUtil.normalize, strings are prefixed by
+	 * their length so different keys never get the same encoding */
+	public static String encode(Object[] key) {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < key.length; i++) {
+			if (i > 0) {
+				sb.append('\u0000');
+			}
+
+			Object value = key[i];
+
+			if (value == null) {
+				sb.append('N');
+			}
+			else if (value instanceof Long) {
+				sb.append('L');
+				sb.append(value);
+			}
+			else if (value instanceof Double) {
+				sb.append('D');
+				sb.append(value);
+			}
+			else {
+				String string = String.valueOf(value);
+
+				sb.append('S');
+				sb.append(string.length());
+				sb.append(':');
+				sb.append(string);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	public KeyFile(File file) throws IOException {
+		_randomAccessFile = new RandomAccessFile(file, "r");
+
+		FileChannel fileChannel = _randomAccessFile.getChannel();
+
+		long length = fileChannel.size();
+
+		int segments = (int)((length + _SEGMENT_SIZE - 1) / _SEGMENT_SIZE);
+
+		_segments = new MappedByteBuffer[segments];
+
+		for (int i = 0; i < segments; i++) {
+			long position = (long)i * _SEGMENT_SIZE;
+
+			_segments[i] = fileChannel.map(
+				FileChannel.MapMode.READ_ONLY, position,
+				Math.min(_SEGMENT_SIZE, length - position));
+		}
+
+		if ((length < _HEADER_SIZE) || (_getInt(0) != _MAGIC)) {
+			close();
+
+			throw new IOException("Invalid key file " + file);
+		}
+
+		_format = _getInt(4);
+		_size = _getLong(8);
+
+		_textPosition = _HEADER_SIZE + ((_size + 1) * 8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		_randomAccessFile.close();
+	}
+
+	/* Binary search of a normalized key */
+	public boolean contains(Object[] key) {
+		if (_format == FORMAT_LONG) {
+			if ((key.length != 1) || !(key[0] instanceof Long)) {
+				return false;
+			}
+
+			return _containsLong((Long)key[0]);
+		}
+
+		return _containsText(encode(key));
+	}
+
+	public int getFormat() {
+		return _format;
+	}
+
+	public long size() {
+		return _size;
+	}
+
+	/**
+	 * Writes the keys added in any order to a KeyFile. Runs of bufferSize keys
+	 * are sorted in the heap and spilled to temporary files that are merged
+	 * when the writer is closed, so a run is the only part kept in memory.
+	 */
+	public static class Writer implements Closeable {
+
+		public Writer(File file, int bufferSize) {
+			_file = file;
+			_bufferSize = bufferSize;
+
+			_longKeys = new long[bufferSize];
+		}
+
+		/* Keys must be normalized with KeyUtil.normalize */
+		public void add(Object[] key) throws IOException {
+			if (_textKeys == null) {
+				if ((key.length == 1) && (key[0] instanceof Long)) {
+					if (_size == _bufferSize) {
+						_spill();
+					}
+
+					_longKeys[_size++] = (Long)key[0];
+
+					return;
+				}
+
+				_switchToText();
+			}
+
+			_addText(encode(key));
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (_runFiles.isEmpty()) {
+					if (_textKeys == null) {
+						_write(_file, _longKeys, _size);
+					}
+					else {
+						_write(_file, _textKeys, _size);
+					}
+				}
+				else {
+					if (_size > 0) {
+						_spill();
+					}
+
+					_merge();
+				}
+			}
+			finally {
+				for (File runFile : _runFiles) {
+					runFile.delete();
+				}
+
+				_runFiles.clear();
+			}
+		}
+
+		private void _addText(String key) throws IOException {
+			if (_size == _bufferSize) {
+				_spill();
+			}
+
+			_textKeys[_size++] = key;
+		}
+
+		private File _createRunFile() throws IOException {
+			File runFile = File.createTempFile(
+				_file.getName() + "-", ".run", _file.getParentFile());
+
+			_runFiles.add(runFile);
+
+			return runFile;
+		}
+
+		private void _merge() throws IOException {
+			List<Run> runs = new ArrayList<>();
+
+			PriorityQueue<Run> priorityQueue = new PriorityQueue<>(
+				_runFiles.size());
+
+			try {
+				for (File runFile : _runFiles) {
+					Run run = new Run(runFile, _textKeys != null);
+
+					runs.add(run);
+
+					if (run.next()) {
+						priorityQueue.add(run);
+					}
+				}
+
+				if (_textKeys == null) {
+					_mergeLongKeys(priorityQueue);
+				}
+				else {
+					_mergeTextKeys(priorityQueue);
+				}
+			}
+			finally {
+				for (Run run : runs) {
+					run.close();
+				}
+			}
+		}
+
+		/* The number of keys is written once they are merged */
+		private void _mergeLongKeys(PriorityQueue<Run> priorityQueue)
+			throws IOException {
+
+			long count = 0;
+
+			try (DataOutputStream dataOutputStream = _createOutputStream(
+					_file)) {
+
+				_writeHeader(dataOutputStream, FORMAT_LONG, 0);
+
+				Object previousKey = null;
+
+				while (!priorityQueue.isEmpty()) {
+					Run run = priorityQueue.poll();
+
+					Object key = run.getKey();
+
+					if (!key.equals(previousKey)) {
+						dataOutputStream.writeLong((Long)key);
+
+						count++;
+
+						previousKey = key;
+					}
+
+					if (run.next()) {
+						priorityQueue.add(run);
+					}
+				}
+			}
+
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(
+					_file, "rw")) {
+
+				randomAccessFile.seek(8);
+				randomAccessFile.writeLong(count);
+			}
+		}
+
+		/* Offsets and text are merged to two files that are appended after
+		 * the header */
+		private void _mergeTextKeys(PriorityQueue<Run> priorityQueue)
+			throws IOException {
+
+			File offsetsFile = _createRunFile();
+			File textFile = _createRunFile();
+
+			long count = 0;
+
+			try (DataOutputStream offsetsOutputStream = _createOutputStream(
+					offsetsFile);
+				DataOutputStream textOutputStream = _createOutputStream(
+					textFile)) {
+
+				long offset = 0;
+
+				Object previousKey = null;
+
+				while (!priorityQueue.isEmpty()) {
+					Run run = priorityQueue.poll();
+
+					Object key = run.getKey();
+
+					if (!key.equals(previousKey)) {
+						byte[] encodedKey = ((String)key).getBytes(_UTF_8);
+
+						offsetsOutputStream.writeLong(offset);
+						textOutputStream.write(encodedKey);
+
+						offset += encodedKey.length;
+
+						count++;
+
+						previousKey = key;
+					}
+
+					if (run.next()) {
+						priorityQueue.add(run);
+					}
+				}
+
+				offsetsOutputStream.writeLong(offset);
+			}
+
+			try (DataOutputStream dataOutputStream = _createOutputStream(
+					_file)) {
+
+				_writeHeader(dataOutputStream, FORMAT_TEXT, count);
+
+				Files.copy(offsetsFile.toPath(), dataOutputStream);
+				Files.copy(textFile.toPath(), dataOutputStream);
+			}
+		}
+
+		/* Runs start with their number of keys */
+		private void _spill() throws IOException {
+			File runFile = _createRunFile();
+
+			try (DataOutputStream dataOutputStream = _createOutputStream(
+					runFile)) {
+
+				dataOutputStream.writeLong(_size);
+
+				if (_textKeys == null) {
+					Arrays.sort(_longKeys, 0, _size);
+
+					for (int i = 0; i < _size; i++) {
+						dataOutputStream.writeLong(_longKeys[i]);
+					}
+				}
+				else {
+					Arrays.sort(_textKeys, 0, _size);
+
+					for (int i = 0; i < _size; i++) {
+						byte[] encodedKey = _textKeys[i].getBytes(_UTF_8);
+
+						dataOutputStream.writeInt(encodedKey.length);
+						dataOutputStream.write(encodedKey);
+
+						_textKeys[i] = null;
+					}
+				}
+			}
+
+			_size = 0;
+		}
+
+		/* Long keys already added are encoded again, their runs are read
+		 * and spilled as text runs */
+		private void _switchToText() throws IOException {
+			List<File> longRunFiles = new ArrayList<>(_runFiles);
+
+			_runFiles.clear();
+
+			long[] longKeys = _longKeys;
+			int size = _size;
+
+			_longKeys = null;
+			_size = 0;
+
+			_textKeys = new String[_bufferSize];
+
+			for (int i = 0; i < size; i++) {
+				_addText(encode(new Object[] {longKeys[i]}));
+			}
+
+			for (File longRunFile : longRunFiles) {
+				try (Run run = new Run(longRunFile, false)) {
+					while (run.next()) {
+						_addText(encode(new Object[] {run.getKey()}));
+					}
+				}
+				finally {
+					longRunFile.delete();
+				}
+			}
+		}
+
+		private final int _bufferSize;
+		private final File _file;
+		private long[] _longKeys;
+		private final List<File> _runFiles = new ArrayList<>();
+		private int _size;
+		private String[] _textKeys;
+
+	}
+
+	/**
+	 * Sorted keys of a run spilled by a KeyFile.Writer, read in order while
+	 * the runs are merged.
+	 */
+	private static class Run implements Closeable, Comparable<Run> {
+
+		public Run(File file, boolean text) throws IOException {
+			_dataInputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file), 65536));
+
+			_remaining = _dataInputStream.readLong();
+			_text = text;
+		}
+
+		@Override
+		public void close() throws IOException {
+			_dataInputStream.close();
+		}
+
+		@Override
+		public int compareTo(Run run) {
+			if (_text) {
+				String key = (String)_key;
+
+				return key.compareTo((String)run._key);
+			}
+
+			return Long.compare((Long)_key, (Long)run._key);
+		}
+
+		public Object getKey() {
+			return _key;
+		}
+
+		public boolean next() throws IOException {
+			if (_remaining == 0) {
+				return false;
+			}
+
+			_remaining--;
+
+			if (_text) {
+				byte[] bytes = new byte[_dataInputStream.readInt()];
+
+				_dataInputStream.readFully(bytes);
+
+				_key = new String(bytes, _UTF_8);
+			}
+			else {
+				_key = _dataInputStream.readLong();
+			}
+
+			return true;
+		}
+
+		private final DataInputStream _dataInputStream;
+		private Object _key;
+		private long _remaining;
+		private final boolean _text;
+
+	}
+
+	private static DataOutputStream _createOutputStream(File file)
+		throws IOException {
+
+		return new DataOutputStream(
+			new BufferedOutputStream(new FileOutputStream(file), 65536));
+	}
+
+	private static int _distinct(long[] sortedKeys) {
+		int count = 0;
+
+		for (int i = 0; i < sortedKeys.length; i++) {
+			if ((count == 0) || (sortedKeys[count - 1] != sortedKeys[i])) {
+				sortedKeys[count++] = sortedKeys[i];
+			}
+		}
+
+		return count;
+	}
+
+	private static int _distinct(String[] sortedKeys) {
+		int count = 0;
+
+		for (int i = 0; i < sortedKeys.length; i++) {
+			if ((count == 0) || !sortedKeys[count - 1].equals(sortedKeys[i])) {
+				sortedKeys[count++] = sortedKeys[i];
+			}
+		}
+
+		return count;
+	}
+
+	private static void _write(File file, long[] keys, int size)
+		throws IOException {
+
+		long[] sortedKeys = Arrays.copyOf(keys, size);
+
+		Arrays.sort(sortedKeys);
+
+		int count = _distinct(sortedKeys);
+
+		try (DataOutputStream dataOutputStream = _createOutputStream(file)) {
+			_writeHeader(dataOutputStream, FORMAT_LONG, count);
+
+			for (int i = 0; i < count; i++) {
+				dataOutputStream.writeLong(sortedKeys[i]);
+			}
+		}
+	}
+
+	private static void _write(File file, String[] keys, int size)
+		throws IOException {
+
+		String[] sortedKeys = Arrays.copyOf(keys, size);
+
+		Arrays.sort(sortedKeys);
+
+		int count = _distinct(sortedKeys);
+
+		byte[][] encodedKeys = new byte[count][];
+
+		for (int i = 0; i < count; i++) {
+			encodedKeys[i] = sortedKeys[i].getBytes(_UTF_8);
+		}
+
+		try (DataOutputStream dataOutputStream = _createOutputStream(file)) {
+			_writeHeader(dataOutputStream, FORMAT_TEXT, count);
+
+			long offset = 0;
+
+			for (byte[] encodedKey : encodedKeys) {
+				dataOutputStream.writeLong(offset);
+
+				offset += encodedKey.length;
+			}
+
+			dataOutputStream.writeLong(offset);
+
+			for (byte[] encodedKey : encodedKeys) {
+				dataOutputStream.write(encodedKey);
+			}
+		}
+	}
+
+	private static void _writeHeader(
+			DataOutputStream dataOutputStream, int format, long count)
+		throws IOException {
+
+		dataOutputStream.writeInt(_MAGIC);
+		dataOutputStream.writeInt(format);
+		dataOutputStream.writeLong(count);
+	}
+
+	private boolean _containsLong(long key) {
+		long low = 0;
+		long high = _size - 1;
+
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+
+			long middleKey = _getLong(_HEADER_SIZE + (middle * 8));
+
+			if (middleKey < key) {
+				low = middle + 1;
+			}
+			else if (middleKey > key) {
+				high = middle - 1;
+			}
+			else {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean _containsText(String key) {
+		long low = 0;
+		long high = _size - 1;
+
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+
+			int value = _getText(middle).compareTo(key);
+
+			if (value < 0) {
+				low = middle + 1;
+			}
+			else if (value > 0) {
+				high = middle - 1;
+			}
+			else {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private byte _getByte(long position) {
+		MappedByteBuffer segment = _segments[(int)(position / _SEGMENT_SIZE)];
+
+		return segment.get((int)(position % _SEGMENT_SIZE));
+	}
+
+	private int _getInt(long position) {
+		MappedByteBuffer segment = _segments[(int)(position / _SEGMENT_SIZE)];
+
+		return segment.getInt((int)(position % _SEGMENT_SIZE));
+	}
+
+	/* Longs are aligned to 8 bytes, so they never cross two segments */
+	private long _getLong(long position) {
+		MappedByteBuffer segment = _segments[(int)(position / _SEGMENT_SIZE)];
+
+		return segment.getLong((int)(position % _SEGMENT_SIZE));
+	}
+
+	private String _getText(long index) {
+		long start = _getLong(_HEADER_SIZE + (index * 8));
+		long end = _getLong(_HEADER_SIZE + ((index + 1) * 8));
+
+		byte[] bytes = new byte[(int)(end - start)];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = _getByte(_textPosition + start + i);
+		}
+
+		return new String(bytes, _UTF_8);
+	}
+
+	private static final long _HEADER_SIZE = 16;
+
+	private static final int _MAGIC = 0x52434B46;
+
+	private static final long _SEGMENT_SIZE = 1L << 30;
+
+	private static final Charset _UTF_8 = Charset.forName("UTF-8");
+
+	private final int _format;
+	private final RandomAccessFile _randomAccessFile;
+	private final MappedByteBuffer[] _segments;
+	private final long _size;
+	private final long _textPosition;
+
+}
\ No newline at end of file
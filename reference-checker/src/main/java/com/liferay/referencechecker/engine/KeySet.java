@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.util.KeyUtil;
+import com.liferay.referencechecker.util.LongHashSet;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of key values read from a destination table. Single column integer keys
+ * are stored in a LongHashSet, other keys are normalized and stored as
+ * objects.
+ *
+ * @author Jorge Díaz
+ */
+public class KeySet {
+
+	/* Lower bound of the memory used by a key set of the given size, keys
+	 * that are not integers use more */
+	public static long estimateMemoryUsage(long size) {
+		return LongHashSet.estimateMemoryUsage(size);
+	}
+
+	public KeySet(boolean caseInsensitive, boolean padSpace) {
+		_caseInsensitive = caseInsensitive;
+		_padSpace = padSpace;
+	}
+
+	public boolean add(Object[] key) {
+		Object normalizedKey = _normalizeKey(key);
+
+		if ((_objects == null) && (normalizedKey instanceof Long)) {
+			Long longKey = (Long)normalizedKey;
+
+			return _longs.add(longKey.longValue());
+		}
+
+		if (_objects == null) {
+			_objects = new HashSet<>();
+
+			for (long value : _longs.toArray()) {
+				_objects.add(value);
+			}
+
+			_longs = null;
+		}
+
+		return _objects.add(normalizedKey);
+	}
+
+	public boolean contains(Object[] key) {
+		Object normalizedKey = _normalizeKey(key);
+
+		if (_objects != null) {
+			return _objects.contains(normalizedKey);
+		}
+
+		if (normalizedKey instanceof Long) {
+			Long longKey = (Long)normalizedKey;
+
+			return _longs.contains(longKey.longValue());
+		}
+
+		return false;
+	}
+
+	public long getMemoryUsage() {
+		if (_objects != null) {
+			return _objects.size() * _OBJECT_ENTRY_SIZE;
+		}
+
+		return _longs.getMemoryUsage();
+	}
+
+	public int size() {
+		if (_objects != null) {
+			return _objects.size();
+		}
+
+		return _longs.size();
+	}
+
+	private Object _normalizeKey(Object[] key) {
+		if (key.length == 1) {
+			return KeyUtil.normalize(key[0], _caseInsensitive, _padSpace);
+		}
+
+		Object[] normalizedKey = new Object[key.length];
+
+		for (int i = 0; i < key.length; i++) {
+			normalizedKey[i] = KeyUtil.normalize(
+				key[i], _caseInsensitive, _padSpace);
+		}
+
+		return Arrays.asList(normalizedKey);
+	}
+
+	/* HashMap node, boxed key and its share of the bucket array */
+	private static final long _OBJECT_ENTRY_SIZE = 80L;
+
+	private final boolean _caseInsensitive;
+	private LongHashSet _longs = new LongHashSet();
+	private Set<Object> _objects;
+	private final boolean _padSpace;
+
+}
\ No newline at end of file
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.sql.SQLException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Destination key sets shared by all the references checked in the same
+ * execution. Key sets are evicted in least recently used order when the
+ * memory budget is exceeded.
+ *
+ * The estimated size of a key set is charged when its load starts and
+ * replaced by the real size once it is loaded. Each execution using the cache
+ * calls acquire and release, the cache is cleared when the last one finishes.
+ *
+ * @author Jorge Díaz
+ */
+public class KeySetCache {
+
+	public KeySetCache(long maxMemory) {
+		_maxMemory = maxMemory;
+	}
+
+	public synchronized void acquire() {
+		_owners++;
+	}
+
+	/* Key sets being loaded keep their charge until they are stored */
+	public synchronized void clear() {
+		_keySets.clear();
+
+		_evictions = 0;
+		_hits = 0;
+		_memoryUsage = 0;
+		_misses = 0;
+
+		for (long reservedMemory : _reservedMemory.values()) {
+			_memoryUsage += reservedMemory;
+		}
+	}
+
+	/* Concurrent requests of the same key wait for a single load */
+	public KeySet get(
+			String key, long estimatedMemoryUsage, Callable<KeySet> loader)
+		throws SQLException {
+
+		FutureTask<KeySet> futureTask;
+		boolean owner = false;
+
+		synchronized (this) {
+			KeySet keySet = _keySets.get(key);
+
+			if (keySet != null) {
+				_hits++;
+
+				return keySet;
+			}
+
+			futureTask = _loadingKeySets.get(key);
+
+			if (futureTask == null) {
+				futureTask = new FutureTask<>(loader);
+
+				_loadingKeySets.put(key, futureTask);
+
+				owner = true;
+
+				_misses++;
+
+				_reserve(key, estimatedMemoryUsage);
+			}
+			else {
+				_hits++;
+			}
+		}
+
+		if (owner) {
+			futureTask.run();
+		}
+
+		KeySet keySet = null;
+
+		try {
+			keySet = futureTask.get();
+
+			return keySet;
+		}
+		catch (ExecutionException executionException) {
+			Throwable cause = executionException.getCause();
+
+			if (cause instanceof SQLException) {
+				throw (SQLException)cause;
+			}
+
+			throw new RuntimeException(cause);
+		}
+		catch (InterruptedException interruptedException) {
+			Thread currentThread = Thread.currentThread();
+
+			currentThread.interrupt();
+
+			throw new RuntimeException(interruptedException);
+		}
+		finally {
+			if (owner) {
+				_put(key, keySet);
+			}
+		}
+	}
+
+	public synchronized long getEvictions() {
+		return _evictions;
+	}
+
+	public synchronized long getHits() {
+		return _hits;
+	}
+
+	public synchronized long getMaxMemory() {
+		return _maxMemory;
+	}
+
+	public synchronized long getMemoryUsage() {
+		return _memoryUsage;
+	}
+
+	public synchronized long getMisses() {
+		return _misses;
+	}
+
+	/* Clears the cache if no other execution is using it */
+	public synchronized void release() {
+		if (_owners > 0) {
+			_owners--;
+		}
+
+		if (_owners == 0) {
+			clear();
+		}
+	}
+
+	public synchronized void setMaxMemory(long maxMemory) {
+		_maxMemory = maxMemory;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "KeySetCache{hits=" + _hits + ", misses=" + _misses +
+			", evictions=" + _evictions + ", size=" + _keySets.size() +
+				", memoryUsage=" + _memoryUsage + ", maxMemory=" + _maxMemory +
+					"}";
+	}
+
+	/* Evicts the least recently used key sets until the charged memory fits
+	 * in the budget, key sets being loaded can't be evicted */
+	private void _evict(String key) {
+		Iterator<Map.Entry<String, KeySet>> iterator =
+			_keySets.entrySet().iterator();
+
+		while ((_memoryUsage > _maxMemory) && iterator.hasNext()) {
+			Map.Entry<String, KeySet> entry = iterator.next();
+
+			if (key.equals(entry.getKey())) {
+				continue;
+			}
+
+			KeySet evictedKeySet = entry.getValue();
+
+			iterator.remove();
+
+			_memoryUsage -= evictedKeySet.getMemoryUsage();
+
+			_evictions++;
+		}
+	}
+
+	private synchronized void _put(String key, KeySet keySet) {
+		_loadingKeySets.remove(key);
+
+		Long reservedMemory = _reservedMemory.remove(key);
+
+		if (reservedMemory != null) {
+			_memoryUsage -= reservedMemory;
+		}
+
+		if (keySet == null) {
+			return;
+		}
+
+		long keySetMemoryUsage = keySet.getMemoryUsage();
+
+		if (keySetMemoryUsage > _maxMemory) {
+			if (_log.isDebugEnabled()) {
+				_log.debug(
+					"Key set of " + key + " exceeds the cache size: " +
+						keySetMemoryUsage);
+			}
+
+			return;
+		}
+
+		_keySets.put(key, keySet);
+
+		_memoryUsage += keySetMemoryUsage;
+
+		_evict(key);
+	}
+
+	private synchronized void _reserve(String key, long estimatedMemoryUsage) {
+		if (estimatedMemoryUsage <= 0) {
+			return;
+		}
+
+		_reservedMemory.put(key, estimatedMemoryUsage);
+
+		_memoryUsage += estimatedMemoryUsage;
+
+		_evict(key);
+	}
+
+	private static Logger _log = LogManager.getLogger(KeySetCache.class);
+
+	private long _evictions;
+	private long _hits;
+	private final LinkedHashMap<String, KeySet> _keySets = new LinkedHashMap<>(
+		16, 0.75F, true);
+	private final Map<String, FutureTask<KeySet>> _loadingKeySets =
+		new HashMap<>();
+	private long _maxMemory;
+	private long _memoryUsage;
+	private long _misses;
+	private int _owners;
+	private final Map<String, Long> _reservedMemory = new HashMap<>();
+
+}
\ No newline at end of file
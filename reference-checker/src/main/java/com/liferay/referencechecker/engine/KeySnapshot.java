@@ -0,0 +1,542 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.ref.CollectionInvalidValuesSink;
+import com.liferay.referencechecker.ref.DistinctInvalidValuesSink;
+import com.liferay.referencechecker.ref.InvalidValuesSink;
+import com.liferay.referencechecker.ref.LimitInvalidValuesSink;
+import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.Reference;
+import com.liferay.referencechecker.util.KeyUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Directory with the key columns of the references exported from a database,
+ * so they can be checked again without connecting to it. The catalog file
+ * stores the references and the model of their tables, each reference has an
+ * origin file with its values and their number of rows and a destination
+ * KeyFile that can be shared with other references.
+ *
+ * @author Jorge Díaz
+ */
+public class KeySnapshot {
+
+	public KeySnapshot(File directory) {
+		_directory = directory;
+	}
+
+	public void addReference(
+		Reference reference, String originFileName,
+		String destinationFileName) {
+
+		_references.add(reference);
+
+		_fileNames.put(
+			reference, new String[] {originFileName, destinationFileName});
+	}
+
+	/* Origin values that are not found in the destination KeyFile, checked in
+	 * parallel by the given executor service */
+	public List<MissingReferences> check(
+			final int missingReferencesLimit, ExecutorService executorService)
+		throws IOException {
+
+		final Map<String, KeyFile> keyFiles = new HashMap<>();
+
+		List<Future<MissingReferences>> futures = new ArrayList<>();
+
+		try {
+			for (final Reference reference : _references) {
+				final String[] fileNames = _fileNames.get(reference);
+
+				if (!keyFiles.containsKey(fileNames[1])) {
+					keyFiles.put(
+						fileNames[1], new KeyFile(getFile(fileNames[1])));
+				}
+
+				futures.add(
+					executorService.submit(
+						new Callable<MissingReferences>() {
+
+							@Override
+							public MissingReferences call() throws IOException {
+								return _check(
+									reference, getFile(fileNames[0]),
+									keyFiles.get(fileNames[1]),
+									missingReferencesLimit);
+							}
+
+						}));
+			}
+
+			List<MissingReferences> listMissingReferences = new ArrayList<>();
+
+			for (int i = 0; i < futures.size(); i++) {
+				MissingReferences missingReferences;
+
+				try {
+					missingReferences = futures.get(i).get();
+				}
+				catch (Throwable t) {
+					_log.error(
+						"EXCEPTION: " + t.getClass() + " - " + t.getMessage(),
+						t);
+
+					missingReferences = new MissingReferences(
+						_references.get(i), t);
+				}
+
+				if (missingReferences != null) {
+					listMissingReferences.add(missingReferences);
+				}
+			}
+
+			return listMissingReferences;
+		}
+		finally {
+			for (KeyFile keyFile : keyFiles.values()) {
+				keyFile.close();
+			}
+		}
+	}
+
+	public String getCreateDate() {
+		return _createDate;
+	}
+
+	public String getDBType() {
+		return _dbType;
+	}
+
+	public File getDirectory() {
+		return _directory;
+	}
+
+	public File getFile(String fileName) {
+		return new File(_directory, fileName);
+	}
+
+	public String getFingerprint() {
+		return _fingerprint;
+	}
+
+	public List<Reference> getReferences() {
+		return Collections.unmodifiableList(_references);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void load() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+
+		Map<String, Object> catalog = objectMapper.readValue(
+			getFile(_CATALOG_FILE_NAME), Map.class);
+
+		_createDate = (String)catalog.get("createDate");
+		_dbType = (String)catalog.get("dbType");
+		_fingerprint = (String)catalog.get("fingerprint");
+
+		Map<String, Table> tables = new HashMap<>();
+
+		for (Map<String, Object> tableMap :
+				(List<Map<String, Object>>)catalog.get("tables")) {
+
+			Table table = _toTable(tableMap);
+
+			tables.put(table.getTableName(), table);
+		}
+
+		_fileNames.clear();
+		_references.clear();
+
+		for (Map<String, Object> referenceMap :
+				(List<Map<String, Object>>)catalog.get("references")) {
+
+			Reference reference = new Reference(
+				_toQuery((Map<String, Object>)referenceMap.get("origin"), tables),
+				_toQuery(
+					(Map<String, Object>)referenceMap.get("destination"),
+					tables));
+
+			reference.setFixAction((String)referenceMap.get("fixAction"));
+
+			addReference(
+				reference, (String)referenceMap.get("originFile"),
+				(String)referenceMap.get("destinationFile"));
+		}
+	}
+
+	public void store(String createDate, String dbType, String fingerprint)
+		throws IOException {
+
+		_createDate = createDate;
+		_dbType = dbType;
+		_fingerprint = fingerprint;
+
+		Map<String, Map<String, Object>> tables = new TreeMap<>();
+		List<Map<String, Object>> references = new ArrayList<>();
+
+		for (Reference reference : _references) {
+			Query originQuery = reference.getOriginQuery();
+			Query destinationQuery = reference.getDestinationQuery();
+
+			for (Query query : Arrays.asList(originQuery, destinationQuery)) {
+				Table table = query.getTable();
+
+				if (!tables.containsKey(table.getTableName())) {
+					tables.put(table.getTableName(), _toMap(table));
+				}
+			}
+
+			String[] fileNames = _fileNames.get(reference);
+
+			Map<String, Object> referenceMap = new LinkedHashMap<>();
+
+			referenceMap.put("origin", _toMap(originQuery));
+			referenceMap.put("destination", _toMap(destinationQuery));
+			referenceMap.put("fixAction", reference.getFixAction());
+			referenceMap.put("originFile", fileNames[0]);
+			referenceMap.put("destinationFile", fileNames[1]);
+
+			references.add(referenceMap);
+		}
+
+		Map<String, Object> catalog = new LinkedHashMap<>();
+
+		catalog.put("createDate", createDate);
+		catalog.put("dbType", dbType);
+		catalog.put("fingerprint", fingerprint);
+		catalog.put("tables", new ArrayList<>(tables.values()));
+		catalog.put("references", references);
+
+		ObjectMapper objectMapper = new ObjectMapper();
+
+		objectMapper.writeValue(getFile(_CATALOG_FILE_NAME), catalog);
+	}
+
+	/**
+	 * Origin values of a reference, each one with the normalized key used to
+	 * search it in the destination KeyFile and its number of rows. Values are
+	 * written in the order they are read from the database, a value is
+	 * repeated if its table was exported with other references.
+	 */
+	public static class OriginKeysWriter implements Closeable {
+
+		public OriginKeysWriter(File file, int width) throws IOException {
+			_dataOutputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 65536));
+
+			_dataOutputStream.writeInt(_MAGIC);
+			_dataOutputStream.writeInt(width);
+		}
+
+		public void add(Object[] value, Object[] key, long count)
+			throws IOException {
+
+			_dataOutputStream.writeBoolean(true);
+
+			for (Object object : value) {
+				_writeValue(_dataOutputStream, object);
+			}
+
+			for (Object object : key) {
+				_writeValue(_dataOutputStream, object);
+			}
+
+			_dataOutputStream.writeLong(count);
+		}
+
+		@Override
+		public void close() throws IOException {
+			_dataOutputStream.writeBoolean(false);
+
+			_dataOutputStream.close();
+		}
+
+		private final DataOutputStream _dataOutputStream;
+
+	}
+
+	private static Object _readValue(DataInputStream dataInputStream)
+		throws IOException {
+
+		byte type = dataInputStream.readByte();
+
+		if (type == _TYPE_LONG) {
+			return dataInputStream.readLong();
+		}
+
+		if (type == _TYPE_DOUBLE) {
+			return dataInputStream.readDouble();
+		}
+
+		if (type == _TYPE_STRING) {
+			byte[] bytes = new byte[dataInputStream.readInt()];
+
+			dataInputStream.readFully(bytes);
+
+			return new String(bytes, "UTF-8");
+		}
+
+		return null;
+	}
+
+	/* Values are stored as the types returned by KeyUtil.normalize, strings are
+	 * stored as they are read to report them as they are in the database */
+	private static void _writeValue(
+			DataOutputStream dataOutputStream, Object value)
+		throws IOException {
+
+		Object normalizedValue = KeyUtil.normalize(value, false, false);
+
+		if (normalizedValue == null) {
+			dataOutputStream.writeByte(_TYPE_NULL);
+		}
+		else if (normalizedValue instanceof Long) {
+			dataOutputStream.writeByte(_TYPE_LONG);
+			dataOutputStream.writeLong((Long)normalizedValue);
+		}
+		else if (normalizedValue instanceof Double) {
+			dataOutputStream.writeByte(_TYPE_DOUBLE);
+			dataOutputStream.writeDouble((Double)normalizedValue);
+		}
+		else {
+			if (!(value instanceof String)) {
+				value = String.valueOf(normalizedValue);
+			}
+
+			byte[] bytes = ((String)value).getBytes("UTF-8");
+
+			dataOutputStream.writeByte(_TYPE_STRING);
+			dataOutputStream.writeInt(bytes.length);
+			dataOutputStream.write(bytes);
+		}
+	}
+
+	private MissingReferences _check(
+			Reference reference, File originFile, KeyFile keyFile,
+			int missingReferencesLimit)
+		throws IOException {
+
+		if (_log.isInfoEnabled()) {
+			_log.info("Processing: " + reference);
+		}
+
+		InvalidValuesSink invalidValuesSink;
+		DistinctInvalidValuesSink distinctInvalidValuesSink = null;
+
+		/* The origin keys of several references are grouped together, so the
+		 * same value can be read in several rows */
+		if (missingReferencesLimit < 0) {
+			invalidValuesSink = new CollectionInvalidValuesSink();
+		}
+		else {
+			distinctInvalidValuesSink = new DistinctInvalidValuesSink(
+				new LimitInvalidValuesSink(missingReferencesLimit));
+
+			invalidValuesSink = distinctInvalidValuesSink;
+		}
+
+		long affectedRows = 0;
+
+		try (DataInputStream dataInputStream = new DataInputStream(
+				new BufferedInputStream(
+					new FileInputStream(originFile), 65536))) {
+
+			if (dataInputStream.readInt() != _MAGIC) {
+				throw new IOException("Invalid origin keys file " + originFile);
+			}
+
+			int width = dataInputStream.readInt();
+
+			while (dataInputStream.readBoolean()) {
+				Object[] value = new Object[width];
+				Object[] key = new Object[width];
+
+				for (int i = 0; i < width; i++) {
+					value[i] = _readValue(dataInputStream);
+				}
+
+				for (int i = 0; i < width; i++) {
+					key[i] = _readValue(dataInputStream);
+				}
+
+				long count = dataInputStream.readLong();
+
+				if (keyFile.contains(key)) {
+					continue;
+				}
+
+				invalidValuesSink.add(value);
+
+				affectedRows += count;
+			}
+		}
+
+		if (invalidValuesSink.getCount() == 0) {
+			return null;
+		}
+
+		MissingReferences missingReferences = new MissingReferences(
+			reference, invalidValuesSink, affectedRows);
+
+		String planReason =
+			"offline check of the snapshot exported at " + _createDate;
+
+		/* The snapshot can not be queried to count the distinct values */
+		if ((distinctInvalidValuesSink != null) &&
+			!distinctInvalidValuesSink.isCountExact()) {
+
+			planReason += ", approximate count of values";
+		}
+
+		missingReferences.setPlan(AntiJoinPlan.STRATEGY_CLIENT, planReason);
+
+		return missingReferences;
+	}
+
+	private Map<String, Object> _toMap(Query query) {
+		Table table = query.getTable();
+
+		Map<String, Object> queryMap = new LinkedHashMap<>();
+
+		queryMap.put("table", table.getTableName());
+		queryMap.put("columns", query.getColumns());
+		queryMap.put("casting", query.getCasting());
+		queryMap.put("condition", query.getCondition());
+
+		return queryMap;
+	}
+
+	private Map<String, Object> _toMap(Table table) {
+		List<String> primaryKeys = new ArrayList<>();
+
+		if (table.getPrimaryKey() != null) {
+			primaryKeys.add(table.getPrimaryKey());
+		}
+		else if (table.getCompoundPrimaryKey() != null) {
+			primaryKeys.addAll(Arrays.asList(table.getCompoundPrimaryKey()));
+		}
+
+		List<Map<String, Object>> columns = new ArrayList<>();
+
+		for (int i = 0; i < table.getNumberOfColumns(); i++) {
+			Map<String, Object> column = new LinkedHashMap<>();
+
+			column.put("name", table.getColumnName(i));
+			column.put("type", table.getColumnType(i));
+			column.put("typeSqlName", table.getColumnTypeSqlName(i));
+			column.put("size", table.getColumnSize(i));
+			column.put("nullable", table.getColumnIsNullable(i));
+
+			columns.add(column);
+		}
+
+		Map<String, Object> tableMap = new LinkedHashMap<>();
+
+		tableMap.put("name", table.getTableName());
+		tableMap.put("primaryKeys", primaryKeys);
+		tableMap.put("columns", columns);
+
+		return tableMap;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Query _toQuery(
+		Map<String, Object> queryMap, Map<String, Table> tables) {
+
+		return new Query(
+			tables.get(queryMap.get("table")),
+			(List<String>)queryMap.get("columns"),
+			(List<String>)queryMap.get("casting"),
+			(String)queryMap.get("condition"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Table _toTable(Map<String, Object> tableMap) {
+		List<String> columnNames = new ArrayList<>();
+		List<Integer> columnTypes = new ArrayList<>();
+		List<String> columnTypesSqlName = new ArrayList<>();
+		List<Integer> columnSizes = new ArrayList<>();
+		List<Boolean> columnNullables = new ArrayList<>();
+
+		for (Map<String, Object> column :
+				(List<Map<String, Object>>)tableMap.get("columns")) {
+
+			columnNames.add((String)column.get("name"));
+			columnTypes.add(((Number)column.get("type")).intValue());
+			columnTypesSqlName.add((String)column.get("typeSqlName"));
+			columnSizes.add(((Number)column.get("size")).intValue());
+			columnNullables.add((Boolean)column.get("nullable"));
+		}
+
+		return new Table(
+			(String)tableMap.get("name"),
+			(List<String>)tableMap.get("primaryKeys"), columnNames,
+			columnTypes, columnTypesSqlName, columnSizes, columnNullables);
+	}
+
+	private static final String _CATALOG_FILE_NAME = "catalog.json";
+
+	private static final int _MAGIC = 0x52434B4F;
+
+	private static final byte _TYPE_DOUBLE = 2;
+
+	private static final byte _TYPE_LONG = 1;
+
+	private static final byte _TYPE_NULL = 0;
+
+	private static final byte _TYPE_STRING = 3;
+
+	private static Logger _log = LogManager.getLogger(KeySnapshot.class);
+
+	private String _createDate;
+	private String _dbType;
+	private final File _directory;
+	private final Map<Reference, String[]> _fileNames =
+		new IdentityHashMap<>();
+	private String _fingerprint;
+	private final List<Reference> _references = new ArrayList<>();
+
+}
\ No newline at end of file
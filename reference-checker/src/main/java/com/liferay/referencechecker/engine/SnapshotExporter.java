@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.util.JDBCUtil;
+import com.liferay.referencechecker.util.KeyUtil;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Streams the key columns of the references into the files of a KeySnapshot,
+ * reading every table once with the same queries as the HashCheckEngine.
+ * Keys are normalized when they are exported, so the snapshot can be checked
+ * without knowing the database type.
+ *
+ * @author Jorge Díaz
+ */
+public class SnapshotExporter {
+
+	public SnapshotExporter(String dbType) {
+		this.dbType = dbType;
+
+		caseInsensitive = SQLUtil.isCaseInsensitive(dbType);
+		padSpace = SQLUtil.isPadSpace(dbType);
+	}
+
+	/* Distinct destination keys sorted in a KeyFile, the database returns
+	 * them unsorted as its collation is not the order of the normalized
+	 * keys */
+	public void exportDestinationKeys(
+			Connection connection, Query originQuery, Query destinationQuery,
+			File file)
+		throws IOException, SQLException {
+
+		List<String> destinationColumns = destinationQuery.getColumnsWithCast(
+			dbType, originQuery);
+
+		String sql = destinationQuery.getSQLSelect(
+			false, StringUtils.join(destinationColumns, ","));
+
+		sql = SQLUtil.transform(dbType, sql);
+
+		if (_log.isInfoEnabled()) {
+			_log.info("SQL snapshot destination keys: " + sql);
+		}
+
+		int columnsNumber = destinationColumns.size();
+
+		long size = 0;
+
+		boolean changeAutoCommit = _beginStreaming(connection);
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		KeyFile.Writer keyFileWriter = new KeyFile.Writer(
+			file, _KEY_FILE_BUFFER_SIZE);
+
+		try {
+			ps = prepareStreamingStatement(connection, sql);
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				Object[] key = new Object[columnsNumber];
+
+				boolean nullKey = false;
+
+				for (int i = 0; i < columnsNumber; i++) {
+					key[i] = KeyUtil.normalize(
+						rs.getObject(i + 1), caseInsensitive, padSpace);
+
+					if (key[i] == null) {
+						nullKey = true;
+					}
+				}
+
+				/* Same behavior as HashCheckEngine.loadKeySet, a null key
+				 * never matches and would be stored as text */
+				if (nullKey) {
+					continue;
+				}
+
+				keyFileWriter.add(key);
+
+				size++;
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+
+			_endStreaming(connection, changeAutoCommit);
+
+			keyFileWriter.close();
+		}
+
+		if (_log.isDebugEnabled()) {
+			_log.debug(
+				"Exported " + size + " keys of " + destinationQuery + " to " +
+					file);
+		}
+	}
+
+	/* Distinct origin values with their number of rows, values that are
+	 * ignored by isIgnoredValue are not exported */
+	public void exportOriginKeys(
+			Connection connection, Query originQuery, Query destinationQuery,
+			File file)
+		throws IOException, SQLException {
+
+		exportOriginKeys(
+			connection,
+			Collections.singletonList(
+				new Query[] {originQuery, destinationQuery}),
+			Collections.singletonList(file));
+	}
+
+	/* Origin values of the references of the same origin table and condition
+	 * read in a single scan, each pair of origin and destination queries is
+	 * exported to its file. Values are grouped by all the exported columns,
+	 * so a value is repeated in a file if it is combined with different
+	 * values of the other references */
+	public void exportOriginKeys(
+			Connection connection, List<Query[]> queries, List<File> files)
+		throws IOException, SQLException {
+
+		List<String> selectColumns = new ArrayList<>();
+		List<String> groupedColumns = new ArrayList<>();
+
+		for (int i = 0; i < queries.size(); i++) {
+			Query[] referenceQueries = queries.get(i);
+
+			List<String> originColumns = referenceQueries[0].getColumns();
+			List<String> keyColumns = referenceQueries[0].getColumnsWithCast(
+				dbType, referenceQueries[1]);
+
+			for (int j = 0; j < originColumns.size(); j++) {
+				selectColumns.add(
+					originColumns.get(j) + " rc_v" + i + "_" + j);
+				groupedColumns.add("rc_v" + i + "_" + j);
+			}
+
+			for (int j = 0; j < keyColumns.size(); j++) {
+				selectColumns.add(keyColumns.get(j) + " rc_k" + i + "_" + j);
+				groupedColumns.add("rc_k" + i + "_" + j);
+			}
+		}
+
+		String groupedColumnsString = StringUtils.join(groupedColumns, ",");
+
+		Query[] firstQueries = queries.get(0);
+
+		String sql =
+			"SELECT " + groupedColumnsString + ",COUNT(*) rc_count FROM (" +
+				firstQueries[0].getSQLSelect(
+					false, StringUtils.join(selectColumns, ",")) +
+						") rc_keys GROUP BY " + groupedColumnsString;
+
+		sql = SQLUtil.transform(dbType, sql);
+
+		if (_log.isInfoEnabled()) {
+			_log.info("SQL snapshot origin keys: " + sql);
+		}
+
+		/* Same behavior as NOT IN, that never returns null values */
+		boolean skipNullKeys = !SQLUtil.isNotExistsPreferred(dbType);
+
+		boolean changeAutoCommit = _beginStreaming(connection);
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		List<KeySnapshot.OriginKeysWriter> originKeysWriters =
+			new ArrayList<>();
+
+		try {
+			for (int i = 0; i < queries.size(); i++) {
+				Query[] referenceQueries = queries.get(i);
+
+				List<String> originColumns = referenceQueries[0].getColumns();
+
+				originKeysWriters.add(
+					new KeySnapshot.OriginKeysWriter(
+						files.get(i), originColumns.size()));
+			}
+
+			ps = prepareStreamingStatement(connection, sql);
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				long count = rs.getLong(groupedColumns.size() + 1);
+
+				int position = 1;
+
+				for (int i = 0; i < queries.size(); i++) {
+					Query[] referenceQueries = queries.get(i);
+
+					List<String> originColumns =
+						referenceQueries[0].getColumns();
+
+					int columnsNumber = originColumns.size();
+
+					Object[] value = new Object[columnsNumber];
+					Object[] key = new Object[columnsNumber];
+
+					boolean nullKey = false;
+
+					for (int j = 0; j < columnsNumber; j++) {
+						value[j] = rs.getObject(position + j);
+						key[j] = KeyUtil.normalize(
+							rs.getObject(position + columnsNumber + j),
+							caseInsensitive, padSpace);
+
+						if (key[j] == null) {
+							nullKey = true;
+						}
+					}
+
+					position += columnsNumber * 2;
+
+					if ((nullKey && skipNullKeys) || isIgnoredValue(value)) {
+						continue;
+					}
+
+					KeySnapshot.OriginKeysWriter originKeysWriter =
+						originKeysWriters.get(i);
+
+					originKeysWriter.add(value, key, count);
+				}
+			}
+		}
+		finally {
+			JDBCUtil.cleanUp(ps, rs);
+
+			_endStreaming(connection, changeAutoCommit);
+
+			for (KeySnapshot.OriginKeysWriter originKeysWriter :
+					originKeysWriters) {
+
+				originKeysWriter.close();
+			}
+		}
+	}
+
+	/* References with the same key file share it */
+	public String getDestinationKey(
+		Query originQuery, Query destinationQuery) {
+
+		return "destination#" + _getKey(destinationQuery, originQuery);
+	}
+
+	public String getOriginKey(Query originQuery, Query destinationQuery) {
+		return "origin#" + _getKey(originQuery, destinationQuery);
+	}
+
+	/* References with the same origin table and condition are exported in
+	 * the same scan */
+	public String getOriginTableKey(Query originQuery) {
+		Table table = originQuery.getTable();
+
+		return StringUtils.lowerCase(
+			"origin#" + table.getTableName() + "[" +
+				originQuery.getCondition() + "]");
+	}
+
+	protected boolean isIgnoredValue(Object[] value) {
+		return false;
+	}
+
+	protected PreparedStatement prepareStreamingStatement(
+			Connection connection, String sql)
+		throws SQLException {
+
+		PreparedStatement ps = connection.prepareStatement(
+			sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+		ps.setFetchSize(SQLUtil.getStreamingFetchSize(dbType));
+		ps.setQueryTimeout(SQLUtil.HEAVY_QUERY_TIMEOUT);
+
+		return ps;
+	}
+
+	protected boolean caseInsensitive;
+	protected String dbType;
+	protected boolean padSpace;
+
+	/* PostgreSQL only uses cursors inside transactions */
+	private boolean _beginStreaming(Connection connection)
+		throws SQLException {
+
+		if (!dbType.equals(SQLUtil.TYPE_POSTGRESQL) ||
+			!connection.getAutoCommit()) {
+
+			return false;
+		}
+
+		connection.setAutoCommit(false);
+
+		return true;
+	}
+
+	private void _endStreaming(Connection connection, boolean changeAutoCommit)
+		throws SQLException {
+
+		if (changeAutoCommit) {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	private String _getKey(Query query, Query otherQuery) {
+		Table table = query.getTable();
+
+		return StringUtils.lowerCase(
+			table.getTableName() + "[" + query.getCondition() + "]#" +
+				StringUtils.join(query.getColumns(), ",") + "#" +
+					StringUtils.join(
+						query.getColumnsWithCast(dbType, otherQuery, null),
+						","));
+	}
+
+	/* Keys sorted in the heap before they are spilled, a run of long keys
+	 * uses 8 MB */
+	private static final int _KEY_FILE_BUFFER_SIZE = 1 << 20;
+
+	private static Logger _log = LogManager.getLogger(SnapshotExporter.class);
+
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed number of platform threads that run the tasks in submission order,
+ * idle threads are released after one minute.
+ *
+ * @author Jorge Díaz
+ */
+public class ThreadPoolExecutorFactory implements ExecutorFactory {
+
+	@Override
+	public ExecutorService newExecutorService(int parallelism) {
+		final int poolNumber = _poolCounter.incrementAndGet();
+
+		ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+			parallelism, parallelism, 60, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(
+						runnable,
+						"reference-checker-" + poolNumber + "-" +
+							_threadCounter.incrementAndGet());
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+
+				private final AtomicInteger _threadCounter =
+					new AtomicInteger();
+
+			});
+
+		threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+		return threadPoolExecutor;
+	}
+
+	private static final AtomicInteger _poolCounter = new AtomicInteger();
+
+}
\ No newline at end of file
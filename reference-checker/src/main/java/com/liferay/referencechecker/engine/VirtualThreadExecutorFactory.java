@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.lang.reflect.Method;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One virtual thread per task, available in Java 21 or later. It is looked up
+ * by reflection so the checker still runs in Java 7.
+ *
+ * Virtual threads are not pooled, parallelism limits the number of tasks
+ * running at the same time so they don't wait for a database connection
+ * longer than the pool timeout.
+ *
+ * @author Jorge Díaz
+ */
+public class VirtualThreadExecutorFactory implements ExecutorFactory {
+
+	public static boolean isSupported() {
+		if (_getNewVirtualThreadPerTaskExecutorMethod() == null) {
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public ExecutorService newExecutorService(int parallelism) {
+		Method method = _getNewVirtualThreadPerTaskExecutorMethod();
+
+		if (method == null) {
+			throw new UnsupportedOperationException(
+				"Virtual threads require Java 21 or later");
+		}
+
+		ExecutorService executorService;
+
+		try {
+			executorService = (ExecutorService)method.invoke(null);
+		}
+		catch (ReflectiveOperationException reflectiveOperationException) {
+			throw new UnsupportedOperationException(
+				reflectiveOperationException);
+		}
+
+		return new BoundedExecutorService(executorService, parallelism);
+	}
+
+	private static Method _getNewVirtualThreadPerTaskExecutorMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException noSuchMethodException) {
+			return null;
+		}
+	}
+
+	private static class BoundedExecutorService
+		extends AbstractExecutorService {
+
+		public BoundedExecutorService(
+			ExecutorService executorService, int parallelism) {
+
+			_executorService = executorService;
+
+			/* Fair, so a waiting task is not overtaken by the ones that
+			 * arrive later. Virtual threads reach the semaphore in the order
+			 * the scheduler runs them, so tasks only start roughly in
+			 * submission order */
+			_semaphore = new Semaphore(parallelism, true);
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException {
+
+			return _executorService.awaitTermination(timeout, unit);
+		}
+
+		@Override
+		public void execute(final Runnable command) {
+			_executorService.execute(
+				new Runnable() {
+
+					@Override
+					public void run() {
+						_semaphore.acquireUninterruptibly();
+
+						try {
+							command.run();
+						}
+						finally {
+							_semaphore.release();
+						}
+					}
+
+				});
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return _executorService.isShutdown();
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return _executorService.isTerminated();
+		}
+
+		@Override
+		public void shutdown() {
+			_executorService.shutdown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return _executorService.shutdownNow();
+		}
+
+		private final ExecutorService _executorService;
+		private final Semaphore _semaphore;
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * Connections that record the executed SQL and return the rows of the first
+ * entry of the results whose key is contained in the SQL, or no rows.
+ *
+ * @author Jorge Díaz
+ */
+public class JDBCTestUtil {
+
+	public static Connection createConnection(
+		final String databaseProductName, final List<String> sqls,
+		final Map<String, List<Object[]>> results) {
+
+		return _createProxy(
+			Connection.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					String name = method.getName();
+
+					if (name.equals("createStatement")) {
+						return _createStatement(sqls, results, null);
+					}
+
+					if (name.equals("getMetaData")) {
+						return _createDatabaseMetaData(databaseProductName);
+					}
+
+					if (name.equals("prepareStatement")) {
+						return _createStatement(
+							sqls, results, (String)args[0]);
+					}
+
+					return _getDefaultValue(method);
+				}
+
+			});
+	}
+
+	/* Data source whose connections are all the given one */
+	public static DataSource createDataSource(final Connection connection) {
+		return _createProxy(
+			DataSource.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					if (method.getName().equals("getConnection")) {
+						return connection;
+					}
+
+					return _getDefaultValue(method);
+				}
+
+			});
+	}
+
+	private static DatabaseMetaData _createDatabaseMetaData(
+		final String databaseProductName) {
+
+		return _createProxy(
+			DatabaseMetaData.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					if (method.getName().equals("getDatabaseProductName")) {
+						return databaseProductName;
+					}
+
+					return _getDefaultValue(method);
+				}
+
+			});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T _createProxy(
+		Class<T> clazz, InvocationHandler invocationHandler) {
+
+		return (T)Proxy.newProxyInstance(
+			clazz.getClassLoader(), new Class<?>[] {clazz}, invocationHandler);
+	}
+
+	private static ResultSet _createResultSet(final List<Object[]> rows) {
+		return _createProxy(
+			ResultSet.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					String name = method.getName();
+
+					if (name.equals("getMetaData")) {
+						return _createResultSetMetaData(rows);
+					}
+
+					if (name.equals("next")) {
+						_position++;
+
+						return _position < rows.size();
+					}
+
+					if (!name.startsWith("get") || (args == null) ||
+						!(args[0] instanceof Integer)) {
+
+						return _getDefaultValue(method);
+					}
+
+					Object[] row = rows.get(_position);
+
+					Object value = row[(Integer)args[0] - 1];
+
+					if (value == null) {
+						return _getDefaultValue(method);
+					}
+
+					if (name.equals("getInt")) {
+						return ((Number)value).intValue();
+					}
+
+					if (name.equals("getLong")) {
+						return ((Number)value).longValue();
+					}
+
+					if (name.equals("getString")) {
+						return String.valueOf(value);
+					}
+
+					return value;
+				}
+
+				private int _position = -1;
+
+			});
+	}
+
+	private static ResultSetMetaData _createResultSetMetaData(
+		final List<Object[]> rows) {
+
+		return _createProxy(
+			ResultSetMetaData.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					if (method.getName().equals("getColumnCount")) {
+						if (rows.isEmpty()) {
+							return 0;
+						}
+
+						return rows.get(0).length;
+					}
+
+					return _getDefaultValue(method);
+				}
+
+			});
+	}
+
+	private static PreparedStatement _createStatement(
+		final List<String> sqls, final Map<String, List<Object[]>> results,
+		final String preparedSQL) {
+
+		return _createProxy(
+			PreparedStatement.class,
+			new InvocationHandler() {
+
+				@Override
+				public Object invoke(
+					Object proxy, Method method, Object[] args) {
+
+					String name = method.getName();
+
+					if (!name.equals("executeQuery")) {
+						return _getDefaultValue(method);
+					}
+
+					String sql = preparedSQL;
+
+					if (sql == null) {
+						sql = (String)args[0];
+					}
+
+					sqls.add(sql);
+
+					for (Map.Entry<String, List<Object[]>> entry :
+							results.entrySet()) {
+
+						if (sql.contains(entry.getKey())) {
+							return _createResultSet(entry.getValue());
+						}
+					}
+
+					return _createResultSet(
+						Collections.<Object[]>emptyList());
+				}
+
+			});
+	}
+
+	private static Object _getDefaultValue(Method method) {
+		Class<?> returnType = method.getReturnType();
+
+		if (returnType == boolean.class) {
+			return false;
+		}
+
+		if (returnType == double.class) {
+			return 0D;
+		}
+
+		if (returnType == int.class) {
+			return 0;
+		}
+
+		if (returnType == long.class) {
+			return 0L;
+		}
+
+		return null;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,786 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker;
+
+import com.liferay.referencechecker.config.Configuration;
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.engine.AntiJoinPlan;
+import com.liferay.referencechecker.engine.HighWaterMarks;
+import com.liferay.referencechecker.ref.CollectionInvalidValuesSink;
+import com.liferay.referencechecker.ref.InvalidValuesSink;
+import com.liferay.referencechecker.ref.LimitInvalidValuesSink;
+import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.MissingReferencesEstimate;
+import com.liferay.referencechecker.ref.Reference;
+
+import java.sql.Connection;
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class ReferenceCheckerTest {
+
+	@Test
+	public void testCreateMissingReferencesInChunks() throws Exception {
+		List<String> sqls = Collections.synchronizedList(
+			new ArrayList<String>());
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"rc_summary", Collections.singletonList(new Object[] {2L, 9L}));
+		results.put(
+			"MIN(userId)", Collections.singletonList(new Object[] {1L, 100L}));
+		results.put(
+			"NOT EXISTS", Arrays.asList(new Object[] {5L}, new Object[] {6L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, results);
+
+		ReferenceChecker referenceChecker = new ReferenceChecker(connection) {
+
+			@Override
+			protected InvalidValuesSink createInvalidValuesSink(
+				Reference reference) {
+
+				return new LimitInvalidValuesSink(1);
+			}
+
+			@Override
+			protected Configuration getConfiguration(Connection connection) {
+				return null;
+			}
+
+		};
+
+		referenceChecker.setChunkSize(40);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		List<MissingReferences> listMissingReferences =
+			referenceChecker.new CreateMissingReferences(
+				connection, reference).call();
+
+		Assert.assertEquals(1, listMissingReferences.size());
+
+		MissingReferences missingReferences = listMissingReferences.get(0);
+
+		Assert.assertNull(missingReferences.getThrowable());
+
+		/* Both values are found in the three chunks, the count of the sink
+		 * would be 4 */
+		Assert.assertEquals(1, missingReferences.getValues().size());
+		Assert.assertEquals(2, missingReferences.getValuesCount());
+		Assert.assertFalse(missingReferences.isComplete());
+	}
+
+	@Test
+	public void testEstimateMissingReferences() throws Exception {
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"MIN(userId)",
+			Collections.singletonList(new Object[] {1L, 1000000L}));
+		results.put(
+			"rc_grouped", Collections.singletonList(new Object[] {5L, 2L}));
+		results.put("COUNT(", Collections.singletonList(new Object[] {100L}));
+
+		List<String> sqls1 = new ArrayList<>();
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls1, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		reference = reference.clone(
+			new Query(
+				reference.getOriginQuery().getTable(),
+				Collections.singletonList("companyId"), null, "companyId=1"),
+			reference.getDestinationQuery());
+
+		MissingReferencesEstimate missingReferencesEstimate =
+			referenceChecker.estimateMissingReferences(
+				connection, reference, 100);
+
+		Assert.assertEquals(65, sqls1.size());
+
+		Assert.assertEquals(3200, missingReferencesEstimate.getSampleRows());
+		Assert.assertEquals(
+			64, missingReferencesEstimate.getSampleAffectedRows());
+
+		/* All the ranges have the same proportion of affected rows */
+		Assert.assertTrue(
+			(missingReferencesEstimate.getUpperBound() -
+				missingReferencesEstimate.getLowerBound()) <= 1);
+
+		List<String> sqls2 = new ArrayList<>();
+
+		connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls2, results);
+
+		referenceChecker.estimateMissingReferences(connection, reference, 100);
+
+		Assert.assertEquals(_getCountSQLs(sqls1), _getCountSQLs(sqls2));
+	}
+
+	@Test
+	public void testExecuteIncrementally() throws Exception {
+		HighWaterMarks highWaterMarks = new HighWaterMarks();
+
+		List<String> sqls = _executeIncrementally(highWaterMarks, 10L);
+
+		/* Only the origin rows added since the previous check are checked */
+		List<String> incrementalSQLs = _getIncrementalSQLs(sqls);
+
+		Assert.assertEquals(sqls.toString(), 1, incrementalSQLs.size());
+
+		Assert.assertArrayEquals(
+			new long[] {120L, -1L}, highWaterMarks.get("AssetEntry"));
+		Assert.assertArrayEquals(
+			new long[] {120L, 12L}, highWaterMarks.get("User_"));
+	}
+
+	@Test
+	public void testExecuteIncrementallyWithDeletes() throws Exception {
+		HighWaterMarks highWaterMarks = new HighWaterMarks();
+
+		List<String> sqls = _executeIncrementally(highWaterMarks, 9L);
+
+		/* A destination row under the mark was deleted, so all the origin
+		 * rows are checked */
+		Assert.assertTrue(_getIncrementalSQLs(sqls).isEmpty());
+
+		String sql = "SELECT COUNT(userId) FROM User_ WHERE userId<=100";
+
+		Assert.assertTrue(sqls.toString(), sqls.contains(sql));
+
+		Assert.assertArrayEquals(
+			new long[] {120L, 11L}, highWaterMarks.get("User_"));
+	}
+
+	@Test
+	public void testExecuteWithDuplicateReferences() throws Exception {
+		List<String> sqls = Collections.synchronizedList(
+			new ArrayList<String>());
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"NOT EXISTS", Collections.singletonList(new Object[] {5L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+		Reference duplicateReference = _createReference(
+			"AssetEntry", "User_");
+
+		List<MissingReferences> listMissingReferences =
+			referenceChecker.execute(
+				connection, Arrays.asList(reference, duplicateReference));
+
+		List<String> notExistsSQLs = new ArrayList<>();
+
+		for (String sql : sqls) {
+			if (sql.contains("NOT EXISTS")) {
+				notExistsSQLs.add(sql);
+			}
+		}
+
+		Assert.assertEquals(sqls.toString(), 1, notExistsSQLs.size());
+
+		Assert.assertEquals(2, listMissingReferences.size());
+
+		MissingReferences missingReferences = listMissingReferences.get(0);
+
+		Assert.assertSame(reference, missingReferences.getReference());
+
+		MissingReferences duplicateMissingReferences =
+			listMissingReferences.get(1);
+
+		Assert.assertSame(
+			duplicateReference, duplicateMissingReferences.getReference());
+		Assert.assertSame(
+			missingReferences.getValues(),
+			duplicateMissingReferences.getValues());
+		Assert.assertEquals(
+			"same query as " + reference,
+			duplicateMissingReferences.getPlanReason());
+	}
+
+	@Test
+	public void testGenerateCleanupSentences() {
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			"PostgreSQL");
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		List<Object[]> values = Arrays.asList(
+			new Object[] {1L}, new Object[] {2L});
+
+		List<String> sentences = referenceChecker.generateCleanupSentences(
+			new MissingReferences(reference, values, 3));
+
+		Assert.assertEquals(1, sentences.size());
+
+		String sentence = sentences.get(0);
+
+		Assert.assertTrue(
+			sentence, sentence.startsWith("DELETE FROM AssetEntry"));
+		Assert.assertTrue(sentence, sentence.contains("(userId) IN (1,2)"));
+	}
+
+	@Test
+	public void testGenerateCleanupSentencesOfIncompleteResults() {
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			"PostgreSQL");
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		Collection<Object[]> values = Collections.singletonList(
+			new Object[] {1L});
+
+		List<String> sentences = referenceChecker.generateCleanupSentences(
+			new MissingReferences(reference, values, 5, 7));
+
+		Assert.assertEquals(1, sentences.size());
+
+		String sentence = sentences.get(0);
+
+		Assert.assertTrue(
+			sentence, sentence.startsWith("DELETE FROM AssetEntry"));
+		Assert.assertTrue(sentence, sentence.contains("NOT EXISTS"));
+		Assert.assertTrue(sentence, sentence.contains("FROM User_"));
+		Assert.assertFalse(sentence, sentence.contains(" IN (1)"));
+	}
+
+	@Test
+	public void testGenerateCleanupSentencesOfIncompleteSelfReference() {
+		ReferenceChecker referenceChecker = _createReferenceChecker("MySQL");
+
+		Reference reference = _createReference("User_", "User_");
+
+		Collection<Object[]> values = Collections.singletonList(
+			new Object[] {1L});
+
+		List<String> sentences = referenceChecker.generateCleanupSentences(
+			new MissingReferences(reference, values, 5, 7));
+
+		Assert.assertTrue(sentences.isEmpty());
+	}
+
+	@Test
+	public void testGetChunkQueries() throws Exception {
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", new ArrayList<String>(),
+			Collections.singletonMap(
+				"MIN(userId)",
+				Collections.singletonList(new Object[] {1L, 100L})));
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		referenceChecker.setChunkSize(40);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		List<String> conditions = new ArrayList<>();
+
+		for (Query chunkQuery :
+				referenceChecker.getChunkQueries(
+					connection, reference.getOriginQuery())) {
+
+			conditions.add(chunkQuery.getCondition());
+		}
+
+		Assert.assertEquals(
+			Arrays.asList(
+				"userId>=1 AND userId<41", "userId>=41 AND userId<81",
+				"userId>=81"),
+			conditions);
+	}
+
+	@Test
+	public void testGetSQLFingerprint() {
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			"PostgreSQL");
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		/* The table aliases are random */
+		Assert.assertEquals(
+			referenceChecker.getSQLFingerprint(reference),
+			referenceChecker.getSQLFingerprint(
+				_createReference("AssetEntry", "User_")));
+
+		Reference companyReference = new Reference(
+			new Query(
+				_createTable("AssetEntry"),
+				Collections.singletonList("companyId"), null, null),
+			new Query(
+				_createTable("User_"), Collections.singletonList("companyId"),
+				null, null));
+
+		Assert.assertNotEquals(
+			referenceChecker.getSQLFingerprint(reference),
+			referenceChecker.getSQLFingerprint(companyReference));
+	}
+
+	@Test
+	public void testQueryInvalidValuesCountingRows() throws Exception {
+		List<String> sqls = new ArrayList<>();
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"rc_grouped",
+			Arrays.asList(new Object[] {5L, 3L}, new Object[] {6L, 2L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		referenceChecker.setSinglePassCount(true);
+
+		InvalidValuesSink invalidValuesSink = new CollectionInvalidValuesSink();
+
+		long affectedRows = referenceChecker.queryInvalidValues(
+			connection, null, null, _createReference("AssetEntry", "User_"),
+			new AntiJoinPlan(AntiJoinPlan.STRATEGY_NOT_EXISTS, null),
+			invalidValuesSink);
+
+		Assert.assertEquals(5, affectedRows);
+		Assert.assertEquals(2, invalidValuesSink.getCount());
+
+		/* The rows are counted by the anti-join query */
+		List<String> groupedSQLs = new ArrayList<>();
+
+		for (String sql : sqls) {
+			if (sql.contains("rc_grouped")) {
+				groupedSQLs.add(sql);
+			}
+		}
+
+		Assert.assertEquals(1, groupedSQLs.size());
+
+		String sql = groupedSQLs.get(0);
+
+		Assert.assertTrue(sql, sql.startsWith("SELECT rc_g0,COUNT(*) rc_count"));
+		Assert.assertTrue(sql, sql.endsWith(" GROUP BY rc_g0"));
+	}
+
+	@Test
+	public void testQueryInvalidValuesInChunks() throws Exception {
+		List<String> sqls = Collections.synchronizedList(
+			new ArrayList<String>());
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"MIN(userId)", Collections.singletonList(new Object[] {1L, 100L}));
+		results.put(
+			"NOT EXISTS", Collections.singletonList(new Object[] {5L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		referenceChecker.setChunkSize(40);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		ExecutorService chunkExecutorService = Executors.newFixedThreadPool(
+			2);
+
+		InvalidValuesSink invalidValuesSink = new CollectionInvalidValuesSink();
+
+		try {
+			referenceChecker.queryInvalidValues(
+				connection, JDBCTestUtil.createDataSource(connection),
+				chunkExecutorService, reference,
+				new AntiJoinPlan(AntiJoinPlan.STRATEGY_NOT_EXISTS, null),
+				invalidValuesSink);
+		}
+		finally {
+			chunkExecutorService.shutdown();
+		}
+
+		Assert.assertEquals(4, sqls.size());
+
+		/* The value is found in all the chunks */
+		Assert.assertEquals(1, invalidValuesSink.getCount());
+	}
+
+	@Test
+	public void testQueryInvalidValuesOfFusedReferences() throws Exception {
+		List<String> sqls = new ArrayList<>();
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			" fused ",
+			Arrays.asList(
+				new Object[] {5L, 1L, 1, 0, 3L},
+				new Object[] {6L, 1L, 1, 1, 2L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		referenceChecker.setSinglePassCount(true);
+
+		Reference userReference = _createReference("AssetEntry", "User_");
+
+		Reference companyReference = new Reference(
+			new Query(
+				_createTable("AssetEntry"),
+				Collections.singletonList("companyId"), null, null),
+			new Query(
+				_createTable("Company"), Collections.singletonList("companyId"),
+				null, null));
+
+		Map<Reference, InvalidValuesSink> invalidValuesSinks =
+			new LinkedHashMap<>();
+
+		invalidValuesSinks.put(
+			userReference, new CollectionInvalidValuesSink());
+		invalidValuesSinks.put(
+			companyReference, new CollectionInvalidValuesSink());
+
+		Map<Reference, Long> affectedRowsMap = new HashMap<>();
+
+		referenceChecker.queryInvalidValues(
+			connection, Arrays.asList(userReference, companyReference),
+			invalidValuesSinks, affectedRowsMap);
+
+		Assert.assertEquals(1, sqls.size());
+
+		String sql = sqls.get(0);
+
+		Assert.assertTrue(sql, sql.startsWith("SELECT c0,c1,m0,m1,COUNT(*)"));
+		Assert.assertTrue(sql, sql.endsWith(" GROUP BY c0,c1,m0,m1"));
+
+		/* The origin table is read once for both references */
+		Assert.assertEquals(
+			2, invalidValuesSinks.get(userReference).getCount());
+		Assert.assertEquals(Long.valueOf(5), affectedRowsMap.get(userReference));
+		Assert.assertEquals(
+			1, invalidValuesSinks.get(companyReference).getCount());
+		Assert.assertEquals(
+			Long.valueOf(2), affectedRowsMap.get(companyReference));
+	}
+
+	@Test
+	public void testQueryMissingReferencesSummary() throws Exception {
+		List<String> sqls = new ArrayList<>();
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"rc_summary", Collections.singletonList(new Object[] {2L, 5L}));
+		results.put(
+			"rc_limit", Arrays.asList(new Object[] {1L}, new Object[] {2L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"Microsoft SQL Server", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		MissingReferences missingReferences =
+			referenceChecker.queryMissingReferencesSummary(
+				connection, reference, AntiJoinPlan.STRATEGY_EXCEPT, 50);
+
+		Assert.assertEquals(2, sqls.size());
+
+		String sql = sqls.get(1);
+
+		Assert.assertTrue(sql, sql.startsWith("SELECT TOP 50 * FROM (SELECT "));
+		Assert.assertTrue(sql, sql.contains(" EXCEPT SELECT "));
+
+		Assert.assertEquals(5, missingReferences.getAffectedRows());
+		Assert.assertEquals(2, missingReferences.getValues().size());
+		Assert.assertEquals(2, missingReferences.getValuesCount());
+	}
+
+	@Test
+	public void testQueryMissingReferencesSummaryOfClientStrategy()
+		throws Exception {
+
+		List<String> sqls = new ArrayList<>();
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"rc_summary", Collections.singletonList(new Object[] {1L, 1L}));
+		results.put("LIMIT", Collections.singletonList(new Object[] {1L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		MissingReferences missingReferences =
+			referenceChecker.queryMissingReferencesSummary(
+				connection, reference, AntiJoinPlan.STRATEGY_CLIENT, 50);
+
+		Assert.assertEquals(2, sqls.size());
+
+		String sql = sqls.get(1);
+
+		Assert.assertTrue(sql, sql.contains("NOT EXISTS"));
+		Assert.assertTrue(sql, sql.endsWith(" LIMIT 50"));
+
+		Assert.assertEquals(1, missingReferences.getValues().size());
+	}
+
+	@Test
+	public void testVerifyMissingReferences() throws Exception {
+		List<String> sqls = new ArrayList<>();
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls,
+			Collections.singletonMap(
+				"NOT EXISTS",
+				Collections.singletonList(new Object[] {2L})));
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		MissingReferences missingReferences =
+			referenceChecker.verifyMissingReferences(
+				connection,
+				new MissingReferences(
+					reference,
+					Arrays.asList(new Object[] {1L}, new Object[] {2L}), 2,
+					-1));
+
+		Assert.assertEquals(1, sqls.size());
+
+		String sql = sqls.get(0);
+
+		Assert.assertTrue(sql, sql.contains("(userId) IN (1,2)"));
+
+		Assert.assertEquals(1, missingReferences.getValuesCount());
+		Assert.assertArrayEquals(
+			new Object[] {2L},
+			missingReferences.getValues().iterator().next());
+	}
+
+	@Test
+	public void testVerifyMissingReferencesOfClientStrategy()
+		throws Exception {
+
+		List<String> sqls = new ArrayList<>();
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, new HashMap<String, List<Object[]>>());
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		reference.setAntiJoinStrategy(AntiJoinPlan.STRATEGY_CLIENT);
+
+		MissingReferences missingReferences =
+			referenceChecker.verifyMissingReferences(
+				connection,
+				new MissingReferences(
+					reference,
+					Collections.singletonList(new Object[] {1L}), 1, -1));
+
+		Assert.assertNull(missingReferences);
+		Assert.assertEquals(1, sqls.size());
+		Assert.assertTrue(sqls.get(0), sqls.get(0).contains("NOT EXISTS"));
+	}
+
+	@Test
+	public void testVerifyMissingReferencesWithoutStrategy() throws Exception {
+		List<String> sqls = new ArrayList<>();
+
+		Map<String, List<Object[]>> results = Collections.singletonMap(
+			"userId", Collections.singletonList(new Object[] {1L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"MySQL", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		Reference reference = _createReference("AssetEntry", "User_");
+
+		Assert.assertNull(reference.getAntiJoinStrategy());
+
+		MissingReferences missingReferences = new MissingReferences(
+			reference, Collections.singletonList(new Object[] {1L}), 1, -1);
+
+		Assert.assertSame(
+			missingReferences,
+			referenceChecker.verifyMissingReferences(
+				connection, missingReferences));
+		Assert.assertEquals(1, sqls.size());
+	}
+
+	private Reference _createReference(
+		String originTableName, String destinationTableName) {
+
+		Reference reference = new Reference(
+			new Query(
+				_createTable(originTableName),
+				Collections.singletonList("userId"), null, null),
+			new Query(
+				_createTable(destinationTableName),
+				Collections.singletonList("userId"), null, null));
+
+		reference.setFixAction("delete");
+
+		return reference;
+	}
+
+	/* The configuration is not loaded, the connection is only used to get
+	 * the database type */
+	private ReferenceChecker _createReferenceChecker(Connection connection) {
+		return new ReferenceChecker(connection) {
+
+			@Override
+			protected Configuration getConfiguration(Connection connection) {
+				return null;
+			}
+
+		};
+	}
+
+	private ReferenceChecker _createReferenceChecker(
+		String databaseProductName) {
+
+		return _createReferenceChecker(
+			JDBCTestUtil.createConnection(
+				databaseProductName, new ArrayList<String>(),
+				Collections.<String, List<Object[]>>emptyMap()));
+	}
+
+	private Table _createTable(String tableName) {
+		return new Table(
+			tableName, Collections.singletonList("userId"),
+			Arrays.asList("userId", "companyId"),
+			Arrays.asList(Types.BIGINT, Types.BIGINT),
+			Arrays.asList("BIGINT", "BIGINT"), Arrays.asList(20, 20),
+			Arrays.asList(false, false));
+	}
+
+	/* Checks AssetEntry against User_ with the high-water marks of a
+	 * previous check, User_ has now the given rows under its mark */
+	private List<String> _executeIncrementally(
+		HighWaterMarks highWaterMarks, long rowCountUnderMark) {
+
+		highWaterMarks.put("AssetEntry", 50, -1);
+		highWaterMarks.put("User_", 100, 10);
+
+		List<String> sqls = Collections.synchronizedList(
+			new ArrayList<String>());
+
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"userId<=100",
+			Collections.singletonList(new Object[] {rowCountUnderMark}));
+		results.put(
+			"userId>100", Collections.singletonList(new Object[] {2L}));
+		results.put(
+			"MIN(userId)", Collections.singletonList(new Object[] {1L, 120L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"PostgreSQL", sqls, results);
+
+		ReferenceChecker referenceChecker = _createReferenceChecker(
+			connection);
+
+		referenceChecker.setHighWaterMarks(highWaterMarks);
+
+		List<MissingReferences> listMissingReferences =
+			referenceChecker.execute(
+				connection,
+				Collections.singletonList(
+					_createReference("AssetEntry", "User_")));
+
+		Assert.assertTrue(listMissingReferences.isEmpty());
+
+		return sqls;
+	}
+
+	/* Table aliases are random, only the count queries are repeatable */
+	private List<String> _getCountSQLs(List<String> sqls) {
+		List<String> countSQLs = new ArrayList<>();
+
+		for (String sql : sqls) {
+			if (sql.startsWith("SELECT COUNT(")) {
+				countSQLs.add(sql);
+			}
+		}
+
+		Assert.assertFalse(countSQLs.isEmpty());
+
+		return countSQLs;
+	}
+
+	private List<String> _getIncrementalSQLs(List<String> sqls) {
+		List<String> incrementalSQLs = new ArrayList<>();
+
+		for (String sql : sqls) {
+			if (sql.contains("NOT EXISTS") && sql.contains("userId>50")) {
+				incrementalSQLs.add(sql);
+			}
+		}
+
+		return incrementalSQLs;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.ref.Reference;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.sql.Connection;
+import java.sql.Types;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class AntiJoinPlannerTest {
+
+	@Test
+	public void testPlanClient() {
+		AntiJoinPlanner antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_MYSQL, 5000, 5000, false);
+
+		_assertStrategy(
+			AntiJoinPlan.STRATEGY_CLIENT, antiJoinPlanner.plan(null, _reference));
+
+		antiJoinPlanner.setMaxClientRows(4999);
+
+		_assertStrategy(
+			AntiJoinPlan.STRATEGY_NOT_IN, antiJoinPlanner.plan(null, _reference));
+	}
+
+	@Test
+	public void testPlanConfiguredStrategy() {
+		AntiJoinPlanner antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_POSTGRESQL, 5000, 5000, true);
+
+		Reference reference = new Reference(
+			_createQuery("AssetEntry"), _createQuery("User_"));
+
+		reference.setAntiJoinStrategy(AntiJoinPlan.STRATEGY_NOT_IN);
+
+		AntiJoinPlan antiJoinPlan = antiJoinPlanner.plan(null, reference);
+
+		_assertStrategy(AntiJoinPlan.STRATEGY_NOT_IN, antiJoinPlan);
+
+		Assert.assertEquals("configured", antiJoinPlan.getReason());
+	}
+
+	@Test
+	public void testPlanExcept() {
+		AntiJoinPlanner antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_POSTGRESQL, 1000000, 5000, false);
+
+		_assertStrategy(
+			AntiJoinPlan.STRATEGY_EXCEPT, antiJoinPlanner.plan(null, _reference));
+
+		antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_POSTGRESQL, 999999, 5000, false);
+
+		_assertStrategy(
+			AntiJoinPlan.STRATEGY_NOT_EXISTS,
+			antiJoinPlanner.plan(null, _reference));
+	}
+
+	@Test
+	public void testPlanLeftJoin() {
+		AntiJoinPlanner antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_MYSQL, 5000, 5000, true);
+
+		_assertStrategy(
+			AntiJoinPlan.STRATEGY_LEFT_JOIN,
+			antiJoinPlanner.plan(null, _reference));
+	}
+
+	@Test
+	public void testPlanSmallTables() {
+		AntiJoinPlanner antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_MYSQL, 5000, 999, false);
+
+		_assertStrategy(
+			AntiJoinPlan.STRATEGY_NOT_IN, antiJoinPlanner.plan(null, _reference));
+
+		antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_POSTGRESQL, 1000000, 999, false);
+
+		_assertStrategy(
+			AntiJoinPlan.STRATEGY_NOT_EXISTS,
+			antiJoinPlanner.plan(null, _reference));
+	}
+
+	@Test
+	public void testPlanUnknownRowCount() {
+		AntiJoinPlanner antiJoinPlanner = _createAntiJoinPlanner(
+			SQLUtil.TYPE_MYSQL, -1, 5000, true);
+
+		AntiJoinPlan antiJoinPlan = antiJoinPlanner.plan(null, _reference);
+
+		_assertStrategy(AntiJoinPlan.STRATEGY_NOT_IN, antiJoinPlan);
+
+		Assert.assertTrue(
+			antiJoinPlan.getReason(),
+			antiJoinPlan.getReason().endsWith("unknown row count"));
+	}
+
+	private void _assertStrategy(String strategy, AntiJoinPlan antiJoinPlan) {
+		Assert.assertEquals(
+			antiJoinPlan.getReason(), strategy, antiJoinPlan.getStrategy());
+	}
+
+	/* Planner with the given row counts and index of the destination, the
+	 * database is not queried */
+	private AntiJoinPlanner _createAntiJoinPlanner(
+		String dbType, long originRows, long destinationRows,
+		final boolean indexed) {
+
+		AntiJoinPlanner antiJoinPlanner = new AntiJoinPlanner(dbType) {
+
+			@Override
+			protected boolean isDestinationIndexed(
+				Connection connection, Query originQuery,
+				Query destinationQuery) {
+
+				return indexed;
+			}
+
+		};
+
+		antiJoinPlanner.rowCountCache.put("assetentry", originRows);
+		antiJoinPlanner.rowCountCache.put("user_", destinationRows);
+
+		return antiJoinPlanner;
+	}
+
+	private static Query _createQuery(String tableName) {
+		Table table = new Table(
+			tableName, Collections.singletonList("userId"),
+			Arrays.asList("userId", "companyId"),
+			Arrays.asList(Types.BIGINT, Types.BIGINT),
+			Arrays.asList("BIGINT", "BIGINT"), Arrays.asList(20, 20),
+			Arrays.asList(false, false));
+
+		return new Query(table, Collections.singletonList("userId"), null, null);
+	}
+
+	private static final Reference _reference = new Reference(
+		_createQuery("AssetEntry"), _createQuery("User_"));
+
+}
\ No newline at end of file
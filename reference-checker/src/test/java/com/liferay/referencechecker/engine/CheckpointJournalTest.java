@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.ref.MissingReferences;
+import com.liferay.referencechecker.ref.Reference;
+
+import java.io.File;
+
+import java.math.BigDecimal;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Jorge Díaz
+ */
+public class CheckpointJournalTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testAddAndGet() throws Exception {
+		File file = temporaryFolder.newFile("journal.jsonl");
+
+		Reference reference = _createReference();
+
+		Timestamp timestamp = Timestamp.valueOf("2020-01-02 03:04:05.123");
+
+		Collection<Object[]> values = Collections.singletonList(
+			new Object[] {1L, new BigDecimal("1.50"), timestamp});
+
+		MissingReferences missingReferences = new MissingReferences(
+			reference, values, 3, 4);
+
+		missingReferences.setPlan("anti-join", "small table");
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "fingerprint", false)) {
+
+			checkpointJournal.add(reference, missingReferences);
+		}
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "fingerprint", true)) {
+
+			Assert.assertEquals(1, checkpointJournal.size());
+			Assert.assertTrue(checkpointJournal.contains(reference));
+
+			MissingReferences journalMissingReferences =
+				checkpointJournal.get(reference);
+
+			Assert.assertEquals(
+				4, journalMissingReferences.getAffectedRows());
+			Assert.assertEquals("anti-join", journalMissingReferences.getPlan());
+			Assert.assertEquals(
+				"small table", journalMissingReferences.getPlanReason());
+			Assert.assertEquals(3, journalMissingReferences.getValuesCount());
+
+			List<Object[]> journalValues = new ArrayList<>(
+				journalMissingReferences.getValues());
+
+			Assert.assertEquals(1, journalValues.size());
+			Assert.assertArrayEquals(
+				new Object[] {1L, new BigDecimal("1.50"), timestamp},
+				journalValues.get(0));
+		}
+	}
+
+	@Test
+	public void testAddWithoutMissingReferences() throws Exception {
+		File file = temporaryFolder.newFile("journal.jsonl");
+
+		Reference reference = _createReference();
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "fingerprint", false)) {
+
+			checkpointJournal.add(reference, null);
+		}
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "fingerprint", true)) {
+
+			Assert.assertTrue(checkpointJournal.contains(reference));
+			Assert.assertNull(checkpointJournal.get(reference));
+		}
+	}
+
+	@Test
+	public void testLoadWithAnotherFingerprint() throws Exception {
+		File file = temporaryFolder.newFile("journal.jsonl");
+
+		Reference reference = _createReference();
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "fingerprint", false)) {
+
+			checkpointJournal.add(reference, null);
+		}
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "another fingerprint", true)) {
+
+			Assert.assertEquals(0, checkpointJournal.size());
+			Assert.assertFalse(checkpointJournal.contains(reference));
+		}
+	}
+
+	@Test
+	public void testLoadWithoutResume() throws Exception {
+		File file = temporaryFolder.newFile("journal.jsonl");
+
+		Reference reference = _createReference();
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "fingerprint", false)) {
+
+			checkpointJournal.add(reference, null);
+		}
+
+		try (CheckpointJournal checkpointJournal = new CheckpointJournal(
+				file, "fingerprint", false)) {
+
+			Assert.assertEquals(0, checkpointJournal.size());
+		}
+	}
+
+	private Reference _createReference() {
+		Table table = new Table(
+			"Product", Collections.singletonList("productId"),
+			Arrays.asList("productId", "userId", "price", "createDate"),
+			Arrays.asList(
+				Types.BIGINT, Types.BIGINT, Types.DECIMAL, Types.TIMESTAMP),
+			Arrays.asList("BIGINT", "BIGINT", "DECIMAL", "TIMESTAMP"),
+			Arrays.asList(20, 20, 30, 6),
+			Arrays.asList(false, false, true, true));
+
+		Table destinationTable = new Table(
+			"User_", Collections.singletonList("userId"),
+			Collections.singletonList("userId"),
+			Collections.singletonList(Types.BIGINT),
+			Collections.singletonList("BIGINT"),
+			Collections.singletonList(20), Collections.singletonList(false));
+
+		return new Reference(
+			new Query(
+				table, Arrays.asList("userId", "price", "createDate"), null,
+				null),
+			new Query(
+				destinationTable, Collections.singletonList("userId"), null,
+				null));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.JDBCTestUtil;
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.ref.CollectionInvalidValuesSink;
+import com.liferay.referencechecker.ref.InvalidValuesSink;
+import com.liferay.referencechecker.util.LongHashSet;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.sql.Connection;
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class HashCheckEngineTest {
+
+	@Test
+	public void testLoadKeySetWithNullKeys() throws Exception {
+		Connection connection = _createConnection("PostgreSQL");
+
+		HashCheckEngine hashCheckEngine = new HashCheckEngine(
+			SQLUtil.TYPE_POSTGRESQL);
+
+		KeySet keySet = hashCheckEngine.loadKeySet(
+			connection, _originQuery, _destinationQuery);
+
+		Assert.assertEquals(2, keySet.size());
+		Assert.assertTrue(keySet.contains(new Object[] {1L}));
+		Assert.assertFalse(keySet.contains(new Object[] {null}));
+
+		/* Keys are still stored in a primitive set */
+		LongHashSet longHashSet = new LongHashSet();
+
+		Assert.assertEquals(
+			longHashSet.getMemoryUsage(), keySet.getMemoryUsage());
+	}
+
+	@Test
+	public void testQueryInvalidValuesNotExists() throws Exception {
+		Connection connection = _createConnection("PostgreSQL");
+
+		HashCheckEngine hashCheckEngine = new HashCheckEngine(
+			SQLUtil.TYPE_POSTGRESQL);
+
+		InvalidValuesSink invalidValuesSink = new CollectionInvalidValuesSink();
+
+		hashCheckEngine.queryInvalidValues(
+			connection, _originQuery, _destinationQuery, invalidValuesSink);
+
+		Assert.assertEquals(
+			Arrays.asList("[2]", "[null]"),
+			_toStrings(invalidValuesSink.getValues()));
+	}
+
+	@Test
+	public void testQueryInvalidValuesNotIn() throws Exception {
+		Connection connection = _createConnection("MySQL");
+
+		HashCheckEngine hashCheckEngine = new HashCheckEngine(
+			SQLUtil.TYPE_MYSQL);
+
+		InvalidValuesSink invalidValuesSink = new CollectionInvalidValuesSink();
+
+		hashCheckEngine.queryInvalidValues(
+			connection, _originQuery, _destinationQuery, invalidValuesSink);
+
+		Assert.assertEquals(
+			Collections.singletonList("[2]"),
+			_toStrings(invalidValuesSink.getValues()));
+	}
+
+	/* The destination has a null key, the origin has a missing value and a
+	 * null value */
+	private Connection _createConnection(String databaseProductName) {
+		Map<String, List<Object[]>> results = new LinkedHashMap<>();
+
+		results.put(
+			"FROM AssetEntry",
+			Arrays.asList(
+				new Object[] {1L, 1L}, new Object[] {2L, 2L},
+				new Object[] {null, null}, new Object[] {3L, 3L}));
+		results.put(
+			"FROM User_",
+			Arrays.asList(
+				new Object[] {1L}, new Object[] {null}, new Object[] {3L}));
+
+		return JDBCTestUtil.createConnection(
+			databaseProductName, new ArrayList<String>(), results);
+	}
+
+	private static Table _createTable(String tableName) {
+		return new Table(
+			tableName, Collections.singletonList("userId"),
+			Arrays.asList("userId", "companyId"),
+			Arrays.asList(Types.BIGINT, Types.BIGINT),
+			Arrays.asList("BIGINT", "BIGINT"), Arrays.asList(20, 20),
+			Arrays.asList(false, false));
+	}
+
+	private List<String> _toStrings(Iterable<Object[]> values) {
+		List<String> strings = new ArrayList<>();
+
+		for (Object[] value : values) {
+			strings.add(Arrays.toString(value));
+		}
+
+		return strings;
+	}
+
+	private static final Query _destinationQuery = new Query(
+		_createTable("User_"), Collections.singletonList("userId"), null,
+		null);
+	private static final Query _originQuery = new Query(
+		_createTable("AssetEntry"), Collections.singletonList("userId"), null,
+		null);
+
+}
\ No newline at end of file
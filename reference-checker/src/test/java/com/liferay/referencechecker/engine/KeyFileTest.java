@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Jorge Díaz
+ */
+public class KeyFileTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testWriteLongKeys() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "keys");
+
+		try (KeyFile.Writer writer = new KeyFile.Writer(file, 4)) {
+			for (long i = 10; i > 0; i--) {
+				writer.add(new Object[] {i});
+				writer.add(new Object[] {i});
+			}
+		}
+
+		try (KeyFile keyFile = new KeyFile(file)) {
+			Assert.assertEquals(KeyFile.FORMAT_LONG, keyFile.getFormat());
+			Assert.assertEquals(10, keyFile.size());
+
+			for (long i = 1; i <= 10; i++) {
+				Assert.assertTrue(keyFile.contains(new Object[] {i}));
+			}
+
+			Assert.assertFalse(keyFile.contains(new Object[] {0L}));
+			Assert.assertFalse(keyFile.contains(new Object[] {11L}));
+		}
+	}
+
+	@Test
+	public void testWriteMixedKeys() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "keys");
+
+		try (KeyFile.Writer writer = new KeyFile.Writer(file, 4)) {
+			for (long i = 1; i <= 6; i++) {
+				writer.add(new Object[] {i});
+			}
+
+			writer.add(new Object[] {"a"});
+			writer.add(new Object[] {"b"});
+			writer.add(new Object[] {3L});
+		}
+
+		try (KeyFile keyFile = new KeyFile(file)) {
+			Assert.assertEquals(KeyFile.FORMAT_TEXT, keyFile.getFormat());
+			Assert.assertEquals(8, keyFile.size());
+
+			Assert.assertTrue(keyFile.contains(new Object[] {3L}));
+			Assert.assertTrue(keyFile.contains(new Object[] {"a"}));
+			Assert.assertFalse(keyFile.contains(new Object[] {"c"}));
+		}
+	}
+
+	@Test
+	public void testWriteWithoutKeys() throws Exception {
+		File file = new File(temporaryFolder.getRoot(), "keys");
+
+		new KeyFile.Writer(file, 4).close();
+
+		try (KeyFile keyFile = new KeyFile(file)) {
+			Assert.assertEquals(0, keyFile.size());
+			Assert.assertFalse(keyFile.contains(new Object[] {1L}));
+		}
+	}
+
+}
\ No newline at end of file
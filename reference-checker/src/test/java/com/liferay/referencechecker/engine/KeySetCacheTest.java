@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class KeySetCacheTest {
+
+	@Test
+	public void testGetEvictsLeastRecentlyUsed() throws Exception {
+		KeySetCache keySetCache = new KeySetCache(2 * _KEY_SET_MEMORY_USAGE);
+
+		KeySetLoader keySetLoader = new KeySetLoader();
+
+		KeySet keySet = keySetCache.get("a", 0, keySetLoader);
+
+		keySetCache.get("b", 0, keySetLoader);
+
+		Assert.assertSame(keySet, keySetCache.get("a", 0, keySetLoader));
+
+		keySetCache.get("c", 0, keySetLoader);
+
+		Assert.assertEquals(1, keySetCache.getEvictions());
+		Assert.assertEquals(
+			2 * _KEY_SET_MEMORY_USAGE, keySetCache.getMemoryUsage());
+
+		/* "a" was used after "b", so "b" was evicted */
+		Assert.assertSame(keySet, keySetCache.get("a", 0, keySetLoader));
+
+		keySetCache.get("b", 0, keySetLoader);
+
+		Assert.assertEquals(4, keySetLoader.loads);
+		Assert.assertEquals(2, keySetCache.getHits());
+		Assert.assertEquals(4, keySetCache.getMisses());
+	}
+
+	@Test
+	public void testGetReservesEstimatedMemoryUsage() throws Exception {
+		final KeySetCache keySetCache = new KeySetCache(
+			2 * _KEY_SET_MEMORY_USAGE);
+
+		keySetCache.get("a", 0, new KeySetLoader());
+		keySetCache.get("b", 0, new KeySetLoader());
+
+		keySetCache.get(
+			"c", _KEY_SET_MEMORY_USAGE,
+			new KeySetLoader() {
+
+				@Override
+				public KeySet call() {
+
+					/* Memory is made available before the load starts */
+					Assert.assertEquals(1, keySetCache.getEvictions());
+					Assert.assertEquals(
+						2 * _KEY_SET_MEMORY_USAGE,
+						keySetCache.getMemoryUsage());
+
+					return super.call();
+				}
+
+			});
+
+		Assert.assertEquals(1, keySetCache.getEvictions());
+		Assert.assertEquals(
+			2 * _KEY_SET_MEMORY_USAGE, keySetCache.getMemoryUsage());
+	}
+
+	@Test
+	public void testGetWithoutMemory() throws Exception {
+		KeySetCache keySetCache = new KeySetCache(_KEY_SET_MEMORY_USAGE - 1);
+
+		KeySetLoader keySetLoader = new KeySetLoader();
+
+		keySetCache.get("a", 0, keySetLoader);
+		keySetCache.get("a", 0, keySetLoader);
+
+		Assert.assertEquals(2, keySetLoader.loads);
+		Assert.assertEquals(0, keySetCache.getMemoryUsage());
+	}
+
+	@Test
+	public void testRelease() throws Exception {
+		KeySetCache keySetCache = new KeySetCache(2 * _KEY_SET_MEMORY_USAGE);
+
+		keySetCache.acquire();
+		keySetCache.acquire();
+
+		keySetCache.get("a", 0, new KeySetLoader());
+
+		keySetCache.release();
+
+		Assert.assertEquals(
+			_KEY_SET_MEMORY_USAGE, keySetCache.getMemoryUsage());
+
+		keySetCache.release();
+
+		Assert.assertEquals(0, keySetCache.getMemoryUsage());
+		Assert.assertEquals(0, keySetCache.getMisses());
+	}
+
+	private static class KeySetLoader implements Callable<KeySet> {
+
+		@Override
+		public KeySet call() {
+			loads++;
+
+			return _createKeySet();
+		}
+
+		protected int loads;
+
+	}
+
+	private static KeySet _createKeySet() {
+		KeySet keySet = new KeySet(false, false);
+
+		keySet.add(new Object[] {1L});
+
+		return keySet;
+	}
+
+	private static final long _KEY_SET_MEMORY_USAGE =
+		_createKeySet().getMemoryUsage();
+
+}
\ No newline at end of file
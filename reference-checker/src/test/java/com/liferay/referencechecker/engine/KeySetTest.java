@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.util.LongHashSet;
+
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class KeySetTest {
+
+	@Test
+	public void testAddLongKeys() {
+		KeySet keySet = new KeySet(false, false);
+
+		Assert.assertTrue(keySet.add(new Object[] {1L}));
+		Assert.assertTrue(keySet.add(new Object[] {2}));
+		Assert.assertFalse(keySet.add(new Object[] {new BigDecimal("1")}));
+
+		Assert.assertEquals(2, keySet.size());
+
+		/* Keys are still stored in a primitive set */
+		LongHashSet longHashSet = new LongHashSet();
+
+		Assert.assertEquals(
+			longHashSet.getMemoryUsage(), keySet.getMemoryUsage());
+
+		Assert.assertTrue(keySet.contains(new Object[] {2L}));
+		Assert.assertFalse(keySet.contains(new Object[] {3L}));
+		Assert.assertFalse(keySet.contains(new Object[] {"1"}));
+	}
+
+	@Test
+	public void testAddMixedKeys() {
+		KeySet keySet = new KeySet(false, false);
+
+		keySet.add(new Object[] {1L});
+		keySet.add(new Object[] {"a"});
+
+		Assert.assertEquals(2, keySet.size());
+		Assert.assertTrue(keySet.contains(new Object[] {1L}));
+		Assert.assertTrue(keySet.contains(new Object[] {"a"}));
+		Assert.assertFalse(keySet.contains(new Object[] {"A"}));
+	}
+
+	@Test
+	public void testAddMultipleColumnKeys() {
+		KeySet keySet = new KeySet(false, false);
+
+		keySet.add(new Object[] {1L, "a"});
+
+		Assert.assertTrue(keySet.contains(new Object[] {1, "a"}));
+		Assert.assertFalse(keySet.contains(new Object[] {1L, "b"}));
+		Assert.assertFalse(keySet.contains(new Object[] {1L}));
+	}
+
+	@Test
+	public void testAddStringKeys() {
+		KeySet keySet = new KeySet(true, true);
+
+		keySet.add(new Object[] {"Value "});
+
+		Assert.assertTrue(keySet.contains(new Object[] {"value"}));
+		Assert.assertTrue(keySet.contains(new Object[] {"VALUE  "}));
+		Assert.assertFalse(keySet.contains(new Object[] {" value"}));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.engine;
+
+import com.liferay.referencechecker.JDBCTestUtil;
+import com.liferay.referencechecker.dao.Query;
+import com.liferay.referencechecker.dao.Table;
+import com.liferay.referencechecker.util.SQLUtil;
+
+import java.io.File;
+
+import java.sql.Connection;
+import java.sql.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Jorge Díaz
+ */
+public class SnapshotExporterTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testExportDestinationKeysWithNullKeys() throws Exception {
+		Map<String, List<Object[]>> results = Collections.singletonMap(
+			"FROM User_",
+			Arrays.asList(
+				new Object[] {3L}, new Object[] {null}, new Object[] {1L}));
+
+		Connection connection = JDBCTestUtil.createConnection(
+			"MySQL", new ArrayList<String>(), results);
+
+		SnapshotExporter snapshotExporter = new SnapshotExporter(
+			SQLUtil.TYPE_MYSQL);
+
+		File file = new File(temporaryFolder.getRoot(), "keys");
+
+		snapshotExporter.exportDestinationKeys(
+			connection, _createQuery("AssetEntry"), _createQuery("User_"),
+			file);
+
+		try (KeyFile keyFile = new KeyFile(file)) {
+			Assert.assertEquals(KeyFile.FORMAT_LONG, keyFile.getFormat());
+			Assert.assertEquals(2, keyFile.size());
+
+			Assert.assertTrue(keyFile.contains(new Object[] {1L}));
+			Assert.assertTrue(keyFile.contains(new Object[] {3L}));
+		}
+	}
+
+	private Query _createQuery(String tableName) {
+		Table table = new Table(
+			tableName, Collections.singletonList("userId"),
+			Collections.singletonList("userId"),
+			Collections.singletonList(Types.BIGINT),
+			Collections.singletonList("BIGINT"),
+			Collections.singletonList(20), Collections.singletonList(false));
+
+		return new Query(table, Collections.singletonList("userId"), null, null);
+	}
+
+}
\ No newline at end of file
@@ -233,6 +233,14 @@ public class Configuration {
 
 	public static class Reference {
 
+		public String getAntiJoinStrategy() {
+			return antiJoinStrategy;
+		}
+
+		public String getCheckEngine() {
+			return checkEngine;
+		}
+
 		public Query getDest() {
 			return dest;
 		}
@@ -269,6 +277,14 @@ public class Configuration {
 			return getHidden();
 		}
 
+		public void setAntiJoinStrategy(String antiJoinStrategy) {
+			this.antiJoinStrategy = antiJoinStrategy;
+		}
+
+		public void setCheckEngine(String checkEngine) {
+			this.checkEngine = checkEngine;
+		}
+
 		public void setDest(Query dest) {
 			this.dest = dest;
 		}
@@ -293,6 +309,8 @@ public class Configuration {
 			return getOrigin() + " => " + String.valueOf(getDest());
 		}
 
+		protected String antiJoinStrategy;
+		protected String checkEngine;
 		protected Query dest;
 		protected Boolean displayRaw;
 		protected String fixAction;
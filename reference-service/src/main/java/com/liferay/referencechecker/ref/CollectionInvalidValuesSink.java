@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import java.util.Collection;
+
+/**
+ * Keeps all the invalid values in memory, repeated values are only kept and
+ * counted once. Values can be added from several threads.
+ *
+ * @author Jorge Díaz
+ */
+public class CollectionInvalidValuesSink implements InvalidValuesSink {
+
+	@Override
+	public synchronized void add(Object[] value) {
+		values.add(value);
+	}
+
+	@Override
+	public synchronized long getCount() {
+		return values.size();
+	}
+
+	@Override
+	public synchronized Collection<Object[]> getValues() {
+		return values;
+	}
+
+	protected InvalidValues values = new InvalidValues();
+
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import java.util.Collection;
+
+/**
+ * Removes the repeated values before adding them to another sink that does not
+ * remove them, like LimitInvalidValuesSink. Only the values kept in memory by
+ * the other sink are remembered, so once it stops keeping them a repeated value
+ * is counted again and the count is no longer exact.
+ *
+ * Values can be added from several threads.
+ *
+ * @author Jorge Díaz
+ */
+public class DistinctInvalidValuesSink implements InvalidValuesSink {
+
+	public DistinctInvalidValuesSink(InvalidValuesSink invalidValuesSink) {
+		this.invalidValuesSink = invalidValuesSink;
+	}
+
+	@Override
+	public synchronized void add(Object[] value) {
+		if (distinctValues.contains(value)) {
+			return;
+		}
+
+		Collection<Object[]> values = invalidValuesSink.getValues();
+
+		int size = values.size();
+
+		invalidValuesSink.add(value);
+
+		values = invalidValuesSink.getValues();
+
+		if (values.size() > size) {
+			distinctValues.add(value);
+		}
+		else {
+			countExact = false;
+		}
+	}
+
+	@Override
+	public synchronized long getCount() {
+		return invalidValuesSink.getCount();
+	}
+
+	@Override
+	public synchronized Collection<Object[]> getValues() {
+		return invalidValuesSink.getValues();
+	}
+
+	/* False once the other sink stopped keeping the values, the count can
+	 * include repeated values from then on */
+	public synchronized boolean isCountExact() {
+		return countExact;
+	}
+
+	protected boolean countExact = true;
+	protected InvalidValues distinctValues = new InvalidValues();
+	protected InvalidValuesSink invalidValuesSink;
+
+}
\ No newline at end of file
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import com.liferay.referencechecker.util.KeyUtil;
+import com.liferay.referencechecker.util.LongTupleHashSet;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Distinct invalid values compared by value, in insertion order. Integer
+ * values are packed as primitive long tuples, values with strings or nulls
+ * are stored as objects.
+ *
+ * Integer values are returned as Long whatever the type read from the
+ * database, following the rules of KeyUtil.normalize.
+ *
+ * @author Jorge Díaz
+ */
+public class InvalidValues extends AbstractCollection<Object[]> {
+
+	@Override
+	public boolean add(Object[] value) {
+		if (_objects == null) {
+			long[] tuple = _toTuple(value);
+
+			if ((tuple != null) &&
+				((_tuples == null) || (_tuples.getWidth() == tuple.length))) {
+
+				if (_tuples == null) {
+					_tuples = new LongTupleHashSet(tuple.length);
+				}
+
+				return _tuples.add(tuple);
+			}
+
+			Set<List<Object>> objects = new LinkedHashSet<>();
+
+			for (Object[] tupleValue : this) {
+				objects.add(Arrays.asList(tupleValue));
+			}
+
+			_objects = objects;
+			_tuples = null;
+		}
+
+		return _objects.add(Arrays.asList(_normalize(value)));
+	}
+
+	@Override
+	public boolean contains(Object obj) {
+		if (!(obj instanceof Object[])) {
+			return false;
+		}
+
+		Object[] value = (Object[])obj;
+
+		if (_objects != null) {
+			return _objects.contains(Arrays.asList(_normalize(value)));
+		}
+
+		if (_tuples == null) {
+			return false;
+		}
+
+		long[] tuple = _toTuple(value);
+
+		if ((tuple == null) || (_tuples.getWidth() != tuple.length)) {
+			return false;
+		}
+
+		return _tuples.contains(tuple);
+	}
+
+	public long getMemoryUsage() {
+		if (_objects != null) {
+			return _objects.size() * _OBJECT_ENTRY_SIZE;
+		}
+
+		if (_tuples != null) {
+			return _tuples.getMemoryUsage();
+		}
+
+		return 0;
+	}
+
+	@Override
+	public Iterator<Object[]> iterator() {
+		if (_objects != null) {
+			final Iterator<List<Object>> iterator = _objects.iterator();
+
+			return new Iterator<Object[]>() {
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public Object[] next() {
+					List<Object> list = iterator.next();
+
+					return list.toArray();
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+			};
+		}
+
+		if (_tuples == null) {
+			return Collections.emptyIterator();
+		}
+
+		final LongTupleHashSet tuples = _tuples;
+
+		return new Iterator<Object[]>() {
+
+			@Override
+			public boolean hasNext() {
+				if (_index < tuples.size()) {
+					return true;
+				}
+
+				return false;
+			}
+
+			@Override
+			public Object[] next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				Object[] value = new Object[tuples.getWidth()];
+
+				for (int i = 0; i < value.length; i++) {
+					value[i] = tuples.get(_index, i);
+				}
+
+				_index++;
+
+				return value;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			private int _index;
+
+		};
+	}
+
+	@Override
+	public int size() {
+		if (_objects != null) {
+			return _objects.size();
+		}
+
+		if (_tuples != null) {
+			return _tuples.size();
+		}
+
+		return 0;
+	}
+
+	private Object[] _normalize(Object[] value) {
+		Object[] normalizedValue = new Object[value.length];
+
+		for (int i = 0; i < value.length; i++) {
+			Long longValue = KeyUtil.toLong(value[i]);
+
+			if (longValue == null) {
+				normalizedValue[i] = value[i];
+			}
+			else {
+				normalizedValue[i] = longValue;
+			}
+		}
+
+		return normalizedValue;
+	}
+
+	private long[] _toTuple(Object[] value) {
+		long[] tuple = new long[value.length];
+
+		for (int i = 0; i < value.length; i++) {
+			Long longValue = KeyUtil.toLong(value[i]);
+
+			if (longValue == null) {
+				return null;
+			}
+
+			tuple[i] = longValue;
+		}
+
+		return tuple;
+	}
+
+	/* LinkedHashMap entry, list wrapper, array and boxed values */
+	private static final long _OBJECT_ENTRY_SIZE = 120L;
+
+	private Set<List<Object>> _objects;
+	private LongTupleHashSet _tuples;
+
+}
\ No newline at end of file
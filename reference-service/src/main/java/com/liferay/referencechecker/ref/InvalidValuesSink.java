@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import java.util.Collection;
+
+/**
+ * Receives the invalid values of one reference as they are read from the
+ * database, so the memory used does not depend on the number of values.
+ *
+ * @author Jorge Díaz
+ */
+public interface InvalidValuesSink {
+
+	public void add(Object[] value);
+
+	/* Number of values added, including the ones not kept in memory */
+	public long getCount();
+
+	/* Values kept in memory, they can be less than getCount() */
+	public Collection<Object[]> getValues();
+
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Counts all the invalid values but only keeps the first ones in memory, a
+ * limit of zero only counts them.
+ *
+ * @author Jorge Díaz
+ */
+public class LimitInvalidValuesSink implements InvalidValuesSink {
+
+	public LimitInvalidValuesSink(int limit) {
+		this.limit = limit;
+	}
+
+	@Override
+	public void add(Object[] value) {
+		if (values.size() < limit) {
+			values.add(value);
+		}
+
+		count++;
+	}
+
+	@Override
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public Collection<Object[]> getValues() {
+		return values;
+	}
+
+	protected long count = 0;
+	protected int limit;
+	protected List<Object[]> values = new ArrayList<>();
+
+}
\ No newline at end of file
@@ -27,6 +27,29 @@ public class MissingReferences {
 		this.reference = reference;
 		this.values = values;
 		this.affectedRows = affectedRows;
+
+		valuesCount = values.size();
+	}
+
+	public MissingReferences(
+		Reference reference, Collection<Object[]> values, long valuesCount,
+		long affectedRows) {
+
+		this.reference = reference;
+		this.values = values;
+		this.valuesCount = valuesCount;
+		this.affectedRows = affectedRows;
+	}
+
+	public MissingReferences(
+		Reference reference, InvalidValuesSink invalidValuesSink,
+		long affectedRows) {
+
+		this.reference = reference;
+		this.affectedRows = affectedRows;
+
+		values = invalidValuesSink.getValues();
+		valuesCount = invalidValuesSink.getCount();
 	}
 
 	public MissingReferences(Reference reference, Throwable throwable) {
@@ -38,6 +61,14 @@ public class MissingReferences {
 		return affectedRows;
 	}
 
+	public String getPlan() {
+		return plan;
+	}
+
+	public String getPlanReason() {
+		return planReason;
+	}
+
 	public Reference getReference() {
 		return reference;
 	}
@@ -50,9 +81,30 @@ public class MissingReferences {
 		return values;
 	}
 
+	public long getValuesCount() {
+		return valuesCount;
+	}
+
+	/* False if only some of the values were kept in memory */
+	public boolean isComplete() {
+		if ((values == null) || (values.size() == valuesCount)) {
+			return true;
+		}
+
+		return false;
+	}
+
+	public void setPlan(String plan, String planReason) {
+		this.plan = plan;
+		this.planReason = planReason;
+	}
+
 	protected long affectedRows = -1L;
+	protected String plan = null;
+	protected String planReason = null;
 	protected Reference reference = null;
 	protected Throwable throwable = null;
 	protected Collection<Object[]> values = null;
+	protected long valuesCount = -1L;
 
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+
+/**
+ * Number of origin rows with missing references estimated from a sample of
+ * primary key ranges of the origin table. Rows of the same range are
+ * correlated, so the 95% confidence interval is calculated from the variance
+ * of the affected rows between the sampled ranges, using the ratio estimator
+ * of a cluster sample and the finite population correction.
+ *
+ * @author Jorge Díaz
+ */
+public class MissingReferencesEstimate {
+
+	/* Estimate of an origin table that was fully checked */
+	public MissingReferencesEstimate(
+		Reference reference, long rows, long affectedRows) {
+
+		this(reference, rows, new long[] {rows}, new long[] {affectedRows});
+	}
+
+	public MissingReferencesEstimate(
+		Reference reference, long rows, long[] sampleRangeRows,
+		long[] sampleRangeAffectedRows) {
+
+		this.reference = reference;
+		this.rows = rows;
+		this.sampleRangeRows = sampleRangeRows;
+		this.sampleRangeAffectedRows = sampleRangeAffectedRows;
+
+		sampleRows = 0;
+		sampleAffectedRows = 0;
+
+		for (int i = 0; i < sampleRangeRows.length; i++) {
+			sampleRows += sampleRangeRows[i];
+			sampleAffectedRows += sampleRangeAffectedRows[i];
+		}
+	}
+
+	public MissingReferencesEstimate(Reference reference, Throwable throwable) {
+		this.reference = reference;
+		this.throwable = throwable;
+	}
+
+	public long getEstimatedAffectedRows() {
+		if (sampleRows <= 0) {
+			return 0;
+		}
+
+		return Math.round((double)sampleAffectedRows * rows / sampleRows);
+	}
+
+	public long getLowerBound() {
+		if (sampleRows <= 0) {
+			return 0;
+		}
+
+		double halfWidth = _getHalfWidth();
+
+		if (Double.isNaN(halfWidth)) {
+			return sampleAffectedRows;
+		}
+
+		double lowerBound = _getProportion() - halfWidth;
+
+		return Math.max(
+			(long)Math.floor(lowerBound * rows), sampleAffectedRows);
+	}
+
+	public Reference getReference() {
+		return reference;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	public long getSampleAffectedRows() {
+		return sampleAffectedRows;
+	}
+
+	public long getSampleRows() {
+		return sampleRows;
+	}
+
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	public long getUpperBound() {
+		if (sampleRows <= 0) {
+			return rows;
+		}
+
+		long maxAffectedRows = rows - (sampleRows - sampleAffectedRows);
+
+		double halfWidth = _getHalfWidth();
+
+		if (Double.isNaN(halfWidth)) {
+			return maxAffectedRows;
+		}
+
+		double upperBound = _getProportion() + halfWidth;
+
+		return Math.min((long)Math.ceil(upperBound * rows), maxAffectedRows);
+	}
+
+	protected Reference reference = null;
+	protected long rows = -1L;
+	protected long sampleAffectedRows = -1L;
+	protected long[] sampleRangeAffectedRows = null;
+	protected long[] sampleRangeRows = null;
+	protected long sampleRows = -1L;
+	protected Throwable throwable = null;
+
+	/* The interval is empty if all the rows were checked, and it is unknown,
+	 * NaN, if the variance can not be calculated from a single range */
+	private double _getHalfWidth() {
+		if (sampleRows >= rows) {
+			return 0;
+		}
+
+		int ranges = sampleRangeRows.length;
+
+		if (ranges < 2) {
+			return Double.NaN;
+		}
+
+		double proportion = _getProportion();
+
+		double sum = 0;
+
+		for (int i = 0; i < ranges; i++) {
+			double residual =
+				sampleRangeAffectedRows[i] - (proportion * sampleRangeRows[i]);
+
+			sum += residual * residual;
+		}
+
+		double meanRangeRows = (double)sampleRows / ranges;
+
+		double correction = 1 - ((double)sampleRows / rows);
+
+		double variance =
+			correction * sum / (ranges - 1) /
+				(ranges * meanRangeRows * meanRangeRows);
+
+		return _getStudentT(ranges - 1) * Math.sqrt(variance);
+	}
+
+	private double _getProportion() {
+		return (double)sampleAffectedRows / sampleRows;
+	}
+
+	/* Two-sided 95% quantile of the Student's t distribution, approximated
+	 * from the normal one with the Cornish-Fisher expansion, as there are
+	 * few ranges */
+	private double _getStudentT(int degreesOfFreedom) {
+		double z = _Z;
+		double v = degreesOfFreedom;
+
+		double z3 = z * z * z;
+		double z5 = z3 * z * z;
+		double z7 = z5 * z * z;
+
+		return z + ((z3 + z) / (4 * v)) +
+			(((5 * z5) + (16 * z3) + (3 * z)) / (96 * v * v)) +
+				(((3 * z7) + (19 * z5) + (17 * z3) - (15 * z)) /
+					(384 * v * v * v));
+	}
+
+	private static final double _Z = 1.96;
+
+}
\ No newline at end of file
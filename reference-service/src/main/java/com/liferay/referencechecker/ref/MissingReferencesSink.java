@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import java.io.IOException;
+
+/**
+ * Creates the sink of the invalid values of each reference and receives the
+ * missing references as soon as each reference is checked.
+ *
+ * @author Jorge Díaz
+ */
+public interface MissingReferencesSink {
+
+	public void addMissingReferences(MissingReferences missingReferences)
+		throws IOException;
+
+	public InvalidValuesSink createInvalidValuesSink(Reference reference);
+
+}
\ No newline at end of file
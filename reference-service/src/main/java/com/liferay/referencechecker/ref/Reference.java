@@ -36,8 +36,16 @@ public class Reference implements Cloneable, Comparable<Reference> {
 	}
 
 	public Reference clone() {
+		return clone(originQuery, destinationQuery);
+	}
+
+	/* Copy of this reference with other queries, used to restrict the
+	 * checked rows */
+	public Reference clone(Query originQuery, Query destinationQuery) {
 		Reference copy = new Reference(originQuery, destinationQuery);
 
+		copy.setAntiJoinStrategy(getAntiJoinStrategy());
+		copy.setCheckEngine(getCheckEngine());
 		copy.setHidden(isHidden());
 		copy.setFixAction(getFixAction());
 		copy.setRaw(isRaw());
@@ -77,6 +85,14 @@ public class Reference implements Cloneable, Comparable<Reference> {
 		return originQuery.equals(ref.originQuery);
 	}
 
+	public String getAntiJoinStrategy() {
+		return antiJoinStrategy;
+	}
+
+	public String getCheckEngine() {
+		return checkEngine;
+	}
+
 	public Query getDestinationQuery() {
 		return destinationQuery;
 	}
@@ -108,6 +124,14 @@ public class Reference implements Cloneable, Comparable<Reference> {
 		return raw;
 	}
 
+	public void setAntiJoinStrategy(String antiJoinStrategy) {
+		this.antiJoinStrategy = antiJoinStrategy;
+	}
+
+	public void setCheckEngine(String checkEngine) {
+		this.checkEngine = checkEngine;
+	}
+
 	public void setFixAction(String fixAction) {
 		this.fixAction = fixAction;
 	}
@@ -127,6 +151,8 @@ public class Reference implements Cloneable, Comparable<Reference> {
 		this.raw = raw;
 	}
 
+	protected String antiJoinStrategy = null;
+	protected String checkEngine = null;
 	protected Query destinationQuery;
 	protected String fixAction = null;
 	protected boolean hidden = false;
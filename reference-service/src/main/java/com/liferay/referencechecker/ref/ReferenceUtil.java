@@ -130,6 +130,10 @@ public class ReferenceUtil {
 	public List<Reference> getReferences(
 		Connection connection, Configuration configuration) {
 
+		if (ignoreEmptyTables) {
+			tableUtil.probeEmptyTables(connection, tableUtil.getTables());
+		}
+
 		List<Reference> referencesList = new ArrayList<>();
 
 		for (Configuration.Reference referenceConfig :
@@ -659,6 +663,9 @@ public class ReferenceUtil {
 					reference.getDestinationQuery());
 			}
 
+			reference.setAntiJoinStrategy(
+				referenceConfig.getAntiJoinStrategy());
+			reference.setCheckEngine(referenceConfig.getCheckEngine());
 			reference.setFixAction(fixAction);
 		}
 
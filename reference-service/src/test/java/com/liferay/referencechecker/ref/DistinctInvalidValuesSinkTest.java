@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class DistinctInvalidValuesSinkTest {
+
+	@Test
+	public void testAdd() {
+		DistinctInvalidValuesSink distinctInvalidValuesSink =
+			new DistinctInvalidValuesSink(new LimitInvalidValuesSink(5));
+
+		distinctInvalidValuesSink.add(new Object[] {1L});
+		distinctInvalidValuesSink.add(new Object[] {2L});
+		distinctInvalidValuesSink.add(new Object[] {1L});
+
+		Assert.assertEquals(2, distinctInvalidValuesSink.getCount());
+		Assert.assertEquals(2, distinctInvalidValuesSink.getValues().size());
+		Assert.assertTrue(distinctInvalidValuesSink.isCountExact());
+	}
+
+	@Test
+	public void testAddOverLimit() {
+		DistinctInvalidValuesSink distinctInvalidValuesSink =
+			new DistinctInvalidValuesSink(new LimitInvalidValuesSink(1));
+
+		distinctInvalidValuesSink.add(new Object[] {1L});
+		distinctInvalidValuesSink.add(new Object[] {1L});
+
+		Assert.assertTrue(distinctInvalidValuesSink.isCountExact());
+
+		distinctInvalidValuesSink.add(new Object[] {2L});
+		distinctInvalidValuesSink.add(new Object[] {2L});
+
+		/* The second value is not kept, so it is counted twice */
+		Assert.assertEquals(3, distinctInvalidValuesSink.getCount());
+		Assert.assertEquals(1, distinctInvalidValuesSink.getValues().size());
+		Assert.assertFalse(distinctInvalidValuesSink.isCountExact());
+	}
+
+	@Test
+	public void testCollectionInvalidValuesSink() {
+		CollectionInvalidValuesSink collectionInvalidValuesSink =
+			new CollectionInvalidValuesSink();
+
+		collectionInvalidValuesSink.add(new Object[] {1L, "a"});
+		collectionInvalidValuesSink.add(new Object[] {1L, "a"});
+		collectionInvalidValuesSink.add(new Object[] {1L, "b"});
+
+		Assert.assertEquals(2, collectionInvalidValuesSink.getCount());
+		Assert.assertEquals(2, collectionInvalidValuesSink.getValues().size());
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2000-present Liferay, Inc. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ */
+
+package com.liferay.referencechecker.ref;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Jorge Díaz
+ */
+public class MissingReferencesEstimateTest {
+
+	@Test
+	public void testEstimateOfCheckedTable() {
+		MissingReferencesEstimate missingReferencesEstimate =
+			new MissingReferencesEstimate(null, 1000, 25);
+
+		Assert.assertEquals(
+			25, missingReferencesEstimate.getEstimatedAffectedRows());
+		Assert.assertEquals(25, missingReferencesEstimate.getLowerBound());
+		Assert.assertEquals(25, missingReferencesEstimate.getUpperBound());
+	}
+
+	@Test
+	public void testEstimateOfClusteredRanges() {
+		MissingReferencesEstimate missingReferencesEstimate =
+			new MissingReferencesEstimate(
+				null, 4000, new long[] {100, 100, 100, 100},
+				new long[] {0, 0, 0, 40});
+
+		Assert.assertEquals(
+			400, missingReferencesEstimate.getEstimatedAffectedRows());
+		Assert.assertEquals(40, missingReferencesEstimate.getLowerBound());
+		Assert.assertEquals(1599, missingReferencesEstimate.getUpperBound());
+	}
+
+	@Test
+	public void testEstimateOfSingleRange() {
+		MissingReferencesEstimate missingReferencesEstimate =
+			new MissingReferencesEstimate(
+				null, 1000, new long[] {100}, new long[] {10});
+
+		Assert.assertEquals(
+			100, missingReferencesEstimate.getEstimatedAffectedRows());
+		Assert.assertEquals(10, missingReferencesEstimate.getLowerBound());
+		Assert.assertEquals(910, missingReferencesEstimate.getUpperBound());
+	}
+
+	@Test
+	public void testEstimateOfUniformRanges() {
+		MissingReferencesEstimate missingReferencesEstimate =
+			new MissingReferencesEstimate(
+				null, 1000, new long[] {100, 100}, new long[] {10, 10});
+
+		Assert.assertEquals(
+			100, missingReferencesEstimate.getEstimatedAffectedRows());
+		Assert.assertEquals(100, missingReferencesEstimate.getLowerBound());
+		Assert.assertEquals(100, missingReferencesEstimate.getUpperBound());
+		Assert.assertEquals(200, missingReferencesEstimate.getSampleRows());
+		Assert.assertEquals(
+			20, missingReferencesEstimate.getSampleAffectedRows());
+	}
+
+	@Test
+	public void testEstimateWithoutSampleRows() {
+		MissingReferencesEstimate missingReferencesEstimate =
+			new MissingReferencesEstimate(
+				null, 1000, new long[] {0, 0}, new long[] {0, 0});
+
+		Assert.assertEquals(
+			0, missingReferencesEstimate.getEstimatedAffectedRows());
+		Assert.assertEquals(0, missingReferencesEstimate.getLowerBound());
+		Assert.assertEquals(1000, missingReferencesEstimate.getUpperBound());
+	}
+
+}
\ No newline at end of file